@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.MpaDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// бенчмарки основных методов FilmDbStorage:
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FilmDbStorageBenchmark {
+    // фильмов в одном вызове addFilms (пропускная способность считается в фильмах, а не в вызовах):
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private SeededDatabase database;
+    private FilmDbStorage filmStorage;
+    // пользователь без лайков: его пара с любым фильмом ещё не занята в film_likes:
+    private long likerId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new SeededDatabase(rows);
+        JdbcTemplate jdbcTemplate = database.getJdbcTemplate();
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) " +
+                "VALUES ('liker@filmorate.ru', 'liker', 'liker', DATE '1990-01-01');");
+        likerId = jdbcTemplate.queryForObject("SELECT MAX(user_id) FROM users;", Long.class);
+        filmStorage = new FilmDbStorage(jdbcTemplate, new GenreDbStorage(jdbcTemplate), new MpaDbStorage(jdbcTemplate));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Film getFilmById() {
+        return filmStorage.getFilmById(randomId());
+    }
+
+    @Benchmark
+    public List<Film> getAllFilms() {
+        return filmStorage.getAllFilms();
+    }
+
+    @Benchmark
+    public List<Film> getTopFilmsForLikes() {
+        return filmStorage.getTopFilmsForLikes(10);
+    }
+
+    // лайк и его отмена в одном вызове: каждый вызов пишет в БД (повторный лайк ничего не меняет), а данные
+    // и rate фильмов между вызовами остаются прежними:
+    @Benchmark
+    public String addLikeToFilm() {
+        long filmId = randomId();
+        filmStorage.addLikeToFilm(filmId, likerId);
+        return filmStorage.removeLikeFromFilm(filmId, likerId);
+    }
+
+    @Benchmark
+    public Film addFilm() {
+        return filmStorage.addFilm(newFilm());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IMPORT_BATCH_SIZE)
+    public List<Film> addFilms() {
+        List<Film> films = new ArrayList<>(IMPORT_BATCH_SIZE);
+        for (int i = 0; i < IMPORT_BATCH_SIZE; i++) {
+            films.add(newFilm());
+        }
+        return filmStorage.addFilms(films);
+    }
+
+    /*------Вспомогательные методы------*/
+    private static Film newFilm() {
+        return Film.builder()
+                .name("imported_film")
+                .description("imported_description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(90)
+                .mpa(Mpa.builder()
+                        .id(1)
+                        .build())
+                .genres(List.of(Genre.builder().id(1).build(), Genre.builder().id(2).build()))
+                .build();
+    }
+
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, rows + 1);
+    }
+}
@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.index.FilmFacetIndex;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// задержка фильтров списка фильмов с фасетами по индексу (без БД): films фильмов с 1-3 жанрами из GENRES,
+// MPA-рейтингом из MPA, годом релиза 1950-2023 и продолжительностью 60-180 минут.
+// Фильтр - два случайных жанра и диапазон в 20 лет, фасеты считаются по всем найденным фильмам:
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FilmFacetIndexBenchmark {
+    private static final int GENRES = 6;
+    private static final int MPA = 5;
+
+    @Param({"10000", "100000"})
+    private int films;
+
+    private FilmFacetIndex index;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random seeded = new Random(42);
+        index = new FilmFacetIndex();
+        for (int film = 1; film <= films; film++) {
+            List<Integer> genres = List.of(1 + seeded.nextInt(GENRES), 1 + seeded.nextInt(GENRES),
+                    1 + seeded.nextInt(GENRES)).subList(0, 1 + seeded.nextInt(3));
+            index.put(film, genres, 1 + seeded.nextInt(MPA), LocalDate.of(1950 + seeded.nextInt(74), 1, 1),
+                    60 + seeded.nextInt(121));
+        }
+        random = new Random(7);
+    }
+
+    @Benchmark
+    public FilmFacetIndex.Result filter() {
+        int yearFrom = 1950 + random.nextInt(54);
+        Set<Integer> genres = new HashSet<>(List.of(1 + random.nextInt(GENRES), 1 + random.nextInt(GENRES)));
+        return index.filter(genres, null, yearFrom, yearFrom + 20, null, 0, 50);
+    }
+}
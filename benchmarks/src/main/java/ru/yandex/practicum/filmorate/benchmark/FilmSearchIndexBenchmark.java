@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// задержка поиска фильмов по индексу n-грамм (без БД): films фильмов, название - TITLE_WORDS слов,
+// описание - DESCRIPTION_WORDS слов из словаря WORDS. Запрос - начало случайного слова длиной 2-6 символов,
+// как при поиске по мере набора. rate берутся из индекса популярности, как в FilmDbStorage. p99 - в выводе SampleTime:
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FilmSearchIndexBenchmark {
+    private static final String[] WORDS = {
+            "тёмный", "рыцарь", "возвращение", "короля", "звёздные", "войны", "начало", "матрица", "побег",
+            "шоушенка", "зелёная", "миля", "форрест", "гамп", "интерстеллар", "остров", "проклятых", "джентльмены",
+            "удачи", "бриллиантовая", "рука", "ирония", "судьбы", "москва", "слезам", "не", "верит", "брат",
+            "служебный", "роман", "операция", "приключения", "шурика", "кавказская", "пленница", "любовь",
+            "голуби", "белое", "солнце", "пустыни", "летят", "журавли", "сталкер", "солярис", "зеркало", "город"};
+    private static final int TITLE_WORDS = 3;
+    private static final int DESCRIPTION_WORDS = 20;
+    private static final Set<FilmSearchIndex.Field> ALL_FIELDS = EnumSet.allOf(FilmSearchIndex.Field.class);
+
+    @Param({"10000", "100000"})
+    private int films;
+
+    private FilmSearchIndex index;
+    private FilmPopularityIndex popularityIndex;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random seeded = new Random(42);
+        index = new FilmSearchIndex();
+        popularityIndex = new FilmPopularityIndex();
+        for (int film = 1; film <= films; film++) {
+            index.put(film, words(seeded, TITLE_WORDS) + " " + film, words(seeded, DESCRIPTION_WORDS));
+            popularityIndex.put(film, seeded.nextInt(1000));
+        }
+        random = new Random(7);
+    }
+
+    @Benchmark
+    public long[] search() {
+        String word = WORDS[random.nextInt(WORDS.length)];
+        String query = word.substring(0, Math.min(word.length(), 2 + random.nextInt(5)));
+        return index.search(query, ALL_FIELDS, random.nextBoolean(), 10, popularityIndex::getRate);
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
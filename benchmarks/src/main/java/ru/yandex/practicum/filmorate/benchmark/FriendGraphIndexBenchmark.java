@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.index.FriendGraphIndex;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// задержка рекомендаций друзей по индексу (без БД): у пользователя 1 friends друзей,
+// у каждого из них FRIENDS_OF_FRIEND случайных друзей среди USERS пользователей. p99 - в выводе SampleTime:
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FriendGraphIndexBenchmark {
+    private static final int USERS = 1_000_000;
+    private static final int FRIENDS_OF_FRIEND = 200;
+
+    @Param({"100", "5000"})
+    private int friends;
+
+    // по умолчанию - те же ограничения обхода, что и в application.properties:
+    @Param({"500"})
+    private int maxFriends;
+
+    @Param({"100"})
+    private int maxFriendsOfFriend;
+
+    private FriendGraphIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        index = new FriendGraphIndex();
+        for (int i = 0; i < friends; i++) {
+            long friendId = 2 + random.nextInt(USERS - 1);
+            index.addFriend(1, friendId);
+            for (int j = 0; j < FRIENDS_OF_FRIEND; j++) {
+                index.addFriend(friendId, 2 + random.nextInt(USERS - 1));
+            }
+        }
+    }
+
+    @Benchmark
+    public long[] getSuggestedFriendIds() {
+        return index.getSuggestedFriendIds(1, 10, maxFriends, maxFriendsOfFriend);
+    }
+}
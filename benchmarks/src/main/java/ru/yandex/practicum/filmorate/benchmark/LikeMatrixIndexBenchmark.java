@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.index.LikeMatrixIndex;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// задержка рекомендаций фильмов по матрице лайков (без БД): users пользователей, у каждого LIKES_PER_USER лайков
+// среди FILMS фильмов, половина лайков - в POPULAR_FILMS популярных фильмах. p99 - в выводе SampleTime:
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LikeMatrixIndexBenchmark {
+    private static final int FILMS = 20_000;
+    private static final int POPULAR_FILMS = 200;
+    private static final int LIKES_PER_USER = 30;
+
+    @Param({"10000", "100000"})
+    private int users;
+
+    // по умолчанию - то же число соседей, что и в application.properties:
+    @Param({"50"})
+    private int maxNeighbours;
+
+    private LikeMatrixIndex index;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random seeded = new Random(42);
+        index = new LikeMatrixIndex();
+        for (int user = 1; user <= users; user++) {
+            for (int like = 0; like < LIKES_PER_USER; like++) {
+                int film = like % 2 == 0 ? 1 + seeded.nextInt(POPULAR_FILMS) : 1 + seeded.nextInt(FILMS);
+                index.addLike(film, user);
+            }
+        }
+        random = new Random(7);
+    }
+
+    @Benchmark
+    public long[] getRecommendedFilmIds() {
+        return index.getRecommendedFilmIds(1 + random.nextInt(users), 10, maxNeighbours);
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// H2 база в памяти, заполненная тестовыми данными для бенчмарков:
+public class SeededDatabase implements AutoCloseable {
+    // количество общих друзей у пользователей с id 1 и 2:
+    public static final int COMMON_FRIENDS_COUNT = 100;
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final int rows;
+
+    public SeededDatabase(int rows) {
+        this(rows, "latest");
+    }
+
+    // schemaVersion - до какой миграции из db/migration приложения поднимать схему ("latest" - все):
+    public SeededDatabase(int rows, String schemaVersion) {
+        this.rows = rows;
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:filmorate_benchmark_" + rows + "_" + schemaVersion);
+        config.setUsername("sa");
+        config.setPassword("password");
+        config.setMaximumPoolSize(4);
+        dataSource = new HikariDataSource(config);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        migrate(schemaVersion);
+        seed();
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    // in-memory база удаляется вместе с последним соединением пула:
+    @Override
+    public void close() {
+        dataSource.close();
+    }
+
+    /*------Вспомогательные методы------*/
+    private void migrate(String schemaVersion) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .encoding("UTF-8")
+                .target(schemaVersion)
+                .load()
+                .migrate();
+    }
+
+    // по rows строк в films, users, film_genres (по 2 жанра на фильм), film_likes и user_friendship:
+    private void seed() {
+        jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration, rate, mpa_rating_id) " +
+                "SELECT 'film_' || X, " +
+                       "'description_' || X, " +
+                       "DATEADD('DAY', MOD(X, 40000), DATE '1900-01-01'), " +
+                       "60 + MOD(X, 120), " +
+                       "MOD(X * 31, 1000), " +
+                       "1 + MOD(X, 5) " +
+                "FROM SYSTEM_RANGE(1, ?);", rows);
+
+        jdbcTemplate.update("INSERT INTO film_genres (film_id, genre_id) " +
+                "SELECT 1 + MOD(X, ?), " +
+                       "1 + MOD(X + X / ?, 6) " +
+                "FROM SYSTEM_RANGE(0, ? - 1);", rows, rows, rows * 2);
+
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) " +
+                "SELECT 'user_' || X || '@filmorate.ru', " +
+                       "'login_' || X, " +
+                       "'name_' || X, " +
+                       "DATEADD('DAY', MOD(X, 20000), DATE '1950-01-01') " +
+                "FROM SYSTEM_RANGE(1, ?);", rows);
+
+        jdbcTemplate.update("INSERT INTO film_likes (film_id, user_id) " +
+                "SELECT 1 + MOD(X * 7919, ?), " +
+                       "1 + MOD(X, ?) " +
+                "FROM SYSTEM_RANGE(1, ?);", rows, rows, rows);
+
+        // пользователи 1 и 2 дружат с одними и теми же пользователями:
+        jdbcTemplate.update("INSERT INTO user_friendship (user_id, friend_id) " +
+                "SELECT 1 + MOD(X, 2), " +
+                       "3 + X / 2 " +
+                "FROM SYSTEM_RANGE(0, ? - 1);", COMMON_FRIENDS_COUNT * 2);
+
+        int restFriendships = Math.max(rows - COMMON_FRIENDS_COUNT * 2, 0);
+        jdbcTemplate.update("INSERT INTO user_friendship (user_id, friend_id) " +
+                "SELECT 3 + MOD(X, ? - 2), " +
+                       "1 + MOD(X * 104729, ?) " +
+                "FROM SYSTEM_RANGE(1, ?);", rows, rows, restFriendships);
+
+        jdbcTemplate.execute("ANALYZE;");
+    }
+}
@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.practicum.filmorate.query.SqlQuery.*;
+
+// задержка отдельных запросов из SqlQuery до индексов на связующих таблицах (schemaVersion = 2)
+// и после миграции V3 с индексами (schemaVersion = 3). Запросы, читающие таблицу целиком
+// (SQL_QUERY_GET_ALL_FILMS, SQL_QUERY_GET_ALL_USERS, SQL_QUERY_GET_ALL_FILM_RATES), от индексов не зависят и
+// измеряются в FilmDbStorageBenchmark. Запись идёт в пары, которых нет в базе, чтобы данные не менялись:
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SqlQueryBenchmark {
+    private static final int PAGE_SIZE = 100;
+    private static final int TOP_SIZE = 10;
+    private static final int MISSING_GENRE_ID = 7;
+
+    @Param({"1000000"})
+    private int rows;
+
+    @Param({"2", "3"})
+    private String schemaVersion;
+
+    private SeededDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private String getFilmsByIdsQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new SeededDatabase(rows, schemaVersion);
+        jdbcTemplate = database.getJdbcTemplate();
+        getFilmsByIdsQuery = String.format(SQL_QUERY_GET_FILMS_BY_IDS,
+                String.join(", ", Collections.nCopies(TOP_SIZE, "?")));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    /*----Запросы для объектов Film----*/
+    @Benchmark
+    public List<Map<String, Object>> getFilmById() {
+        return query(SQL_QUERY_GET_FILM_BY_ID, randomId());
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> getFilmsPage() {
+        return query(SQL_QUERY_GET_FILMS_PAGE, randomId(), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> getFilmsByIds() {
+        Object[] filmIds = new Object[TOP_SIZE];
+        for (int i = 0; i < TOP_SIZE; i++) {
+            filmIds[i] = randomId();
+        }
+        return query(getFilmsByIdsQuery, filmIds);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> countUsers() {
+        return query(SQL_QUERY_COUNT_USERS, randomId());
+    }
+
+    @Benchmark
+    public int removeLikeFromFilm() {
+        return jdbcTemplate.update(SQL_QUERY_REMOVE_LIKE_FROM_FILM, randomId(), missingId());
+    }
+
+    @Benchmark
+    public int removeFilmGenre() {
+        return jdbcTemplate.update(SQL_QUERY_REMOVE_FILM_GENRE, randomId(), MISSING_GENRE_ID);
+    }
+
+    @Benchmark
+    public int addToFilmRate() {
+        return jdbcTemplate.update(SQL_QUERY_FILM_RATE_ADD, 0, randomId());
+    }
+
+    /*----Запросы для объектов User----*/
+    @Benchmark
+    public List<Map<String, Object>> getUserById() {
+        return query(SQL_QUERY_GET_USER_BY_ID, randomId());
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> getUsersPage() {
+        return query(SQL_QUERY_GET_USERS_PAGE, randomId(), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> getAllFriendList() {
+        return query(SQL_QUERY_GET_ALL_FRIEND_LIST, randomId());
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> getCommonFriends() {
+        return query(SQL_QUERY_GET_COMMON_FRIENDS, 1L, 2L);
+    }
+
+    @Benchmark
+    public int removeUserFromFriends() {
+        return jdbcTemplate.update(SQL_QUERY_REMOVE_USER_FROM_FRIENDS, randomId(), missingId());
+    }
+
+    /*------Вспомогательные методы------*/
+    private List<Map<String, Object>> query(String sqlQuery, Object... args) {
+        return jdbcTemplate.query(sqlQuery, new ColumnMapRowMapper(), args);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, rows + 1);
+    }
+
+    // id, которого нет в базе (для удаления несуществующих связей):
+    private long missingId() {
+        return rows + 1L;
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// бенчмарки работы со списками друзей в UserDbStorage:
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UserDbStorageBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private SeededDatabase database;
+    private UserDbStorage userStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new SeededDatabase(rows);
+        userStorage = new UserDbStorage(database.getJdbcTemplate());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    // у пользователей 1 и 2 SeededDatabase.COMMON_FRIENDS_COUNT общих друзей:
+    @Benchmark
+    public List<User> getCommonFriends() {
+        return userStorage.getCommonFriends(1L, 2L);
+    }
+
+    @Benchmark
+    public List<User> getAllFriendsList() {
+        return userStorage.getAllFriendsList(1L);
+    }
+
+    @Benchmark
+    public List<User> getSuggestedFriends() {
+        return userStorage.getSuggestedFriends(1L, 10);
+    }
+}
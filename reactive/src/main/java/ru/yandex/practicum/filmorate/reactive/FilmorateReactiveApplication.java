@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class FilmorateReactiveApplication {
+	public static void main(String[] args) {
+		SpringApplication.run(FilmorateReactiveApplication.class, args);
+	}
+}
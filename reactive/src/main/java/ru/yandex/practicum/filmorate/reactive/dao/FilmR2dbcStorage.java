@@ -0,0 +1,385 @@
+package ru.yandex.practicum.filmorate.reactive.dao;
+
+import io.r2dbc.spi.Row;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.exception.AlreadyExistException;
+import ru.yandex.practicum.filmorate.exception.IllegalIdException;
+import ru.yandex.practicum.filmorate.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static ru.yandex.practicum.filmorate.exception.AlreadyExistException.*;
+import static ru.yandex.practicum.filmorate.exception.IllegalIdException.*;
+import static ru.yandex.practicum.filmorate.query.SqlQuery.*;
+import static ru.yandex.practicum.filmorate.reactive.dao.R2dbcStatements.bindAll;
+import static ru.yandex.practicum.filmorate.reactive.dao.R2dbcStatements.executeBatch;
+import static ru.yandex.practicum.filmorate.reactive.dao.R2dbcStatements.idOf;
+
+// реактивная версия FilmDbStorage: те же SQL запросы из SqlQuery, выполняются через R2DBC без блокировки потоков:
+@Repository
+@DependsOnDatabaseInitialization
+@Slf4j
+public class FilmR2dbcStorage implements ReactiveFilmStorage {
+    // типы параметров SQL_QUERY_ADD_FILM (для null значений):
+    private static final Class<?>[] FILM_PARAMETER_TYPES =
+            {String.class, String.class, LocalDate.class, Integer.class, Integer.class, Integer.class};
+    private static final Class<?>[] FILM_GENRE_PARAMETER_TYPES = {Long.class, Integer.class};
+    // сколько фильмов добавляем за одно обращение к соединению при пакетном добавлении:
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final GenreR2dbcStorage genreStorage;
+    private final MpaR2dbcStorage mpaStorage;
+    // топ фильмов по rate, чтобы /films/popular не сортировал всю таблицу films:
+    private final FilmPopularityIndex popularityIndex = new FilmPopularityIndex();
+
+    @Autowired
+    public FilmR2dbcStorage(DatabaseClient databaseClient,
+                            TransactionalOperator transactionalOperator,
+                            GenreR2dbcStorage genreStorage,
+                            MpaR2dbcStorage mpaStorage) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+
+        // заполнили индекс популярности текущими rate фильмов (при старте, после миграций Flyway):
+        databaseClient.sql(SQL_QUERY_GET_ALL_FILM_RATES)
+                .map(row -> Map.entry(idOf(row, "film_id"), rateOf(row.get("rate", Integer.class))))
+                .all()
+                .doOnNext(entry -> popularityIndex.put(entry.getKey(), entry.getValue()))
+                .then()
+                .block();
+    }
+
+    /*---Добавляем фильм в БД---*/
+    @Override
+    public Mono<Film> addFilm(Film film) {
+        if (film.getId() != null) {
+            // существующий фильм - AlreadyExistException, несуществующий - IllegalIdException из getFilmById:
+            return getFilmById(film.getId()).flatMap(storedFilm -> {
+                log.debug("{}: " + FILM_ALREADY_EXIST_MESSAGE + "{}",
+                        AlreadyExistException.class.getSimpleName(), film.getId());
+                return Mono.error(new AlreadyExistException(FILM_ALREADY_EXIST_MESSAGE + film.getId(),
+                        FILM_ALREADY_EXIST_ADVICE));
+            });
+        }
+
+        return transactionalOperator.transactional(insertFilms(List.of(film)).then(Mono.fromSupplier(() -> {
+            log.debug("Добавлен новый фильм: {}, с id = {}", film.getName(), film.getId());
+            return film;
+        })));
+    }
+
+    /*---Проверяем новый фильм перед пакетным добавлением---*/
+    @Override
+    public void checkNewFilm(Film film) {
+        if (film.getId() != null) {
+            log.debug("{}: " + ILLEGAL_NEW_FILM_ID_MESSAGE + "{}",
+                    IllegalIdException.class.getSimpleName(), film.getId());
+            throw new IllegalIdException(ILLEGAL_NEW_FILM_ID_MESSAGE + film.getId(), ILLEGAL_NEW_FILM_ID_ADVICE);
+        }
+
+        // MPA-рейтинг и жанры проверяем по справочникам, чтобы один фильм не уронил весь пакет на внешнем ключе:
+        mpaStorage.getMpaById(film.getMpa() == null ? null : film.getMpa().getId());
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                genreStorage.getGenreById(genre == null ? null : genre.getId());
+            }
+        }
+    }
+
+    /*---Добавляем список новых фильмов в БД (одной транзакцией, пакетами по INSERT_BATCH_SIZE)---*/
+    @Override
+    public Flux<Film> addFilms(List<Film> films) {
+        List<List<Film>> batches = new ArrayList<>();
+        for (int from = 0; from < films.size(); from += INSERT_BATCH_SIZE) {
+            batches.add(films.subList(from, Math.min(from + INSERT_BATCH_SIZE, films.size())));
+        }
+
+        return transactionalOperator.transactional(Flux.fromIterable(batches)
+                .concatMap(this::insertFilms)
+                .thenMany(Flux.defer(() -> {
+                    log.debug("Добавлено новых фильмов: {}", films.size());
+                    return Flux.fromIterable(films);
+                })));
+    }
+
+    /*---Обновляем данные Film в БД---*/
+    @Override
+    public Mono<Film> updateFilm(Film film) {
+        return transactionalOperator.transactional(getFilmById(film.getId()).flatMap(storedFilm -> {
+            // убираем дубликаты жанров:
+            if (film.getGenres() != null) {
+                film.setGenres(distinctGenres(film.getGenres()));
+            }
+
+            // обновили фильм, затем жанры: удаляем и добавляем только изменившиеся:
+            return bindAll(databaseClient.sql(SQL_QUERY_UPDATE_FILM), FILM_PARAMETER_TYPES,
+                    film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration(), film.getRate(),
+                    film.getMpa().getId())
+                    .bind(FILM_PARAMETER_TYPES.length, film.getId())
+                    .then()
+                    .then(syncFilmGenres(film.getId(), storedFilm.getGenres(), film.getGenres()))
+                    .then(Mono.fromSupplier(() -> {
+                        popularityIndex.put(film.getId(), rateOf(film.getRate()));
+                        log.debug("Обновлена информация о фильме: {}, с id = {}", film.getName(), film.getId());
+                        return film;
+                    }));
+        }));
+    }
+
+    /*---Получить список всех Film (фильмы отдаются по мере чтения строк, с учётом backpressure)---*/
+    @Override
+    public Flux<Film> getAllFilms() {
+        return foldFilms(databaseClient.sql(SQL_QUERY_GET_ALL_FILMS)
+                .map(this::mapRowToFilmRow)
+                .all());
+    }
+
+    /*---Получить страницу Film с id > afterId (keyset пагинация)---*/
+    @Override
+    public Flux<Film> getFilmsPage(Long afterId, Integer limit) {
+        return foldFilms(databaseClient.sql(SQL_QUERY_GET_FILMS_PAGE)
+                .bind(0, afterId)
+                .bind(1, limit)
+                .map(this::mapRowToFilmRow)
+                .all());
+    }
+
+    /*---Получить Film по id---*/
+    @Override
+    public Mono<Film> getFilmById(Long filmId) {
+        Mono<Film> film = filmId == null ? Mono.empty() : foldFilms(databaseClient.sql(SQL_QUERY_GET_FILM_BY_ID)
+                .bind(0, filmId)
+                .map(this::mapRowToFilmRow)
+                .all())
+                .next();
+
+        return film.switchIfEmpty(Mono.error(() -> {
+            log.debug("{}: " + ILLEGAL_FILM_ID_MESSAGE + "{}", IllegalIdException.class.getSimpleName(), filmId);
+            return new IllegalIdException(ILLEGAL_FILM_ID_MESSAGE + filmId, ILLEGAL_FILM_ID_ADVICE);
+        }));
+    }
+
+    /*---Поставить лайк фильму---*/
+    // лайк идемпотентен: если лайк уже есть (в том числе его добавил параллельный запрос), уникальный индекс
+    // film_likes отклоняет запись, и rate не меняется:
+    @Override
+    public Mono<String> addLikeToFilm(Long id, Long userId) {
+        // добавили запись о лайке и увеличили rate фильма на 1:
+        Mono<Boolean> addLike = databaseClient.sql(SQL_QUERY_ADD_LIKE_TO_FILM)
+                .bind(0, id)
+                .bind(1, userId)
+                .then()
+                .then(databaseClient.sql(SQL_QUERY_FILM_RATE_PLUS)
+                        .bind(0, id)
+                        .then())
+                .thenReturn(true)
+                .onErrorResume(R2dbcStatements::isDuplicateKey, exception -> Mono.just(false));
+
+        return transactionalOperator.transactional(addLike).map(added -> {
+            if (added) {
+                popularityIndex.addToRate(id, 1);
+            }
+            return String.format("Пользователь с id: %d, поставил лайк фильму с id: %d.", userId, id);
+        });
+    }
+
+    /*---Удалить лайк---*/
+    // rate уменьшаем, только если лайк действительно был удалён:
+    @Override
+    public Mono<String> removeLikeFromFilm(Long id, Long userId) {
+        // удалили запись о лайке и уменьшили rate фильма на 1:
+        Mono<Boolean> removeLike = databaseClient.sql(SQL_QUERY_REMOVE_LIKE_FROM_FILM)
+                .bind(0, id)
+                .bind(1, userId)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(removedLikes -> removedLikes > 0
+                        ? databaseClient.sql(SQL_QUERY_FILM_RATE_MINUS)
+                                .bind(0, id)
+                                .then()
+                                .thenReturn(true)
+                        : Mono.just(false));
+
+        return transactionalOperator.transactional(removeLike).map(removed -> {
+            if (removed) {
+                popularityIndex.addToRate(id, -1);
+            }
+            return String.format("Пользователь с id: %d, удалил свой лайк фильму с id: %d.", userId, id);
+        });
+    }
+
+    /*---Получить топ фильмов по популярности---*/
+    @Override
+    public Flux<Film> getTopFilmsForLikes(Integer count) {
+        // id берём из индекса популярности, из БД читаем только сами фильмы по первичному ключу:
+        return getFilmsByIds(popularityIndex.getTopFilmIds(count));
+    }
+
+    /*------Вспомогательные методы------*/
+    // добавляем фильмы на одном соединении, id берём из сгенерированных ключей в порядке добавления,
+    // затем на нём же связываем фильмы и жанры:
+    private Flux<Long> insertFilms(List<Film> films) {
+        List<Object[]> filmRows = new ArrayList<>(films.size());
+        for (Film film : films) {
+            // убираем дубликаты жанров:
+            if (film.getGenres() != null) {
+                film.setGenres(distinctGenres(film.getGenres()));
+            }
+            filmRows.add(new Object[]{film.getName(), film.getDescription(), film.getReleaseDate(),
+                    film.getDuration(), film.getRate(), film.getMpa().getId()});
+        }
+
+        return databaseClient.inConnectionMany(connection -> R2dbcStatements
+                .executeEach(connection, SQL_QUERY_ADD_FILM, filmRows, FILM_PARAMETER_TYPES, "film_id")
+                .concatMap(result -> result.map((row, metadata) -> idOf(row, "film_id")))
+                .collectList()
+                .flatMapMany(filmIds -> {
+                    List<Object[]> filmGenres = new ArrayList<>();
+                    for (int index = 0; index < films.size(); index++) {
+                        Film film = films.get(index);
+                        film.setId(filmIds.get(index));
+                        popularityIndex.put(film.getId(), rateOf(film.getRate()));
+                        if (film.getGenres() != null) {
+                            for (Genre genre : film.getGenres()) {
+                                filmGenres.add(new Object[]{film.getId(), genre.getId()});
+                            }
+                        }
+                    }
+                    return executeBatch(connection, SQL_QUERY_ADD_FILM_GENRE, filmGenres, FILM_GENRE_PARAMETER_TYPES)
+                            .thenMany(Flux.fromIterable(filmIds));
+                }));
+    }
+
+    // приводим жанры фильма в БД от stored к requested на одном соединении: сначала удаление, затем добавление:
+    private Mono<Void> syncFilmGenres(Long filmId, List<Genre> storedGenres, List<Genre> requestedGenres) {
+        Set<Integer> storedGenreIds = new HashSet<>();
+        for (Genre genre : storedGenres) {
+            storedGenreIds.add(genre.getId());
+        }
+        Set<Integer> requestedGenreIds = new LinkedHashSet<>();
+        if (requestedGenres != null) {
+            for (Genre genre : requestedGenres) {
+                requestedGenreIds.add(genre.getId());
+            }
+        }
+
+        List<Object[]> genresToRemove = new ArrayList<>();
+        for (Integer genreId : storedGenreIds) {
+            if (!requestedGenreIds.contains(genreId)) {
+                genresToRemove.add(new Object[]{filmId, genreId});
+            }
+        }
+        List<Object[]> genresToAdd = new ArrayList<>();
+        for (Integer genreId : requestedGenreIds) {
+            if (!storedGenreIds.contains(genreId)) {
+                genresToAdd.add(new Object[]{filmId, genreId});
+            }
+        }
+
+        return databaseClient.inConnectionMany(connection ->
+                        executeBatch(connection, SQL_QUERY_REMOVE_FILM_GENRE, genresToRemove, FILM_GENRE_PARAMETER_TYPES)
+                                .concatWith(executeBatch(connection, SQL_QUERY_ADD_FILM_GENRE, genresToAdd,
+                                        FILM_GENRE_PARAMETER_TYPES)))
+                .then();
+    }
+
+    // жанры без дубликатов, отсортированные по id:
+    private static List<Genre> distinctGenres(List<Genre> genres) {
+        Set<Genre> distinct = new TreeSet<>(Comparator.comparing(Genre::getId));
+        distinct.addAll(genres);
+        return List.copyOf(distinct);
+    }
+
+    private static int rateOf(Integer rate) {
+        return rate == null ? 0 : rate;
+    }
+
+    // фильмы по списку id, в том же порядке, что и id:
+    private Flux<Film> getFilmsByIds(List<Long> filmIds) {
+        if (filmIds.isEmpty()) {
+            return Flux.empty();
+        }
+
+        String placeholders = filmIds.stream()
+                .map(filmId -> "?")
+                .collect(Collectors.joining(", "));
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(String.format(SQL_QUERY_GET_FILMS_BY_IDS,
+                placeholders));
+        for (int index = 0; index < filmIds.size(); index++) {
+            spec = spec.bind(index, filmIds.get(index));
+        }
+
+        return foldFilms(spec.map(this::mapRowToFilmRow).all())
+                .collectMap(Film::getId)
+                .flatMapIterable(filmsById -> filmIds.stream()
+                        .map(filmsById::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList()));
+    }
+
+    // собираем фильмы по мере чтения: строки одного фильма (по строке на жанр) идут в ответе подряд,
+    // bufferUntilChanged отдаёт фильм, как только начинаются строки следующего, и сохраняет backpressure:
+    private Flux<Film> foldFilms(Flux<FilmRow> rows) {
+        return rows.bufferUntilChanged(row -> row.film.getId())
+                .map(filmRows -> {
+                    Film film = filmRows.get(0).film;
+                    for (FilmRow row : filmRows) {
+                        if (row.genreId != null && row.genreId != 0) {
+                            film.getGenres().add(genreStorage.resolveGenre(row.genreId));
+                        }
+                    }
+                    return film;
+                });
+    }
+
+    private FilmRow mapRowToFilmRow(Row row) {
+        Film film = Film.builder()
+                .id(idOf(row, "film_id"))
+                .name(row.get("name", String.class))
+                .description(row.get("description", String.class))
+                .releaseDate(row.get("release_date", LocalDate.class))
+                .duration(row.get("duration", Integer.class))
+                .genres(new ArrayList<>())
+                .build();
+
+        // если есть rate:
+        int rate = rateOf(row.get("rate", Integer.class));
+        if (rate != 0) {
+            film.setRate(rate);
+        }
+
+        // если есть MPA:
+        Integer mpaId = row.get("mpa_rating_id", Integer.class);
+        if (mpaId != null && mpaId != 0) {
+            film.setMpa(mpaStorage.resolveMpa(mpaId));
+        }
+
+        return new FilmRow(film, row.get("genre_id", Integer.class));
+    }
+
+    // строка ответа: фильм и один из его жанров (null - у фильма нет жанров):
+    private static final class FilmRow {
+        private final Film film;
+        private final Integer genreId;
+
+        private FilmRow(Film film, Integer genreId) {
+            this.film = film;
+            this.genreId = genreId;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.reactive.dao;
+
+import io.r2dbc.spi.Row;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.GENRE_INVALID_DATA_BASE_QUERY_ADVICE;
+import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.INVALID_DATA_BASE_QUERY_MESSAGE;
+import static ru.yandex.practicum.filmorate.query.SqlQuery.SQL_QUERY_GET_ALL_GENRES;
+
+// справочник жанров загружается из БД один раз при старте (после миграций Flyway) и дальше отдаётся из памяти:
+@Slf4j
+@Repository
+@DependsOnDatabaseInitialization
+public class GenreR2dbcStorage {
+    private final Map<Integer, Genre> genresById;
+    private final List<Genre> genres;
+
+    @Autowired
+    public GenreR2dbcStorage(DatabaseClient databaseClient) {
+        // блокирующее чтение допустимо только здесь - при старте приложения, до приёма запросов:
+        List<Genre> loadedGenres = databaseClient.sql(SQL_QUERY_GET_ALL_GENRES)
+                .map(GenreR2dbcStorage::mapRowToGenre)
+                .all()
+                .collectList()
+                .block();
+
+        Map<Integer, Genre> loadedGenresById = new LinkedHashMap<>();
+        for (Genre genre : loadedGenres) {
+            loadedGenresById.put(genre.getId(), genre);
+        }
+
+        genres = List.copyOf(loadedGenres);
+        genresById = Map.copyOf(loadedGenresById);
+        log.debug("Справочник жанров загружен из БД, количество жанров: {}", loadedGenres.size());
+    }
+
+    /*---Получение жанра по его id---*/
+    public Genre getGenreById(Integer genreId) {
+        Genre genre = genreId == null ? null : genresById.get(genreId);
+
+        if (genre == null) {
+            log.debug("{}: " + INVALID_DATA_BASE_QUERY_MESSAGE + " Жанр с id = {} не найден.",
+                    InvalidDataBaseQueryException.class.getSimpleName(), genreId);
+            throw new InvalidDataBaseQueryException(INVALID_DATA_BASE_QUERY_MESSAGE, 1,
+                    GENRE_INVALID_DATA_BASE_QUERY_ADVICE);
+        }
+
+        return genre;
+    }
+
+    /*---Получение списка всех жанров---*/
+    public List<Genre> getAllGenres() {
+        return genres;
+    }
+
+    /*---Жанр для фильма по id (если жанра нет в справочнике - только id)---*/
+    public Genre resolveGenre(int genreId) {
+        Genre genre = genresById.get(genreId);
+
+        if (genre == null) {
+            return Genre.builder()
+                    .id(genreId)
+                    .build();
+        }
+
+        return genre;
+    }
+
+    /*-------Вспомогательные методы-------*/
+    private static Genre mapRowToGenre(Row row) {
+        return Genre.builder()
+                .id(row.get("genre_id", Integer.class))
+                .name(row.get("name", String.class))
+                .build();
+    }
+}
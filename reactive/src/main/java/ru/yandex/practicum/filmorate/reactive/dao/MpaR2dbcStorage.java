@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.reactive.dao;
+
+import io.r2dbc.spi.Row;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.MPA_INVALID_DATA_BASE_QUERY_ADVICE;
+import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.INVALID_DATA_BASE_QUERY_MESSAGE;
+import static ru.yandex.practicum.filmorate.query.SqlQuery.SQL_QUERY_GET_ALL_MPA;
+
+// справочник MPA-рейтингов загружается из БД один раз при старте (после миграций Flyway) и дальше отдаётся из памяти:
+@Slf4j
+@Repository
+@DependsOnDatabaseInitialization
+public class MpaR2dbcStorage {
+    private final Map<Integer, Mpa> mpaById;
+    private final List<Mpa> allMpa;
+
+    @Autowired
+    public MpaR2dbcStorage(DatabaseClient databaseClient) {
+        // блокирующее чтение допустимо только здесь - при старте приложения, до приёма запросов:
+        List<Mpa> loadedMpa = databaseClient.sql(SQL_QUERY_GET_ALL_MPA)
+                .map(MpaR2dbcStorage::mapRowToMpa)
+                .all()
+                .collectList()
+                .block();
+
+        Map<Integer, Mpa> loadedMpaById = new LinkedHashMap<>();
+        for (Mpa mpa : loadedMpa) {
+            loadedMpaById.put(mpa.getId(), mpa);
+        }
+
+        allMpa = List.copyOf(loadedMpa);
+        mpaById = Map.copyOf(loadedMpaById);
+        log.debug("Справочник MPA-рейтингов загружен из БД, количество MPA-рейтингов: {}", loadedMpa.size());
+    }
+
+    /*---Получение MPA-рейтинга по его id---*/
+    public Mpa getMpaById(Integer mpaId) {
+        Mpa mpa = mpaId == null ? null : mpaById.get(mpaId);
+
+        if (mpa == null) {
+            log.debug("{}: " + INVALID_DATA_BASE_QUERY_MESSAGE + " MPA-рейтинг с id = {} не найден.",
+                    InvalidDataBaseQueryException.class.getSimpleName(), mpaId);
+            throw new InvalidDataBaseQueryException(INVALID_DATA_BASE_QUERY_MESSAGE, 1,
+                    MPA_INVALID_DATA_BASE_QUERY_ADVICE);
+        }
+
+        return mpa;
+    }
+
+    /*---Получение списка всех MPA-рейтингов---*/
+    public List<Mpa> getAllMpa() {
+        return allMpa;
+    }
+
+    /*---MPA-рейтинг для фильма по id (если MPA-рейтинга нет в справочнике - только id)---*/
+    public Mpa resolveMpa(int mpaId) {
+        Mpa mpa = mpaById.get(mpaId);
+
+        if (mpa == null) {
+            return Mpa.builder()
+                    .id(mpaId)
+                    .build();
+        }
+
+        return mpa;
+    }
+
+    /*-------Вспомогательные методы-------*/
+    private static Mpa mapRowToMpa(Row row) {
+        return Mpa.builder()
+                .id(row.get("mpa_rating_id", Integer.class))
+                .name(row.get("name", String.class))
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.reactive.dao;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.R2dbcException;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.Statement;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+// общие для R2DBC хранилищ методы: выполнение запроса для списка параметров и разбор ошибок БД:
+final class R2dbcStatements {
+    // SQLSTATE нарушения уникального индекса (повторный лайк, повторное добавление в друзья):
+    private static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
+
+    private R2dbcStatements() {
+    }
+
+    // параметры запроса по порядку, null передаём с типом из types:
+    static DatabaseClient.GenericExecuteSpec bindAll(DatabaseClient.GenericExecuteSpec spec, Class<?>[] types,
+                                                     Object... values) {
+        for (int index = 0; index < values.length; index++) {
+            spec = values[index] == null ? spec.bindNull(index, types[index]) : spec.bind(index, values[index]);
+        }
+        return spec;
+    }
+
+    // выполняем запрос по очереди для каждого набора параметров на одном соединении (внутри той же транзакции).
+    // Statement.add() не используем: в r2dbc-h2 0.9 execute() после add() падает с "No unfinished bindings!":
+    static Flux<Result> executeEach(Connection connection, String sqlQuery, List<Object[]> rows, Class<?>[] types,
+                                    String... generatedColumns) {
+        return Flux.fromIterable(rows).concatMap(row -> {
+            Statement statement = connection.createStatement(sqlQuery);
+            for (int index = 0; index < row.length; index++) {
+                if (row[index] == null) {
+                    statement.bindNull(index, types[index]);
+                } else {
+                    statement.bind(index, row[index]);
+                }
+            }
+            if (generatedColumns.length > 0) {
+                statement.returnGeneratedValues(generatedColumns);
+            }
+            return statement.execute();
+        });
+    }
+
+    // выполняем запрос для списка наборов параметров, возвращаем количество изменённых строк по каждому набору:
+    static Flux<Long> executeBatch(Connection connection, String sqlQuery, List<Object[]> rows, Class<?>[] types) {
+        return executeEach(connection, sqlQuery, rows, types)
+                .concatMap(result -> Flux.from(result.getRowsUpdated()).map(Number::longValue));
+    }
+
+    // id в схеме - INTEGER, драйвер R2DBC не приводит его к Long сам:
+    static Long idOf(Row row, String column) {
+        Number id = (Number) row.get(column);
+        return id == null ? null : id.longValue();
+    }
+
+    static boolean isDuplicateKey(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof R2dbcException
+                    && UNIQUE_VIOLATION_SQL_STATE.equals(((R2dbcException) cause).getSqlState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.reactive.dao;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.List;
+
+public interface ReactiveFilmStorage {
+    Mono<Film> addFilm(Film film);
+
+    void checkNewFilm(Film film);
+
+    Flux<Film> addFilms(List<Film> films);
+
+    Mono<Film> updateFilm(Film film);
+
+    Flux<Film> getAllFilms();
+
+    Flux<Film> getFilmsPage(Long afterId, Integer limit);
+
+    Mono<Film> getFilmById(Long filmId);
+
+    Mono<String> addLikeToFilm(Long id, Long userId);
+
+    Mono<String> removeLikeFromFilm(Long id, Long userId);
+
+    Flux<Film> getTopFilmsForLikes(Integer count);
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.reactive.dao;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+
+public interface ReactiveUserStorage {
+    Mono<User> addUser(User user);
+
+    void checkNewUser(User user);
+
+    Flux<User> addUsers(List<User> users);
+
+    Mono<User> updateUser(User user);
+
+    Flux<User> getAllUsers();
+
+    Flux<User> getUsersPage(Long afterId, Integer limit);
+
+    User checkName(User user);
+
+    Mono<User> getUserById(Long userId);
+
+    Mono<String> addUserToFriends(Long id, Long friendId);
+
+    Mono<String> removeUserFromFriends(Long id, Long friendId);
+
+    Flux<User> getAllFriendsList(Long id);
+
+    Flux<User> getCommonFriends(Long id, Long otherId);
+}
@@ -0,0 +1,229 @@
+package ru.yandex.practicum.filmorate.reactive.dao;
+
+import io.r2dbc.spi.Row;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.exception.AlreadyExistException;
+import ru.yandex.practicum.filmorate.exception.IllegalIdException;
+import ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.yandex.practicum.filmorate.exception.AlreadyExistException.*;
+import static ru.yandex.practicum.filmorate.exception.IllegalIdException.*;
+import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.INVALID_DATA_BASE_QUERY_MESSAGE;
+import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.USER_INVALID_DATA_BASE_QUERY_ADVICE;
+import static ru.yandex.practicum.filmorate.query.SqlQuery.*;
+import static ru.yandex.practicum.filmorate.reactive.dao.R2dbcStatements.bindAll;
+import static ru.yandex.practicum.filmorate.reactive.dao.R2dbcStatements.idOf;
+
+// реактивная версия UserDbStorage: те же SQL запросы из SqlQuery, выполняются через R2DBC без блокировки потоков:
+@Repository
+@Slf4j
+public class UserR2dbcStorage implements ReactiveUserStorage {
+    private static final String ADD_TO_FRIEND_MESSAGE = "Пользователи успешно добавлены в друзья. Их id: ";
+    private static final String REMOVE_FROM_FRIEND_MESSAGE = "Пользователи успешно удалены из друзей. Их id: ";
+    // типы параметров SQL_QUERY_ADD_USER (для null значений):
+    private static final Class<?>[] USER_PARAMETER_TYPES = {String.class, String.class, String.class, LocalDate.class};
+    // сколько пользователей добавляем за одно обращение к соединению при пакетном добавлении:
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+
+    @Autowired
+    public UserR2dbcStorage(DatabaseClient databaseClient, TransactionalOperator transactionalOperator) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    /*---Добавляем пользователя в БД---*/
+    @Override
+    public Mono<User> addUser(User user) {
+        final User newUser = checkName(user);
+
+        if (newUser.getId() != null) {
+            // существующий пользователь - AlreadyExistException, несуществующий - исключение из getUserById:
+            return getUserById(newUser.getId()).flatMap(storedUser -> {
+                log.debug("{}: " + USER_ALREADY_EXIST_MESSAGE + "{}",
+                        AlreadyExistException.class.getSimpleName(), newUser.getId());
+                return Mono.error(new AlreadyExistException(USER_ALREADY_EXIST_MESSAGE + newUser.getId(),
+                        USER_ALREADY_EXIST_ADVICE));
+            });
+        }
+
+        return insertUsers(List.of(newUser)).then(Mono.fromSupplier(() -> {
+            log.debug("Добавлен новый пользователь: {}, с id = {}", newUser.getLogin(), newUser.getId());
+            return newUser;
+        }));
+    }
+
+    /*---Проверяем нового пользователя перед пакетным добавлением---*/
+    @Override
+    public void checkNewUser(User user) {
+        if (user.getId() != null) {
+            log.debug("{}: " + ILLEGAL_NEW_USER_ID_MESSAGE + "{}",
+                    IllegalIdException.class.getSimpleName(), user.getId());
+            throw new IllegalIdException(ILLEGAL_NEW_USER_ID_MESSAGE + user.getId(), ILLEGAL_NEW_USER_ID_ADVICE);
+        }
+    }
+
+    /*---Добавляем список новых пользователей в БД (одной транзакцией, id - в порядке списка)---*/
+    @Override
+    public Flux<User> addUsers(List<User> users) {
+        List<List<User>> batches = new ArrayList<>();
+        for (int from = 0; from < users.size(); from += INSERT_BATCH_SIZE) {
+            batches.add(users.subList(from, Math.min(from + INSERT_BATCH_SIZE, users.size())));
+        }
+
+        return transactionalOperator.transactional(Flux.fromIterable(batches)
+                .concatMap(this::insertUsers)
+                .thenMany(Flux.defer(() -> {
+                    log.debug("Добавлено новых пользователей: {}", users.size());
+                    return Flux.fromIterable(users);
+                })));
+    }
+
+    /*---Обновляем данные User в БД---*/
+    @Override
+    public Mono<User> updateUser(User user) {
+        final User newUser = checkName(user);
+
+        return getUserById(newUser.getId())
+                .flatMap(storedUser -> bindAll(databaseClient.sql(SQL_QUERY_UPDATE_USER), USER_PARAMETER_TYPES,
+                        newUser.getEmail(), newUser.getLogin(), newUser.getName(), newUser.getBirthday())
+                        .bind(USER_PARAMETER_TYPES.length, newUser.getId())
+                        .then())
+                .then(Mono.fromSupplier(() -> {
+                    log.debug("Обновлена информация о пользователе: {}, с id = {}",
+                            newUser.getLogin(), newUser.getId());
+                    return newUser;
+                }));
+    }
+
+    /*---Получить список всех User (пользователи отдаются по мере чтения строк, с учётом backpressure)---*/
+    @Override
+    public Flux<User> getAllUsers() {
+        return databaseClient.sql(SQL_QUERY_GET_ALL_USERS)
+                .map(UserR2dbcStorage::mapRowToUser)
+                .all();
+    }
+
+    /*---Получить страницу User с id > afterId (keyset пагинация)---*/
+    @Override
+    public Flux<User> getUsersPage(Long afterId, Integer limit) {
+        return databaseClient.sql(SQL_QUERY_GET_USERS_PAGE)
+                .bind(0, afterId)
+                .bind(1, limit)
+                .map(UserR2dbcStorage::mapRowToUser)
+                .all();
+    }
+
+    /*---Получить User по id---*/
+    @Override
+    public Mono<User> getUserById(Long userId) {
+        Mono<User> user = userId == null ? Mono.empty() : databaseClient.sql(SQL_QUERY_GET_USER_BY_ID)
+                .bind(0, userId)
+                .map(UserR2dbcStorage::mapRowToUser)
+                .one();
+
+        // как и в UserDbStorage, отсутствующий пользователь - пустой ответ БД (InvalidDataBaseQueryException):
+        return user.switchIfEmpty(Mono.error(() -> {
+            log.debug("{}: " + INVALID_DATA_BASE_QUERY_MESSAGE + " Пользователь с id = {} не найден.",
+                    InvalidDataBaseQueryException.class.getSimpleName(), userId);
+            return new InvalidDataBaseQueryException(INVALID_DATA_BASE_QUERY_MESSAGE, 1,
+                    USER_INVALID_DATA_BASE_QUERY_ADVICE);
+        }));
+    }
+
+    /*---Добавляем User в друзья---*/
+    // как и в UserDbStorage, повторное добавление ничего не меняет и завершается успешно:
+    @Override
+    public Mono<String> addUserToFriends(Long id, Long friendId) {
+        return databaseClient.sql(SQL_QUERY_ADD_USER_TO_FRIENDS)
+                .bind(0, id)
+                .bind(1, friendId)
+                .then()
+                .onErrorResume(R2dbcStatements::isDuplicateKey, exception -> Mono.empty())
+                .thenReturn(ADD_TO_FRIEND_MESSAGE + id + ", " + friendId);
+    }
+
+    /*---Удаляем User из друзей---*/
+    @Override
+    public Mono<String> removeUserFromFriends(Long id, Long friendId) {
+        return databaseClient.sql(SQL_QUERY_REMOVE_USER_FROM_FRIENDS)
+                .bind(0, id)
+                .bind(1, friendId)
+                .then()
+                .thenReturn(REMOVE_FROM_FRIEND_MESSAGE + id + ", " + friendId);
+    }
+
+    /*---Получить список друзей User---*/
+    @Override
+    public Flux<User> getAllFriendsList(Long id) {
+        return databaseClient.sql(SQL_QUERY_GET_ALL_FRIEND_LIST)
+                .bind(0, id)
+                .map(UserR2dbcStorage::mapRowToUser)
+                .all();
+    }
+
+    /*---Получить список общих друзей для двух User---*/
+    @Override
+    public Flux<User> getCommonFriends(Long id, Long otherId) {
+        return databaseClient.sql(SQL_QUERY_GET_COMMON_FRIENDS)
+                .bind(0, id)
+                .bind(1, otherId)
+                .map(UserR2dbcStorage::mapRowToUser)
+                .all();
+    }
+
+    @Override
+    // проверяем имя пользователя, если пустое, то name = login:
+    public User checkName(User user) {
+        if (user.getName() == null || user.getName().isBlank()) {
+            final User newUser = user.toBuilder()
+                    .name(user.getLogin())
+                    .build();
+            log.debug("User.name = {}, заменяем User.name на User.login = {}", user.getName(), user.getLogin());
+            return newUser;
+        }
+
+        return user;
+    }
+
+    /*-----Вспомогательные методы-----*/
+    // добавляем пользователей на одном соединении, id берём из сгенерированных ключей в порядке добавления:
+    private Flux<Long> insertUsers(List<User> users) {
+        List<Object[]> userRows = new ArrayList<>(users.size());
+        for (User user : users) {
+            userRows.add(new Object[]{user.getEmail(), user.getLogin(), user.getName(), user.getBirthday()});
+        }
+
+        return databaseClient.inConnectionMany(connection -> R2dbcStatements
+                .executeEach(connection, SQL_QUERY_ADD_USER, userRows, USER_PARAMETER_TYPES, "user_id")
+                .concatMap(result -> result.map((row, metadata) -> idOf(row, "user_id")))
+                .index()
+                .map(indexedId -> {
+                    users.get(indexedId.getT1().intValue()).setId(indexedId.getT2());
+                    return indexedId.getT2();
+                }));
+    }
+
+    private static User mapRowToUser(Row row) {
+        return User.builder()
+                .id(idOf(row, "user_id"))
+                .email(row.get("email", String.class))
+                .login(row.get("login", String.class))
+                .name(row.get("name", String.class))
+                .birthday(row.get("birthday", LocalDate.class))
+                .build();
+    }
+}
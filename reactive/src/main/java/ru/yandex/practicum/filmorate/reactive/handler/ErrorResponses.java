@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.reactive.handler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.exception.*;
+import ru.yandex.practicum.filmorate.model.ErrorResponse;
+
+import javax.validation.ConstraintViolationException;
+
+// реактивный аналог ErrorHandler: те же статусы и тела ответов с ошибкой:
+@Slf4j
+final class ErrorResponses {
+    private static final String VALIDATION_ERROR_MESSAGE = "Ошибка валидации данных из запроса.";
+
+    private ErrorResponses() {
+    }
+
+    static Mono<ServerResponse> toResponse(Throwable e) {
+        /*---Обработчики для статуса 400 (Bad request)---*/
+        if (e instanceof IncorrectRequestParameterException) {
+            return response(HttpStatus.BAD_REQUEST, e, ((IncorrectRequestParameterException) e).getAdviceToUser());
+        }
+        if (e instanceof ConstraintViolationException) {
+            String advice = ((ConstraintViolationException) e).getConstraintViolations().iterator().next().getMessage();
+            log.debug("{}: {}", ConstraintViolationException.class.getSimpleName(), advice);
+            return ServerResponse.status(HttpStatus.BAD_REQUEST).bodyValue(ErrorResponse.builder()
+                    .error(VALIDATION_ERROR_MESSAGE)
+                    .adviceToUser(advice)
+                    .build());
+        }
+        if (e instanceof AlreadyExistException) {
+            return response(HttpStatus.BAD_REQUEST, e, ((AlreadyExistException) e).getAdviceToUser());
+        }
+
+        /*---Обработчики для статуса 404 (Not found)---*/
+        if (e instanceof IllegalIdException) {
+            return response(HttpStatus.NOT_FOUND, e, ((IllegalIdException) e).getAdviceToUser());
+        }
+        if (e instanceof IncorrectPathVariableException) {
+            return response(HttpStatus.NOT_FOUND, e, ((IncorrectPathVariableException) e).getAdviceToUser());
+        }
+        if (e instanceof InvalidDataBaseQueryException) {
+            return response(HttpStatus.NOT_FOUND, e, ((InvalidDataBaseQueryException) e).getAdviceToUser());
+        }
+
+        /*---Обработчики для статуса 500 (Internal server error)---*/
+        log.debug("{}: {}", e.getClass().getSimpleName(), e.getMessage());
+        return ServerResponse.status(HttpStatus.INTERNAL_SERVER_ERROR).bodyValue(ErrorResponse.builder()
+                .error("Произошла непредвиденная ошибка.")
+                .adviceToUser("Пожалуйста обратитесь в службу технической поддержки.")
+                .build());
+    }
+
+    /*------Вспомогательные методы------*/
+    private static Mono<ServerResponse> response(HttpStatus status, Throwable e, String adviceToUser) {
+        log.debug("{}: {}", e.getClass().getSimpleName(), e.getMessage());
+        return ServerResponse.status(status).bodyValue(ErrorResponse.builder()
+                .error(e.getMessage())
+                .adviceToUser(adviceToUser)
+                .build());
+    }
+}
@@ -0,0 +1,190 @@
+package ru.yandex.practicum.filmorate.reactive.handler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.exception.IllegalIdException;
+import ru.yandex.practicum.filmorate.exception.IncorrectRequestParameterException;
+import ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException;
+import ru.yandex.practicum.filmorate.model.BatchItemError;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.reactive.dao.ReactiveFilmStorage;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static ru.yandex.practicum.filmorate.exception.IncorrectPathVariableException.PATH_VARIABLE_ID;
+import static ru.yandex.practicum.filmorate.exception.IncorrectPathVariableException.PATH_VARIABLE_USER_ID;
+import static ru.yandex.practicum.filmorate.exception.IncorrectRequestParameterException.*;
+import static ru.yandex.practicum.filmorate.reactive.handler.RequestChecks.*;
+
+// функциональный обработчик запросов /films (тот же API, что у FilmController):
+@Component
+@Slf4j
+public class FilmHandler {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_TOP_FILMS_COUNT = 10;
+
+    private final ReactiveFilmStorage filmStorage;
+    private final Validator validator;
+    private final Integer defaultPageSize;
+    private final Integer maxPageSize;
+
+    @Autowired
+    public FilmHandler(ReactiveFilmStorage filmStorage,
+                       Validator validator,
+                       @Value("${filmorate.pagination.default-limit}") Integer defaultPageSize,
+                       @Value("${filmorate.pagination.max-limit}") Integer maxPageSize) {
+        this.filmStorage = filmStorage;
+        this.validator = validator;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    // добавление Film:
+    public Mono<ServerResponse> addFilm(ServerRequest request) {
+        return request.bodyToMono(Film.class)
+                .map(film -> validate(validator, film))
+                .flatMap(filmStorage::addFilm)
+                .flatMap(film -> ServerResponse.ok().bodyValue(film));
+    }
+
+    // пакетное добавление Film (каждый фильм валидируется отдельно, ошибки возвращаются по индексу в массиве):
+    public Mono<ServerResponse> addFilms(ServerRequest request) {
+        return request.bodyToMono(new ParameterizedTypeReference<List<Film>>() {})
+                .flatMap(films -> {
+                    List<Film> validFilms = new ArrayList<>(films.size());
+                    List<BatchItemError> errors = checkBatch(films, validFilms);
+
+                    return filmStorage.addFilms(validFilms)
+                            .collectList()
+                            .map(added -> BatchResponse.<Film>builder()
+                                    .added(added)
+                                    .errors(errors)
+                                    .build());
+                })
+                .flatMap(response -> ServerResponse.ok().bodyValue(response));
+    }
+
+    // обновление Film:
+    public Mono<ServerResponse> updateFilm(ServerRequest request) {
+        return request.bodyToMono(Film.class)
+                .map(film -> validate(validator, film))
+                .flatMap(filmStorage::updateFilm)
+                .flatMap(film -> ServerResponse.ok().bodyValue(film));
+    }
+
+    // получение списка Film постранично (после Film с id = after), весь список - только с unpaged = true:
+    public Mono<ServerResponse> getAllFilms(ServerRequest request) {
+        if (request.queryParam("unpaged").map(Boolean::valueOf).orElse(false)) {
+            // фильмы сериализуются в JSON массив по мере чтения из БД:
+            return ServerResponse.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(filmStorage.getAllFilms(), Film.class);
+        }
+
+        Long after = longParam(request, "after", 0L);
+        Integer pageSize = checkPageParams(after, intParam(request, "limit", null), defaultPageSize, maxPageSize);
+
+        return filmStorage.getFilmsPage(after, pageSize)
+                .collectList()
+                .flatMap(page -> {
+                    // если страница заполнена целиком, возвращаем курсор для получения следующей:
+                    if (page.size() == pageSize) {
+                        return ServerResponse.ok()
+                                .header(NEXT_CURSOR_HEADER, String.valueOf(page.get(page.size() - 1).getId()))
+                                .bodyValue(page);
+                    }
+                    return ServerResponse.ok().bodyValue(page);
+                });
+    }
+
+    // выгрузка всех Film потоком в формате NDJSON: следующая строка читается из БД, когда клиент готов её принять:
+    public Mono<ServerResponse> exportAllFilms(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(filmStorage.getAllFilms(), Film.class);
+    }
+
+    // получение Film по id:
+    public Mono<ServerResponse> getFilmById(ServerRequest request) {
+        return filmStorage.getFilmById(pathId(request, PATH_VARIABLE_ID))
+                .flatMap(film -> ServerResponse.ok().bodyValue(film));
+    }
+
+    // User ставит лайк фильму:
+    public Mono<ServerResponse> addLikeToFilm(ServerRequest request) {
+        Long id = pathId(request, PATH_VARIABLE_ID);
+        Long userId = pathId(request, PATH_VARIABLE_USER_ID);
+
+        return filmStorage.addLikeToFilm(id, userId)
+                .flatMap(message -> ServerResponse.ok().bodyValue(message));
+    }
+
+    // User удаляет лайк:
+    public Mono<ServerResponse> removeLikeFromFilm(ServerRequest request) {
+        Long id = pathId(request, PATH_VARIABLE_ID);
+        Long userId = pathId(request, PATH_VARIABLE_USER_ID);
+
+        return filmStorage.removeLikeFromFilm(id, userId)
+                .flatMap(message -> ServerResponse.ok().bodyValue(message));
+    }
+
+    // получаем список топ фильмов по количеству лайков в размере {count}:
+    public Mono<ServerResponse> getTopFilmsForLikes(ServerRequest request) {
+        Integer count = intParam(request, REQUEST_PARAM_COUNT, DEFAULT_TOP_FILMS_COUNT);
+        if (count <= 0) {
+            log.debug("{}: " + INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_COUNT + " = " + count,
+                    IncorrectRequestParameterException.class.getSimpleName());
+            throw new IncorrectRequestParameterException(INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_COUNT,
+                    REQUEST_PARAMETER_COUNT_ADVICE);
+        }
+
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(filmStorage.getTopFilmsForLikes(count), Film.class);
+    }
+
+    // вспомогательный метод для проверки фильмов пакетного запроса: корректные попадают в validFilms:
+    private List<BatchItemError> checkBatch(List<Film> films, List<Film> validFilms) {
+        List<BatchItemError> errors = new ArrayList<>();
+
+        for (int index = 0; index < films.size(); index++) {
+            Film film = films.get(index);
+            if (film == null) {
+                errors.add(BatchItemError.nullItem(index));
+                continue;
+            }
+
+            Set<ConstraintViolation<Film>> violations = validator.validate(film);
+            if (!violations.isEmpty()) {
+                errors.add(BatchItemError.validationError(index, violations.iterator().next().getMessage()));
+                continue;
+            }
+
+            try {
+                filmStorage.checkNewFilm(film);
+            } catch (IllegalIdException exception) {
+                errors.add(BatchItemError.of(index, exception.getMessage(), exception.getAdviceToUser()));
+                continue;
+            } catch (InvalidDataBaseQueryException exception) {
+                errors.add(BatchItemError.of(index, exception.getMessage(), exception.getAdviceToUser()));
+                continue;
+            }
+
+            validFilms.add(film);
+        }
+
+        return errors;
+    }
+}
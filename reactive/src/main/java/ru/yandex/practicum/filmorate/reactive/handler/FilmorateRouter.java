@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.reactive.handler;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RequestPredicate;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+// маршруты функциональных обработчиков, повторяют пути и методы контроллеров приложения:
+@Configuration
+public class FilmorateRouter {
+    // NDJSON выгрузка - только если клиент явно попросил application/x-ndjson (не по Accept: */*):
+    private static final RequestPredicate ACCEPT_NDJSON = request -> request.headers().accept().stream()
+            .anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+
+    @Bean
+    public RouterFunction<ServerResponse> filmorateRoutes(FilmHandler filmHandler,
+                                                          UserHandler userHandler,
+                                                          ReferenceDataHandler referenceDataHandler) {
+        return route()
+                .path("/films", builder -> builder
+                        .POST("", filmHandler::addFilm)
+                        .POST("/batch", filmHandler::addFilms)
+                        .PUT("", filmHandler::updateFilm)
+                        .GET("", ACCEPT_NDJSON, filmHandler::exportAllFilms)
+                        .GET("", filmHandler::getAllFilms)
+                        .GET("/popular", filmHandler::getTopFilmsForLikes)
+                        .GET("/{id}", filmHandler::getFilmById)
+                        .PUT("/{id}/like/{userId}", filmHandler::addLikeToFilm)
+                        .DELETE("/{id}/like/{userId}", filmHandler::removeLikeFromFilm))
+                .path("/users", builder -> builder
+                        .POST("", userHandler::addUser)
+                        .POST("/batch", userHandler::addUsers)
+                        .PUT("", userHandler::updateUser)
+                        .GET("", ACCEPT_NDJSON, userHandler::exportAllUsers)
+                        .GET("", userHandler::getAllUsers)
+                        .GET("/{id}", userHandler::getUserById)
+                        .PUT("/{id}/friends/{friendId}", userHandler::addUserToFriends)
+                        .DELETE("/{id}/friends/{friendId}", userHandler::removeUserFromFriends)
+                        .GET("/{id}/friends", userHandler::getAllFriendsList)
+                        .GET("/{id}/friends/common/{otherId}", userHandler::getCommonFriends))
+                .GET("/genres", referenceDataHandler::getAllGenres)
+                .GET("/genres/{id}", referenceDataHandler::getGenreById)
+                .GET("/mpa", referenceDataHandler::getAllMpa)
+                .GET("/mpa/{id}", referenceDataHandler::getMpaById)
+                // исключения обработчиков (и брошенные до подписки на ответ) - в ответ с ErrorResponse:
+                .filter((request, next) -> Mono.defer(() -> next.handle(request))
+                        .onErrorResume(ErrorResponses::toResponse))
+                .build();
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.reactive.handler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.exception.IncorrectPathVariableException;
+import ru.yandex.practicum.filmorate.reactive.dao.GenreR2dbcStorage;
+import ru.yandex.practicum.filmorate.reactive.dao.MpaR2dbcStorage;
+
+import static ru.yandex.practicum.filmorate.exception.IncorrectPathVariableException.*;
+
+// функциональный обработчик запросов /genres и /mpa: справочники отдаются из памяти, без обращения к БД:
+@Component
+@Slf4j
+public class ReferenceDataHandler {
+    private final GenreR2dbcStorage genreStorage;
+    private final MpaR2dbcStorage mpaStorage;
+
+    @Autowired
+    public ReferenceDataHandler(GenreR2dbcStorage genreStorage, MpaR2dbcStorage mpaStorage) {
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+    }
+
+    /*--------Получение списка всех Genre--------*/
+    public Mono<ServerResponse> getAllGenres(ServerRequest request) {
+        return ServerResponse.ok().bodyValue(genreStorage.getAllGenres());
+    }
+
+    /*--------Получение Genre по id--------*/
+    public Mono<ServerResponse> getGenreById(ServerRequest request) {
+        return ServerResponse.ok().bodyValue(genreStorage.getGenreById(pathIntId(request)));
+    }
+
+    /*--------Получение списка всех Mpa--------*/
+    public Mono<ServerResponse> getAllMpa(ServerRequest request) {
+        return ServerResponse.ok().bodyValue(mpaStorage.getAllMpa());
+    }
+
+    /*--------Получение Mpa по id--------*/
+    public Mono<ServerResponse> getMpaById(ServerRequest request) {
+        return ServerResponse.ok().bodyValue(mpaStorage.getMpaById(pathIntId(request)));
+    }
+
+    // вспомогательный метод для проверки id:
+    private static Integer pathIntId(ServerRequest request) {
+        Integer id = Integer.valueOf(request.pathVariable(PATH_VARIABLE_ID));
+        if (id <= 0) {
+            log.debug("{}: " + INCORRECT_PATH_VARIABLE_MESSAGE + PATH_VARIABLE_ID + " = " + id,
+                    IncorrectPathVariableException.class.getSimpleName());
+            throw new IncorrectPathVariableException(INCORRECT_PATH_VARIABLE_MESSAGE + PATH_VARIABLE_ID,
+                    PATH_VARIABLE_ID_ADVICE);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.reactive.handler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import ru.yandex.practicum.filmorate.exception.IncorrectPathVariableException;
+import ru.yandex.practicum.filmorate.exception.IncorrectRequestParameterException;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import java.util.Set;
+
+import static ru.yandex.practicum.filmorate.exception.IncorrectPathVariableException.*;
+import static ru.yandex.practicum.filmorate.exception.IncorrectRequestParameterException.*;
+
+// проверки параметров запроса, общие для функциональных обработчиков (те же, что в контроллерах приложения):
+@Slf4j
+final class RequestChecks {
+    private RequestChecks() {
+    }
+
+    // id из переменной пути, id <= 0 - IncorrectPathVariableException:
+    static Long pathId(ServerRequest request, String pathVariable) {
+        Long id = Long.valueOf(request.pathVariable(pathVariable));
+        if (id <= 0) {
+            log.debug("{}: " + INCORRECT_PATH_VARIABLE_MESSAGE + pathVariable + " = " + id,
+                    IncorrectPathVariableException.class.getSimpleName());
+            throw new IncorrectPathVariableException(INCORRECT_PATH_VARIABLE_MESSAGE + pathVariable,
+                    PATH_VARIABLE_ID_ADVICE);
+        }
+        return id;
+    }
+
+    // проверка параметров страницы, возвращает размер страницы:
+    static Integer checkPageParams(Long after, Integer limit, Integer defaultPageSize, Integer maxPageSize) {
+        if (after < 0) {
+            log.debug("{}: " + INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_AFTER + " = " + after,
+                    IncorrectRequestParameterException.class.getSimpleName());
+            throw new IncorrectRequestParameterException(INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_AFTER,
+                    REQUEST_PARAMETER_AFTER_ADVICE);
+        }
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit <= 0 || limit > maxPageSize) {
+            log.debug("{}: " + INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_LIMIT + " = " + limit,
+                    IncorrectRequestParameterException.class.getSimpleName());
+            throw new IncorrectRequestParameterException(INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_LIMIT,
+                    REQUEST_PARAMETER_LIMIT_ADVICE + maxPageSize);
+        }
+
+        return limit;
+    }
+
+    // аналог @Valid: нарушения ограничений модели - ConstraintViolationException (400):
+    static <T> T validate(Validator validator, T value) {
+        Set<ConstraintViolation<T>> violations = validator.validate(value);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+        return value;
+    }
+
+    static Long longParam(ServerRequest request, String name, Long defaultValue) {
+        return request.queryParam(name).map(Long::valueOf).orElse(defaultValue);
+    }
+
+    static Integer intParam(ServerRequest request, String name, Integer defaultValue) {
+        return request.queryParam(name).map(Integer::valueOf).orElse(defaultValue);
+    }
+}
@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate.reactive.handler;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import ru.yandex.practicum.filmorate.exception.IllegalIdException;
+import ru.yandex.practicum.filmorate.model.BatchItemError;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.reactive.dao.ReactiveUserStorage;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static ru.yandex.practicum.filmorate.exception.IncorrectPathVariableException.*;
+import static ru.yandex.practicum.filmorate.reactive.handler.FilmHandler.NEXT_CURSOR_HEADER;
+import static ru.yandex.practicum.filmorate.reactive.handler.RequestChecks.*;
+
+// функциональный обработчик запросов /users (тот же API, что у UserController):
+@Component
+public class UserHandler {
+    private final ReactiveUserStorage userStorage;
+    private final Validator validator;
+    private final Integer defaultPageSize;
+    private final Integer maxPageSize;
+
+    @Autowired
+    public UserHandler(ReactiveUserStorage userStorage,
+                       Validator validator,
+                       @Value("${filmorate.pagination.default-limit}") Integer defaultPageSize,
+                       @Value("${filmorate.pagination.max-limit}") Integer maxPageSize) {
+        this.userStorage = userStorage;
+        this.validator = validator;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    // создание User:
+    public Mono<ServerResponse> addUser(ServerRequest request) {
+        return request.bodyToMono(User.class)
+                .map(user -> validate(validator, user))
+                .flatMap(userStorage::addUser)
+                .flatMap(user -> ServerResponse.ok().bodyValue(user));
+    }
+
+    // пакетное создание User (каждый пользователь валидируется отдельно, ошибки возвращаются по индексу в массиве):
+    public Mono<ServerResponse> addUsers(ServerRequest request) {
+        return request.bodyToMono(new ParameterizedTypeReference<List<User>>() {})
+                .flatMap(users -> {
+                    List<User> validUsers = new ArrayList<>(users.size());
+                    List<BatchItemError> errors = checkBatch(users, validUsers);
+
+                    return userStorage.addUsers(validUsers)
+                            .collectList()
+                            .map(added -> BatchResponse.<User>builder()
+                                    .added(added)
+                                    .errors(errors)
+                                    .build());
+                })
+                .flatMap(response -> ServerResponse.ok().bodyValue(response));
+    }
+
+    // обновление User:
+    public Mono<ServerResponse> updateUser(ServerRequest request) {
+        return request.bodyToMono(User.class)
+                .map(user -> validate(validator, user))
+                .flatMap(userStorage::updateUser)
+                .flatMap(user -> ServerResponse.ok().bodyValue(user));
+    }
+
+    // получение списка User постранично (после User с id = after), весь список - только с unpaged = true:
+    public Mono<ServerResponse> getAllUsers(ServerRequest request) {
+        if (request.queryParam("unpaged").map(Boolean::valueOf).orElse(false)) {
+            // пользователи сериализуются в JSON массив по мере чтения из БД:
+            return ServerResponse.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(userStorage.getAllUsers(), User.class);
+        }
+
+        Long after = longParam(request, "after", 0L);
+        Integer pageSize = checkPageParams(after, intParam(request, "limit", null), defaultPageSize, maxPageSize);
+
+        return userStorage.getUsersPage(after, pageSize)
+                .collectList()
+                .flatMap(page -> {
+                    // если страница заполнена целиком, возвращаем курсор для получения следующей:
+                    if (page.size() == pageSize) {
+                        return ServerResponse.ok()
+                                .header(NEXT_CURSOR_HEADER, String.valueOf(page.get(page.size() - 1).getId()))
+                                .bodyValue(page);
+                    }
+                    return ServerResponse.ok().bodyValue(page);
+                });
+    }
+
+    // выгрузка всех User потоком в формате NDJSON: следующая строка читается из БД, когда клиент готов её принять:
+    public Mono<ServerResponse> exportAllUsers(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(userStorage.getAllUsers(), User.class);
+    }
+
+    // получение User по id:
+    public Mono<ServerResponse> getUserById(ServerRequest request) {
+        return userStorage.getUserById(pathId(request, PATH_VARIABLE_ID))
+                .flatMap(user -> ServerResponse.ok().bodyValue(user));
+    }
+
+    // добавление User в друзья:
+    public Mono<ServerResponse> addUserToFriends(ServerRequest request) {
+        Long id = pathId(request, PATH_VARIABLE_ID);
+        Long friendId = pathId(request, PATH_VARIABLE_FRIEND_ID);
+
+        return userStorage.addUserToFriends(id, friendId)
+                .flatMap(message -> ServerResponse.ok().bodyValue(message));
+    }
+
+    // удаление User из друзей:
+    public Mono<ServerResponse> removeUserFromFriends(ServerRequest request) {
+        Long id = pathId(request, PATH_VARIABLE_ID);
+        Long friendId = pathId(request, PATH_VARIABLE_FRIEND_ID);
+
+        return userStorage.removeUserFromFriends(id, friendId)
+                .flatMap(message -> ServerResponse.ok().bodyValue(message));
+    }
+
+    // получаем список друзей User:
+    public Mono<ServerResponse> getAllFriendsList(ServerRequest request) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(userStorage.getAllFriendsList(pathId(request, PATH_VARIABLE_ID)), User.class);
+    }
+
+    // получаем список общих друзей:
+    public Mono<ServerResponse> getCommonFriends(ServerRequest request) {
+        Long id = pathId(request, PATH_VARIABLE_ID);
+        Long otherId = pathId(request, PATH_VARIABLE_OTHER_ID);
+
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(userStorage.getCommonFriends(id, otherId), User.class);
+    }
+
+    // вспомогательный метод для проверки пользователей пакетного запроса: корректные попадают в validUsers:
+    private List<BatchItemError> checkBatch(List<User> users, List<User> validUsers) {
+        List<BatchItemError> errors = new ArrayList<>();
+
+        for (int index = 0; index < users.size(); index++) {
+            User user = users.get(index);
+            if (user == null) {
+                errors.add(BatchItemError.nullItem(index));
+                continue;
+            }
+
+            Set<ConstraintViolation<User>> violations = validator.validate(user);
+            if (!violations.isEmpty()) {
+                errors.add(BatchItemError.validationError(index, violations.iterator().next().getMessage()));
+                continue;
+            }
+
+            try {
+                userStorage.checkNewUser(user);
+            } catch (IllegalIdException exception) {
+                errors.add(BatchItemError.of(index, exception.getMessage(), exception.getAdviceToUser()));
+                continue;
+            }
+
+            validUsers.add(userStorage.checkName(user));
+        }
+
+        return errors;
+    }
+}
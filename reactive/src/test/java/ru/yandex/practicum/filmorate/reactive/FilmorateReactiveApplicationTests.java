@@ -0,0 +1,214 @@
+package ru.yandex.practicum.filmorate.reactive;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "management.server.port=0")
+public class FilmorateReactiveApplicationTests {
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void shouldAddFilmWithGenresAndGetItById() {
+        Film film = addFilm(film("Выстрел в пустоту", List.of(Genre.builder().id(2).build(),
+                Genre.builder().id(1).build(), Genre.builder().id(2).build())));
+
+        Film storedFilm = webTestClient.get().uri("/films/{id}", film.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Film.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(storedFilm);
+        assertEquals("G", storedFilm.getMpa().getName());
+        assertEquals(2, storedFilm.getGenres().size());
+        assertEquals(1, storedFilm.getGenres().get(0).getId());
+        assertEquals("Комедия", storedFilm.getGenres().get(0).getName());
+    }
+
+    @Test
+    void shouldGet404StatusCodeWhenFilmNotFound() {
+        webTestClient.get().uri("/films/{id}", 9999)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.adviceToUser").exists();
+    }
+
+    @Test
+    void shouldGet400StatusCodeWhenFilmNameIsNull() {
+        webTestClient.post().uri("/films")
+                .bodyValue(film(null, null))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void shouldReturnNextCursorForFullPage() {
+        Film first = addFilm(film("Первый", null));
+        addFilm(film("Второй", null));
+
+        List<Film> page = webTestClient.get().uri("/films?after={after}&limit=1", first.getId() - 1)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("X-Next-Cursor", String.valueOf(first.getId()))
+                .expectBodyList(Film.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(page);
+        assertEquals(1, page.size());
+        assertEquals(first.getId(), page.get(0).getId());
+    }
+
+    @Test
+    void shouldExportFilmsAsNdjson() {
+        Film film = addFilm(film("Выгрузка", null));
+
+        List<Film> films = webTestClient.get().uri("/films")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Film.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertNotNull(films);
+        assertTrue(films.stream().anyMatch(exported -> exported.getId().equals(film.getId())));
+    }
+
+    @Test
+    void shouldAddLikeOnceAndReturnFilmInPopular() {
+        Film film = addFilm(film("Популярный", null));
+        User user = addUser("liker");
+
+        webTestClient.put().uri("/films/{id}/like/{userId}", film.getId(), user.getId())
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.put().uri("/films/{id}/like/{userId}", film.getId(), user.getId())
+                .exchange()
+                .expectStatus().isOk();
+
+        List<Film> popular = webTestClient.get().uri("/films/popular?count=1000")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Film.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(popular);
+        assertTrue(popular.stream().anyMatch(top -> top.getId().equals(film.getId()) && top.getRate() == 1));
+    }
+
+    @Test
+    void shouldNotDecreaseRateWhenRemovingMissingLike() {
+        Film newFilm = film("Без лайков", null);
+        newFilm.setRate(5);
+        Film film = addFilm(newFilm);
+        User user = addUser("unliker");
+
+        webTestClient.put().uri("/films/{id}/like/{userId}", film.getId(), user.getId())
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.delete().uri("/films/{id}/like/{userId}", film.getId(), user.getId())
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.delete().uri("/films/{id}/like/{userId}", film.getId(), user.getId())
+                .exchange()
+                .expectStatus().isOk();
+
+        Film storedFilm = webTestClient.get().uri("/films/{id}", film.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Film.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(storedFilm);
+        assertEquals(5, storedFilm.getRate());
+    }
+
+    @Test
+    void shouldReturnCommonFriends() {
+        User user = addUser("first");
+        User otherUser = addUser("second");
+        User commonFriend = addUser("common");
+
+        webTestClient.put().uri("/users/{id}/friends/{friendId}", user.getId(), commonFriend.getId())
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.put().uri("/users/{id}/friends/{friendId}", otherUser.getId(), commonFriend.getId())
+                .exchange()
+                .expectStatus().isOk();
+
+        List<User> commonFriends = webTestClient.get()
+                .uri("/users/{id}/friends/common/{otherId}", user.getId(), otherUser.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(commonFriends);
+        assertEquals(1, commonFriends.size());
+        assertEquals(commonFriend.getId(), commonFriends.get(0).getId());
+    }
+
+    /*-----Вспомогательные методы-----*/
+    private static Film film(String name, List<Genre> genres) {
+        return Film.builder()
+                .name(name)
+                .description("О неожиданных поворотах в жизни")
+                .releaseDate(LocalDate.of(2017, 6, 17))
+                .duration(120)
+                .mpa(Mpa.builder().id(1).build())
+                .genres(genres)
+                .build();
+    }
+
+    private Film addFilm(Film film) {
+        Film addedFilm = webTestClient.post().uri("/films")
+                .bodyValue(film)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Film.class)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(addedFilm);
+        return addedFilm;
+    }
+
+    private User addUser(String login) {
+        User addedUser = webTestClient.post().uri("/users")
+                .bodyValue(User.builder()
+                        .login(login)
+                        .email(login + "@yandex.ru")
+                        .birthday(LocalDate.of(1990, 1, 1))
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(User.class)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(addedUser);
+        return addedUser;
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+// условные GET: метка версии ресурса -> ETag, совпадение с If-None-Match -> 304 без тела.
+// Метка считается до чтения данных, поэтому ответ 304 не выполняет SQL и не сериализует JSON:
+final class ConditionalRequests {
+    private static final String ANY = "*";
+    private static final String WEAK_PREFIX = "W/";
+
+    private ConditionalRequests() {
+    }
+
+    /*---Сильный ETag из метки версии---*/
+    static String eTag(String tag) {
+        return "\"" + tag + "\"";
+    }
+
+    /*---Есть ли ETag метки в заголовке If-None-Match---*/
+    // If-None-Match сравнивается слабо (RFC 9110): "W/" перед меткой не учитывается, "*" совпадает с любой:
+    static boolean notModified(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null || tag == null) {
+            return false;
+        }
+
+        String eTag = eTag(tag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith(WEAK_PREFIX)) {
+                value = value.substring(WEAK_PREFIX.length());
+            }
+            if (ANY.equals(value) || eTag.equals(value)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /*---Ответ 304 с ETag---*/
+    static <T> ResponseEntity<T> notModifiedResponse(String tag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(eTag(tag))
+                .build();
+    }
+}
@@ -20,7 +20,7 @@ public class ErrorHandler {
                 .error(e.getMessage())
                 .adviceToUser(e.getAdviceToUser())
                 .build();
-        log.debug("{}: " + e.getMessage(), IncorrectRequestParameterException.class.getSimpleName());
+        log.debug("{}: {}", IncorrectRequestParameterException.class.getSimpleName(), e.getMessage());
 
         return errorResponse;
     }
@@ -32,8 +32,8 @@ public class ErrorHandler {
                 .error("Ошибка валидации данных из запроса.")
                 .adviceToUser(e.getFieldError().getDefaultMessage())
                 .build();
-        log.debug("{}: " + e.getFieldError().getDefaultMessage(),
-                MethodArgumentNotValidException.class.getSimpleName());
+        log.debug("{}: {}", MethodArgumentNotValidException.class.getSimpleName(),
+                e.getFieldError().getDefaultMessage());
 
         return errorResponse;
     }
@@ -45,7 +45,7 @@ public class ErrorHandler {
                 .error(e.getMessage())
                 .adviceToUser(e.getAdviceToUser())
                 .build();
-        log.debug("{}: " + e.getMessage(), AlreadyExistException.class.getSimpleName());
+        log.debug("{}: {}", AlreadyExistException.class.getSimpleName(), e.getMessage());
 
         return errorResponse;
     }
@@ -58,7 +58,7 @@ public class ErrorHandler {
                 .error(e.getMessage())
                 .adviceToUser(e.getAdviceToUser())
                 .build();
-        log.debug("{}: " + e.getMessage(), IllegalIdException.class.getSimpleName());
+        log.debug("{}: {}", IllegalIdException.class.getSimpleName(), e.getMessage());
 
         return errorResponse;
     }
@@ -70,7 +70,7 @@ public class ErrorHandler {
                 .error(e.getMessage())
                 .adviceToUser(e.getAdviceToUser())
                 .build();
-        log.debug("{}: " + e.getMessage(), IncorrectPathVariableException.class.getSimpleName());
+        log.debug("{}: {}", IncorrectPathVariableException.class.getSimpleName(), e.getMessage());
 
         return errorResponse;
     }
@@ -82,7 +82,20 @@ public class ErrorHandler {
                 .error(e.getMessage())
                 .adviceToUser(e.getAdviceToUser())
                 .build();
-        log.debug("{}: " + e.getMessage(), InvalidDataBaseQueryException.class.getSimpleName());
+        log.debug("{}: {}", InvalidDataBaseQueryException.class.getSimpleName(), e.getMessage());
+
+        return errorResponse;
+    }
+
+    /*---Обработчики для статуса 503 (Service unavailable)---*/
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponse handleServiceUnavailableException(final ServiceUnavailableException e) {
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                .error(e.getMessage())
+                .adviceToUser(e.getAdviceToUser())
+                .build();
+        log.debug("{}: {}", ServiceUnavailableException.class.getSimpleName(), e.getMessage());
 
         return errorResponse;
     }
@@ -95,7 +108,7 @@ public class ErrorHandler {
                 .error("Произошла непредвиденная ошибка.")
                 .adviceToUser("Пожалуйста обратитесь в службу технической поддержки.")
                 .build();
-        log.debug("{}: " + e.getMessage(), e.getClass().getSimpleName());
+        log.debug("{}: {}", e.getClass().getSimpleName(), e.getMessage());
 
         return errorResponse;
     }
@@ -1,15 +1,35 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exception.IncorrectPathVariableException;
 import ru.yandex.practicum.filmorate.exception.IncorrectRequestParameterException;
+import ru.yandex.practicum.filmorate.executor.StorageExecutors;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.jdbc.ReadYourWrites;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.FilteredFilms;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 import static ru.yandex.practicum.filmorate.exception.IncorrectPathVariableException.*;
 import static ru.yandex.practicum.filmorate.exception.IncorrectRequestParameterException.*;
@@ -19,74 +39,320 @@ import static ru.yandex.practicum.filmorate.exception.IncorrectRequestParameterE
 @Slf4j
 @RequestMapping("/films")
 public class FilmController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    // число найденных по фильтрам фильмов и фасеты: "id=число фильмов" через запятую:
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    private static final String GENRE_COUNTS_HEADER = "X-Genre-Counts";
+    private static final String MPA_COUNTS_HEADER = "X-Mpa-Counts";
+    private static final String SEARCH_BY_TITLE = "title";
+    private static final String SEARCH_BY_DESCRIPTION = "description";
+    private static final String SORT_BY_RELEVANCE = "relevance";
+    private static final String SORT_BY_POPULARITY = "popularity";
+
     private final FilmService filmService;
+    private final StorageExecutors storageExecutors;
+    private final ObjectMapper objectMapper;
+    private final Integer defaultPageSize;
+    private final Integer maxPageSize;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService,
+                          StorageExecutors storageExecutors,
+                          ObjectMapper objectMapper,
+                          @Value("${filmorate.pagination.default-limit}") Integer defaultPageSize,
+                          @Value("${filmorate.pagination.max-limit}") Integer maxPageSize) {
         this.filmService = filmService;
+        this.storageExecutors = storageExecutors;
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     // добавление Film:
     @PostMapping
-    public Film addFilm(@Valid @RequestBody Film film) {
-        return filmService.addFilm(film);
+    public CompletableFuture<Film> addFilm(@Valid @RequestBody Film film) {
+        return storageExecutors.supplyPoint(() -> filmService.addFilm(film));
+    }
+
+    // пакетное добавление Film (каждый фильм валидируется отдельно, ошибки возвращаются по индексу в массиве):
+    @PostMapping("/batch")
+    public CompletableFuture<BatchResponse<Film>> addFilms(@RequestBody List<Film> films) {
+        return storageExecutors.supplyHeavy(() -> filmService.addFilms(films));
     }
 
     // обновление Film:
     @PutMapping
-    public Film updateFilm(@Valid @RequestBody Film film) {
-        return filmService.updateFilm(film);
+    public CompletableFuture<Film> updateFilm(@Valid @RequestBody Film film) {
+        return storageExecutors.supplyPoint(() -> filmService.updateFilm(film));
     }
 
-    // получение списка всех Film:
+    // получение списка Film постранично (после Film с id = after), весь список - только с unpaged = true:
     @GetMapping
-    public List<Film> getAllFilms() {
-        return filmService.getAllFilms();
+    public CompletableFuture<ResponseEntity<List<Film>>> getAllFilms(
+            @RequestParam(defaultValue = "0") Long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") Boolean unpaged,
+            @RequestParam(required = false) Set<Integer> genreId,
+            @RequestParam(required = false) Integer mpaId,
+            @RequestParam(required = false) Integer yearFrom,
+            @RequestParam(required = false) Integer yearTo,
+            @RequestParam(required = false) Integer durationMax,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // любая страница и любой фильтр меняются только вместе с версией списка фильмов:
+        boolean filtered = genreId != null || mpaId != null || yearFrom != null || yearTo != null
+                || durationMax != null;
+        FilmFilter filter = filtered ? checkFilter(genreId, mpaId, yearFrom, yearTo, durationMax) : null;
+        Integer pageSize = unpaged ? Integer.valueOf(Integer.MAX_VALUE) : checkPageParams(after, limit);
+        String tag = filmService.getFilmsTag();
+        if (ConditionalRequests.notModified(ifNoneMatch, tag)) {
+            return CompletableFuture.completedFuture(ConditionalRequests.notModifiedResponse(tag));
+        }
+        // тело ответа не старше метки: реплика, не скопировавшая последнее изменение фильмов, пропускается:
+        ReadYourWrites.readChangesUpTo(filmService.getFilmsChangedAtNanos());
+
+        // с фильтрами фильмы и фасеты ищет индекс фильтров:
+        if (filtered) {
+            Long afterId = unpaged ? 0L : after;
+            return storageExecutors.supplyHeavy(() ->
+                    filteredPageResponse(filmService.getFilteredFilmsPage(filter, afterId, pageSize), pageSize, tag));
+        }
+
+        if (unpaged) {
+            return storageExecutors.supplyHeavy(() -> ResponseEntity.ok()
+                    .eTag(ConditionalRequests.eTag(tag))
+                    .body(filmService.getAllFilms()));
+        }
+
+        return storageExecutors.supplyHeavy(() ->
+                pageResponse(filmService.getFilmsPage(after, pageSize), pageSize, tag));
+    }
+
+    // выгрузка всех Film потоком в формате NDJSON (по одному JSON объекту на строку):
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAllFilms() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> filmService.streamAllFilms(film -> writeNdjsonLine(outputStream, film)));
     }
 
     // получение Film по id:
     @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable Long id) {
+    public CompletableFuture<ResponseEntity<Film>> getFilmById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         checkId(id, PATH_VARIABLE_ID);
-        return filmService.getFilmById(id);
+        // метки нет, только если нет фильма: тогда ответ (404) даёт getFilmById:
+        String tag = filmService.getFilmTag(id);
+        if (ConditionalRequests.notModified(ifNoneMatch, tag)) {
+            return CompletableFuture.completedFuture(ConditionalRequests.notModifiedResponse(tag));
+        }
+        if (tag != null) {
+            ReadYourWrites.readChangesUpTo(filmService.getFilmChangedAtNanos(id));
+        }
+
+        return storageExecutors.supplyPoint(() -> {
+            Film film = filmService.getFilmById(id);
+            if (tag == null) {
+                return ResponseEntity.ok(film);
+            }
+
+            return ResponseEntity.ok()
+                    .eTag(ConditionalRequests.eTag(tag))
+                    .body(film);
+        });
     }
 
     // User ставит лайк фильму:
     @PutMapping("/{id}/like/{userId}")
-    public String addLikeToFilm(@PathVariable Long id, @PathVariable Long userId) {
+    public CompletableFuture<String> addLikeToFilm(@PathVariable Long id, @PathVariable Long userId) {
         checkId(id, PATH_VARIABLE_ID);
         checkId(userId, PATH_VARIABLE_USER_ID);
 
-        return filmService.addLikeToFilm(id, userId);
+        return storageExecutors.supplyPoint(() -> filmService.addLikeToFilm(id, userId));
     }
 
     // User удаляет лайк:
     @DeleteMapping("{id}/like/{userId}")
-    public String removeLikeFromFilm(@PathVariable Long id, @PathVariable Long userId) {
+    public CompletableFuture<String> removeLikeFromFilm(@PathVariable Long id, @PathVariable Long userId) {
         checkId(id, PATH_VARIABLE_ID);
         checkId(userId, PATH_VARIABLE_USER_ID);
 
-        return filmService.removeLikeFromFilm(id, userId);
+        return storageExecutors.supplyPoint(() -> filmService.removeLikeFromFilm(id, userId));
+    }
+
+    // получаем точное количество лайков фильма:
+    @GetMapping("/{id}/likes")
+    public CompletableFuture<Integer> getLikeCount(@PathVariable Long id) {
+        checkId(id, PATH_VARIABLE_ID);
+
+        return storageExecutors.supplyPoint(() -> filmService.getLikeCount(id));
     }
 
     // получаем список топ фильмов по количеству лайков в размере {count}:
     @GetMapping("/popular")
-    public List<Film> getTopFilmsForLikes(@RequestParam(defaultValue = "10", required = false) Integer count) {
+    public CompletableFuture<ResponseEntity<List<Film>>> getTopFilmsForLikes(
+            @RequestParam(defaultValue = "10", required = false) Integer count,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         if (count <= 0) {
-            log.debug("{}: " + INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_COUNT + " = " + count,
-                    IncorrectRequestParameterException.class.getSimpleName());
+            log.debug("{}: " + INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_COUNT + " = {}",
+                    IncorrectRequestParameterException.class.getSimpleName(), count);
             throw new IncorrectRequestParameterException(INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_COUNT,
                     REQUEST_PARAMETER_COUNT_ADVICE);
         }
 
-        return filmService.getTopFilmsForLikes(count);
+        String tag = filmService.getTopFilmsTag(count);
+        if (ConditionalRequests.notModified(ifNoneMatch, tag)) {
+            return CompletableFuture.completedFuture(ConditionalRequests.notModifiedResponse(tag));
+        }
+        ReadYourWrites.readChangesUpTo(filmService.getFilmsChangedAtNanos());
+
+        return storageExecutors.supplyHeavy(() -> ResponseEntity.ok()
+                .eTag(ConditionalRequests.eTag(tag))
+                .body(filmService.getTopFilmsForLikes(count)));
+    }
+
+    // поиск фильмов по подстроке в названии и/или описании, по релевантности или по популярности:
+    @GetMapping("/search")
+    public CompletableFuture<List<Film>> searchFilms(
+            @RequestParam String q,
+            @RequestParam(defaultValue = SEARCH_BY_TITLE + "," + SEARCH_BY_DESCRIPTION) List<String> by,
+            @RequestParam(defaultValue = SORT_BY_RELEVANCE) String sort,
+            @RequestParam(defaultValue = "10") Integer limit) {
+        if (q.chars().noneMatch(Character::isLetterOrDigit)) {
+            throw incorrectRequestParam(REQUEST_PARAM_QUERY, q, REQUEST_PARAMETER_QUERY_ADVICE);
+        }
+        Set<FilmSearchIndex.Field> fields = EnumSet.noneOf(FilmSearchIndex.Field.class);
+        for (String field : by) {
+            if (SEARCH_BY_TITLE.equalsIgnoreCase(field.trim())) {
+                fields.add(FilmSearchIndex.Field.TITLE);
+            } else if (SEARCH_BY_DESCRIPTION.equalsIgnoreCase(field.trim())) {
+                fields.add(FilmSearchIndex.Field.DESCRIPTION);
+            } else {
+                throw incorrectRequestParam(REQUEST_PARAM_BY, by, REQUEST_PARAMETER_BY_ADVICE);
+            }
+        }
+        if (fields.isEmpty()) {
+            throw incorrectRequestParam(REQUEST_PARAM_BY, by, REQUEST_PARAMETER_BY_ADVICE);
+        }
+        if (!SORT_BY_RELEVANCE.equalsIgnoreCase(sort) && !SORT_BY_POPULARITY.equalsIgnoreCase(sort)) {
+            throw incorrectRequestParam(REQUEST_PARAM_SORT, sort, REQUEST_PARAMETER_SORT_ADVICE);
+        }
+        checkLimit(limit);
+
+        boolean byPopularity = SORT_BY_POPULARITY.equalsIgnoreCase(sort);
+        return storageExecutors.supplyPoint(() -> filmService.searchFilms(q, fields, byPopularity, limit));
+    }
+
+    // вспомогательный метод для ответа со страницей Film:
+    private ResponseEntity<List<Film>> pageResponse(List<Film> page, Integer pageSize, String tag) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(ConditionalRequests.eTag(tag));
+        // если страница заполнена целиком, возвращаем курсор для получения следующей:
+        if (page.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.get(page.size() - 1).getId()));
+        }
+
+        return response.body(page);
+    }
+
+    // вспомогательный метод для ответа со страницей отфильтрованных Film, число найденных и фасеты - в заголовках:
+    private ResponseEntity<List<Film>> filteredPageResponse(FilteredFilms filteredFilms, Integer pageSize,
+                                                            String tag) {
+        List<Film> page = filteredFilms.getFilms();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(ConditionalRequests.eTag(tag))
+                .header(TOTAL_COUNT_HEADER, String.valueOf(filteredFilms.getCount()))
+                .header(GENRE_COUNTS_HEADER, facetHeader(filteredFilms.getGenreCounts()))
+                .header(MPA_COUNTS_HEADER, facetHeader(filteredFilms.getMpaCounts()));
+        if (page.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.get(page.size() - 1).getId()));
+        }
+
+        return response.body(page);
+    }
+
+    private static String facetHeader(Map<Integer, Integer> counts) {
+        return counts.entrySet().stream()
+                .map(count -> count.getKey() + "=" + count.getValue())
+                .collect(Collectors.joining(","));
+    }
+
+    // вспомогательный метод для записи объекта отдельной строкой NDJSON:
+    private void writeNdjsonLine(OutputStream outputStream, Object value) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(value));
+            outputStream.write('\n');
+        } catch (IOException exception) {
+            // клиент закрыл соединение - прерываем чтение из БД:
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    // вспомогательный метод для проверки параметров страницы, возвращает размер страницы:
+    public Integer checkPageParams(Long after, Integer limit) {
+        if (after < 0) {
+            log.debug("{}: " + INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_AFTER + " = {}",
+                    IncorrectRequestParameterException.class.getSimpleName(), after);
+            throw new IncorrectRequestParameterException(INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_AFTER,
+                    REQUEST_PARAMETER_AFTER_ADVICE);
+        }
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        checkLimit(limit);
+
+        return limit;
+    }
+
+    // вспомогательный метод для проверки фильтров списка фильмов:
+    public FilmFilter checkFilter(Set<Integer> genreIds, Integer mpaId, Integer yearFrom, Integer yearTo,
+                                  Integer durationMax) {
+        if (genreIds != null && genreIds.stream().anyMatch(genreId -> genreId == null || genreId <= 0)) {
+            throw incorrectRequestParam(REQUEST_PARAM_GENRE_ID, genreIds, REQUEST_PARAMETER_GENRE_ID_ADVICE);
+        }
+        if (mpaId != null && mpaId <= 0) {
+            throw incorrectRequestParam(REQUEST_PARAM_MPA_ID, mpaId, REQUEST_PARAMETER_MPA_ID_ADVICE);
+        }
+        if (yearFrom != null && yearFrom <= 0 || yearTo != null && yearTo <= 0
+                || yearFrom != null && yearTo != null && yearFrom > yearTo) {
+            throw incorrectRequestParam(REQUEST_PARAM_YEAR, yearFrom + ", " + yearTo, REQUEST_PARAMETER_YEAR_ADVICE);
+        }
+        if (durationMax != null && durationMax <= 0) {
+            throw incorrectRequestParam(REQUEST_PARAM_DURATION_MAX, durationMax,
+                    REQUEST_PARAMETER_DURATION_MAX_ADVICE);
+        }
+
+        return FilmFilter.builder()
+                .genreIds(genreIds)
+                .mpaId(mpaId)
+                .yearFrom(yearFrom)
+                .yearTo(yearTo)
+                .durationMax(durationMax)
+                .build();
+    }
+
+    // вспомогательный метод для проверки limit (от 1 до filmorate.pagination.max-limit):
+    public void checkLimit(Integer limit) {
+        if (limit <= 0 || limit > maxPageSize) {
+            log.debug("{}: " + INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_LIMIT + " = {}",
+                    IncorrectRequestParameterException.class.getSimpleName(), limit);
+            throw new IncorrectRequestParameterException(INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_LIMIT,
+                    REQUEST_PARAMETER_LIMIT_ADVICE + maxPageSize);
+        }
+    }
+
+    // вспомогательный метод для исключения о некорректном параметре запроса:
+    private IncorrectRequestParameterException incorrectRequestParam(String param, Object value, String advice) {
+        log.debug("{}: " + INCORRECT_REQUEST_PARAM_MESSAGE + "{} = {}",
+                IncorrectRequestParameterException.class.getSimpleName(), param, value);
+        return new IncorrectRequestParameterException(INCORRECT_REQUEST_PARAM_MESSAGE + param, advice);
     }
 
     // вспомогательный метод для проверки id:
     public void checkId(Long id, String pathVariable) {
         if (id == null || id <= 0) {
-            log.debug("{}: " + INCORRECT_PATH_VARIABLE_MESSAGE + pathVariable + " = " + id,
-                    IncorrectPathVariableException.class.getSimpleName());
+            log.debug("{}: " + INCORRECT_PATH_VARIABLE_MESSAGE + "{} = {}",
+                    IncorrectPathVariableException.class.getSimpleName(), pathVariable, id);
             throw new IncorrectPathVariableException(INCORRECT_PATH_VARIABLE_MESSAGE + pathVariable,
                     PATH_VARIABLE_ID_ADVICE);
         }
@@ -2,8 +2,11 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import ru.yandex.practicum.filmorate.exception.IncorrectPathVariableException;
@@ -27,22 +30,41 @@ public class GenreController {
 
     /*--------Получение списка всех Genre--------*/
     @GetMapping
-    public List<Genre> getAllGenres() {
-        return genreService.getAllGenres();
+    public ResponseEntity<List<Genre>> getAllGenres(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String tag = genreService.getGenreTag();
+        if (ConditionalRequests.notModified(ifNoneMatch, tag)) {
+            return ConditionalRequests.notModifiedResponse(tag);
+        }
+
+        return ResponseEntity.ok()
+                .eTag(ConditionalRequests.eTag(tag))
+                .body(genreService.getAllGenres());
     }
 
     /*--------Получение Genre по id--------*/
     @GetMapping("/{id}")
-    public Genre getGenreById(@PathVariable Integer id) {
+    public ResponseEntity<Genre> getGenreById(@PathVariable Integer id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         checkId(id, PATH_VARIABLE_ID);
-        return genreService.getGenreById(id);
+        // метка общая для всего справочника, поэтому сначала ищем запись (в памяти, без SQL): для
+        // несуществующего id ответ - 404, даже если метка совпала или в If-None-Match указано "*":
+        String tag = genreService.getGenreTag();
+        Genre genre = genreService.getGenreById(id);
+        if (ConditionalRequests.notModified(ifNoneMatch, tag)) {
+            return ConditionalRequests.notModifiedResponse(tag);
+        }
+
+        return ResponseEntity.ok()
+                .eTag(ConditionalRequests.eTag(tag))
+                .body(genre);
     }
 
     // вспомогательный метод для проверки id:
     public void checkId(Integer id, String pathVariable) {
         if (id == null || id <= 0) {
-            log.debug("{}: " + INCORRECT_PATH_VARIABLE_MESSAGE + pathVariable + " = " + id,
-                    IncorrectPathVariableException.class.getSimpleName());
+            log.debug("{}: " + INCORRECT_PATH_VARIABLE_MESSAGE + "{} = {}",
+                    IncorrectPathVariableException.class.getSimpleName(), pathVariable, id);
             throw new IncorrectPathVariableException(INCORRECT_PATH_VARIABLE_MESSAGE + pathVariable,
                     PATH_VARIABLE_ID_ADVICE);
         }
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.zalando.logbook.HttpRequest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+// в prod Logbook пишет в лог только случайную выборку HTTP запросов:
+@Configuration
+@Profile("prod")
+public class LogbookSamplingConfiguration {
+    // заменяет requestCondition из автоконфигурации Logbook,
+    // запросы, не попавшие в выборку, Logbook не буферизует и не форматирует:
+    @Bean
+    public Predicate<HttpRequest> requestCondition(@Value("${filmorate.logbook.sample-rate}") double sampleRate) {
+        return request -> ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+}
@@ -2,8 +2,11 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import ru.yandex.practicum.filmorate.exception.IncorrectPathVariableException;
@@ -27,22 +30,41 @@ public class MpaController {
 
     /*--------Получение списка всех MPA-рейтингов--------*/
     @GetMapping
-    public List<Mpa> getAllMpa() {
-        return mpaService.getAllMpa();
+    public ResponseEntity<List<Mpa>> getAllMpa(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String tag = mpaService.getMpaTag();
+        if (ConditionalRequests.notModified(ifNoneMatch, tag)) {
+            return ConditionalRequests.notModifiedResponse(tag);
+        }
+
+        return ResponseEntity.ok()
+                .eTag(ConditionalRequests.eTag(tag))
+                .body(mpaService.getAllMpa());
     }
 
     /*--------Получение Mpa по id--------*/
     @GetMapping("/{id}")
-    public Mpa getMpaById(@PathVariable Integer id) {
+    public ResponseEntity<Mpa> getMpaById(@PathVariable Integer id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         checkId(id, PATH_VARIABLE_ID);
-        return mpaService.getMpaById(id);
+        // метка общая для всего справочника, поэтому сначала ищем запись (в памяти, без SQL): для
+        // несуществующего id ответ - 404, даже если метка совпала или в If-None-Match указано "*":
+        String tag = mpaService.getMpaTag();
+        Mpa mpa = mpaService.getMpaById(id);
+        if (ConditionalRequests.notModified(ifNoneMatch, tag)) {
+            return ConditionalRequests.notModifiedResponse(tag);
+        }
+
+        return ResponseEntity.ok()
+                .eTag(ConditionalRequests.eTag(tag))
+                .body(mpa);
     }
 
     // вспомогательный метод для проверки id:
     public void checkId(Integer id, String pathVariable) {
         if (id == null || id <= 0) {
-            log.debug("{}: " + INCORRECT_PATH_VARIABLE_MESSAGE + pathVariable + " = " + id,
-                    IncorrectPathVariableException.class.getSimpleName());
+            log.debug("{}: " + INCORRECT_PATH_VARIABLE_MESSAGE + "{} = {}",
+                    IncorrectPathVariableException.class.getSimpleName(), pathVariable, id);
             throw new IncorrectPathVariableException(INCORRECT_PATH_VARIABLE_MESSAGE + pathVariable,
                     PATH_VARIABLE_ID_ADVICE);
         }
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.filmorate.jdbc.ReadYourWrites;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// у каждого HTTP запроса свой признак ReadYourWrites: после записи в основную БД запрос читает тоже из неё:
+@Component
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    private static final String READ_YOUR_WRITES_ATTRIBUTE = ReadYourWritesFilter.class.getName() + ".READ_YOUR_WRITES";
+
+    // потоковая выгрузка выполняется в async dispatch, признак нужен и там:
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ReadYourWrites readYourWrites = (ReadYourWrites) request.getAttribute(READ_YOUR_WRITES_ATTRIBUTE);
+        if (readYourWrites == null) {
+            readYourWrites = new ReadYourWrites();
+            request.setAttribute(READ_YOUR_WRITES_ATTRIBUTE, readYourWrites);
+        }
+
+        ReadYourWrites previous = ReadYourWrites.bind(readYourWrites);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.bind(previous);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.filmorate.jdbc.SqlStatistics;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// считаем SQL запросы каждого HTTP запроса (кроме prod), результат отдаёт SqlStatisticsHeaderAdvice:
+@Component
+@Profile("!prod")
+public class SqlStatisticsFilter extends OncePerRequestFilter {
+    private static final String STATISTICS_ATTRIBUTE = SqlStatisticsFilter.class.getName() + ".STATISTICS";
+
+    // ответ на асинхронный запрос пишется в другом потоке (async dispatch), статистика нужна и там:
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        // статистика хранится в атрибуте запроса, чтобы async dispatch продолжил ту же статистику:
+        SqlStatistics statistics = (SqlStatistics) request.getAttribute(STATISTICS_ATTRIBUTE);
+        if (statistics == null) {
+            statistics = new SqlStatistics();
+            request.setAttribute(STATISTICS_ATTRIBUTE, statistics);
+        }
+
+        SqlStatistics previous = SqlStatistics.bind(statistics);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlStatistics.bind(previous);
+        }
+    }
+}
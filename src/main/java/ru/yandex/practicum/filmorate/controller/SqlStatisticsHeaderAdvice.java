@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+import ru.yandex.practicum.filmorate.jdbc.SqlStatistics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// перед записью тела ответа добавляем заголовки с количеством SQL запросов и временем в БД:
+@RestControllerAdvice("ru.yandex.practicum.filmorate.controller")
+@Profile("!prod")
+public class SqlStatisticsHeaderAdvice implements ResponseBodyAdvice<Object> {
+    public static final String SQL_STATEMENTS_HEADER = "X-Sql-Statements";
+    public static final String SQL_TIME_HEADER = "X-Sql-Time-Ms";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body,
+                                  MethodParameter returnType,
+                                  MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request,
+                                  ServerHttpResponse response) {
+        SqlStatistics statistics = SqlStatistics.current();
+        if (statistics != null) {
+            response.getHeaders().set(SQL_STATEMENTS_HEADER, String.valueOf(statistics.getStatementCount()));
+            response.getHeaders().set(SQL_TIME_HEADER, String.format(Locale.ROOT, "%.3f",
+                    statistics.getTimeNanos() / (double) TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+        return body;
+    }
+}
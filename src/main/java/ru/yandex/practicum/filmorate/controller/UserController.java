@@ -1,93 +1,216 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exception.IncorrectPathVariableException;
+import ru.yandex.practicum.filmorate.exception.IncorrectRequestParameterException;
+import ru.yandex.practicum.filmorate.executor.StorageExecutors;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static ru.yandex.practicum.filmorate.exception.IncorrectPathVariableException.*;
+import static ru.yandex.practicum.filmorate.exception.IncorrectRequestParameterException.*;
 
 // класс контроллер для пользователей:
 @RestController
 @Slf4j
 @RequestMapping("/users")
 public class UserController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final UserService userService;
+    private final FilmService filmService;
+    private final StorageExecutors storageExecutors;
+    private final ObjectMapper objectMapper;
+    private final Integer defaultPageSize;
+    private final Integer maxPageSize;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService,
+                          FilmService filmService,
+                          StorageExecutors storageExecutors,
+                          ObjectMapper objectMapper,
+                          @Value("${filmorate.pagination.default-limit}") Integer defaultPageSize,
+                          @Value("${filmorate.pagination.max-limit}") Integer maxPageSize) {
         this.userService = userService;
+        this.filmService = filmService;
+        this.storageExecutors = storageExecutors;
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     // создание User:
     @PostMapping
-    public User addUser(@Valid @RequestBody User user) {
-        return userService.addUser(user);
+    public CompletableFuture<User> addUser(@Valid @RequestBody User user) {
+        return storageExecutors.supplyPoint(() -> userService.addUser(user));
+    }
+
+    // пакетное создание User (каждый пользователь валидируется отдельно, ошибки возвращаются по индексу в массиве):
+    @PostMapping("/batch")
+    public CompletableFuture<BatchResponse<User>> addUsers(@RequestBody List<User> users) {
+        return storageExecutors.supplyHeavy(() -> userService.addUsers(users));
     }
 
     // обновление User:
     @PutMapping
-    public User updateUser(@Valid @RequestBody User user) {
-        return userService.updateUser(user);
+    public CompletableFuture<User> updateUser(@Valid @RequestBody User user) {
+        return storageExecutors.supplyPoint(() -> userService.updateUser(user));
     }
 
-    // получение списка всех User:
+    // получение списка User постранично (после User с id = after), весь список - только с unpaged = true:
     @GetMapping
-    public List<User> getAllUsers() {
-        return userService.getAllUsers();
+    public CompletableFuture<ResponseEntity<List<User>>> getAllUsers(
+            @RequestParam(defaultValue = "0") Long after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") Boolean unpaged) {
+        if (unpaged) {
+            return storageExecutors.supplyHeavy(() -> ResponseEntity.ok(userService.getAllUsers()));
+        }
+
+        Integer pageSize = checkPageParams(after, limit);
+        return storageExecutors.supplyHeavy(() -> pageResponse(userService.getUsersPage(after, pageSize), pageSize));
+    }
+
+    // выгрузка всех User потоком в формате NDJSON (по одному JSON объекту на строку):
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAllUsers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> userService.streamAllUsers(user -> writeNdjsonLine(outputStream, user)));
     }
 
     // получение User по id:
     @GetMapping("/{id}")
-    public User getUserById(@PathVariable Long id) {
+    public CompletableFuture<User> getUserById(@PathVariable Long id) {
         checkId(id, PATH_VARIABLE_ID);
-        return userService.getUserById(id);
+        return storageExecutors.supplyPoint(() -> userService.getUserById(id));
     }
 
     // добавление User в друзья:
     @PutMapping("/{id}/friends/{friendId}")
-    public String addUserToFriends(@PathVariable Long id, @PathVariable Long friendId) {
+    public CompletableFuture<String> addUserToFriends(@PathVariable Long id, @PathVariable Long friendId) {
         checkId(id, PATH_VARIABLE_ID);
         checkId(friendId, PATH_VARIABLE_FRIEND_ID);
 
-        return userService.addUserToFriends(id, friendId);
+        return storageExecutors.supplyPoint(() -> userService.addUserToFriends(id, friendId));
     }
 
     // удаление User из друзей:
     @DeleteMapping("/{id}/friends/{friendId}")
-    public String removeUserFromFriends(@PathVariable Long id, @PathVariable Long friendId) {
+    public CompletableFuture<String> removeUserFromFriends(@PathVariable Long id, @PathVariable Long friendId) {
         checkId(id, PATH_VARIABLE_ID);
         checkId(friendId, PATH_VARIABLE_FRIEND_ID);
 
-        return userService.removeUserFromFriends(id, friendId);
+        return storageExecutors.supplyPoint(() -> userService.removeUserFromFriends(id, friendId));
     }
 
     // получаем список друзей User:
     @GetMapping("/{id}/friends")
-    public List<User> getAllFriendsList(@PathVariable Long id) {
+    public CompletableFuture<List<User>> getAllFriendsList(@PathVariable Long id) {
         checkId(id, PATH_VARIABLE_ID);
-        return userService.getAllFriendsList(id);
+        return storageExecutors.supplyHeavy(() -> userService.getAllFriendsList(id));
     }
 
     // получаем список общих друзей:
     @GetMapping("/{id}/friends/common/{otherId}")
-    public List<User> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
+    public CompletableFuture<List<User>> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
         checkId(id, PATH_VARIABLE_ID);
         checkId(otherId, PATH_VARIABLE_OTHER_ID);
 
-        return userService.getCommonFriends(id, otherId);
+        return storageExecutors.supplyHeavy(() -> userService.getCommonFriends(id, otherId));
+    }
+
+    // получаем рекомендации друзей (друзья друзей, больше общих друзей - выше):
+    @GetMapping("/{id}/suggestions")
+    public CompletableFuture<List<User>> getSuggestedFriends(@PathVariable Long id,
+                                                             @RequestParam(defaultValue = "10") Integer limit) {
+        checkId(id, PATH_VARIABLE_ID);
+        checkLimit(limit);
+
+        return storageExecutors.supplyHeavy(() -> userService.getSuggestedFriends(id, limit));
+    }
+
+    // получаем рекомендации фильмов по лайкам пользователей с похожими лайками:
+    @GetMapping("/{id}/recommendations")
+    public CompletableFuture<List<Film>> getRecommendedFilms(@PathVariable Long id,
+                                                             @RequestParam(defaultValue = "10") Integer limit) {
+        checkId(id, PATH_VARIABLE_ID);
+        checkLimit(limit);
+
+        return storageExecutors.supplyHeavy(() -> filmService.getRecommendedFilms(id, limit));
+    }
+
+    // вспомогательный метод для ответа со страницей User:
+    private ResponseEntity<List<User>> pageResponse(List<User> page, Integer pageSize) {
+        // если страница заполнена целиком, возвращаем курсор для получения следующей:
+        if (page.size() == pageSize) {
+            return ResponseEntity.ok()
+                    .header(NEXT_CURSOR_HEADER, String.valueOf(page.get(page.size() - 1).getId()))
+                    .body(page);
+        }
+
+        return ResponseEntity.ok(page);
+    }
+
+    // вспомогательный метод для записи объекта отдельной строкой NDJSON:
+    private void writeNdjsonLine(OutputStream outputStream, Object value) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(value));
+            outputStream.write('\n');
+        } catch (IOException exception) {
+            // клиент закрыл соединение - прерываем чтение из БД:
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    // вспомогательный метод для проверки параметров страницы, возвращает размер страницы:
+    public Integer checkPageParams(Long after, Integer limit) {
+        if (after < 0) {
+            log.debug("{}: " + INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_AFTER + " = {}",
+                    IncorrectRequestParameterException.class.getSimpleName(), after);
+            throw new IncorrectRequestParameterException(INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_AFTER,
+                    REQUEST_PARAMETER_AFTER_ADVICE);
+        }
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        checkLimit(limit);
+
+        return limit;
+    }
+
+    // вспомогательный метод для проверки limit (от 1 до filmorate.pagination.max-limit):
+    public void checkLimit(Integer limit) {
+        if (limit <= 0 || limit > maxPageSize) {
+            log.debug("{}: " + INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_LIMIT + " = {}",
+                    IncorrectRequestParameterException.class.getSimpleName(), limit);
+            throw new IncorrectRequestParameterException(INCORRECT_REQUEST_PARAM_MESSAGE + REQUEST_PARAM_LIMIT,
+                    REQUEST_PARAMETER_LIMIT_ADVICE + maxPageSize);
+        }
     }
 
     // вспомогательный метод для проверки id:
     public void checkId(Long id, String pathVariable) {
         if (id == null || id <= 0) {
-            log.debug("{}: " + INCORRECT_PATH_VARIABLE_MESSAGE + pathVariable + " = " + id,
-                    IncorrectPathVariableException.class.getSimpleName());
+            log.debug("{}: " + INCORRECT_PATH_VARIABLE_MESSAGE + "{} = {}",
+                    IncorrectPathVariableException.class.getSimpleName(), pathVariable, id);
             throw new IncorrectPathVariableException(INCORRECT_PATH_VARIABLE_MESSAGE + pathVariable,
                     PATH_VARIABLE_ID_ADVICE);
         }
@@ -1,38 +1,120 @@
 package ru.yandex.practicum.filmorate.dao;
 
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.AlreadyExistException;
 import ru.yandex.practicum.filmorate.exception.IllegalIdException;
 import ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException;
+import ru.yandex.practicum.filmorate.index.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.LikeMatrixIndex;
+import ru.yandex.practicum.filmorate.index.VersionCounters;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.FilteredFilms;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
-import static ru.yandex.practicum.filmorate.exception.AlreadyExistException.FILM_ALREADY_EXIST_ADVICE;
-import static ru.yandex.practicum.filmorate.exception.AlreadyExistException.FILM_ALREADY_EXIST_MESSAGE;
+import static ru.yandex.practicum.filmorate.exception.AlreadyExistException.*;
 import static ru.yandex.practicum.filmorate.exception.IllegalIdException.*;
 import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.FILM_INVALID_DATA_BASE_QUERY_ADVICE;
 import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.INVALID_DATA_BASE_QUERY_MESSAGE;
+import static ru.yandex.practicum.filmorate.dao.TransactionHooks.afterCommit;
 import static ru.yandex.practicum.filmorate.query.SqlQuery.*;
 
 @Repository
 @Slf4j
 public class FilmDbStorage implements FilmStorage {
+    // сколько строк драйвер забирает из БД за раз при потоковой выгрузке:
+    private static final int STREAM_FETCH_SIZE = 500;
+    // сколько фильмов отправляем в БД одним JDBC batch при пакетном добавлении:
+    private static final int INSERT_BATCH_SIZE = 1000;
+    // сколько id передаём в один запрос WHERE film_id IN (...) (фильтр без limit может вернуть весь каталог):
+    private static final int SELECT_BY_IDS_BATCH_SIZE = 1000;
+    // сколько самых похожих пользователей учитывается в рекомендациях (если хранилище создано не Spring'ом):
+    private static final int DEFAULT_RECOMMENDATIONS_MAX_NEIGHBOURS = 50;
+    // сколько разных count держит кеш топа фильмов и топ какого размера в него ещё попадает:
+    private static final int TOP_FILMS_CACHE_SIZE = 16;
+    private static final int TOP_FILMS_CACHE_MAX_COUNT = 1000;
+
     private final JdbcTemplate jdbcTemplate;
-    private Set<Genre> sortedSet = new TreeSet(Comparator.comparing(Genre::getId));
+    private final GenreDbStorage genreStorage;
+    private final MpaDbStorage mpaStorage;
+    // топ фильмов по rate, чтобы /films/popular не сортировал всю таблицу films:
+    private final FilmPopularityIndex popularityIndex = new FilmPopularityIndex();
+    // триграммы названий и описаний для поиска фильмов:
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
+    // жанры, MPA-рейтинги, годы релиза и продолжительность для фильтров списка фильмов:
+    private final FilmFacetIndex facetIndex = new FilmFacetIndex();
+    // лайки пользователей для рекомендаций фильмов:
+    private final LikeMatrixIndex likeMatrix = new LikeMatrixIndex();
+    // версии фильмов и списка фильмов для ETag (увеличиваются после фиксации изменений):
+    private final VersionCounters versions = new VersionCounters();
+    // готовые списки топа фильмов по count вместе с меткой, под которой их прочитали из БД
+    // (LRU: при переполнении вытесняется давнее всего запрошенный count, доступ - под блокировкой самой карты):
+    private final Map<Integer, TopFilms> topFilmsCache = new LinkedHashMap<>(TOP_FILMS_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, TopFilms> eldest) {
+            return size() > TOP_FILMS_CACHE_SIZE;
+        }
+    };
+    private int recommendationsMaxNeighbours = DEFAULT_RECOMMENDATIONS_MAX_NEIGHBOURS;
+    // буфер отложенной записи лайков (если включён filmorate.likes.write-behind.enabled):
+    private LikeWriteBehindBuffer likeBuffer;
 
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, GenreDbStorage genreStorage, MpaDbStorage mpaStorage) {
         this.jdbcTemplate = jdbcTemplate;
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+
+        // заполнили индекс популярности текущими rate фильмов:
+        jdbcTemplate.query(SQL_QUERY_GET_ALL_FILM_RATES, (RowCallbackHandler) resultSet ->
+                popularityIndex.put(resultSet.getLong("film_id"), resultSet.getInt("rate")));
+        // заполнили поисковый индекс:
+        jdbcTemplate.query(SQL_QUERY_GET_ALL_FILM_TEXTS, (RowCallbackHandler) resultSet ->
+                searchIndex.put(resultSet.getLong("film_id"), resultSet.getString("name"),
+                        resultSet.getString("description")));
+        // заполнили индекс фильтров:
+        jdbcTemplate.query(SQL_QUERY_GET_ALL_FILMS, (ResultSetExtractor<Void>) resultSet -> {
+            foldFilms(resultSet, this::putToFacetIndex);
+            return null;
+        });
+        // заполнили матрицу лайков:
+        jdbcTemplate.query(SQL_QUERY_GET_ALL_LIKES, (RowCallbackHandler) resultSet ->
+                likeMatrix.addLike(resultSet.getLong("film_id"), resultSet.getLong("user_id")));
+    }
+
+    @Autowired(required = false)
+    public void setLikeBuffer(LikeWriteBehindBuffer likeBuffer) {
+        this.likeBuffer = likeBuffer;
+        likeBuffer.setDroppedLikeHandler(this::revertDroppedLike);
+    }
+
+    @Autowired
+    public void setRecommendationsMaxNeighbours(
+            @Value("${filmorate.recommendations.max-neighbours}") Integer maxNeighbours) {
+        this.recommendationsMaxNeighbours = maxNeighbours;
     }
 
     /*---Добавляем фильм в БД---*/
@@ -41,85 +123,175 @@ public class FilmDbStorage implements FilmStorage {
         if (film.getId() == null) {
             // убираем дубликаты жанров:
             if (film.getGenres() != null) {
-                sortedSet.clear();
-                sortedSet.addAll(film.getGenres());
-                film.setGenres(List.copyOf(sortedSet));
+                film.setGenres(distinctGenres(film.getGenres()));
             }
 
             // добавили фильм:
-            SimpleJdbcInsert insertFilm = new SimpleJdbcInsert(jdbcTemplate)
-                    .withTableName("films")
-                    .usingGeneratedKeyColumns("film_id");
-            Long filmId = insertFilm.executeAndReturnKey(filmToMap(film)).longValue();
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SQL_QUERY_ADD_FILM,
+                        new String[]{"film_id"});
+                setFilmParameters(statement, film);
+                return statement;
+            }, keyHolder);
+            Long filmId = Objects.requireNonNull(keyHolder.getKey()).longValue();
             film.setId(filmId);
 
             // связали id фильма и жанры:
             if (film.getGenres() != null) {
-                for (Genre genre: film.getGenres()) {
-                    SimpleJdbcInsert insertFilmGenre = new SimpleJdbcInsert(jdbcTemplate)
-                            .withTableName("film_genres")
-                            .usingGeneratedKeyColumns("film_genres_id");
-                    insertFilmGenre.execute(filmGenreToMap(film, genre));
+                List<Object[]> filmGenres = new ArrayList<>(film.getGenres().size());
+                for (Genre genre : film.getGenres()) {
+                    filmGenres.add(new Object[]{filmId, genre.getId()});
                 }
+                jdbcTemplate.batchUpdate(SQL_QUERY_ADD_FILM_GENRE, filmGenres);
             }
+
+            // индексы обновляем после записи жанров и только если транзакция зафиксирована:
+            int rate = rateOf(film);
+            String name = film.getName();
+            String description = film.getDescription();
+            afterCommit(() -> {
+                popularityIndex.put(filmId, rate);
+                searchIndex.put(filmId, name, description);
+                putToFacetIndex(film);
+            });
+            bumpVersions(List.of(filmId));
         } else if (getFilmById(film.getId()) != null) {
-            log.debug("{}: " + FILM_ALREADY_EXIST_MESSAGE + film.getId(),
-                    AlreadyExistException.class.getSimpleName());
+            log.debug("{}: " + FILM_ALREADY_EXIST_MESSAGE + "{}",
+                    AlreadyExistException.class.getSimpleName(), film.getId());
             throw new AlreadyExistException(FILM_ALREADY_EXIST_MESSAGE + film.getId(), FILM_ALREADY_EXIST_ADVICE);
         } else if (film.getId() != null) {
-            log.debug("{}: " + ILLEGAL_NEW_FILM_ID_MESSAGE + film.getId(),
-                    IllegalIdException.class.getSimpleName());
+            log.debug("{}: " + ILLEGAL_NEW_FILM_ID_MESSAGE + "{}",
+                    IllegalIdException.class.getSimpleName(), film.getId());
             throw new IllegalIdException(ILLEGAL_NEW_FILM_ID_MESSAGE + film.getId(), ILLEGAL_NEW_FILM_ID_ADVICE);
         }
 
-        log.debug("Добавлен новый фильм: " + film.getName() + ", с id = " + film.getId());
+        log.debug("Добавлен новый фильм: {}, с id = {}", film.getName(), film.getId());
         return film;
     }
 
-    /*---Обновляем данные Film в БД---*/
+    /*---Проверяем новый фильм перед пакетным добавлением---*/
     @Override
-    public Film updateFilm(Film film) {
-        if (getFilmById(film.getId()) != null) {
-            // убираем дубликаты жанров:
+    public void checkNewFilm(Film film) {
+        if (film.getId() != null) {
+            log.debug("{}: " + ILLEGAL_NEW_FILM_ID_MESSAGE + "{}",
+                    IllegalIdException.class.getSimpleName(), film.getId());
+            throw new IllegalIdException(ILLEGAL_NEW_FILM_ID_MESSAGE + film.getId(), ILLEGAL_NEW_FILM_ID_ADVICE);
+        }
+
+        // MPA-рейтинг и жанры проверяем по справочникам, чтобы один фильм не уронил весь batch на внешнем ключе:
+        mpaStorage.getMpaById(film.getMpa() == null ? null : film.getMpa().getId());
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                genreStorage.getGenreById(genre == null ? null : genre.getId());
+            }
+        }
+    }
+
+    /*---Добавляем список новых фильмов в БД (JDBC batch для films и film_genres)---*/
+    @Override
+    public List<Film> addFilms(List<Film> films) {
+        for (int from = 0; from < films.size(); from += INSERT_BATCH_SIZE) {
+            List<Film> batch = films.subList(from, Math.min(from + INSERT_BATCH_SIZE, films.size()));
+
+            for (Film film : batch) {
+                // убираем дубликаты жанров:
                 if (film.getGenres() != null) {
-                    sortedSet.clear();
-                    sortedSet.addAll(film.getGenres());
-                    film.setGenres(List.copyOf(sortedSet));
+                    film.setGenres(distinctGenres(film.getGenres()));
                 }
+            }
 
-            // обновили фильм:
-            String filmSqlQuery = SQL_QUERY_UPDATE_FILM;
-            jdbcTemplate.update(filmSqlQuery,
-                    film.getName(),
-                    film.getDescription(),
-                    film.getReleaseDate(),
-                    film.getDuration(),
-                    film.getRate(),
-                    film.getMpa().getId(),
-                    film.getId());
-
-            // обновили жанры:
-            String filmGenreDeleteSqlQuery = "DELETE FROM film_genres " +
-                                             "WHERE film_id = ?;";
-            jdbcTemplate.update(filmGenreDeleteSqlQuery, film.getId());
-            if (film.getGenres() != null) {
-               for (Genre genre: film.getGenres()) {
-                    SimpleJdbcInsert insertFilmGenre = new SimpleJdbcInsert(jdbcTemplate)
-                            .withTableName("film_genres")
-                            .usingGeneratedKeyColumns("film_genres_id");
-                    insertFilmGenre.execute(filmGenreToMap(film, genre));
+            // добавили фильмы, id берём из сгенерированных ключей в порядке добавления:
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(SQL_QUERY_ADD_FILM,
+                        new String[]{"film_id"})) {
+                    for (Film film : batch) {
+                        setFilmParameters(statement, film);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+
+                    try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                        for (Film film : batch) {
+                            generatedKeys.next();
+                            film.setId(generatedKeys.getLong(1));
+                        }
+                    }
+                }
+                return null;
+            });
+
+            // связали id фильмов и жанры:
+            List<Object[]> filmGenres = new ArrayList<>();
+            for (Film film : batch) {
+                if (film.getGenres() != null) {
+                    for (Genre genre : film.getGenres()) {
+                        filmGenres.add(new Object[]{film.getId(), genre.getId()});
+                    }
                 }
             }
-            log.debug("Обновлена информация о фильме: " + film.getName() + ", с id = " + film.getId());
-        } else if (film.getId() == null) {
-            addFilm(film);
-            log.debug("Добавлен новый фильм: " + film.getName() + ", с id = " + film.getId());
-        } else {
-            log.debug("{}: " + ILLEGAL_FILM_ID_MESSAGE + film.getId(),
-                    IllegalIdException.class.getSimpleName());
+            jdbcTemplate.batchUpdate(SQL_QUERY_ADD_FILM_GENRE, filmGenres);
+        }
+
+        afterCommit(() -> films.forEach(film -> {
+            popularityIndex.put(film.getId(), rateOf(film));
+            searchIndex.put(film.getId(), film.getName(), film.getDescription());
+            putToFacetIndex(film);
+        }));
+        bumpVersions(films.stream().map(Film::getId).collect(Collectors.toList()));
+
+        log.debug("Добавлено новых фильмов: {}", films.size());
+        return films;
+    }
+
+    /*---Обновляем данные Film в БД---*/
+    @Override
+    public Film updateFilm(Film film) {
+        // фильм без id добавляем как новый:
+        if (film.getId() == null) {
+            return addFilm(film);
+        }
+
+        // убираем дубликаты жанров:
+        if (film.getGenres() != null) {
+            film.setGenres(distinctGenres(film.getGenres()));
+        }
+
+        // обновили фильм: UPDATE блокирует строку фильма до конца транзакции, поэтому одновременные
+        // обновления одного фильма читают и меняют жанры по очереди:
+        String filmSqlQuery = SQL_QUERY_UPDATE_FILM;
+        int updatedFilms = jdbcTemplate.update(filmSqlQuery,
+                film.getName(),
+                film.getDescription(),
+                film.getReleaseDate(),
+                film.getDuration(),
+                film.getRate(),
+                film.getMpa().getId(),
+                film.getId());
+        if (updatedFilms == 0) {
+            log.debug("{}: " + ILLEGAL_FILM_ID_MESSAGE + "{}",
+                    IllegalIdException.class.getSimpleName(), film.getId());
             throw new IllegalIdException(ILLEGAL_FILM_ID_MESSAGE + film.getId(), ILLEGAL_FILM_ID_ADVICE);
         }
 
+        // обновили жанры: сравниваем с жанрами в БД (уже под блокировкой строки фильма),
+        // удаляем и добавляем только изменившиеся:
+        List<Integer> storedGenreIds = jdbcTemplate.queryForList(SQL_QUERY_GET_FILM_GENRE_IDS, Integer.class,
+                film.getId());
+        syncFilmGenres(film.getId(), storedGenreIds, film.getGenres());
+
+        // индексы обновляем после записи жанров и только если транзакция зафиксирована:
+        int rate = rateOf(film);
+        String name = film.getName();
+        String description = film.getDescription();
+        afterCommit(() -> {
+            popularityIndex.put(film.getId(), rate);
+            searchIndex.put(film.getId(), name, description);
+            putToFacetIndex(film);
+        });
+        bumpVersions(List.of(film.getId()));
+        log.debug("Обновлена информация о фильме: {}, с id = {}", film.getName(), film.getId());
+
         return film;
     }
 
@@ -127,7 +299,41 @@ public class FilmDbStorage implements FilmStorage {
     @Override
     public List<Film> getAllFilms() {
         String sqlQuery = SQL_QUERY_GET_ALL_FILMS;
-        return jdbcTemplate.query(sqlQuery, this::mapRowToFilm);
+        return jdbcTemplate.query(sqlQuery, this::extractFilms);
+    }
+
+    /*---Выгрузить все Film потоком, не собирая список в памяти---*/
+    @Override
+    public void streamAllFilms(Consumer<Film> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SQL_QUERY_GET_ALL_FILMS);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        }, (ResultSetExtractor<Void>) resultSet -> {
+            foldFilms(resultSet, consumer);
+            return null;
+        });
+    }
+
+    /*---Получить страницу Film с id > afterId (keyset пагинация)---*/
+    @Override
+    public List<Film> getFilmsPage(Long afterId, Integer limit) {
+        String sqlQuery = SQL_QUERY_GET_FILMS_PAGE;
+        return jdbcTemplate.query(sqlQuery, this::extractFilms, afterId, limit);
+    }
+
+    /*---Получить страницу Film с id > afterId по фильтрам и фасеты по жанрам и MPA-рейтингам---*/
+    // фильмы и фасеты находит индекс фильтров за один проход, из БД читаем только фильмы страницы:
+    public FilteredFilms getFilteredFilmsPage(FilmFilter filter, Long afterId, Integer limit) {
+        FilmFacetIndex.Result result = facetIndex.filter(filter.getGenreIds(), filter.getMpaId(),
+                filter.getYearFrom(), filter.getYearTo(), filter.getDurationMax(), afterId, limit);
+
+        return FilteredFilms.builder()
+                .films(getFilmsByIds(Arrays.stream(result.getFilmIds()).boxed().collect(Collectors.toList())))
+                .count(result.getCount())
+                .genreCounts(result.getGenreCounts())
+                .mpaCounts(result.getMpaCounts())
+                .build();
     }
 
     /*---Получить Film по id---*/
@@ -135,25 +341,18 @@ public class FilmDbStorage implements FilmStorage {
     public Film getFilmById(Long filmId) {
         try {
             String sqlQuery = SQL_QUERY_GET_FILM_BY_ID;
-            List<Film> films = jdbcTemplate.query(sqlQuery, this::mapRowToFilm,filmId);
+            List<Film> films = jdbcTemplate.query(sqlQuery, this::extractFilms, filmId);
 
             if (films.size() == 0) {
-                log.debug("{}: " + ILLEGAL_FILM_ID_MESSAGE + filmId,
-                        IllegalIdException.class.getSimpleName());
+                log.debug("{}: " + ILLEGAL_FILM_ID_MESSAGE + "{}",
+                        IllegalIdException.class.getSimpleName(), filmId);
                 throw new IllegalIdException(ILLEGAL_FILM_ID_MESSAGE + filmId, ILLEGAL_FILM_ID_ADVICE);
             }
 
-            List<Genre> genres = new ArrayList<>();
-            for (Film film: films) {
-                genres.addAll(film.getGenres());
-            }
-            Film film = films.get(0);
-            film.setGenres(genres);
-
-            return film;
+            return films.get(0);
         } catch (EmptyResultDataAccessException exception) {
-            log.debug("{}: " + INVALID_DATA_BASE_QUERY_MESSAGE + " Размер ответа на запрос: "
-                    + exception.getExpectedSize(), IllegalIdException.class.getSimpleName());
+            log.debug("{}: " + INVALID_DATA_BASE_QUERY_MESSAGE + " Размер ответа на запрос: {}",
+                    IllegalIdException.class.getSimpleName(), exception.getExpectedSize());
             throw new InvalidDataBaseQueryException(INVALID_DATA_BASE_QUERY_MESSAGE,
                     exception.getExpectedSize(),
                     FILM_INVALID_DATA_BASE_QUERY_ADVICE);
@@ -161,73 +360,325 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     /*---Поставить лайк фильму---*/
+    // лайк идемпотентен: есть ли уже лайк, знает матрица лайков, повторный лайк ничего не меняет (без запросов к БД,
+    // rate не увеличивается). Одновременные одинаковые лайки разводит уникальный индекс film_likes:
     public String addLikeToFilm(Long id, Long userId) {
-        // добавили запись о лайке:
-        SimpleJdbcInsert insertLike = new SimpleJdbcInsert(jdbcTemplate)
-                .withTableName("film_likes")
-                .usingGeneratedKeyColumns("film_likes_id");
-        insertLike.execute(filmLikeToMap(id, userId));
+        String likeMessage = String.format("Пользователь с id: %d, поставил лайк фильму с id: %d.", userId, id);
+        if (likeMatrix.hasLike(id, userId)) {
+            return likeMessage;
+        }
+
+        if (likeBuffer != null) {
+            checkLikeIds(id, userId);
+            if (likeMatrix.addLike(id, userId)) {
+                likeBuffer.addLike(id, userId);
+                popularityIndex.addToRate(id, 1);
+                bumpVersions(List.of(id));
+            }
+            return likeMessage;
+        }
+
+        // добавили запись о лайке (если её уже добавил параллельный запрос - ничего не меняем):
+        try {
+            jdbcTemplate.update(SQL_QUERY_ADD_LIKE_TO_FILM, id, userId);
+        } catch (DuplicateKeyException exception) {
+            return likeMessage;
+        }
 
         // увеличили rate фильма на 1:
         String sqlQuery = SQL_QUERY_FILM_RATE_PLUS;
         jdbcTemplate.update(sqlQuery, id);
+        afterCommit(() -> {
+            popularityIndex.addToRate(id, 1);
+            likeMatrix.addLike(id, userId);
+        });
+        bumpVersions(List.of(id));
 
-        return String.format("Пользователь с id: %d, поставил лайк фильму с id: %d.", userId, id);
+        return likeMessage;
     }
 
     /*---Удалить лайк---*/
+    // удаление лайка, которого нет, ничего не меняет (без запросов к БД, rate не уменьшается):
     public String removeLikeFromFilm(Long id, Long userId) {
-        // удалили запись о лайке:
-        String sqlQueryForLikeTable = SQL_QUERY_REMOVE_LIKE_FROM_FILM;
-        jdbcTemplate.update(sqlQueryForLikeTable, id, userId);
+        if (likeBuffer != null) {
+            checkLikeIds(id, userId);
+            if (likeMatrix.removeLike(id, userId)) {
+                likeBuffer.removeLike(id, userId);
+                popularityIndex.addToRate(id, -1);
+                bumpVersions(List.of(id));
+            }
+            return String.format("Пользователь с id: %d, удалил свой лайк фильму с id: %d.", userId, id);
+        }
+
+        if (!likeMatrix.hasLike(id, userId)) {
+            return String.format("Пользователь с id: %d, удалил свой лайк фильму с id: %d.", userId, id);
+        }
 
-        // уменьшили rate фильма на 1:
-        String sqlQueryForFilmsTable = SQL_QUERY_FILM_RATE_MINUS;
-        jdbcTemplate.update(sqlQueryForFilmsTable, id);
+        // удалили запись о лайке, rate уменьшаем, только если лайк действительно был удалён:
+        String sqlQueryForLikeTable = SQL_QUERY_REMOVE_LIKE_FROM_FILM;
+        if (jdbcTemplate.update(sqlQueryForLikeTable, id, userId) > 0) {
+            String sqlQueryForFilmsTable = SQL_QUERY_FILM_RATE_MINUS;
+            jdbcTemplate.update(sqlQueryForFilmsTable, id);
+            afterCommit(() -> {
+                popularityIndex.addToRate(id, -1);
+                likeMatrix.removeLike(id, userId);
+            });
+            bumpVersions(List.of(id));
+        } else {
+            // лайка нет и в БД - убираем его из матрицы сразу, откатывать нечего:
+            likeMatrix.removeLike(id, userId);
+        }
 
         return String.format("Пользователь с id: %d, удалил свой лайк фильму с id: %d.", userId, id);
     }
 
+    /*---Получить количество лайков фильма (из матрицы лайков, не из rate)---*/
+    public Integer getLikeCount(Long id) {
+        checkFilmId(id);
+        return likeMatrix.getLikeCount(id);
+    }
+
     /*---Получить топ фильмов по популярности---*/
+    // id берём из индекса популярности, сами фильмы - из кеша топа. Кеш проверяется по метке топа: она меняется
+    // при изменении состава или порядка топа и любого его фильма (лайк, обновление) или справочников. Метку
+    // считаем до чтения из БД, поэтому прочитанные фильмы не старше метки, под которой они сохраняются.
+    // Фильмы изменяемые, поэтому каждый вызов получает свои копии, а в кеше остаются нетронутые:
     public List<Film> getTopFilmsForLikes(Integer count) {
-        String sqlQuery = SQL_QUERY_GET_TOP_FILMS_FOR_LIKES;
-        return jdbcTemplate.query(sqlQuery, this::mapRowToFilm, count);
+        List<Long> filmIds = popularityIndex.getTopFilmIds(count);
+        String tag = getTopFilmsTag(count, filmIds);
+        TopFilms cached;
+        synchronized (topFilmsCache) {
+            cached = topFilmsCache.get(count);
+        }
+        if (cached != null && cached.getTag().equals(tag)) {
+            return copyOf(cached.getFilms());
+        }
+
+        List<Film> films = getFilmsByIds(filmIds);
+        if (count <= TOP_FILMS_CACHE_MAX_COUNT) {
+            synchronized (topFilmsCache) {
+                topFilmsCache.put(count, new TopFilms(tag, copyOf(films)));
+            }
+        }
+
+        return films;
+    }
+
+    /*---Найти фильмы по подстроке в названии и/или описании---*/
+    // id и порядок фильмов даёт поисковый индекс, из БД читаем только сами фильмы по первичному ключу:
+    public List<Film> searchFilms(String query, Set<FilmSearchIndex.Field> fields, boolean byPopularity,
+                                  Integer limit) {
+        long[] filmIds = searchIndex.search(query, fields, byPopularity, limit, popularityIndex::getRate);
+        return getFilmsByIds(Arrays.stream(filmIds).boxed().collect(Collectors.toList()));
+    }
+
+    /*---Получить рекомендации фильмов для пользователя по лайкам похожих пользователей---*/
+    public List<Film> getRecommendedFilms(Long userId, Integer limit) {
+        long[] filmIds = likeMatrix.getRecommendedFilmIds(userId, limit, recommendationsMaxNeighbours);
+        return getFilmsByIds(Arrays.stream(filmIds).boxed().collect(Collectors.toList()));
+    }
+
+    /*---Метка версии списка фильмов (для ETag /films)---*/
+    // метки считаются по счётчикам в памяти, без запросов к БД. Фильм в ответе содержит названия жанров
+    // и MPA-рейтинга, поэтому в метку входят и версии справочников:
+    public String getFilmsTag() {
+        return VersionCounters.tag(versions.getCollectionVersion(), genreStorage.getVersion(),
+                mpaStorage.getVersion());
+    }
+
+    /*---Метка версии фильма (для ETag /films/{id}), null - фильма нет---*/
+    public String getFilmTag(Long id) {
+        if (!popularityIndex.contains(id)) {
+            return null;
+        }
+
+        return VersionCounters.tag(id, versions.getVersion(id), genreStorage.getVersion(), mpaStorage.getVersion());
+    }
+
+    /*---Метка версии топа фильмов (для ETag /films/popular)---*/
+    // топ берётся из индекса популярности: метка меняется, только если изменился состав или порядок топа
+    // или один из его фильмов, лайк фильму вне топа её не меняет:
+    public String getTopFilmsTag(Integer count) {
+        return getTopFilmsTag(count, popularityIndex.getTopFilmIds(count));
+    }
+
+    /*---Время последнего изменения списка фильмов: данные под меткой /films и /films/popular не старше---*/
+    public long getFilmsChangedAtNanos() {
+        return versions.getChangedAtNanos();
+    }
+
+    /*---Время последнего изменения фильма: данные под меткой /films/{id} не старше---*/
+    public long getFilmChangedAtNanos(Long id) {
+        return versions.getChangedAtNanos(id);
     }
 
     /*------Вспомогательные методы------*/
-    private static Map<String, Object> filmToMap(Film film) {
-        if (film.getRate() == null) {
-            return Map.of(
-                    "name", film.getName(),
-                    "description", film.getDescription(),
-                    "release_date", film.getReleaseDate(),
-                    "duration", film.getDuration(),
-                    "mpa_rating_id",film.getMpa().getId());
+    // версии увеличиваем после фиксации транзакции: иначе читатель успел бы сохранить под новой меткой
+    // ещё не зафиксированные (старые) данные. При откате транзакции версии не меняются:
+    private void bumpVersions(List<Long> filmIds) {
+        afterCommit(() -> filmIds.forEach(versions::bump));
+    }
+
+    private String getTopFilmsTag(Integer count, List<Long> topFilmIds) {
+        return VersionCounters.tag(count, versions.getVersionsHash(topFilmIds),
+                genreStorage.getVersion(), mpaStorage.getVersion());
+    }
+
+    private static void setFilmParameters(PreparedStatement statement, Film film) throws SQLException {
+        statement.setString(1, film.getName());
+        statement.setString(2, film.getDescription());
+        statement.setObject(3, film.getReleaseDate(), Types.DATE);
+        statement.setObject(4, film.getDuration(), Types.INTEGER);
+        statement.setObject(5, film.getRate(), Types.INTEGER);
+        statement.setInt(6, film.getMpa().getId());
+    }
+
+    // в буфер лайков попадают только существующие фильм и пользователь, иначе сброс упадёт на внешнем ключе.
+    // Пользователи не удаляются, поэтому известного матрице лайков пользователя проверяем без БД,
+    // а найденного в БД запоминаем в матрице - запрос к БД бывает только при первом лайке пользователя:
+    private void checkLikeIds(Long id, Long userId) {
+        checkFilmId(id);
+        if (likeMatrix.hasUser(userId)) {
+            return;
+        }
+
+        Integer users = jdbcTemplate.queryForObject(SQL_QUERY_COUNT_USERS, Integer.class, userId);
+        if (users == null || users == 0) {
+            log.debug("{}: " + ILLEGAL_USER_ID_MESSAGE + "{}", IllegalIdException.class.getSimpleName(), userId);
+            throw new IllegalIdException(ILLEGAL_USER_ID_MESSAGE + userId, ILLEGAL_USER_ID_ADVICE);
+        }
+        likeMatrix.addUser(userId);
+    }
+
+    // лайк, который буфер не смог записать в БД и удалил, убираем и из индексов в памяти:
+    private void revertDroppedLike(Long id, Long userId, int delta) {
+        if (delta > 0) {
+            likeMatrix.removeLike(id, userId);
+        } else {
+            likeMatrix.addLike(id, userId);
+        }
+        popularityIndex.addToRate(id, -delta);
+        bumpVersions(List.of(id));
+    }
+
+    private void checkFilmId(Long id) {
+        if (!popularityIndex.contains(id)) {
+            log.debug("{}: " + ILLEGAL_FILM_ID_MESSAGE + "{}", IllegalIdException.class.getSimpleName(), id);
+            throw new IllegalIdException(ILLEGAL_FILM_ID_MESSAGE + id, ILLEGAL_FILM_ID_ADVICE);
+        }
+    }
+
+    // приводим жанры фильма в БД от stored к requested одним batch на удаление и одним на добавление:
+    private void syncFilmGenres(Long filmId, List<Integer> storedGenreIdList, List<Genre> requestedGenres) {
+        Set<Integer> storedGenreIds = new HashSet<>(storedGenreIdList);
+        Set<Integer> requestedGenreIds = new LinkedHashSet<>();
+        if (requestedGenres != null) {
+            for (Genre genre : requestedGenres) {
+                requestedGenreIds.add(genre.getId());
+            }
         }
 
-        return Map.of(
-                "name", film.getName(),
-                "description", film.getDescription(),
-                "release_date", film.getReleaseDate(),
-                "duration", film.getDuration(),
-                "mpa_rating_id", film.getMpa().getId(),
-                "rate", film.getRate());
+        List<Object[]> genresToRemove = new ArrayList<>();
+        for (Integer genreId : storedGenreIds) {
+            if (!requestedGenreIds.contains(genreId)) {
+                genresToRemove.add(new Object[]{filmId, genreId});
+            }
+        }
+        List<Object[]> genresToAdd = new ArrayList<>();
+        for (Integer genreId : requestedGenreIds) {
+            if (!storedGenreIds.contains(genreId)) {
+                genresToAdd.add(new Object[]{filmId, genreId});
+            }
+        }
+
+        if (!genresToRemove.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_QUERY_REMOVE_FILM_GENRE, genresToRemove);
+        }
+        if (!genresToAdd.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_QUERY_ADD_FILM_GENRE, genresToAdd);
+        }
+    }
+
+    // жанры без дубликатов, отсортированные по id (набор создаётся на каждый вызов:
+    // хранилище - синглтон, общий изменяемый набор ломал жанры при параллельной записи):
+    private static List<Genre> distinctGenres(List<Genre> genres) {
+        Set<Genre> distinct = new TreeSet<>(Comparator.comparing(Genre::getId));
+        distinct.addAll(genres);
+        return List.copyOf(distinct);
     }
 
-    private static Map<String, Object> filmLikeToMap(Long id, Long userId) {
-            return Map.of(
-                    "film_id", id,
-                    "user_id", userId);
+    private void putToFacetIndex(Film film) {
+        List<Integer> genreIds = film.getGenres() == null ? List.of() : film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList());
+        facetIndex.put(film.getId(), genreIds, film.getMpa().getId(), film.getReleaseDate(), film.getDuration());
+    }
+
+    private static int rateOf(Film film) {
+        return film.getRate() == null ? 0 : film.getRate();
+    }
+
+    // фильмы по списку id, в том же порядке, что и id:
+    private List<Film> getFilmsByIds(List<Long> filmIds) {
+        if (filmIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (int from = 0; from < filmIds.size(); from += SELECT_BY_IDS_BATCH_SIZE) {
+            List<Long> batch = filmIds.subList(from, Math.min(from + SELECT_BY_IDS_BATCH_SIZE, filmIds.size()));
+            String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+            String sqlQuery = String.format(SQL_QUERY_GET_FILMS_BY_IDS, placeholders);
+            jdbcTemplate.query(sqlQuery, (ResultSetExtractor<Void>) resultSet -> {
+                foldFilms(resultSet, film -> filmsById.put(film.getId(), film));
+                return null;
+            }, batch.toArray());
+        }
+
+        List<Film> films = new ArrayList<>(filmIds.size());
+        for (Long filmId : filmIds) {
+            Film film = filmsById.get(filmId);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+
+        return films;
+    }
 
+    private List<Film> extractFilms(ResultSet resultSet) throws SQLException {
+        List<Film> films = new ArrayList<>();
+        foldFilms(resultSet, films::add);
+        return films;
     }
 
-    private static Map<String, Object> filmGenreToMap(Film film, Genre genre) {
-        return Map.of(
-                "film_id", film.getId(),
-                "genre_id", genre.getId());
+    // собираем фильмы за один проход: строки одного фильма (по строке на жанр) идут в ответе подряд,
+    // готовый фильм передаём в consumer, как только начинаются строки следующего:
+    private void foldFilms(ResultSet resultSet, Consumer<Film> consumer) throws SQLException {
+        Film film = null;
+
+        while (resultSet.next()) {
+            long filmId = resultSet.getLong("film_id");
+            if (film == null || film.getId() != filmId) {
+                if (film != null) {
+                    consumer.accept(film);
+                }
+                film = mapRowToFilm(resultSet);
+            }
+
+            // если есть genres:
+            int genreId = resultSet.getInt("genre_id");
+            if (genreId != 0) {
+                film.getGenres().add(genreStorage.resolveGenre(genreId));
+            }
+        }
+
+        if (film != null) {
+            consumer.accept(film);
+        }
     }
 
-    private Film mapRowToFilm(ResultSet resultSet, int rowNum) throws SQLException {
+    private Film mapRowToFilm(ResultSet resultSet) throws SQLException {
         Film film = Film.builder()
                 .id(resultSet.getLong("film_id"))
                 .name(resultSet.getString("name"))
@@ -237,33 +688,38 @@ public class FilmDbStorage implements FilmStorage {
                 .genres(new ArrayList<>())
                 .build();
 
-        // если есть rate:
-        if (resultSet.getInt("rate") != 0) {
-            film = film.toBuilder()
-                    .rate(resultSet.getInt("rate"))
-                    .build();
+        // если есть rate (с учётом ещё не сброшенных в БД лайков):
+        int rate = resultSet.getInt("rate");
+        if (likeBuffer != null) {
+            rate += likeBuffer.getPendingRateDelta(film.getId());
         }
-
-        // если есть MPA:
-        if (resultSet.getInt("mpa_rating_id") != 0) {
-            film = film.toBuilder()
-                    .mpa(Mpa.builder()
-                            .id(resultSet.getInt("mpa_rating_id"))
-                            .name(resultSet.getString("mpa_name"))
-                            .build())
-                    .build();
+        if (rate != 0) {
+            film.setRate(rate);
         }
 
-        // если есть genres:
-        if (resultSet.getInt("genre_id") != 0) {
-            film = film.toBuilder()
-                    .genres(List.of(Genre.builder()
-                            .id(resultSet.getInt("genre_id"))
-                            .name(resultSet.getString("genre_name"))
-                            .build()))
-                    .build();
+        // если есть MPA:
+        int mpaId = resultSet.getInt("mpa_rating_id");
+        if (mpaId != 0) {
+            film.setMpa(mpaStorage.resolveMpa(mpaId));
         }
 
         return film;
     }
+
+    // копии фильмов со своими списками жанров (жанры и MPA-рейтинг - общие объекты справочников):
+    private static List<Film> copyOf(List<Film> films) {
+        return films.stream()
+                .map(film -> film.toBuilder()
+                        .genres(film.getGenres() == null ? null : new ArrayList<>(film.getGenres()))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    // топ фильмов, прочитанный из БД под меткой tag (наружу отдаются только копии фильмов):
+    @Getter
+    @AllArgsConstructor
+    private static class TopFilms {
+        private final String tag;
+        private final List<Film> films;
+    }
 }
\ No newline at end of file
@@ -3,13 +3,22 @@ package ru.yandex.practicum.filmorate.dao;
 import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Film addFilm(Film film);
 
+    void checkNewFilm(Film film);
+
+    List<Film> addFilms(List<Film> films);
+
     Film updateFilm(Film film);
 
     List<Film> getAllFilms();
 
+    void streamAllFilms(Consumer<Film> consumer);
+
+    List<Film> getFilmsPage(Long afterId, Integer limit);
+
     Film getFilmById(Long filmId);
 }
\ No newline at end of file
@@ -2,11 +2,10 @@ package ru.yandex.practicum.filmorate.dao;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
-import ru.yandex.practicum.filmorate.exception.IllegalIdException;
 import ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException;
+import ru.yandex.practicum.filmorate.index.VersionCounters;
 import ru.yandex.practicum.filmorate.model.Genre;
 
 import java.sql.ResultSet;
@@ -16,41 +15,116 @@ import java.util.List;
 import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.GENRE_INVALID_DATA_BASE_QUERY_ADVICE;
 import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.INVALID_DATA_BASE_QUERY_MESSAGE;
 import static ru.yandex.practicum.filmorate.query.SqlQuery.SQL_QUERY_GET_ALL_GENRES;
-import static ru.yandex.practicum.filmorate.query.SqlQuery.SQL_QUERY_GET_GENRE_BY_ID;
 
+// справочник жанров загружается из БД один раз и дальше отдаётся из памяти (обновление - refresh()):
 @Slf4j
 @Repository
 public class GenreDbStorage {
     private final JdbcTemplate jdbcTemplate;
+    // неизменяемые снимки справочника, индекс массива = id жанра:
+    private volatile Genre[] genresById;
+    private volatile List<Genre> genres;
+    // версия справочника для ETag (увеличивается, только если загруженный из БД справочник изменился):
+    private final VersionCounters versions = new VersionCounters();
 
     @Autowired
     public GenreDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
+        refresh();
+    }
+
+    /*---Перечитать справочник жанров из БД---*/
+    // одновременно идёт только одна загрузка, снимки справочника меняются под той же блокировкой:
+    public synchronized void refresh() {
+        List<Genre> loadedGenres = jdbcTemplate.query(SQL_QUERY_GET_ALL_GENRES, this::mapRowToGenre);
+
+        int maxId = 0;
+        for (Genre genre : loadedGenres) {
+            maxId = Math.max(maxId, genre.getId());
+        }
+        Genre[] loadedGenresById = new Genre[maxId + 1];
+        for (Genre genre : loadedGenres) {
+            loadedGenresById[genre.getId()] = genre;
+        }
+
+        boolean changed = !loadedGenres.equals(genres);
+        genres = List.copyOf(loadedGenres);
+        genresById = loadedGenresById;
+        if (changed) {
+            versions.bumpCollection();
+        }
+        log.debug("Справочник жанров загружен из БД, количество жанров: {}", loadedGenres.size());
     }
 
     /*---Получение жанра по его id---*/
     public Genre getGenreById(Integer genreId) {
-        try {
-            String sqlQuery = SQL_QUERY_GET_GENRE_BY_ID;
-            Genre genre = jdbcTemplate.queryForObject(sqlQuery, this::mapRowToGenre, genreId);
-
-            return genre;
-        } catch (EmptyResultDataAccessException exception) {
-            log.debug("{}: " + INVALID_DATA_BASE_QUERY_MESSAGE + " Размер ответа на запрос: "
-                    + exception.getExpectedSize(), IllegalIdException.class.getSimpleName());
-            throw new InvalidDataBaseQueryException(INVALID_DATA_BASE_QUERY_MESSAGE,
-                    exception.getExpectedSize(),
+        Genre genre = findGenre(genreId);
+
+        if (genre == null) {
+            log.debug("{}: " + INVALID_DATA_BASE_QUERY_MESSAGE + " Жанр с id = {} не найден.",
+                    InvalidDataBaseQueryException.class.getSimpleName(), genreId);
+            throw new InvalidDataBaseQueryException(INVALID_DATA_BASE_QUERY_MESSAGE, 1,
                     GENRE_INVALID_DATA_BASE_QUERY_ADVICE);
         }
+
+        return genre;
     }
 
     /*---Получение списка всех жанров---*/
     public List<Genre> getAllGenres() {
-        String sqlQuery = SQL_QUERY_GET_ALL_GENRES;
-        return jdbcTemplate.query(sqlQuery, this::mapRowToGenre);
+        return genres;
+    }
+
+    /*---Жанр для фильма по id (если жанра нет в справочнике - перечитываем справочник один раз)---*/
+    public Genre resolveGenre(int genreId) {
+        Genre[] snapshot = genresById;
+        Genre genre = findGenre(snapshot, genreId);
+
+        if (genre == null) {
+            genre = refreshAndFindGenre(genreId, snapshot);
+        }
+        if (genre == null) {
+            return Genre.builder()
+                    .id(genreId)
+                    .build();
+        }
+
+        return genre;
+    }
+
+    /*---Версия справочника жанров---*/
+    public long getVersion() {
+        return versions.getCollectionVersion();
+    }
+
+    /*---Метка версии справочника жанров (для ETag)---*/
+    public String getTag() {
+        return VersionCounters.tag(getVersion());
     }
 
     /*-------Вспомогательные методы-------*/
+    private Genre findGenre(Integer genreId) {
+        return findGenre(genresById, genreId);
+    }
+
+    private static Genre findGenre(Genre[] snapshot, Integer genreId) {
+        if (genreId == null || genreId <= 0 || genreId >= snapshot.length) {
+            return null;
+        }
+
+        return snapshot[genreId];
+    }
+
+    // справочник перечитывается, только если с момента промаха его ещё никто не перечитал: одновременные
+    // промахи ждут одну загрузку, а не запускают каждый свою:
+    private synchronized Genre refreshAndFindGenre(int genreId, Genre[] missedSnapshot) {
+        if (genresById == missedSnapshot) {
+            refresh();
+        }
+
+        return findGenre(genreId);
+    }
+
     private Genre mapRowToGenre(ResultSet resultSet, int rowNum) throws SQLException {
         Genre genre = Genre.builder()
                 .id(resultSet.getInt("genre_id"))
@@ -59,4 +133,4 @@ public class GenreDbStorage {
 
         return genre;
     }
-}
\ No newline at end of file
+}
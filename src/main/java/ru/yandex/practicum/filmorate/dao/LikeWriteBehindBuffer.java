@@ -0,0 +1,297 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static ru.yandex.practicum.filmorate.dao.TransactionHooks.afterCommit;
+import static ru.yandex.practicum.filmorate.query.SqlQuery.*;
+
+// буфер отложенной записи лайков: лайки и удаления лайков копятся в памяти (сворачиваются по паре фильм-пользователь)
+// и периодически сбрасываются в БД пачкой, rate каждого фильма меняется одним UPDATE на сброс:
+@Component
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+@Slf4j
+public class LikeWriteBehindBuffer {
+    // наибольшая пауза между попытками сброса, пока БД недоступна:
+    private static final long MAX_BACKOFF_MS = 30_000;
+    // сколько остановка приложения ждёт записи остатка буфера (если хранилище создано не Spring'ом):
+    private static final long DEFAULT_SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // максимум несброшенных пар фильм-пользователь, при переполнении сбрасываем буфер в потоке запроса:
+    private final int capacity;
+    private final long flushIntervalMs;
+    private final ScheduledExecutorService scheduler;
+    private long shutdownTimeoutMs = DEFAULT_SHUTDOWN_TIMEOUT_MS;
+
+    // лайки добавляются параллельно под read lock, write lock нужен только для подмены буферов при сбросе:
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final Object flushLock = new Object();
+    private volatile Map<LikeKey, Integer> pendingLikes = new ConcurrentHashMap<>();
+    private volatile Map<Long, Integer> pendingRates = new ConcurrentHashMap<>();
+    // изменения rate, которые сейчас записываются в БД (убираются сразу после фиксации их транзакции):
+    private volatile Map<Long, Integer> flushingRates = Map.of();
+    // кому сообщить о лайке, который нельзя записать в БД (например, нарушен внешний ключ):
+    private DroppedLikeHandler droppedLikeHandler = (filmId, userId, delta) -> { };
+    // после ошибки БД сброс по расписанию и при переполнении ждёт до retryAtNanos (System.nanoTime()),
+    // пауза удваивается с каждой неудачной попыткой подряд (backoffMs меняется только под flushLock):
+    private long backoffMs;
+    private volatile boolean backingOff;
+    private volatile long retryAtNanos;
+
+    @Autowired
+    public LikeWriteBehindBuffer(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${filmorate.likes.write-behind.capacity}") Integer capacity,
+                                 @Value("${filmorate.likes.write-behind.flush-interval-ms}") Long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.capacity = capacity;
+        this.flushIntervalMs = flushIntervalMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushUnlessBackingOff, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Autowired
+    public void setShutdownTimeoutMs(@Value("${filmorate.likes.write-behind.shutdown-timeout-ms}") Long timeoutMs) {
+        this.shutdownTimeoutMs = timeoutMs;
+    }
+
+    /*---Поставить лайк фильму---*/
+    public void addLike(Long filmId, Long userId) {
+        enqueue(filmId, userId, 1);
+    }
+
+    /*---Удалить лайк---*/
+    public void removeLike(Long filmId, Long userId) {
+        enqueue(filmId, userId, -1);
+    }
+
+    /*---Изменение rate фильма, которое ещё не записано в БД---*/
+    public int getPendingRateDelta(Long filmId) {
+        return pendingRates.getOrDefault(filmId, 0) + flushingRates.getOrDefault(filmId, 0);
+    }
+
+    /*---Обработчик лайков, которые нельзя записать в БД и которые удалены из буфера---*/
+    public void setDroppedLikeHandler(DroppedLikeHandler droppedLikeHandler) {
+        this.droppedLikeHandler = droppedLikeHandler;
+    }
+
+    /*---Сбросить накопленные лайки в БД (сразу, не дожидаясь конца паузы после ошибки БД)---*/
+    public void flush() {
+        synchronized (flushLock) {
+            Map<LikeKey, Integer> likes;
+            Map<Long, Integer> rates;
+            swapLock.writeLock().lock();
+            try {
+                likes = pendingLikes;
+                rates = pendingRates;
+                pendingLikes = new ConcurrentHashMap<>();
+                pendingRates = new ConcurrentHashMap<>();
+                flushingRates = rates;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+
+            if (likes.isEmpty() && rates.isEmpty()) {
+                return;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    write(likes, rates);
+                    afterCommit(() -> flushingRates = Map.of());
+                });
+                log.debug("Сброшено в БД изменений лайков: {}, фильмов: {}", likes.size(), rates.size());
+                resetBackoff();
+            } catch (DataIntegrityViolationException exception) {
+                // одна плохая пара не должна блокировать остальные: записываем пары по одной:
+                log.warn("Пачка лайков нарушает ограничения БД, записываем по одному: {}", likes.size());
+                writeEach(likes);
+            } catch (RuntimeException exception) {
+                putBack(new ArrayList<>(likes.entrySet()), exception);
+            }
+        }
+    }
+
+    // при остановке приложения дожидаемся текущего сброса и записываем остаток буфера. Пока БД недоступна,
+    // сброс повторяется с той же паузой, что и по расписанию, но не дольше shutdownTimeoutMs. Лайки, которые
+    // так и не записались, пишутся в лог ERROR по одному, чтобы их можно было восстановить вручную:
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS);
+            flush();
+            while (!pendingLikes.isEmpty() && deadlineNanos - System.nanoTime() > 0) {
+                long waitNanos = Math.min(retryAtNanos, deadlineNanos) - System.nanoTime();
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+                flush();
+            }
+        } finally {
+            pendingLikes.forEach((key, delta) ->
+                    log.error("Лайк не записан в БД при остановке: id фильма: {}, id пользователя: {}, изменение: {}",
+                            key.getFilmId(), key.getUserId(), delta));
+        }
+    }
+
+    /*------Вспомогательные методы------*/
+    private void enqueue(Long filmId, Long userId, int delta) {
+        int size;
+        swapLock.readLock().lock();
+        try {
+            merge(new LikeKey(filmId, userId), delta);
+            size = pendingLikes.size();
+        } finally {
+            swapLock.readLock().unlock();
+        }
+
+        if (size >= capacity) {
+            flushUnlessBackingOff();
+        }
+    }
+
+    private void flushUnlessBackingOff() {
+        if (backingOff && System.nanoTime() - retryAtNanos < 0) {
+            return;
+        }
+        flush();
+    }
+
+    // после первой ошибки, кроме нарушения ограничений БД (например, БД недоступна), остальные пары тоже
+    // не запишутся: перебор останавливается, оставшиеся пары возвращаются в буфер:
+    private void writeEach(Map<LikeKey, Integer> likes) {
+        Iterator<Map.Entry<LikeKey, Integer>> pairs = likes.entrySet().iterator();
+        while (pairs.hasNext()) {
+            Map.Entry<LikeKey, Integer> pair = pairs.next();
+            try {
+                writeOne(pair.getKey(), pair.getValue());
+            } catch (RuntimeException exception) {
+                List<Map.Entry<LikeKey, Integer>> unwritten = new ArrayList<>();
+                unwritten.add(pair);
+                pairs.forEachRemaining(unwritten::add);
+                putBack(unwritten, exception);
+                return;
+            }
+        }
+        flushingRates = Map.of();
+        resetBackoff();
+    }
+
+    // лайк и удаление того же лайка взаимно уничтожаются, rate фильма меняется на сумму всех изменений:
+    private void merge(LikeKey key, int delta) {
+        pendingLikes.merge(key, delta, LikeWriteBehindBuffer::sumOrNull);
+        pendingRates.merge(key.getFilmId(), delta, LikeWriteBehindBuffer::sumOrNull);
+    }
+
+    // пара записывается своей транзакцией. Нарушение ограничений БД не исправится повтором - пара удаляется
+    // из буфера, остальные ошибки передаются вызывающему:
+    private void writeOne(LikeKey key, Integer delta) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                write(Map.of(key, delta), Map.of(key.getFilmId(), delta));
+                afterCommit(() -> unflush(key, delta));
+            });
+        } catch (DataIntegrityViolationException exception) {
+            log.error("Лайк не записан в БД и удалён из буфера: id фильма: {}, id пользователя: {}, изменение: {}",
+                    key.getFilmId(), key.getUserId(), delta, exception);
+            unflush(key, delta);
+            droppedLikeHandler.onDropped(key.getFilmId(), key.getUserId(), delta);
+        }
+    }
+
+    // незаписанные пары возвращаются в буфер одним шагом (их rate больше не считается записываемым),
+    // следующий сброс по расписанию - после паузы:
+    private void putBack(List<Map.Entry<LikeKey, Integer>> unwritten, RuntimeException exception) {
+        swapLock.writeLock().lock();
+        try {
+            unwritten.forEach(pair -> merge(pair.getKey(), pair.getValue()));
+            flushingRates = Map.of();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        backoffMs = backoffMs == 0 ? flushIntervalMs : Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+        retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+        backingOff = true;
+        log.warn("Лайки не записаны в БД и возвращены в буфер: {}, следующая попытка через {} мс: {}",
+                unwritten.size(), backoffMs, exception.toString());
+    }
+
+    private void resetBackoff() {
+        backoffMs = 0;
+        backingOff = false;
+    }
+
+    // изменение rate пары больше не записывается в БД (записано или вернулось в буфер):
+    private void unflush(LikeKey key, int delta) {
+        flushingRates.merge(key.getFilmId(), -delta, LikeWriteBehindBuffer::sumOrNull);
+    }
+
+    private void write(Map<LikeKey, Integer> likes, Map<Long, Integer> rates) {
+        List<Object[]> likesToAdd = new ArrayList<>();
+        List<Object[]> likesToRemove = new ArrayList<>();
+        likes.forEach((key, delta) -> {
+            if (delta < 0) {
+                likesToRemove.add(new Object[]{key.getFilmId(), key.getUserId()});
+            } else {
+                likesToAdd.add(new Object[]{key.getFilmId(), key.getUserId()});
+            }
+        });
+
+        List<Object[]> rateDeltas = new ArrayList<>(rates.size());
+        rates.forEach((filmId, delta) -> rateDeltas.add(new Object[]{delta, filmId}));
+
+        jdbcTemplate.batchUpdate(SQL_QUERY_REMOVE_LIKE_FROM_FILM, likesToRemove);
+        jdbcTemplate.batchUpdate(SQL_QUERY_MERGE_LIKE_TO_FILM, likesToAdd);
+        jdbcTemplate.batchUpdate(SQL_QUERY_FILM_RATE_ADD, rateDeltas);
+    }
+
+    private static Integer sumOrNull(Integer first, Integer second) {
+        int sum = first + second;
+        return sum == 0 ? null : sum;
+    }
+
+    // лайк (delta = 1) или удаление лайка (delta = -1), которое не попадёт в БД:
+    public interface DroppedLikeHandler {
+        void onDropped(Long filmId, Long userId, int delta);
+    }
+
+    @Getter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class LikeKey {
+        private final Long filmId;
+        private final Long userId;
+    }
+}
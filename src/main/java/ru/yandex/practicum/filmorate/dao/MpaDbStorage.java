@@ -2,11 +2,10 @@ package ru.yandex.practicum.filmorate.dao;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
-import ru.yandex.practicum.filmorate.exception.IllegalIdException;
 import ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException;
+import ru.yandex.practicum.filmorate.index.VersionCounters;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
 import java.sql.ResultSet;
@@ -16,41 +15,116 @@ import java.util.List;
 import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.INVALID_DATA_BASE_QUERY_MESSAGE;
 import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.MPA_INVALID_DATA_BASE_QUERY_ADVICE;
 import static ru.yandex.practicum.filmorate.query.SqlQuery.SQL_QUERY_GET_ALL_MPA;
-import static ru.yandex.practicum.filmorate.query.SqlQuery.SQL_QUERY_GET_MPA_BY_ID;
 
+// справочник MPA-рейтингов загружается из БД один раз и дальше отдаётся из памяти (обновление - refresh()):
 @Repository
 @Slf4j
 public class MpaDbStorage {
     private final JdbcTemplate jdbcTemplate;
+    // неизменяемые снимки справочника, индекс массива = id MPA-рейтинга:
+    private volatile Mpa[] mpaById;
+    private volatile List<Mpa> mpaList;
+    // версия справочника для ETag (увеличивается, только если загруженный из БД справочник изменился):
+    private final VersionCounters versions = new VersionCounters();
 
     @Autowired
     public MpaDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
+        refresh();
+    }
+
+    /*---Перечитать справочник MPA-рейтингов из БД---*/
+    // одновременно идёт только одна загрузка, снимки справочника меняются под той же блокировкой:
+    public synchronized void refresh() {
+        List<Mpa> loadedMpaList = jdbcTemplate.query(SQL_QUERY_GET_ALL_MPA, this::mapRowToMpa);
+
+        int maxId = 0;
+        for (Mpa mpa : loadedMpaList) {
+            maxId = Math.max(maxId, mpa.getId());
+        }
+        Mpa[] loadedMpaById = new Mpa[maxId + 1];
+        for (Mpa mpa : loadedMpaList) {
+            loadedMpaById[mpa.getId()] = mpa;
+        }
+
+        boolean changed = !loadedMpaList.equals(mpaList);
+        mpaList = List.copyOf(loadedMpaList);
+        mpaById = loadedMpaById;
+        if (changed) {
+            versions.bumpCollection();
+        }
+        log.debug("Справочник MPA-рейтингов загружен из БД, количество рейтингов: {}", loadedMpaList.size());
     }
 
     /*---Получение MPA-рейтинга по его id---*/
     public Mpa getMpaById(Integer mpaId) {
-        try {
-            String sqlQuery = SQL_QUERY_GET_MPA_BY_ID;
-            Mpa mpa = jdbcTemplate.queryForObject(sqlQuery, this::mapRowToMpa, mpaId);
-
-            return mpa;
-        } catch (EmptyResultDataAccessException exception) {
-            log.debug("{}: " + INVALID_DATA_BASE_QUERY_MESSAGE + " Размер ответа на запрос: "
-                    + exception.getExpectedSize(), IllegalIdException.class.getSimpleName());
-            throw new InvalidDataBaseQueryException(INVALID_DATA_BASE_QUERY_MESSAGE,
-                    exception.getExpectedSize(),
+        Mpa mpa = findMpa(mpaId);
+
+        if (mpa == null) {
+            log.debug("{}: " + INVALID_DATA_BASE_QUERY_MESSAGE + " MPA-рейтинг с id = {} не найден.",
+                    InvalidDataBaseQueryException.class.getSimpleName(), mpaId);
+            throw new InvalidDataBaseQueryException(INVALID_DATA_BASE_QUERY_MESSAGE, 1,
                     MPA_INVALID_DATA_BASE_QUERY_ADVICE);
         }
+
+        return mpa;
     }
 
     /*---Получение списка всех MPA-рейтингов---*/
     public List<Mpa> getAllMpa() {
-        String sqlQuery = SQL_QUERY_GET_ALL_MPA;
-        return jdbcTemplate.query(sqlQuery, this::mapRowToMpa);
+        return mpaList;
+    }
+
+    /*---MPA-рейтинг для фильма по id (если рейтинга нет в справочнике - перечитываем справочник один раз)---*/
+    public Mpa resolveMpa(int mpaId) {
+        Mpa[] snapshot = mpaById;
+        Mpa mpa = findMpa(snapshot, mpaId);
+
+        if (mpa == null) {
+            mpa = refreshAndFindMpa(mpaId, snapshot);
+        }
+        if (mpa == null) {
+            return Mpa.builder()
+                    .id(mpaId)
+                    .build();
+        }
+
+        return mpa;
+    }
+
+    /*---Версия справочника MPA-рейтингов---*/
+    public long getVersion() {
+        return versions.getCollectionVersion();
+    }
+
+    /*---Метка версии справочника MPA-рейтингов (для ETag)---*/
+    public String getTag() {
+        return VersionCounters.tag(getVersion());
     }
 
     /*-------Вспомогательные методы-------*/
+    private Mpa findMpa(Integer mpaId) {
+        return findMpa(mpaById, mpaId);
+    }
+
+    private static Mpa findMpa(Mpa[] snapshot, Integer mpaId) {
+        if (mpaId == null || mpaId <= 0 || mpaId >= snapshot.length) {
+            return null;
+        }
+
+        return snapshot[mpaId];
+    }
+
+    // справочник перечитывается, только если с момента промаха его ещё никто не перечитал: одновременные
+    // промахи ждут одну загрузку, а не запускают каждый свою:
+    private synchronized Mpa refreshAndFindMpa(int mpaId, Mpa[] missedSnapshot) {
+        if (mpaById == missedSnapshot) {
+            refresh();
+        }
+
+        return findMpa(mpaId);
+    }
+
     private Mpa mapRowToMpa(ResultSet resultSet, int rowNum) throws SQLException {
         Mpa mpa = Mpa.builder()
                 .id(resultSet.getInt("mpa_rating_id"))
@@ -59,4 +133,4 @@ public class MpaDbStorage {
 
         return mpa;
     }
-}
\ No newline at end of file
+}
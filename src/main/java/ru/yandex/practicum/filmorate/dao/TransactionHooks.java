@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// индексы в памяти меняются только после фиксации транзакции: при откате в них не остаётся записей,
+// которых нет в БД. Вне транзакции (автокоммит каждого запроса) изменение применяется сразу:
+final class TransactionHooks {
+    private TransactionHooks() {
+    }
+
+    /*---Выполнить action после фиксации текущей транзакции---*/
+    static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -2,22 +2,36 @@ package ru.yandex.practicum.filmorate.dao;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.AlreadyExistException;
 import ru.yandex.practicum.filmorate.exception.IllegalIdException;
 import ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException;
+import ru.yandex.practicum.filmorate.index.FriendGraphIndex;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
 
-import static ru.yandex.practicum.filmorate.exception.AlreadyExistException.USER_ALREADY_EXIST_ADVICE;
-import static ru.yandex.practicum.filmorate.exception.AlreadyExistException.USER_ALREADY_EXIST_MESSAGE;
+import static ru.yandex.practicum.filmorate.dao.TransactionHooks.afterCommit;
+import static ru.yandex.practicum.filmorate.exception.AlreadyExistException.*;
 import static ru.yandex.practicum.filmorate.exception.IllegalIdException.*;
 import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.INVALID_DATA_BASE_QUERY_MESSAGE;
 import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.USER_INVALID_DATA_BASE_QUERY_ADVICE;
@@ -28,12 +42,43 @@ import static ru.yandex.practicum.filmorate.query.SqlQuery.*;
 public class UserDbStorage implements UserStorage {
     private static final String ADD_TO_FRIEND_MESSAGE = "Пользователи успешно добавлены в друзья. Их id: ";
     private static final String REMOVE_FROM_FRIEND_MESSAGE = "Пользователи успешно удалены из друзей. Их id: ";
+    // сколько строк драйвер забирает из БД за раз при потоковой выгрузке:
+    private static final int STREAM_FETCH_SIZE = 500;
+    // сколько пользователей отправляем в БД одним JDBC batch при пакетном добавлении:
+    private static final int INSERT_BATCH_SIZE = 1000;
+    // сколько id передаём в один запрос WHERE user_id IN (...):
+    private static final int SELECT_BY_IDS_BATCH_SIZE = 1000;
+    // ограничения обхода друзей друзей для рекомендаций (по умолчанию, если хранилище создано не Spring'ом):
+    private static final int DEFAULT_SUGGESTIONS_MAX_FRIENDS = 500;
+    private static final int DEFAULT_SUGGESTIONS_MAX_FRIENDS_OF_FRIEND = 100;
+    // количество блокировок для изменения дружбы (пользователь берёт блокировку id % FRIENDSHIP_LOCK_STRIPES):
+    private static final int FRIENDSHIP_LOCK_STRIPES = 64;
 
     private final JdbcTemplate jdbcTemplate;
+    // друзья пользователей: списки друзей и общие друзья считаются в памяти, из БД читаются только сами User:
+    private final FriendGraphIndex friendGraph = new FriendGraphIndex();
+    // запись дружбы в БД и в индекс друзей выполняется под блокировкой пользователя, чтобы одновременные
+    // добавление и удаление одной связи применялись к индексу в том же порядке, что и к БД:
+    private final Object[] friendshipLocks = new Object[FRIENDSHIP_LOCK_STRIPES];
+    private int suggestionsMaxFriends = DEFAULT_SUGGESTIONS_MAX_FRIENDS;
+    private int suggestionsMaxFriendsOfFriend = DEFAULT_SUGGESTIONS_MAX_FRIENDS_OF_FRIEND;
 
     @Autowired
     public UserDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
+        Arrays.setAll(friendshipLocks, i -> new Object());
+
+        // заполнили индекс друзей текущими связями дружбы:
+        jdbcTemplate.query(SQL_QUERY_GET_ALL_FRIENDSHIPS, (RowCallbackHandler) resultSet ->
+                friendGraph.addFriend(resultSet.getLong("user_id"), resultSet.getLong("friend_id")));
+    }
+
+    @Autowired
+    public void setSuggestionsLimits(@Value("${filmorate.friends.suggestions.max-friends}") Integer maxFriends,
+                                     @Value("${filmorate.friends.suggestions.max-friends-of-friend}")
+                                     Integer maxFriendsOfFriend) {
+        this.suggestionsMaxFriends = maxFriends;
+        this.suggestionsMaxFriendsOfFriend = maxFriendsOfFriend;
     }
 
     /*---Добавляем пользователя в БД---*/
@@ -42,25 +87,69 @@ public class UserDbStorage implements UserStorage {
         final User newUser = checkName(user);
 
         if (newUser.getId() == null) {
-            SimpleJdbcInsert insertUser = new SimpleJdbcInsert(jdbcTemplate)
-                    .withTableName("users")
-                    .usingGeneratedKeyColumns("user_id");
-            Long userId = insertUser.executeAndReturnKey(userToMap(newUser)).longValue();
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SQL_QUERY_ADD_USER,
+                        new String[]{"user_id"});
+                setUserParameters(statement, newUser);
+                return statement;
+            }, keyHolder);
+            Long userId = Objects.requireNonNull(keyHolder.getKey()).longValue();
             newUser.setId(userId);
         } else if (getUserById(newUser.getId()) != null) {
-            log.debug("{}: " + USER_ALREADY_EXIST_MESSAGE + newUser.getId(),
-                    AlreadyExistException.class.getSimpleName());
+            log.debug("{}: " + USER_ALREADY_EXIST_MESSAGE + "{}",
+                    AlreadyExistException.class.getSimpleName(), newUser.getId());
             throw new AlreadyExistException(USER_ALREADY_EXIST_MESSAGE + newUser.getId(), USER_ALREADY_EXIST_ADVICE);
         } else if (newUser.getId() != null) {
-            log.debug("{}: " + ILLEGAL_NEW_USER_ID_MESSAGE + newUser.getId(),
-                    IllegalIdException.class.getSimpleName());
+            log.debug("{}: " + ILLEGAL_NEW_USER_ID_MESSAGE + "{}",
+                    IllegalIdException.class.getSimpleName(), newUser.getId());
             throw new IllegalIdException(ILLEGAL_NEW_USER_ID_MESSAGE + newUser.getId(), ILLEGAL_NEW_USER_ID_ADVICE);
         }
 
-        log.debug("Добавлен новый пользователь: " + newUser.getLogin() + ", с id = " + newUser.getId());
+        log.debug("Добавлен новый пользователь: {}, с id = {}", newUser.getLogin(), newUser.getId());
         return newUser;
     }
 
+    /*---Проверяем нового пользователя перед пакетным добавлением---*/
+    @Override
+    public void checkNewUser(User user) {
+        if (user.getId() != null) {
+            log.debug("{}: " + ILLEGAL_NEW_USER_ID_MESSAGE + "{}",
+                    IllegalIdException.class.getSimpleName(), user.getId());
+            throw new IllegalIdException(ILLEGAL_NEW_USER_ID_MESSAGE + user.getId(), ILLEGAL_NEW_USER_ID_ADVICE);
+        }
+    }
+
+    /*---Добавляем список новых пользователей в БД (JDBC batch, id - в порядке списка)---*/
+    @Override
+    public List<User> addUsers(List<User> users) {
+        for (int from = 0; from < users.size(); from += INSERT_BATCH_SIZE) {
+            List<User> batch = users.subList(from, Math.min(from + INSERT_BATCH_SIZE, users.size()));
+
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(SQL_QUERY_ADD_USER,
+                        new String[]{"user_id"})) {
+                    for (User user : batch) {
+                        setUserParameters(statement, user);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+
+                    try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                        for (User user : batch) {
+                            generatedKeys.next();
+                            user.setId(generatedKeys.getLong(1));
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+
+        log.debug("Добавлено новых пользователей: {}", users.size());
+        return users;
+    }
+
     /*---Обновляем данные User в БД---*/
     @Override
     public User updateUser(User user) {
@@ -75,13 +164,13 @@ public class UserDbStorage implements UserStorage {
                         newUser.getBirthday(),
                         newUser.getId());
 
-                log.debug("Обновлена информация о пользователе: " + newUser.getLogin() + ", с id = " + newUser.getId());
+                log.debug("Обновлена информация о пользователе: {}, с id = {}", newUser.getLogin(), newUser.getId());
             } else if (newUser.getId() == null) {
                 addUser(newUser);
-                log.debug("Добавлен новый пользователь: " + newUser.getLogin() + ", с id = " + newUser.getId());
+                log.debug("Добавлен новый пользователь: {}, с id = {}", newUser.getLogin(), newUser.getId());
             } else {
-                log.debug("{}: " + ILLEGAL_USER_ID_MESSAGE + newUser.getId(),
-                        IllegalIdException.class.getSimpleName());
+                log.debug("{}: " + ILLEGAL_USER_ID_MESSAGE + "{}",
+                        IllegalIdException.class.getSimpleName(), newUser.getId());
                 throw new IllegalIdException(ILLEGAL_USER_ID_MESSAGE + newUser.getId(), ILLEGAL_USER_ID_ADVICE);
             }
 
@@ -95,6 +184,23 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sqlQuery, this::mapRowToUser);
     }
 
+    /*---Выгрузить всех User потоком, не собирая список в памяти---*/
+    @Override
+    public void streamAllUsers(Consumer<User> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SQL_QUERY_GET_ALL_USERS);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> consumer.accept(mapRowToUser(resultSet, resultSet.getRow())));
+    }
+
+    /*---Получить страницу User с id > afterId (keyset пагинация)---*/
+    @Override
+    public List<User> getUsersPage(Long afterId, Integer limit) {
+        String sqlQuery = SQL_QUERY_GET_USERS_PAGE;
+        return jdbcTemplate.query(sqlQuery, this::mapRowToUser, afterId, limit);
+    }
+
     /*---Получить User по id---*/
     @Override
     public User getUserById(Long userId) {
@@ -104,8 +210,8 @@ public class UserDbStorage implements UserStorage {
 
             return user;
         } catch (EmptyResultDataAccessException exception) {
-            log.debug("{}: " + INVALID_DATA_BASE_QUERY_MESSAGE + " Размер ответа на запрос: "
-                    + exception.getExpectedSize(), IllegalIdException.class.getSimpleName());
+            log.debug("{}: " + INVALID_DATA_BASE_QUERY_MESSAGE + " Размер ответа на запрос: {}",
+                    IllegalIdException.class.getSimpleName(), exception.getExpectedSize());
             throw new InvalidDataBaseQueryException(INVALID_DATA_BASE_QUERY_MESSAGE,
                     exception.getExpectedSize(),
                     USER_INVALID_DATA_BASE_QUERY_ADVICE);
@@ -113,11 +219,22 @@ public class UserDbStorage implements UserStorage {
     }
 
     /*---Добавляем User в друзья---*/
+    // добавление идемпотентно, как и лайк: есть ли уже друг, знает граф друзей, повторное добавление ничего
+    // не меняет (без запросов к БД). Дружбу, записанную параллельным запросом, но ещё не попавшую в граф,
+    // отклоняет уникальный индекс user_friendship:
     public String addUserToFriends(Long id, Long friendId) {
-        SimpleJdbcInsert insertFriend = new SimpleJdbcInsert(jdbcTemplate)
-                .withTableName("user_friendship")
-                .usingGeneratedKeyColumns("user_friendship_id");
-        insertFriend.execute(userFriendsipToMap(id, friendId));
+        if (friendGraph.hasFriend(id, friendId)) {
+            return ADD_TO_FRIEND_MESSAGE + id + ", " + friendId;
+        }
+
+        synchronized (friendshipLock(id)) {
+            try {
+                jdbcTemplate.update(SQL_QUERY_ADD_USER_TO_FRIENDS, id, friendId);
+            } catch (DuplicateKeyException exception) {
+                return ADD_TO_FRIEND_MESSAGE + id + ", " + friendId;
+            }
+            afterCommit(() -> friendGraph.addFriend(id, friendId));
+        }
 
         return ADD_TO_FRIEND_MESSAGE + id + ", " + friendId;
     }
@@ -125,30 +242,71 @@ public class UserDbStorage implements UserStorage {
     /*---Удаляем User из друзей---*/
     public String removeUserFromFriends(Long id, Long friendId) {
         String sqlQuery = SQL_QUERY_REMOVE_USER_FROM_FRIENDS;
-        jdbcTemplate.update(sqlQuery, id, friendId);
+        synchronized (friendshipLock(id)) {
+            jdbcTemplate.update(sqlQuery, id, friendId);
+            afterCommit(() -> friendGraph.removeFriend(id, friendId));
+        }
 
         return REMOVE_FROM_FRIEND_MESSAGE + id + ", " + friendId;
     }
 
     /*---Получить список друзей User---*/
     public List<User> getAllFriendsList(Long id) {
-        String sqlQuery = SQL_QUERY_GET_ALL_FRIEND_LIST;
-        return jdbcTemplate.query(sqlQuery, this::mapRowToUser, id);
+        return getUsersByIds(friendGraph.getFriendIds(id));
     }
 
     /*---Получить список общих друзей для двух User---*/
     public List<User> getCommonFriends(Long id, Long otherId) {
-        String sqlQuery = SQL_QUERY_GET_COMMON_FRIENDS;
-        return jdbcTemplate.query(sqlQuery, this::mapRowToUser, id, otherId);
+        return getUsersByIds(friendGraph.getCommonFriendIds(id, otherId));
+    }
+
+    /*---Получить рекомендации друзей для User: друзья друзей по числу общих друзей---*/
+    public List<User> getSuggestedFriends(Long id, Integer limit) {
+        return getUsersByIds(friendGraph.getSuggestedFriendIds(id, limit,
+                suggestionsMaxFriends, suggestionsMaxFriendsOfFriend));
     }
 
     /*-----Вспомогательные методы-----*/
-    private static Map<String, Object> userToMap(User user) {
-        return Map.of(
-                "email", user.getEmail(),
-                "login", user.getLogin(),
-                "name", user.getName(),
-                "birthday", user.getBirthday());
+    private Object friendshipLock(long userId) {
+        return friendshipLocks[Math.floorMod(userId, FRIENDSHIP_LOCK_STRIPES)];
+    }
+
+    // пользователи по списку id, в том же порядке, что и id (пустой список - без запроса к БД).
+    // Друзей у пользователя может быть сколько угодно, поэтому id передаём частями по SELECT_BY_IDS_BATCH_SIZE:
+    private List<User> getUsersByIds(long[] userIds) {
+        if (userIds.length == 0) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, User> usersById = new HashMap<>();
+        for (int from = 0; from < userIds.length; from += SELECT_BY_IDS_BATCH_SIZE) {
+            Object[] batch = Arrays.stream(userIds, from, Math.min(from + SELECT_BY_IDS_BATCH_SIZE, userIds.length))
+                    .boxed()
+                    .toArray();
+            String placeholders = String.join(", ", Collections.nCopies(batch.length, "?"));
+            String sqlQuery = String.format(SQL_QUERY_GET_USERS_BY_IDS, placeholders);
+            jdbcTemplate.query(sqlQuery, (RowCallbackHandler) resultSet -> {
+                User user = mapRowToUser(resultSet, 0);
+                usersById.put(user.getId(), user);
+            }, batch);
+        }
+
+        List<User> users = new ArrayList<>(userIds.length);
+        for (long userId : userIds) {
+            User user = usersById.get(userId);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+
+        return users;
+    }
+
+    private static void setUserParameters(PreparedStatement statement, User user) throws SQLException {
+        statement.setString(1, user.getEmail());
+        statement.setString(2, user.getLogin());
+        statement.setString(3, user.getName());
+        statement.setObject(4, user.getBirthday(), Types.DATE);
     }
 
     private User mapRowToUser(ResultSet resultSet, int rowNum) throws SQLException {
@@ -161,12 +319,6 @@ public class UserDbStorage implements UserStorage {
                 .build();
     }
 
-    private static Map<String, Object> userFriendsipToMap(Long id, Long friendId) {
-        return Map.of(
-                "user_id", id,
-                "friend_id", friendId);
-    }
-
     @Override
     // проверяем имя пользователя, если пустое, то name = login:
     public User checkName(User user) {
@@ -174,7 +326,7 @@ public class UserDbStorage implements UserStorage {
             final User newUser = user.toBuilder()
                     .name(user.getLogin())
                     .build();
-            log.debug("User.name = " + user.getName() + ", заменяем User.name на User.login = " + user.getLogin());
+            log.debug("User.name = {}, заменяем User.name на User.login = {}", user.getName(), user.getLogin());
             return newUser;
         }
 
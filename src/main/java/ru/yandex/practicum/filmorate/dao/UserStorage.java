@@ -3,14 +3,23 @@ package ru.yandex.practicum.filmorate.dao;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     User addUser(User user);
 
+    void checkNewUser(User user);
+
+    List<User> addUsers(List<User> users);
+
     User updateUser(User user);
 
     List<User> getAllUsers();
 
+    void streamAllUsers(Consumer<User> consumer);
+
+    List<User> getUsersPage(Long afterId, Integer limit);
+
     User checkName(User user);
 
     User getUserById(Long userId);
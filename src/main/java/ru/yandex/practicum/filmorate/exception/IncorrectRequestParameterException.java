@@ -5,6 +5,33 @@ public class IncorrectRequestParameterException extends RuntimeException {
     public static final String REQUEST_PARAM_COUNT = "count";
     public static final String REQUEST_PARAMETER_COUNT_ADVICE = "Проверьте значение параметра count, "
             + "оно должно быть положительным, целым числом";
+    public static final String REQUEST_PARAM_AFTER = "after";
+    public static final String REQUEST_PARAMETER_AFTER_ADVICE = "Проверьте значение параметра after, "
+            + "оно должно быть неотрицательным, целым числом (id последнего элемента предыдущей страницы)";
+    public static final String REQUEST_PARAM_LIMIT = "limit";
+    public static final String REQUEST_PARAMETER_LIMIT_ADVICE = "Проверьте значение параметра limit, "
+            + "оно должно быть положительным, целым числом и не больше максимального размера страницы: ";
+    public static final String REQUEST_PARAM_QUERY = "q";
+    public static final String REQUEST_PARAMETER_QUERY_ADVICE = "Проверьте значение параметра q, "
+            + "в нём должна быть хотя бы одна буква или цифра";
+    public static final String REQUEST_PARAM_BY = "by";
+    public static final String REQUEST_PARAMETER_BY_ADVICE = "Проверьте значение параметра by, "
+            + "допустимые значения через запятую: title, description";
+    public static final String REQUEST_PARAM_SORT = "sort";
+    public static final String REQUEST_PARAMETER_SORT_ADVICE = "Проверьте значение параметра sort, "
+            + "допустимые значения: relevance, popularity";
+    public static final String REQUEST_PARAM_GENRE_ID = "genreId";
+    public static final String REQUEST_PARAMETER_GENRE_ID_ADVICE = "Проверьте значения параметра genreId, "
+            + "они должны быть положительными, целыми числами";
+    public static final String REQUEST_PARAM_MPA_ID = "mpaId";
+    public static final String REQUEST_PARAMETER_MPA_ID_ADVICE = "Проверьте значение параметра mpaId, "
+            + "оно должно быть положительным, целым числом";
+    public static final String REQUEST_PARAM_YEAR = "yearFrom, yearTo";
+    public static final String REQUEST_PARAMETER_YEAR_ADVICE = "Проверьте значения параметров yearFrom и yearTo, "
+            + "они должны быть положительными, целыми числами, yearFrom не больше yearTo";
+    public static final String REQUEST_PARAM_DURATION_MAX = "durationMax";
+    public static final String REQUEST_PARAMETER_DURATION_MAX_ADVICE = "Проверьте значение параметра durationMax, "
+            + "оно должно быть положительным, целым числом (минуты)";
 
     // совет пользователю при возникновении исключения:
     private final String adviceToUser;
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+    public static final String STORAGE_POOL_SATURATED_MESSAGE = "Сервер перегружен, очередь запросов к базе данных "
+            + "заполнена. Пул: ";
+    public static final String STORAGE_POOL_SATURATED_ADVICE = "Повторите запрос позже.";
+
+    // совет пользователю при возникновении исключения:
+    private final String adviceToUser;
+
+    public ServiceUnavailableException(String message, String adviceToUser) {
+        super(message);
+        this.adviceToUser = adviceToUser;
+    }
+
+    public String getAdviceToUser() {
+        return adviceToUser;
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.executor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.jdbc.ReadYourWrites;
+import ru.yandex.practicum.filmorate.jdbc.SqlStatistics;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static ru.yandex.practicum.filmorate.exception.ServiceUnavailableException.*;
+
+// ограниченные пулы потоков для работы с БД (bulkhead): тяжёлые запросы списков и дешёвые запросы по id
+// выполняются в разных пулах, поэтому медленный GET /films не занимает потоки, нужные GET /films/{id}.
+// Если очередь пула заполнена, запрос сразу отклоняется (503), а не ждёт освобождения потока:
+@Component
+@Slf4j
+public class StorageExecutors implements MeterBinder {
+    public static final String HEAVY_POOL_NAME = "storage-heavy";
+    public static final String POINT_POOL_NAME = "storage-point";
+    public static final String REJECTED_COUNTER_NAME = "filmorate.storage.executor.rejected";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    // при выключенном асинхронном режиме пулов нет, задачи выполняются в потоке запроса:
+    private final BoundedPool heavyPool;
+    private final BoundedPool pointPool;
+
+    @Autowired
+    public StorageExecutors(@Value("${filmorate.async.enabled}") Boolean enabled,
+                            @Value("${filmorate.async.heavy.pool-size}") Integer heavyPoolSize,
+                            @Value("${filmorate.async.heavy.queue-capacity}") Integer heavyQueueCapacity,
+                            @Value("${filmorate.async.point.pool-size}") Integer pointPoolSize,
+                            @Value("${filmorate.async.point.queue-capacity}") Integer pointQueueCapacity) {
+        if (enabled) {
+            this.heavyPool = new BoundedPool(HEAVY_POOL_NAME, heavyPoolSize, heavyQueueCapacity);
+            this.pointPool = new BoundedPool(POINT_POOL_NAME, pointPoolSize, pointQueueCapacity);
+        } else {
+            this.heavyPool = null;
+            this.pointPool = null;
+        }
+    }
+
+    /*---Выполнить тяжёлый запрос (списки, пакетная запись)---*/
+    public <T> CompletableFuture<T> supplyHeavy(Supplier<T> task) {
+        return supply(heavyPool, task);
+    }
+
+    /*---Выполнить дешёвый запрос (по id, одна запись)---*/
+    public <T> CompletableFuture<T> supplyPoint(Supplier<T> task) {
+        return supply(pointPool, task);
+    }
+
+    // глубина очереди, активные потоки и количество отклонённых задач каждого пула:
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (BoundedPool pool : new BoundedPool[]{heavyPool, pointPool}) {
+            if (pool == null) {
+                continue;
+            }
+            new ExecutorServiceMetrics(pool.executor, pool.name, Tags.empty()).bindTo(registry);
+            FunctionCounter.builder(REJECTED_COUNTER_NAME, pool.rejected, AtomicLong::get)
+                    .tag("name", pool.name)
+                    .description("Задачи, отклонённые из-за заполненной очереди пула")
+                    .register(registry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (BoundedPool pool : new BoundedPool[]{heavyPool, pointPool}) {
+            if (pool != null) {
+                pool.executor.shutdown();
+                pool.executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /*------Вспомогательные методы------*/
+    private <T> CompletableFuture<T> supply(BoundedPool pool, Supplier<T> task) {
+        Supplier<T> boundTask = withRequestContext(task);
+        if (pool == null) {
+            return CompletableFuture.supplyAsync(boundTask, Runnable::run);
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(boundTask, pool.executor);
+        } catch (RejectedExecutionException exception) {
+            pool.rejected.incrementAndGet();
+            log.debug("{}: " + STORAGE_POOL_SATURATED_MESSAGE + "{}",
+                    ServiceUnavailableException.class.getSimpleName(), pool.name);
+            throw new ServiceUnavailableException(STORAGE_POOL_SATURATED_MESSAGE + pool.name,
+                    STORAGE_POOL_SATURATED_ADVICE);
+        }
+    }
+
+    // статистика SQL запросов и ReadYourWrites привязаны к потоку запроса, переносим их в поток пула на время задачи:
+    private static <T> Supplier<T> withRequestContext(Supplier<T> task) {
+        SqlStatistics statistics = SqlStatistics.current();
+        ReadYourWrites readYourWrites = ReadYourWrites.current();
+        return () -> {
+            SqlStatistics previousStatistics = SqlStatistics.bind(statistics);
+            ReadYourWrites previousReadYourWrites = ReadYourWrites.bind(readYourWrites);
+            try {
+                return task.get();
+            } finally {
+                ReadYourWrites.bind(previousReadYourWrites);
+                SqlStatistics.bind(previousStatistics);
+            }
+        };
+    }
+
+    // пул с фиксированным количеством потоков и ограниченной очередью, при заполнении - AbortPolicy:
+    private static final class BoundedPool {
+        private final String name;
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong rejected = new AtomicLong();
+
+        private BoundedPool(String name, int poolSize, int queueCapacity) {
+            this.name = name;
+            this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory(name + "-"),
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+}
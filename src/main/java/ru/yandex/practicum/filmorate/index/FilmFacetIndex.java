@@ -0,0 +1,211 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// фасетный фильтр фильмов в памяти: сжатые битовые карты (RoaringBitmap) id фильмов для каждого жанра,
+// каждого MPA-рейтинга и каждого года релиза (годы - в отсортированной карте, диапазон лет - её подкарта).
+// Продолжительность, жанры и MPA-рейтинг фильма лежат в массивах по индексу film_id (id фильмов - INTEGER):
+// по ним за один проход по найденным фильмам проверяется durationMax и считаются фасеты:
+public class FilmFacetIndex {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int[] NO_GENRES = new int[0];
+    // фильм без продолжительности не проходит фильтр durationMax:
+    private static final int UNKNOWN_DURATION = Integer.MAX_VALUE;
+
+    // изменения индекса короткие (O(число жанров фильма)), поэтому читатели и писатели делят одну блокировку:
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RoaringBitmap films = new RoaringBitmap();
+    private final Map<Integer, RoaringBitmap> filmsByGenre = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> filmsByMpa = new HashMap<>();
+    private final NavigableMap<Integer, RoaringBitmap> filmsByReleaseYear = new TreeMap<>();
+    private int[][] genresByFilm = new int[INITIAL_CAPACITY][];
+    private int[] mpaByFilm = new int[INITIAL_CAPACITY];
+    private int[] durationByFilm = new int[INITIAL_CAPACITY];
+    // год релиза или null, если дата релиза не указана:
+    private Integer[] releaseYearByFilm = new Integer[INITIAL_CAPACITY];
+
+    /*---Добавить фильм или заменить его жанры, MPA-рейтинг, дату релиза и продолжительность---*/
+    public void put(long filmId, Collection<Integer> genreIds, int mpaId, LocalDate releaseDate, Integer duration) {
+        int film = checkId(filmId);
+        int[] genres = genreIds == null ? NO_GENRES : genreIds.stream().mapToInt(Integer::intValue).distinct().toArray();
+        Integer releaseYear = releaseDate == null ? null : releaseDate.getYear();
+
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(film);
+            if (films.contains(film)) {
+                removeFromBitmaps(film);
+            }
+
+            films.add(film);
+            for (int genre : genres) {
+                filmsByGenre.computeIfAbsent(genre, key -> new RoaringBitmap()).add(film);
+            }
+            filmsByMpa.computeIfAbsent(mpaId, key -> new RoaringBitmap()).add(film);
+            if (releaseYear != null) {
+                filmsByReleaseYear.computeIfAbsent(releaseYear, key -> new RoaringBitmap()).add(film);
+            }
+            genresByFilm[film] = genres;
+            mpaByFilm[film] = mpaId;
+            durationByFilm[film] = duration == null ? UNKNOWN_DURATION : duration;
+            releaseYearByFilm[film] = releaseYear;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*---Найти фильмы по фильтрам и посчитать фасеты по жанрам и MPA-рейтингам---*/
+    // фильтр null (или пустой genreIds) не применяется, из нескольких жанров фильму достаточно любого.
+    // В ответе - до limit id фильмов больше afterId по возрастанию id и число всех найденных фильмов
+    // каждого жанра и MPA-рейтинга (жанры и рейтинги без фильмов в ответ не попадают):
+    public Result filter(Set<Integer> genreIds, Integer mpaId, Integer yearFrom, Integer yearTo, Integer durationMax,
+                         long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matches = films.clone();
+            if (genreIds != null && !genreIds.isEmpty()) {
+                matches.and(FastAggregation.or(bitmapsOf(filmsByGenre, genreIds)));
+            }
+            if (mpaId != null) {
+                matches.and(filmsByMpa.getOrDefault(mpaId, new RoaringBitmap()));
+            }
+            if (yearFrom != null || yearTo != null) {
+                int from = yearFrom == null ? Integer.MIN_VALUE : yearFrom;
+                int to = yearTo == null ? Integer.MAX_VALUE : yearTo;
+                Collection<RoaringBitmap> years = from > to
+                        ? Collections.emptyList()
+                        : filmsByReleaseYear.subMap(from, true, to, true).values();
+                matches.and(FastAggregation.or(years.iterator()));
+            }
+
+            // один проход: durationMax, фасеты (счётчики - массивы по id жанра и рейтинга) и страница id:
+            int[] genreCounts = new int[maxKey(filmsByGenre) + 1];
+            int[] mpaCounts = new int[maxKey(filmsByMpa) + 1];
+            long[] page = new long[(int) Math.min(limit, matches.getLongCardinality())];
+            int pageSize = 0;
+            int count = 0;
+            IntIterator iterator = matches.getIntIterator();
+            while (iterator.hasNext()) {
+                int film = iterator.next();
+                if (durationMax != null && durationByFilm[film] > durationMax) {
+                    continue;
+                }
+
+                count++;
+                for (int genre : genresByFilm[film]) {
+                    genreCounts[genre]++;
+                }
+                mpaCounts[mpaByFilm[film]]++;
+                if (film > afterId && pageSize < page.length) {
+                    page[pageSize++] = film;
+                }
+            }
+
+            return new Result(Arrays.copyOf(page, pageSize), count, nonZeroCounts(genreCounts),
+                    nonZeroCounts(mpaCounts));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*-------Вспомогательные методы-------*/
+    private static int maxKey(Map<Integer, RoaringBitmap> bitmaps) {
+        return bitmaps.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    private static Map<Integer, Integer> nonZeroCounts(int[] counts) {
+        Map<Integer, Integer> nonZeroCounts = new TreeMap<>();
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] > 0) {
+                nonZeroCounts.put(id, counts[id]);
+            }
+        }
+
+        return nonZeroCounts;
+    }
+
+    private static RoaringBitmap[] bitmapsOf(Map<Integer, RoaringBitmap> bitmaps, Set<Integer> keys) {
+        return keys.stream()
+                .map(bitmaps::get)
+                .filter(Objects::nonNull)
+                .toArray(RoaringBitmap[]::new);
+    }
+
+    // убираем фильм из карт старых жанров, рейтинга и года (вызывается под блокировкой на запись):
+    private void removeFromBitmaps(int film) {
+        for (int genre : genresByFilm[film]) {
+            removeFrom(filmsByGenre, genre, film);
+        }
+        removeFrom(filmsByMpa, mpaByFilm[film], film);
+        if (releaseYearByFilm[film] != null) {
+            removeFrom(filmsByReleaseYear, releaseYearByFilm[film], film);
+        }
+    }
+
+    private static void removeFrom(Map<Integer, RoaringBitmap> bitmaps, int key, int film) {
+        RoaringBitmap bitmap = bitmaps.get(key);
+        bitmap.remove(film);
+        if (bitmap.isEmpty()) {
+            bitmaps.remove(key);
+        }
+    }
+
+    private void ensureCapacity(int film) {
+        if (film < mpaByFilm.length) {
+            return;
+        }
+
+        int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max((long) film + 1, mpaByFilm.length * 2L));
+        genresByFilm = Arrays.copyOf(genresByFilm, capacity);
+        mpaByFilm = Arrays.copyOf(mpaByFilm, capacity);
+        durationByFilm = Arrays.copyOf(durationByFilm, capacity);
+        releaseYearByFilm = Arrays.copyOf(releaseYearByFilm, capacity);
+    }
+
+    // id фильмов в БД - INTEGER:
+    private static int checkId(long filmId) {
+        if (filmId < 0 || filmId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("id фильма вне диапазона INTEGER: " + filmId);
+        }
+
+        return (int) filmId;
+    }
+
+    // найденные фильмы: страница id, число всех найденных и фасеты (id жанра или рейтинга -> число фильмов):
+    public static final class Result {
+        private final long[] filmIds;
+        private final int count;
+        private final Map<Integer, Integer> genreCounts;
+        private final Map<Integer, Integer> mpaCounts;
+
+        private Result(long[] filmIds, int count, Map<Integer, Integer> genreCounts, Map<Integer, Integer> mpaCounts) {
+            this.filmIds = filmIds;
+            this.count = count;
+            this.genreCounts = genreCounts;
+            this.mpaCounts = mpaCounts;
+        }
+
+        public long[] getFilmIds() {
+            return filmIds;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public Map<Integer, Integer> getGenreCounts() {
+            return genreCounts;
+        }
+
+        public Map<Integer, Integer> getMpaCounts() {
+            return mpaCounts;
+        }
+    }
+}
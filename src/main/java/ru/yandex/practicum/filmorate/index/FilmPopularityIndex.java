@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// индекс популярности фильмов в памяти: фильмы упорядочены по rate (по убыванию), при равном rate - по id.
+// Порядок совпадает с ORDER BY rate DESC, film_id, поэтому топ фильмов берётся из начала индекса за O(count):
+public class FilmPopularityIndex {
+    private static final Comparator<Entry> POPULARITY_ORDER = Comparator
+            .comparingInt((Entry entry) -> entry.rate).reversed()
+            .thenComparingLong(entry -> entry.filmId);
+
+    // изменения индекса короткие (O(log n)), поэтому читатели и писатели делят одну блокировку:
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableSet<Entry> entries = new TreeSet<>(POPULARITY_ORDER);
+    private final Map<Long, Entry> entriesByFilmId = new HashMap<>();
+
+    /*---Добавить фильм или заменить его rate---*/
+    public void put(long filmId, int rate) {
+        lock.writeLock().lock();
+        try {
+            replace(filmId, rate);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*---Изменить rate фильма на delta (лайк: +1, удаление лайка: -1)---*/
+    public void addToRate(long filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entriesByFilmId.get(filmId);
+            replace(filmId, entry == null ? delta : entry.rate + delta);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*---Есть ли фильм в индексе---*/
+    public boolean contains(long filmId) {
+        lock.readLock().lock();
+        try {
+            return entriesByFilmId.containsKey(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*---Получить rate фильма (0, если фильма нет в индексе)---*/
+    public int getRate(long filmId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entriesByFilmId.get(filmId);
+            return entry == null ? 0 : entry.rate;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*---Получить id count самых популярных фильмов---*/
+    public List<Long> getTopFilmIds(int count) {
+        lock.readLock().lock();
+        try {
+            List<Long> filmIds = new ArrayList<>(Math.min(count, entries.size()));
+            for (Entry entry : entries) {
+                if (filmIds.size() == count) {
+                    break;
+                }
+                filmIds.add(entry.filmId);
+            }
+
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*-------Вспомогательные методы-------*/
+    private void replace(long filmId, int rate) {
+        Entry newEntry = new Entry(filmId, rate);
+        Entry oldEntry = entriesByFilmId.put(filmId, newEntry);
+        if (oldEntry != null) {
+            entries.remove(oldEntry);
+        }
+        entries.add(newEntry);
+    }
+
+    private static final class Entry {
+        private final long filmId;
+        private final int rate;
+
+        private Entry(long filmId, int rate) {
+            this.filmId = filmId;
+            this.rate = rate;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongToIntFunction;
+
+import static ru.yandex.practicum.filmorate.index.TopKeys.idOf;
+import static ru.yandex.practicum.filmorate.index.TopKeys.rankKey;
+
+// полнотекстовый поиск фильмов в памяти: инвертированный индекс n-грамм (1-3 символа подряд) названий и описаний.
+// Текст приводится к нижнему регистру (ё -> е), всё кроме букв и цифр заменяется пробелом, поэтому
+// кириллица и латиница ищутся одинаково. Для каждой n-граммы (символы, упакованные в long) хранится сжатая
+// битовая карта id фильмов: запрос до 3 символов - одна карта, длиннее - пересечение карт его триграмм
+// с проверкой подстроки по нормализованному тексту. id фильмов - INTEGER, тексты лежат в массивах по индексу film_id:
+public class FilmSearchIndex {
+    // поля фильма, по которым ищем:
+    public enum Field {
+        TITLE, DESCRIPTION
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+    // n-граммы длиной от 1 до 3, запросы длиннее ищутся по триграммам:
+    private static final int MAX_GRAM_LENGTH = 3;
+    // релевантность совпадения (больше - выше в выдаче):
+    private static final int TITLE_EQUALS = 5;
+    private static final int TITLE_STARTS_WITH = 4;
+    private static final int TITLE_WORD_STARTS_WITH = 3;
+    private static final int TITLE_CONTAINS = 2;
+    private static final int DESCRIPTION_CONTAINS = 1;
+    // под релевантность в ключе ранжирования отведено 3 бита, под rate - остальные:
+    private static final int RELEVANCE_BITS = 3;
+    private static final int MAX_RANKED_RATE = (1 << (Integer.SIZE - 1 - RELEVANCE_BITS)) - 1;
+
+    // изменения индекса короткие (O(длина текста)), поэтому читатели и писатели делят одну блокировку:
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, RoaringBitmap> titleGrams = new HashMap<>();
+    private final Map<Long, RoaringBitmap> descriptionGrams = new HashMap<>();
+    private String[] titles = new String[INITIAL_CAPACITY];
+    private String[] descriptions = new String[INITIAL_CAPACITY];
+
+    /*---Добавить фильм или заменить его название и описание---*/
+    public void put(long filmId, String name, String description) {
+        int film = checkId(filmId);
+        String title = normalize(name);
+        String text = normalize(description);
+
+        lock.writeLock().lock();
+        try {
+            if (film >= titles.length) {
+                int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max((long) film + 1, titles.length * 2L));
+                titles = Arrays.copyOf(titles, capacity);
+                descriptions = Arrays.copyOf(descriptions, capacity);
+            }
+
+            replace(titleGrams, film, titles[film], title);
+            replace(descriptionGrams, film, descriptions[film], text);
+            titles[film] = title;
+            descriptions[film] = text;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*---Найти id фильмов, в выбранных полях которых есть подстрока query---*/
+    // по релевантности (совпадение в названии выше совпадения в описании, начало названия выше середины),
+    // при равной релевантности - по rate; byPopularity - наоборот: по rate, при равном rate - по релевантности.
+    // rate фильмов берётся из rates (индекс популярности), при равенстве выше фильм с меньшим id:
+    public long[] search(String query, Set<Field> fields, boolean byPopularity, int limit, LongToIntFunction rates) {
+        String normalizedQuery = normalize(query);
+        if (normalizedQuery.isEmpty() || fields.isEmpty() || limit <= 0) {
+            return new long[0];
+        }
+
+        lock.readLock().lock();
+        try {
+            TopKeys top = new TopKeys(limit);
+            RoaringBitmap titleMatches = new RoaringBitmap();
+            if (fields.contains(Field.TITLE)) {
+                titleMatches = matches(titleGrams, titles, normalizedQuery);
+                IntIterator iterator = titleMatches.getIntIterator();
+                while (iterator.hasNext()) {
+                    int film = iterator.next();
+                    top.offer(rankKey(score(titleRelevance(titles[film], normalizedQuery), film, byPopularity, rates),
+                            film));
+                }
+            }
+            // при сортировке по релевантности совпадения в описании не попадут в заполненный названиями топ:
+            if (fields.contains(Field.DESCRIPTION) && (byPopularity || titleMatches.getCardinality() < limit)) {
+                RoaringBitmap descriptionMatches = matches(descriptionGrams, descriptions, normalizedQuery);
+                descriptionMatches.andNot(titleMatches);
+                IntIterator iterator = descriptionMatches.getIntIterator();
+                while (iterator.hasNext()) {
+                    int film = iterator.next();
+                    top.offer(rankKey(score(DESCRIPTION_CONTAINS, film, byPopularity, rates), film));
+                }
+            }
+
+            long[] keys = top.toArray();
+            long[] filmIds = new long[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                filmIds[i] = idOf(keys[i]);
+            }
+
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*-------Вспомогательные методы-------*/
+    // фильмы, в тексте которых есть подстрока query. Для запроса не длиннее n-граммы это карта самой n-граммы,
+    // для длинного - пересечение карт его триграмм, подстрока проверяется по тексту (вызывается под блокировкой):
+    private static RoaringBitmap matches(Map<Long, RoaringBitmap> grams, String[] texts, String query) {
+        long[] queryGrams = gramsOf(query, Math.min(query.length(), MAX_GRAM_LENGTH));
+        RoaringBitmap[] postings = new RoaringBitmap[queryGrams.length];
+        for (int i = 0; i < queryGrams.length; i++) {
+            postings[i] = grams.get(queryGrams[i]);
+            if (postings[i] == null) {
+                return new RoaringBitmap();
+            }
+        }
+
+        RoaringBitmap candidates = postings.length == 1 ? postings[0].clone() : FastAggregation.and(postings);
+        if (query.length() > MAX_GRAM_LENGTH) {
+            RoaringBitmap falsePositives = new RoaringBitmap();
+            IntIterator iterator = candidates.getIntIterator();
+            while (iterator.hasNext()) {
+                int film = iterator.next();
+                if (!texts[film].contains(query)) {
+                    falsePositives.add(film);
+                }
+            }
+            candidates.andNot(falsePositives);
+        }
+
+        return candidates;
+    }
+
+    // релевантность совпадения в названии, в котором точно есть подстрока query:
+    private static int titleRelevance(String title, String query) {
+        if (title.length() == query.length()) {
+            return TITLE_EQUALS;
+        }
+        if (title.startsWith(query)) {
+            return TITLE_STARTS_WITH;
+        }
+
+        return title.contains(' ' + query) ? TITLE_WORD_STARTS_WITH : TITLE_CONTAINS;
+    }
+
+    // релевантность и rate в одном int для ключа ранжирования TopKeys:
+    private static int score(int relevance, int film, boolean byPopularity, LongToIntFunction rates) {
+        int rate = Math.max(0, Math.min(rates.applyAsInt(film), MAX_RANKED_RATE));
+
+        return byPopularity
+                ? rate << RELEVANCE_BITS | relevance
+                : relevance << (Integer.SIZE - 1 - RELEVANCE_BITS) | rate;
+    }
+
+    // убираем фильм из карт n-грамм старого текста и добавляем в карты n-грамм нового:
+    private static void replace(Map<Long, RoaringBitmap> grams, int film, String oldText, String newText) {
+        if (oldText != null) {
+            for (int length = 1; length <= MAX_GRAM_LENGTH; length++) {
+                for (long gram : gramsOf(oldText, length)) {
+                    RoaringBitmap films = grams.get(gram);
+                    films.remove(film);
+                    if (films.isEmpty()) {
+                        grams.remove(gram);
+                    }
+                }
+            }
+        }
+        for (int length = 1; length <= MAX_GRAM_LENGTH; length++) {
+            for (long gram : gramsOf(newText, length)) {
+                grams.computeIfAbsent(gram, key -> new RoaringBitmap()).add(film);
+            }
+        }
+    }
+
+    // различные n-граммы текста длиной length: символ занимает 16 бит, длина n-граммы - биты над ними:
+    private static long[] gramsOf(String text, int length) {
+        if (text.length() < length) {
+            return new long[0];
+        }
+
+        long[] grams = new long[text.length() - length + 1];
+        for (int i = 0; i < grams.length; i++) {
+            long gram = length;
+            for (int j = 0; j < length; j++) {
+                gram = gram << Character.SIZE | text.charAt(i + j);
+            }
+            grams[i] = gram;
+        }
+
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    // нижний регистр, ё -> е, всё кроме букв и цифр - один пробел:
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char symbol = Character.toLowerCase(text.charAt(i));
+            if (Character.isLetterOrDigit(symbol)) {
+                normalized.append(symbol == 'ё' ? 'е' : symbol);
+                space = false;
+            } else if (!space) {
+                normalized.append(' ');
+                space = true;
+            }
+        }
+        if (space && normalized.length() > 0) {
+            normalized.setLength(normalized.length() - 1);
+        }
+
+        return normalized.toString();
+    }
+
+    // id фильмов в БД - INTEGER:
+    private static int checkId(long filmId) {
+        if (filmId < 0 || filmId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("id фильма вне диапазона INTEGER: " + filmId);
+        }
+
+        return (int) filmId;
+    }
+}
@@ -0,0 +1,347 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static ru.yandex.practicum.filmorate.index.TopKeys.idOf;
+import static ru.yandex.practicum.filmorate.index.TopKeys.rankKey;
+
+// граф дружбы в памяти: у каждого пользователя отсортированный массив id его друзей (long[], без упакованных Long).
+// id пользователей - INTEGER, поэтому массивы друзей лежат в массиве по индексу user_id.
+// id пользователей выдаёт IDENTITY подряд, так что массив почти без пропусков. Массив друзей растёт как ArrayList:
+public class FriendGraphIndex {
+    private static final long[] NO_FRIENDS = new long[0];
+    private static final int INITIAL_USERS_CAPACITY = 16;
+    private static final int INITIAL_FRIENDS_CAPACITY = 4;
+    // с какого числа обходимых друзей друзей рекомендации считаются в несколько потоков:
+    private static final int PARALLEL_TRAVERSAL_THRESHOLD = 50_000;
+
+    // изменения индекса короткие (O(число друзей)), поэтому читатели и писатели делят одну блокировку:
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // friendIds[userId] - отсортированные id друзей, заполнены первые friendCounts[userId] элементов:
+    private long[][] friendIds = new long[INITIAL_USERS_CAPACITY][];
+    private int[] friendCounts = new int[INITIAL_USERS_CAPACITY];
+
+    /*---Добавить друга пользователю (false, если он уже в друзьях)---*/
+    public boolean addFriend(long userId, long friendId) {
+        int user = checkId(userId);
+        checkId(friendId);
+
+        lock.writeLock().lock();
+        try {
+            ensureUsersCapacity(user);
+            long[] friends = friendIds[user];
+            int count = friendCounts[user];
+            int position = Arrays.binarySearch(friends == null ? NO_FRIENDS : friends, 0, count, friendId);
+            if (position >= 0) {
+                return false;
+            }
+
+            int insertAt = -position - 1;
+            if (friends == null || count == friends.length) {
+                friends = Arrays.copyOf(friends == null ? NO_FRIENDS : friends,
+                        Math.max(INITIAL_FRIENDS_CAPACITY, count * 2));
+                friendIds[user] = friends;
+            }
+            System.arraycopy(friends, insertAt, friends, insertAt + 1, count - insertAt);
+            friends[insertAt] = friendId;
+            friendCounts[user] = count + 1;
+
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*---Убрать друга у пользователя (false, если его не было в друзьях)---*/
+    public boolean removeFriend(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            if (!isIndexed(userId)) {
+                return false;
+            }
+
+            int user = (int) userId;
+            int count = friendCounts[user];
+            int position = Arrays.binarySearch(friendIds[user], 0, count, friendId);
+            if (position < 0) {
+                return false;
+            }
+
+            System.arraycopy(friendIds[user], position + 1, friendIds[user], position, count - position - 1);
+            friendCounts[user] = count - 1;
+
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*---Есть ли друг у пользователя---*/
+    public boolean hasFriend(long userId, long friendId) {
+        lock.readLock().lock();
+        try {
+            if (!isIndexed(userId)) {
+                return false;
+            }
+
+            return Arrays.binarySearch(friendIds[(int) userId], 0, friendCounts[(int) userId], friendId) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*---Получить отсортированные id друзей пользователя---*/
+    public long[] getFriendIds(long userId) {
+        lock.readLock().lock();
+        try {
+            if (!isIndexed(userId)) {
+                return NO_FRIENDS;
+            }
+
+            return Arrays.copyOf(friendIds[(int) userId], friendCounts[(int) userId]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*---Получить отсортированные id общих друзей двух пользователей (слиянием двух массивов)---*/
+    public long[] getCommonFriendIds(long userId, long otherId) {
+        lock.readLock().lock();
+        try {
+            if (!isIndexed(userId) || !isIndexed(otherId)) {
+                return NO_FRIENDS;
+            }
+
+            long[] friends = friendIds[(int) userId];
+            long[] otherFriends = friendIds[(int) otherId];
+            int count = friendCounts[(int) userId];
+            int otherCount = friendCounts[(int) otherId];
+            long[] commonFriends = new long[Math.min(count, otherCount)];
+            int commonCount = 0;
+            int i = 0;
+            int j = 0;
+            while (i < count && j < otherCount) {
+                if (friends[i] < otherFriends[j]) {
+                    i++;
+                } else if (friends[i] > otherFriends[j]) {
+                    j++;
+                } else {
+                    commonFriends[commonCount++] = friends[i];
+                    i++;
+                    j++;
+                }
+            }
+
+            return commonCount == commonFriends.length ? commonFriends : Arrays.copyOf(commonFriends, commonCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*---Получить id пользователей, которых стоит добавить в друзья: друзья друзей, по числу общих друзей---*/
+    // обходятся не больше maxFriends друзей пользователя и не больше maxFriendsOfFriend друзей каждого из них
+    // (при превышении берётся каждый k-й по id). Общие друзья считаются в хеш-таблице примитивов; при большом
+    // обходе кандидаты делятся по id между потоками ForkJoinPool, каждый считает и отбирает лучших в своей доле:
+    public long[] getSuggestedFriendIds(long userId, int limit, int maxFriends, int maxFriendsOfFriend) {
+        lock.readLock().lock();
+        try {
+            if (!isIndexed(userId) || limit <= 0) {
+                return NO_FRIENDS;
+            }
+
+            int user = (int) userId;
+            long[] friends = Arrays.copyOf(friendIds[user], friendCounts[user]);
+            long[] traversedFriends = sample(friends, friends.length, maxFriends);
+            long traversedFriendsOfFriends = 0;
+            for (long friendId : traversedFriends) {
+                if (isIndexed(friendId)) {
+                    traversedFriendsOfFriends += Math.min(friendCounts[(int) friendId], maxFriendsOfFriend);
+                }
+            }
+
+            int partitions = traversedFriendsOfFriends < PARALLEL_TRAVERSAL_THRESHOLD
+                    ? 1 : ForkJoinPool.getCommonPoolParallelism();
+            int expectedCandidates = (int) Math.min(traversedFriendsOfFriends / partitions + 1, Integer.MAX_VALUE / 4);
+            // потоки пула читают массивы индекса, пока этот поток держит блокировку на чтение:
+            long[] partitionTops = IntStream.range(0, partitions)
+                    .parallel()
+                    .mapToObj(partition -> topInPartition(userId, friends, traversedFriends, maxFriendsOfFriend,
+                            partition, partitions, expectedCandidates, limit))
+                    .flatMapToLong(LongStream::of)
+                    .toArray();
+
+            return suggestedIds(partitionTops, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*-------Вспомогательные методы-------*/
+    // считаем общих друзей для кандидатов своей доли и отбираем limit лучших (вызывается под блокировкой):
+    private long[] topInPartition(long userId, long[] friends, long[] traversedFriends, int maxFriendsOfFriend,
+                                  int partition, int partitions, int expectedCandidates, int limit) {
+        MutualFriendCounter counter = new MutualFriendCounter(expectedCandidates);
+        for (long friendId : traversedFriends) {
+            if (!isIndexed(friendId)) {
+                continue;
+            }
+
+            int friend = (int) friendId;
+            long[] friendsOfFriend = friendIds[friend];
+            int count = friendCounts[friend];
+            int step = step(count, maxFriendsOfFriend);
+            for (int i = 0; i < count; i += step) {
+                long candidateId = friendsOfFriend[i];
+                if (partitions == 1 || partitionOf(candidateId, partitions) == partition) {
+                    counter.increment(candidateId);
+                }
+            }
+        }
+
+        TopKeys top = new TopKeys(limit);
+        for (int slot = 0; slot < counter.capacity(); slot++) {
+            long candidateId = counter.idAt(slot);
+            if (candidateId >= 0 && candidateId != userId && Arrays.binarySearch(friends, candidateId) < 0) {
+                top.offer(rankKey(counter.countAt(slot), candidateId));
+            }
+        }
+
+        return top.toArray();
+    }
+
+    // лучшие limit кандидатов из лучших по долям:
+    private static long[] suggestedIds(long[] partitionTops, int limit) {
+        TopKeys top = new TopKeys(limit);
+        for (long key : partitionTops) {
+            top.offer(key);
+        }
+
+        long[] keys = top.toArray();
+        long[] suggestedIds = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            suggestedIds[i] = idOf(keys[i]);
+        }
+
+        return suggestedIds;
+    }
+
+    // каждый k-й из первых count элементов, чтобы взять не больше max:
+    private static long[] sample(long[] values, int count, int max) {
+        int step = step(count, max);
+        if (step == 1) {
+            return Arrays.copyOf(values, count);
+        }
+
+        long[] sample = new long[(count + step - 1) / step];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = values[i * step];
+        }
+
+        return sample;
+    }
+
+    private static int partitionOf(long candidateId, int partitions) {
+        return (int) Math.floorMod(candidateId * 0x9E3779B97F4A7C15L >>> 32, (long) partitions);
+    }
+
+    // есть ли у пользователя массив друзей (вызывается под блокировкой):
+    private boolean isIndexed(long userId) {
+        return userId >= 0 && userId < friendIds.length && friendIds[(int) userId] != null;
+    }
+
+    private void ensureUsersCapacity(int user) {
+        if (user < friendIds.length) {
+            return;
+        }
+
+        int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max((long) user + 1, friendIds.length * 2L));
+        friendIds = Arrays.copyOf(friendIds, capacity);
+        friendCounts = Arrays.copyOf(friendCounts, capacity);
+    }
+
+    // id пользователей в БД - INTEGER:
+    private static int checkId(long userId) {
+        if (userId < 0 || userId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("id пользователя вне диапазона INTEGER: " + userId);
+        }
+
+        return (int) userId;
+    }
+
+    // шаг выборки, чтобы из count элементов взять не больше max:
+    private static int step(int count, int max) {
+        return count <= max ? 1 : (count + max - 1) / max;
+    }
+
+    // число общих друзей по id кандидата: хеш-таблица с открытой адресацией на массивах примитивов.
+    // В ячейке хранится id + 1, чтобы 0 означал пустую ячейку:
+    private static final class MutualFriendCounter {
+        private long[] keys;
+        private int[] counts;
+        private int size;
+
+        private MutualFriendCounter(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+            this.keys = new long[capacity];
+            this.counts = new int[capacity];
+        }
+
+        private void increment(long id) {
+            int slot = slotOf(keys, id + 1);
+            if (keys[slot] == 0) {
+                keys[slot] = id + 1;
+                // таблица заполнена больше чем на 3/4 - переносим счётчики в новую, вдвое большую:
+                if (++size > keys.length - keys.length / 4) {
+                    counts[slot]++;
+                    grow();
+                    return;
+                }
+            }
+            counts[slot]++;
+        }
+
+        private int capacity() {
+            return keys.length;
+        }
+
+        // id кандидата в ячейке или -1, если ячейка пустая:
+        private long idAt(int slot) {
+            return keys[slot] - 1;
+        }
+
+        private int countAt(int slot) {
+            return counts[slot];
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slotOf(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        // ячейка ключа или первая пустая ячейка после его хеша:
+        private static int slotOf(long[] keys, long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            int mask = keys.length - 1;
+            int slot = (int) (hash ^ hash >>> 32) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static ru.yandex.practicum.filmorate.index.TopKeys.idOf;
+import static ru.yandex.practicum.filmorate.index.TopKeys.rankKey;
+import static ru.yandex.practicum.filmorate.index.TopKeys.scoreOf;
+
+// разреженная матрица лайков в памяти: у каждого пользователя сжатая битовая карта (RoaringBitmap) id фильмов,
+// которые он лайкнул, у каждого фильма - карта id лайкнувших его пользователей. id фильмов и пользователей -
+// INTEGER, поэтому карты лежат в массивах по индексу id (как в FriendGraphIndex):
+public class LikeMatrixIndex {
+    private static final int INITIAL_CAPACITY = 16;
+    // с какого числа лайков фильмов пользователя пересечения считаются в несколько потоков:
+    private static final int PARALLEL_LIKES_THRESHOLD = 50_000;
+
+    // изменения индекса короткие (O(log n)), поэтому читатели и писатели делят одну блокировку:
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private RoaringBitmap[] filmsByUser = new RoaringBitmap[INITIAL_CAPACITY];
+    private RoaringBitmap[] usersByFilm = new RoaringBitmap[INITIAL_CAPACITY];
+
+    /*---Пользователь лайкнул фильм (false, если лайк уже был)---*/
+    public boolean addLike(long filmId, long userId) {
+        int film = checkId(filmId);
+        int user = checkId(userId);
+
+        lock.writeLock().lock();
+        try {
+            filmsByUser = ensureCapacity(filmsByUser, user);
+            usersByFilm = ensureCapacity(usersByFilm, film);
+            if (filmsByUser[user] == null) {
+                filmsByUser[user] = new RoaringBitmap();
+            }
+            if (usersByFilm[film] == null) {
+                usersByFilm[film] = new RoaringBitmap();
+            }
+            usersByFilm[film].add(user);
+
+            return filmsByUser[user].checkedAdd(film);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*---Пользователь убрал лайк фильму (false, если лайка не было)---*/
+    public boolean removeLike(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            RoaringBitmap films = bitmapAt(filmsByUser, userId);
+            RoaringBitmap users = bitmapAt(usersByFilm, filmId);
+            if (films == null || users == null) {
+                return false;
+            }
+            users.remove((int) userId);
+
+            return films.checkedRemove((int) filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*---Лайкнул ли пользователь фильм---*/
+    public boolean hasLike(long filmId, long userId) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap users = bitmapAt(usersByFilm, filmId);
+
+            return users != null && userId >= 0 && userId <= Integer.MAX_VALUE && users.contains((int) userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*---Отметить пользователя как существующего (у него появляется пустая строка матрицы)---*/
+    public void addUser(long userId) {
+        int user = checkId(userId);
+
+        lock.writeLock().lock();
+        try {
+            filmsByUser = ensureCapacity(filmsByUser, user);
+            if (filmsByUser[user] == null) {
+                filmsByUser[user] = new RoaringBitmap();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*---Есть ли у пользователя строка матрицы (лайкал фильмы или отмечен через addUser)---*/
+    public boolean hasUser(long userId) {
+        lock.readLock().lock();
+        try {
+            return bitmapAt(filmsByUser, userId) != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*---Получить точное количество лайков фильма---*/
+    public int getLikeCount(long filmId) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap users = bitmapAt(usersByFilm, filmId);
+
+            return users == null ? 0 : users.getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*---Получить id фильмов, которые лайкнули пользователи с самыми похожими лайками---*/
+    // соседи - пользователи, лайкнувшие хотя бы один фильм пользователя: пересечение лайков соседа - сколько
+    // карт лайкнувших фильмы пользователя его содержат. Счётчики - массив int по диапазону id соседей,
+    // при большом числе лайков диапазон делится между потоками ForkJoinPool. Фильмы maxNeighbours самых похожих
+    // соседей, которые пользователь ещё не лайкнул, получают сумму пересечений лайкнувших их соседей;
+    // возвращаются limit фильмов с наибольшей суммой:
+    public long[] getRecommendedFilmIds(long userId, int limit, int maxNeighbours) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap films = bitmapAt(filmsByUser, userId);
+            if (films == null || films.isEmpty() || limit <= 0 || maxNeighbours <= 0) {
+                return new long[0];
+            }
+
+            long[] topNeighbours = topNeighbours((int) userId, likersOf(films), maxNeighbours);
+
+            return topFilms(films, topNeighbours, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*-------Вспомогательные методы-------*/
+    // карты лайкнувших фильмы пользователя (вызывается под блокировкой):
+    private RoaringBitmap[] likersOf(RoaringBitmap films) {
+        RoaringBitmap[] likers = new RoaringBitmap[films.getCardinality()];
+        int count = 0;
+        IntIterator iterator = films.getIntIterator();
+        while (iterator.hasNext()) {
+            RoaringBitmap users = bitmapAt(usersByFilm, iterator.next());
+            if (users != null) {
+                likers[count++] = users;
+            }
+        }
+
+        return Arrays.copyOf(likers, count);
+    }
+
+    // maxNeighbours соседей с наибольшим пересечением лайков, ключи (пересечение << 32 | Integer.MAX_VALUE - id).
+    // Потоки пула читают карты индекса, пока вызывающий поток держит блокировку на чтение:
+    private static long[] topNeighbours(int userId, RoaringBitmap[] likers, int maxNeighbours) {
+        long likes = 0;
+        int firstLiker = Integer.MAX_VALUE;
+        int lastLiker = 0;
+        for (RoaringBitmap users : likers) {
+            if (!users.isEmpty()) {
+                likes += users.getLongCardinality();
+                firstLiker = Math.min(firstLiker, users.first());
+                lastLiker = Math.max(lastLiker, users.last());
+            }
+        }
+        if (likes == 0) {
+            return new long[0];
+        }
+
+        int from = firstLiker;
+        long range = (long) lastLiker - firstLiker + 1;
+        int partitions = likes < PARALLEL_LIKES_THRESHOLD ? 1 : ForkJoinPool.getCommonPoolParallelism();
+        int partitionSize = (int) ((range + partitions - 1) / partitions);
+
+        long[] partitionTops = IntStream.range(0, partitions)
+                .parallel()
+                .mapToObj(partition -> {
+                    int start = from + partition * partitionSize;
+                    int end = (int) Math.min((long) from + range, (long) start + partitionSize);
+                    int[] overlaps = new int[Math.max(end - start, 0)];
+                    for (RoaringBitmap users : likers) {
+                        PeekableIntIterator iterator = users.getIntIterator();
+                        iterator.advanceIfNeeded(start);
+                        while (iterator.hasNext()) {
+                            int neighbour = iterator.next();
+                            if (neighbour >= end) {
+                                break;
+                            }
+                            overlaps[neighbour - start]++;
+                        }
+                    }
+
+                    TopKeys top = new TopKeys(maxNeighbours);
+                    for (int i = 0; i < overlaps.length; i++) {
+                        if (overlaps[i] > 0 && start + i != userId) {
+                            top.offer(rankKey(overlaps[i], start + i));
+                        }
+                    }
+                    return top.toArray();
+                })
+                .flatMapToLong(LongStream::of)
+                .toArray();
+
+        TopKeys top = new TopKeys(maxNeighbours);
+        for (long key : partitionTops) {
+            top.offer(key);
+        }
+
+        return top.toArray();
+    }
+
+    // фильмы соседей, которых нет у пользователя, по сумме пересечений лайкнувших их соседей:
+    private long[] topFilms(RoaringBitmap films, long[] neighbourKeys, int limit) {
+        RoaringBitmap[] neighbourFilms = new RoaringBitmap[neighbourKeys.length];
+        for (int i = 0; i < neighbourKeys.length; i++) {
+            neighbourFilms[i] = RoaringBitmap.andNot(filmsByUser[idOf(neighbourKeys[i])], films);
+        }
+
+        int[] candidates = FastAggregation.or(neighbourFilms).toArray();
+        long[] scores = new long[candidates.length];
+        for (int i = 0; i < neighbourKeys.length; i++) {
+            int overlap = scoreOf(neighbourKeys[i]);
+            IntIterator iterator = neighbourFilms[i].getIntIterator();
+            while (iterator.hasNext()) {
+                scores[Arrays.binarySearch(candidates, iterator.next())] += overlap;
+            }
+        }
+
+        TopKeys top = new TopKeys(limit);
+        for (int i = 0; i < candidates.length; i++) {
+            top.offer(rankKey((int) Math.min(scores[i], Integer.MAX_VALUE), candidates[i]));
+        }
+
+        long[] keys = top.toArray();
+        long[] filmIds = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            filmIds[i] = idOf(keys[i]);
+        }
+
+        return filmIds;
+    }
+
+    private static RoaringBitmap bitmapAt(RoaringBitmap[] bitmaps, long id) {
+        return id >= 0 && id < bitmaps.length ? bitmaps[(int) id] : null;
+    }
+
+    private static RoaringBitmap[] ensureCapacity(RoaringBitmap[] bitmaps, int id) {
+        if (id < bitmaps.length) {
+            return bitmaps;
+        }
+
+        return Arrays.copyOf(bitmaps, (int) Math.min(Integer.MAX_VALUE, Math.max((long) id + 1, bitmaps.length * 2L)));
+    }
+
+    // id фильмов и пользователей в БД - INTEGER:
+    private static int checkId(long id) {
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("id вне диапазона INTEGER: " + id);
+        }
+
+        return (int) id;
+    }
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+
+// limit наибольших ключей (ключи ранжирования индексов: оценка << 32 | Integer.MAX_VALUE - id):
+// минимальная куча на массиве примитивов, в heap[0] - наименьший из отобранных:
+final class TopKeys {
+    private final long[] heap;
+    private int size;
+
+    TopKeys(int limit) {
+        this.heap = new long[limit];
+    }
+
+    // чем больше оценка (при равенстве - чем меньше id), тем больше ключ:
+    static long rankKey(int score, long id) {
+        return ((long) score << 32) | (Integer.MAX_VALUE - id);
+    }
+
+    static int idOf(long rankKey) {
+        return Integer.MAX_VALUE - (int) (rankKey & 0xFFFFFFFFL);
+    }
+
+    static int scoreOf(long rankKey) {
+        return (int) (rankKey >>> 32);
+    }
+
+    void offer(long key) {
+        if (size < heap.length) {
+            heap[size] = key;
+            siftUp(size++);
+        } else if (heap.length > 0 && key > heap[0]) {
+            heap[0] = key;
+            siftDown();
+        }
+    }
+
+    // отобранные ключи по убыванию:
+    long[] toArray() {
+        long[] keys = Arrays.copyOf(heap, size);
+        Arrays.sort(keys);
+        for (int i = 0, j = keys.length - 1; i < j; i++, j--) {
+            long key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+        }
+
+        return keys;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent] <= heap[index]) {
+                return;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown() {
+        int index = 0;
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && heap[left] < heap[smallest]) {
+                smallest = left;
+            }
+            if (right < size && heap[right] < heap[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(smallest, index);
+            index = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long key = heap[i];
+        heap[i] = heap[j];
+        heap[j] = key;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// счётчики версий для ETag: версия коллекции и версии отдельных записей по id. Изменение записи увеличивает
+// и её версию, и версию коллекции. Счётчики живут в памяти и после перезапуска начинаются заново, поэтому
+// каждая метка начинается со времени запуска: метка прошлого запуска не совпадёт ни с одной новой.
+// Вместе с версией запоминается время изменения (System.nanoTime()): версии увеличиваются после фиксации
+// в основной БД, поэтому данные под меткой не старше этого времени:
+public class VersionCounters {
+    private static final String INSTANCE = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private final long createdAtNanos = System.nanoTime();
+    private final AtomicLong collectionVersion = new AtomicLong();
+    private final ConcurrentMap<Long, Long> versions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Long> changedAtNanos = new ConcurrentHashMap<>();
+    private final AtomicLong collectionChangedAtNanos = new AtomicLong(createdAtNanos);
+
+    /*---Запись с id изменилась---*/
+    // время изменения записываем раньше версии: читатель, увидевший новую версию, увидит и время не старше:
+    public void bump(long id) {
+        long now = System.nanoTime();
+        changedAtNanos.merge(id, now, VersionCounters::later);
+        collectionChangedAtNanos.accumulateAndGet(now, VersionCounters::later);
+        versions.merge(id, 1L, Long::sum);
+        collectionVersion.incrementAndGet();
+    }
+
+    /*---Коллекция изменилась целиком---*/
+    public void bumpCollection() {
+        collectionChangedAtNanos.accumulateAndGet(System.nanoTime(), VersionCounters::later);
+        collectionVersion.incrementAndGet();
+    }
+
+    /*---Текущая версия коллекции---*/
+    public long getCollectionVersion() {
+        return collectionVersion.get();
+    }
+
+    /*---Текущая версия записи---*/
+    public long getVersion(long id) {
+        return versions.getOrDefault(id, 0L);
+    }
+
+    /*---Время последнего изменения коллекции (до первого изменения - время создания счётчиков)---*/
+    public long getChangedAtNanos() {
+        return collectionChangedAtNanos.get();
+    }
+
+    /*---Время последнего изменения записи (до первого изменения - время создания счётчиков)---*/
+    public long getChangedAtNanos(long id) {
+        return changedAtNanos.getOrDefault(id, createdAtNanos);
+    }
+
+    /*---Свёртка id и версий списка записей (порядок важен)---*/
+    // 64-битный хеш: метка списка меняется при изменении состава, порядка или любой записи списка:
+    public long getVersionsHash(List<Long> ids) {
+        long hash = ids.size();
+        for (Long id : ids) {
+            hash = mix(hash * 31 + id);
+            hash = mix(hash * 31 + getVersion(id));
+        }
+
+        return hash;
+    }
+
+    /*---Метка из версий: время запуска и части через "-"---*/
+    public static String tag(long... parts) {
+        StringJoiner tag = new StringJoiner("-").add(INSTANCE);
+        for (long part : parts) {
+            tag.add(Long.toString(part, Character.MAX_RADIX));
+        }
+
+        return tag.toString();
+    }
+
+    /*-------Вспомогательные методы-------*/
+    // значения System.nanoTime() сравниваются только через разность:
+    private static long later(long firstNanos, long secondNanos) {
+        return secondNanos - firstNanos > 0 ? secondNanos : firstNanos;
+    }
+
+    // перемешивание битов (финализатор SplitMix64), чтобы близкие id и версии давали далёкие хеши:
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
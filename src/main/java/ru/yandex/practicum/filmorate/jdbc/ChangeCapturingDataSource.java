@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.jdbc;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// DataSource основной БД, который запоминает таблицы, изменённые INSERT/UPDATE/DELETE/MERGE запросами соединения,
+// и после фиксации изменений (commit, или возврат соединения в пул в режиме autocommit) передаёт их слушателю.
+// Откаченные изменения слушателю не передаются. Так ReplicationStandIn узнаёт, какие таблицы копировать в реплику:
+public class ChangeCapturingDataSource extends DelegatingDataSource {
+    private static final Pattern MUTATION_PATTERN = Pattern.compile(
+            "^\\s*(?:INSERT\\s+INTO|UPDATE|DELETE\\s+FROM|MERGE\\s+INTO)\\s+([A-Za-z_][A-Za-z0-9_]*)",
+            Pattern.CASE_INSENSITIVE);
+
+    private final Consumer<Set<String>> committedChangesListener;
+
+    public ChangeCapturingDataSource(DataSource targetDataSource, Consumer<Set<String>> committedChangesListener) {
+        super(targetDataSource);
+        this.committedChangesListener = committedChangesListener;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(obtainTargetDataSource().getConnection()));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class,
+                new ConnectionHandler(obtainTargetDataSource().getConnection(username, password)));
+    }
+
+    // имя изменяемой таблицы в верхнем регистре (как в INFORMATION_SCHEMA), null - запрос ничего не меняет:
+    static String mutatedTable(String sql) {
+        if (sql == null) {
+            return null;
+        }
+        Matcher matcher = MUTATION_PATTERN.matcher(sql);
+        return matcher.find() ? matcher.group(1).toUpperCase(Locale.ROOT) : null;
+    }
+
+    /*------Вспомогательные методы------*/
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(ChangeCapturingDataSource.class.getClassLoader(), new Class<?>[]{type},
+                handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException exception) {
+            throw exception.getTargetException();
+        }
+    }
+
+    // копим изменённые таблицы соединения до фиксации изменений:
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final Set<String> changedTables = new HashSet<>();
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "prepareStatement":
+                case "prepareCall":
+                    capture((String) args[0]);
+                    return ChangeCapturingDataSource.invoke(target, method, args);
+                case "createStatement":
+                    Statement statement = (Statement) ChangeCapturingDataSource.invoke(target, method, args);
+                    return proxy(method.getReturnType(), new StatementHandler(statement, this));
+                case "commit":
+                    Object committed = ChangeCapturingDataSource.invoke(target, method, args);
+                    publish();
+                    return committed;
+                case "rollback":
+                    Object rolledBack = ChangeCapturingDataSource.invoke(target, method, args);
+                    // откат к точке сохранения не отменяет остальные изменения транзакции:
+                    if (args == null) {
+                        changedTables.clear();
+                    }
+                    return rolledBack;
+                case "setAutoCommit":
+                    // включение autocommit фиксирует текущую транзакцию:
+                    boolean wasAutoCommit = target.getAutoCommit();
+                    Object result = ChangeCapturingDataSource.invoke(target, method, args);
+                    if (!wasAutoCommit && (Boolean) args[0]) {
+                        publish();
+                    }
+                    return result;
+                case "close":
+                    // в autocommit каждый запрос уже зафиксирован, незафиксированную транзакцию откатит пул:
+                    if (!target.isClosed() && target.getAutoCommit()) {
+                        publish();
+                    }
+                    changedTables.clear();
+                    return ChangeCapturingDataSource.invoke(target, method, args);
+                default:
+                    return ChangeCapturingDataSource.invoke(target, method, args);
+            }
+        }
+
+        private void capture(String sql) {
+            String table = mutatedTable(sql);
+            if (table != null) {
+                changedTables.add(table);
+            }
+        }
+
+        private void publish() {
+            if (!changedTables.isEmpty()) {
+                committedChangesListener.accept(Set.copyOf(changedTables));
+                changedTables.clear();
+            }
+        }
+    }
+
+    // SQL запросы Statement (без подготовки) передаются прямо в execute/addBatch:
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final ConnectionHandler connectionHandler;
+
+        private StatementHandler(Statement target, ConnectionHandler connectionHandler) {
+            this.target = target;
+            this.connectionHandler = connectionHandler;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "execute":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "addBatch":
+                    if (args != null && args.length > 0 && args[0] instanceof String) {
+                        connectionHandler.capture((String) args[0]);
+                    }
+                    return ChangeCapturingDataSource.invoke(target, method, args);
+                default:
+                    return ChangeCapturingDataSource.invoke(target, method, args);
+            }
+        }
+    }
+}
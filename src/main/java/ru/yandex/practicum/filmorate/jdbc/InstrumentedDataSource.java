@@ -0,0 +1,337 @@
+package ru.yandex.practicum.filmorate.jdbc;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import ru.yandex.practicum.filmorate.query.SqlQueryNames;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// DataSource, который замеряет каждый SQL запрос: время выполнения (вместе с чтением ResultSet)
+// и количество прочитанных или изменённых строк, тег query - имя константы из SqlQuery,
+// реестр метрик подключается через bindTo (до этого, например во время миграций Flyway, замеры никуда не пишутся),
+// запросы дольше slowQueryThreshold пишутся в лог вместе с параметрами:
+@Slf4j
+public class InstrumentedDataSource extends DelegatingDataSource implements MeterBinder, AutoCloseable {
+    public static final String STATEMENT_TIMER_NAME = "filmorate.jdbc.statement";
+    public static final String STATEMENT_ROWS_NAME = "filmorate.jdbc.statement.rows";
+    public static final Duration DEFAULT_SLOW_QUERY_THRESHOLD = Duration.ofMillis(100);
+    // сколько символов параметра запроса попадает в лог медленных запросов:
+    private static final int MAX_LOGGED_PARAMETER_LENGTH = 100;
+
+    private final CompositeMeterRegistry meterRegistry = new CompositeMeterRegistry();
+    private final long slowQueryThresholdNanos;
+    private final Map<String, StatementMeters> metersByQueryName = new ConcurrentHashMap<>();
+
+    public InstrumentedDataSource(DataSource targetDataSource) {
+        this(targetDataSource, DEFAULT_SLOW_QUERY_THRESHOLD);
+    }
+
+    public InstrumentedDataSource(DataSource targetDataSource, Duration slowQueryThreshold) {
+        super(targetDataSource);
+        this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        meterRegistry.add(registry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(obtainTargetDataSource().getConnection()));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class,
+                new ConnectionHandler(obtainTargetDataSource().getConnection(username, password)));
+    }
+
+    // пул соединений закрывается вместе с контекстом, как и без обёртки:
+    @Override
+    public void close() throws Exception {
+        if (obtainTargetDataSource() instanceof AutoCloseable) {
+            ((AutoCloseable) obtainTargetDataSource()).close();
+        }
+    }
+
+    /*------Вспомогательные методы------*/
+    private void record(String sql, long elapsedNanos, long rows, boolean failed,
+                        Collection<Object> parameters, int batchSize) {
+        String queryName = SqlQueryNames.resolve(sql);
+
+        SqlStatistics statistics = SqlStatistics.current();
+        if (statistics != null) {
+            statistics.record(elapsedNanos);
+        }
+
+        if (elapsedNanos >= slowQueryThresholdNanos) {
+            log.warn("Медленный SQL запрос {}: {} мс, строк: {}{}, ошибка: {}, запрос: {}, параметры: {}",
+                    queryName,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    rows,
+                    batchSize > 0 ? ", batch: " + batchSize : "",
+                    failed,
+                    sql,
+                    formatParameters(parameters));
+        }
+
+        if (failed) {
+            // таймер ошибок регистрируем только при первой ошибке, чтобы не удваивать число гистограмм:
+            statementTimer(queryName, "ERROR").record(elapsedNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        StatementMeters meters = metersByQueryName.computeIfAbsent(queryName, this::createMeters);
+        meters.timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        meters.rows.record(rows);
+    }
+
+    private StatementMeters createMeters(String queryName) {
+        return new StatementMeters(
+                statementTimer(queryName, "SUCCESS"),
+                DistributionSummary.builder(STATEMENT_ROWS_NAME)
+                        .description("Строки, прочитанные или изменённые SQL запросом")
+                        .baseUnit("rows")
+                        .tag("query", queryName)
+                        .register(meterRegistry));
+    }
+
+    private Timer statementTimer(String queryName, String outcome) {
+        return Timer.builder(STATEMENT_TIMER_NAME)
+                .description("Время выполнения SQL запроса вместе с чтением результата")
+                .tag("query", queryName)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException exception) {
+            throw exception.getTargetException();
+        }
+    }
+
+    private static String formatParameters(Collection<Object> parameters) {
+        List<String> formatted = new ArrayList<>(parameters.size());
+        for (Object parameter : parameters) {
+            String value = String.valueOf(parameter);
+            formatted.add(value.length() > MAX_LOGGED_PARAMETER_LENGTH
+                    ? value.substring(0, MAX_LOGGED_PARAMETER_LENGTH) + "..."
+                    : value);
+        }
+        return formatted.toString();
+    }
+
+    private static long sum(Object counts) {
+        long rows = 0;
+        if (counts instanceof int[]) {
+            for (int count : (int[]) counts) {
+                rows += Math.max(count, 0);
+            }
+        } else if (counts instanceof long[]) {
+            for (long count : (long[]) counts) {
+                rows += Math.max(count, 0);
+            }
+        }
+        return rows;
+    }
+
+    private static final class StatementMeters {
+        private final Timer timer;
+        private final DistributionSummary rows;
+
+        private StatementMeters(Timer timer, DistributionSummary rows) {
+            this.timer = timer;
+            this.rows = rows;
+        }
+    }
+
+    // оборачиваем все Statement, которые создаёт соединение:
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "prepareStatement":
+                case "prepareCall":
+                case "createStatement":
+                    Statement statement = (Statement) InstrumentedDataSource.invoke(target, method, args);
+                    String sql = method.getName().equals("createStatement") ? null : (String) args[0];
+                    return proxy(method.getReturnType(), new StatementHandler(statement, sql));
+                default:
+                    return InstrumentedDataSource.invoke(target, method, args);
+            }
+        }
+    }
+
+    // замер запроса: от вызова execute* до закрытия ResultSet (время в ResultSet.next() тоже учитываем):
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String preparedSql;
+        // параметры PreparedStatement (по номеру), для batch в лог попадают параметры первой строки:
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+        private List<Object> firstBatchParameters = List.of();
+        private int batchSize;
+        // запрос, результат которого ещё читается (null, если такого нет):
+        private String pendingSql;
+        private long pendingNanos;
+        private long pendingRows;
+
+        private StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            switch (methodName) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "getResultSet":
+                    ResultSet resultSet = (ResultSet) InstrumentedDataSource.invoke(target, method, args);
+                    return resultSet == null || pendingSql == null ? resultSet : wrap(resultSet);
+                case "close":
+                    finishPending();
+                    return InstrumentedDataSource.invoke(target, method, args);
+                case "clearParameters":
+                    parameters.clear();
+                    return InstrumentedDataSource.invoke(target, method, args);
+                case "addBatch":
+                    if (batchSize++ == 0) {
+                        firstBatchParameters = new ArrayList<>(parameters.values());
+                    }
+                    return InstrumentedDataSource.invoke(target, method, args);
+                case "clearBatch":
+                    batchSize = 0;
+                    return InstrumentedDataSource.invoke(target, method, args);
+                default:
+                    if (methodName.startsWith("set") && args != null && args.length >= 2
+                            && args[0] instanceof Integer) {
+                        parameters.put((Integer) args[0], args[1]);
+                    }
+                    if (!methodName.startsWith("execute")) {
+                        return InstrumentedDataSource.invoke(target, method, args);
+                    }
+                    return execute(method, args);
+            }
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            finishPending();
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+            // executeBatch отправляет все добавленные строки, дальше batch копится заново:
+            int executedBatchSize = method.getName().endsWith("Batch") ? batchSize : 0;
+            if (executedBatchSize > 0) {
+                batchSize = 0;
+            }
+
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = InstrumentedDataSource.invoke(target, method, args);
+            } catch (Throwable exception) {
+                record(sql, System.nanoTime() - start, 0, true, executedBatchSize);
+                throw exception;
+            }
+            long elapsedNanos = System.nanoTime() - start;
+
+            if (result instanceof ResultSet) {
+                startPending(sql, elapsedNanos);
+                return wrap((ResultSet) result);
+            } else if (Boolean.TRUE.equals(result)) {
+                // execute(): результат забирают через getResultSet():
+                startPending(sql, elapsedNanos);
+            } else if (result instanceof Boolean) {
+                record(sql, elapsedNanos, Math.max(target.getUpdateCount(), 0), false, 0);
+            } else if (result instanceof Number) {
+                record(sql, elapsedNanos, Math.max(((Number) result).longValue(), 0), false, 0);
+            } else {
+                record(sql, elapsedNanos, sum(result), false, executedBatchSize);
+            }
+            return result;
+        }
+
+        private void record(String sql, long elapsedNanos, long rows, boolean failed, int executedBatchSize) {
+            InstrumentedDataSource.this.record(sql, elapsedNanos, rows, failed,
+                    executedBatchSize > 0 ? firstBatchParameters : parameters.values(),
+                    executedBatchSize);
+        }
+
+        private void startPending(String sql, long elapsedNanos) {
+            pendingSql = sql;
+            pendingNanos = elapsedNanos;
+            pendingRows = 0;
+        }
+
+        private void finishPending() {
+            if (pendingSql != null) {
+                record(pendingSql, pendingNanos, pendingRows, false, 0);
+                pendingSql = null;
+            }
+        }
+
+        private ResultSet wrap(ResultSet resultSet) {
+            return proxy(ResultSet.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "next":
+                        long start = System.nanoTime();
+                        Object hasNext = InstrumentedDataSource.invoke(resultSet, method, args);
+                        pendingNanos += System.nanoTime() - start;
+                        if (Boolean.TRUE.equals(hasNext)) {
+                            pendingRows++;
+                        }
+                        return hasNext;
+                    case "close":
+                        finishPending();
+                        return InstrumentedDataSource.invoke(resultSet, method, args);
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return InstrumentedDataSource.invoke(resultSet, method, args);
+                }
+            });
+        }
+    }
+}
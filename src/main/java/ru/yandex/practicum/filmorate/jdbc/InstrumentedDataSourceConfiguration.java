@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.jdbc;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static ru.yandex.practicum.filmorate.jdbc.InstrumentedDataSource.DEFAULT_SLOW_QUERY_THRESHOLD;
+
+// все SQL запросы приложения (JdbcTemplate, транзакции, Flyway) идут через InstrumentedDataSource:
+@Configuration
+public class InstrumentedDataSourceConfiguration {
+    @Bean
+    public static BeanPostProcessor instrumentedDataSourcePostProcessor(Environment environment) {
+        Duration slowQueryThreshold = Duration.ofMillis(environment.getProperty(
+                "filmorate.jdbc.slow-query-threshold-ms", Long.class, DEFAULT_SLOW_QUERY_THRESHOLD.toMillis()));
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof InstrumentedDataSource)) {
+                    return new InstrumentedDataSource((DataSource) bean, slowQueryThreshold);
+                }
+                return bean;
+            }
+        };
+    }
+
+    // метрики запросов пишутся во все реестры Micrometer (Prometheus), как и метрики пула соединений:
+    @Bean
+    public MeterBinder jdbcStatementMetrics(ObjectProvider<DataSource> dataSources) {
+        return registry -> dataSources.orderedStream()
+                .filter(InstrumentedDataSource.class::isInstance)
+                .forEach(dataSource -> ((InstrumentedDataSource) dataSource).bindTo(registry));
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.jdbc;
+
+// признак того, что HTTP запрос уже обращался к основной БД (писал в неё): после этого все чтения запроса,
+// в том числе read-only транзакции, тоже идут в основную БД и видят свои записи, а не отстающую реплику.
+// Как и SqlStatistics, привязывается к текущему потоку:
+public final class ReadYourWrites {
+    private static final ThreadLocal<ReadYourWrites> CURRENT = new ThreadLocal<>();
+
+    private volatile boolean primaryUsed;
+    private volatile boolean changesRequired;
+    private volatile long requiredChangesUpToNanos;
+
+    public static ReadYourWrites current() {
+        return CURRENT.get();
+    }
+
+    // привязываем признак к текущему потоку, возвращаем предыдущий (чтобы потом восстановить):
+    public static ReadYourWrites bind(ReadYourWrites readYourWrites) {
+        ReadYourWrites previous = CURRENT.get();
+        if (readYourWrites == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(readYourWrites);
+        }
+        return previous;
+    }
+
+    // остальные чтения текущего запроса должны видеть изменения, зафиксированные в основной БД не позже
+    // changedAtNanos (System.nanoTime()): например, ответ с ETag, метка которого взята из версий, увеличенных
+    // после фиксации. Реплика, которая ещё не скопировала эти изменения, пропускается:
+    public static void readChangesUpTo(long changedAtNanos) {
+        ReadYourWrites current = CURRENT.get();
+        if (current != null) {
+            current.requireChangesUpTo(changedAtNanos);
+        }
+    }
+
+    public boolean isPrimaryUsed() {
+        return primaryUsed;
+    }
+
+    // реплика подходит запросу, если уже скопировала все изменения, которые он должен видеть:
+    boolean isReplicaFreshEnough(ReplicationStandIn replica) {
+        return !changesRequired || replica.hasAppliedChangesUpTo(requiredChangesUpToNanos);
+    }
+
+    void markPrimaryUsed() {
+        primaryUsed = true;
+    }
+
+    private synchronized void requireChangesUpTo(long changedAtNanos) {
+        if (!changesRequired || changedAtNanos - requiredChangesUpToNanos > 0) {
+            requiredChangesUpToNanos = changedAtNanos;
+            changesRequired = true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// реплики для чтения (filmorate.datasource.replica.urls, через запятую): вместо пула Hikari из spring.datasource
+// приложение получает DataSource из ReplicaRouting, который направляет read-only транзакции в реплики.
+// Без filmorate.datasource.replica.urls конфигурация не создаётся и все запросы идут в одну БД:
+@Configuration
+@ConditionalOnProperty(name = "filmorate.datasource.replica.urls")
+public class ReplicaDataSourceConfiguration {
+    private static final String PRIMARY_POOL_NAME = "filmorate-primary";
+    private static final String REPLICA_NAME_PREFIX = "replica-";
+
+    @Bean
+    public ReplicaRouting replicaRouting(DataSourceProperties properties,
+                                         @Value("${filmorate.datasource.replica.urls}") String[] replicaUrls,
+                                         @Value("${filmorate.datasource.replica.pool-size}") Integer replicaPoolSize,
+                                         @Value("${filmorate.datasource.replica.max-lag-ms}") Long maxLagMs,
+                                         @Value("${filmorate.datasource.replica.replication-interval-ms}")
+                                         Long replicationIntervalMs,
+                                         @Value("${filmorate.datasource.replica.replication-delay-ms}")
+                                         Long replicationDelayMs,
+                                         @Value("${spring.flyway.locations}") String[] migrationLocations) {
+        HikariDataSource primaryDataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primaryDataSource.setPoolName(PRIMARY_POOL_NAME);
+
+        ReplicationStandIn.PrimaryLink primaryLink = new ReplicationStandIn.PrimaryLink(
+                properties.determineDriverClassName(), properties.determineUrl(),
+                properties.determineUsername(), properties.determinePassword());
+
+        List<ReplicationStandIn> replicas = new ArrayList<>(replicaUrls.length);
+        for (int index = 0; index < replicaUrls.length; index++) {
+            String name = REPLICA_NAME_PREFIX + (index + 1);
+            HikariDataSource replicaDataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(replicaUrls[index].trim())
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build();
+            replicaDataSource.setPoolName("filmorate-" + name);
+            replicaDataSource.setMaximumPoolSize(replicaPoolSize);
+
+            replicas.add(new ReplicationStandIn(name, replicaDataSource, primaryLink, migrationLocations,
+                    Duration.ofMillis(replicationIntervalMs), Duration.ofMillis(replicationDelayMs)));
+        }
+
+        return new ReplicaRouting(primaryDataSource, replicas, Duration.ofMillis(maxLagMs));
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaRouting replicaRouting) {
+        return replicaRouting.getDataSource();
+    }
+}
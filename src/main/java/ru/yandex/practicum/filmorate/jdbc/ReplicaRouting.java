@@ -0,0 +1,162 @@
+package ru.yandex.practicum.filmorate.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// маршрутизация запросов между основной БД и репликами: read-only транзакции (@Transactional(readOnly = true))
+// читают с реплик по очереди, всё остальное (запись, запросы вне read-only транзакций) идёт в основную БД.
+// Реплика пропускается, если отстаёт больше maxLag или ещё не скопировала изменения, которые должен видеть
+// запрос (ReadYourWrites.readChangesUpTo), а запрос, который уже обращался к основной БД, дочитывает из неё же. Соединение выбирается при первом SQL запросе
+// (LazyConnectionDataSourceProxy), когда признак read-only транзакции уже выставлен:
+@Slf4j
+public class ReplicaRouting implements SmartLifecycle, MeterBinder, AutoCloseable {
+    public static final String ROUTED_COUNTER_NAME = "filmorate.datasource.routed";
+    public static final String PRIMARY = "primary";
+    // фаза запуска раньше веб-сервера (WebServerStartStopLifecycle - Integer.MAX_VALUE - 1, фаза по умолчанию
+    // Integer.MAX_VALUE стартует уже после него), останавливаются реплики в обратном порядке - после веб-сервера:
+    private static final int PHASE = 0;
+
+    private final HikariDataSource primaryDataSource;
+    private final List<ReplicationStandIn> replicas;
+    private final long maxLagNanos;
+    private final DataSource dataSource;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final AtomicLong routedToPrimary = new AtomicLong();
+    private final AtomicLong routedToReplica = new AtomicLong();
+    private volatile boolean running;
+
+    public ReplicaRouting(HikariDataSource primaryDataSource, List<ReplicationStandIn> replicas, Duration maxLag) {
+        this.primaryDataSource = primaryDataSource;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagNanos = maxLag.toNanos();
+
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(PRIMARY, new ChangeCapturingDataSource(primaryDataSource, this::onPrimaryCommit));
+        for (ReplicationStandIn replica : this.replicas) {
+            targetDataSources.put(replica.getName(), replica.getDataSource());
+        }
+        RoutingDataSource routingDataSource = new RoutingDataSource();
+        routingDataSource.setTargetDataSources(targetDataSources);
+        routingDataSource.afterPropertiesSet();
+        this.dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /*---DataSource приложения (JdbcTemplate, транзакции, Flyway)---*/
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    // реплики запускаются после создания всех бинов (миграции основной БД уже выполнены) и до старта веб-сервера:
+    @Override
+    public void start() {
+        for (ReplicationStandIn replica : replicas) {
+            replica.start();
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // сколько соединений выдано основной БД и репликам, отставание и пулы соединений реплик:
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder(ROUTED_COUNTER_NAME, routedToPrimary, AtomicLong::get)
+                .description("Соединения, выданные основной БД или реплике")
+                .tag("target", PRIMARY)
+                .register(registry);
+        FunctionCounter.builder(ROUTED_COUNTER_NAME, routedToReplica, AtomicLong::get)
+                .description("Соединения, выданные основной БД или реплике")
+                .tag("target", "replica")
+                .register(registry);
+        primaryDataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        for (ReplicationStandIn replica : replicas) {
+            replica.bindTo(registry);
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        for (ReplicationStandIn replica : replicas) {
+            replica.close();
+        }
+        primaryDataSource.close();
+    }
+
+    /*------Вспомогательные методы------*/
+    private Object determineTarget() {
+        ReadYourWrites readYourWrites = ReadYourWrites.current();
+
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && (readYourWrites == null || !readYourWrites.isPrimaryUsed())) {
+            ReplicationStandIn replica = nextUpToDateReplica(readYourWrites);
+            if (replica != null) {
+                routedToReplica.incrementAndGet();
+                return replica.getName();
+            }
+        }
+
+        if (readYourWrites != null) {
+            readYourWrites.markPrimaryUsed();
+        }
+        routedToPrimary.incrementAndGet();
+        return PRIMARY;
+    }
+
+    // реплики по очереди, начиная со следующей после предыдущего выбора:
+    private ReplicationStandIn nextUpToDateReplica(ReadYourWrites readYourWrites) {
+        int start = Math.floorMod(nextReplica.getAndIncrement(), Math.max(replicas.size(), 1));
+        for (int i = 0; i < replicas.size(); i++) {
+            ReplicationStandIn replica = replicas.get((start + i) % replicas.size());
+            if (replica.getLag().toNanos() <= maxLagNanos
+                    && (readYourWrites == null || readYourWrites.isReplicaFreshEnough(replica))) {
+                return replica;
+            }
+        }
+        log.debug("Все реплики отстают больше чем на {} мс или не скопировали нужные запросу изменения, "
+                + "чтение из основной БД", maxLagNanos / 1_000_000);
+        return null;
+    }
+
+    private void onPrimaryCommit(Set<String> changedTables) {
+        for (ReplicationStandIn replica : replicas) {
+            replica.onCommit(changedTables);
+        }
+    }
+
+    private final class RoutingDataSource extends AbstractRoutingDataSource {
+        @Override
+        protected Object determineCurrentLookupKey() {
+            return determineTarget();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package ru.yandex.practicum.filmorate.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// замена настоящей репликации для локальной H2: реплика - отдельная БД с той же схемой (миграции Flyway),
+// после каждой зафиксированной в основной БД транзакции (ChangeCapturingDataSource) изменённые таблицы
+// копируются в реплику целиком через связанные таблицы H2 (CREATE LINKED TABLE на основную БД).
+// Изменения применяются не раньше чем через replicationDelay после фиксации - так можно изображать отставание.
+// Изменения за один шаг replicationInterval применяются одним копированием на таблицу, но копируется таблица
+// целиком, а не изменённые строки: стоимость шага растёт с размером таблицы (для тестовых данных этого хватает).
+// Отставание реплики - время с фиксации самого старого ещё не скопированного изменения:
+@Slf4j
+public class ReplicationStandIn implements AutoCloseable {
+    public static final String LAG_GAUGE_NAME = "filmorate.datasource.replica.lag";
+    public static final String PENDING_GAUGE_NAME = "filmorate.datasource.replica.pending.changes";
+    // схема реплики, в которой лежат связанные таблицы основной БД:
+    private static final String PRIMARY_LINK_SCHEMA = "PRIMARY_LINK";
+    private static final String FLYWAY_HISTORY_TABLE = "flyway_schema_history";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final Duration NOT_READY_LAG = Duration.ofNanos(Long.MAX_VALUE);
+
+    private final String name;
+    private final DataSource dataSource;
+    private final PrimaryLink primaryLink;
+    private final String[] migrationLocations;
+    private final long replicationIntervalMs;
+    private final long replicationDelayNanos;
+    private final ConcurrentLinkedQueue<Change> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService replicator;
+    // таблицы основной БД, которые есть в реплике (имена в верхнем регистре):
+    private volatile Set<String> replicatedTables = Set.of();
+    private volatile boolean ready;
+
+    public ReplicationStandIn(String name, DataSource dataSource, PrimaryLink primaryLink, String[] migrationLocations,
+                              Duration replicationInterval, Duration replicationDelay) {
+        this.name = name;
+        this.dataSource = dataSource;
+        this.primaryLink = primaryLink;
+        this.migrationLocations = migrationLocations;
+        this.replicationIntervalMs = replicationInterval.toMillis();
+        this.replicationDelayNanos = replicationDelay.toNanos();
+        this.replicator = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-replicator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /*---Создать схему реплики, скопировать все таблицы основной БД и начать применять изменения---*/
+    public void start() {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations(migrationLocations)
+                .load()
+                .migrate();
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            Set<String> tables = new LinkedHashSet<>();
+            try (ResultSet resultSet = statement.executeQuery("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES " +
+                    "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_TYPE = 'BASE TABLE'")) {
+                while (resultSet.next()) {
+                    String table = resultSet.getString(1);
+                    if (!FLYWAY_HISTORY_TABLE.equalsIgnoreCase(table)) {
+                        tables.add(table.toUpperCase(Locale.ROOT));
+                    }
+                }
+            }
+
+            statement.execute("CREATE SCHEMA IF NOT EXISTS " + PRIMARY_LINK_SCHEMA);
+            for (String table : tables) {
+                statement.execute("CREATE LINKED TABLE IF NOT EXISTS " + PRIMARY_LINK_SCHEMA + "." + table + "("
+                        + quote(primaryLink.driverClassName) + ", " + quote(primaryLink.url) + ", "
+                        + quote(primaryLink.username) + ", " + quote(primaryLink.password) + ", "
+                        + quote("PUBLIC") + ", " + quote(table) + ") READONLY");
+            }
+            // таблицы копируются по одной, внешние ключи реплики проверять не нужно - их проверила основная БД:
+            statement.execute("SET REFERENTIAL_INTEGRITY FALSE");
+            replicatedTables = Set.copyOf(tables);
+        } catch (SQLException exception) {
+            throw new IllegalStateException("Не удалось подготовить реплику " + name, exception);
+        }
+
+        copyTables(replicatedTables);
+        ready = true;
+        replicator.scheduleWithFixedDelay(this::replicate, replicationIntervalMs, replicationIntervalMs,
+                TimeUnit.MILLISECONDS);
+        log.info("Реплика {} готова, реплицируемые таблицы: {}", name, replicatedTables);
+    }
+
+    /*---Изменения транзакции зафиксированы в основной БД---*/
+    public void onCommit(Set<String> changedTables) {
+        pendingChanges.add(new Change(changedTables, System.nanoTime()));
+    }
+
+    /*---Отставание реплики от основной БД (до start() реплика считается бесконечно отстающей)---*/
+    public Duration getLag() {
+        if (!ready) {
+            return NOT_READY_LAG;
+        }
+        Change oldest = pendingChanges.peek();
+        return oldest == null ? Duration.ZERO : Duration.ofNanos(System.nanoTime() - oldest.committedAtNanos);
+    }
+
+    /*---Скопированы ли в реплику все изменения, зафиксированные в основной БД не позже changedAtNanos---*/
+    public boolean hasAppliedChangesUpTo(long changedAtNanos) {
+        if (!ready) {
+            return false;
+        }
+        for (Change change : pendingChanges) {
+            if (change.committedAtNanos - changedAtNanos <= 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    // отставание, очередь изменений и пул соединений реплики:
+    public void bindTo(MeterRegistry registry) {
+        TimeGauge.builder(LAG_GAUGE_NAME, this, TimeUnit.NANOSECONDS,
+                        standIn -> standIn.ready ? standIn.getLag().toNanos() : Double.NaN)
+                .description("Время с фиксации самого старого изменения, ещё не скопированного в реплику")
+                .tag("replica", name)
+                .register(registry);
+        Gauge.builder(PENDING_GAUGE_NAME, pendingChanges, ConcurrentLinkedQueue::size)
+                .description("Зафиксированные транзакции основной БД, ещё не скопированные в реплику")
+                .tag("replica", name)
+                .register(registry);
+        if (dataSource instanceof HikariDataSource) {
+            ((HikariDataSource) dataSource).setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        replicator.shutdown();
+        replicator.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (dataSource instanceof HikariDataSource) {
+            ((HikariDataSource) dataSource).close();
+        }
+    }
+
+    /*------Вспомогательные методы------*/
+    // копируем таблицы всех изменений старше replicationDelay, затем убираем эти изменения из очереди:
+    private void replicate() {
+        long appliedBefore = System.nanoTime() - replicationDelayNanos;
+        List<Change> changes = new ArrayList<>();
+        Set<String> tables = new LinkedHashSet<>();
+        for (Change change : pendingChanges) {
+            if (change.committedAtNanos - appliedBefore > 0) {
+                break;
+            }
+            changes.add(change);
+            tables.addAll(change.tables);
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        try {
+            copyTables(tables);
+            for (int i = 0; i < changes.size(); i++) {
+                pendingChanges.poll();
+            }
+        } catch (RuntimeException exception) {
+            // изменения остаются в очереди, повторим на следующем шаге:
+            log.warn("Не удалось скопировать изменения в реплику {}: {}", name, exception.getMessage());
+        }
+    }
+
+    // таблица реплики заменяется содержимым таблицы основной БД в одной транзакции,
+    // читатели реплики до фиксации видят прежнее содержимое:
+    private void copyTables(Set<String> tables) {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                for (String table : tables) {
+                    if (!replicatedTables.contains(table)) {
+                        continue;
+                    }
+                    statement.executeUpdate("DELETE FROM " + table);
+                    statement.executeUpdate("INSERT INTO " + table + " SELECT * FROM "
+                            + PRIMARY_LINK_SCHEMA + "." + table);
+                }
+                connection.commit();
+            } catch (SQLException exception) {
+                connection.rollback();
+                throw exception;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException exception) {
+            throw new IllegalStateException("Не удалось скопировать таблицы " + tables + " в реплику " + name,
+                    exception);
+        }
+    }
+
+    private static String quote(String value) {
+        return value == null ? "''" : "'" + value.replace("'", "''") + "'";
+    }
+
+    private static final class Change {
+        private final Set<String> tables;
+        private final long committedAtNanos;
+
+        private Change(Set<String> tables, long committedAtNanos) {
+            this.tables = tables;
+            this.committedAtNanos = committedAtNanos;
+        }
+    }
+
+    // подключение реплики к основной БД для связанных таблиц:
+    public static final class PrimaryLink {
+        private final String driverClassName;
+        private final String url;
+        private final String username;
+        private final String password;
+
+        public PrimaryLink(String driverClassName, String url, String username, String password) {
+            this.driverClassName = driverClassName;
+            this.url = url;
+            this.username = username;
+            this.password = password;
+        }
+    }
+}
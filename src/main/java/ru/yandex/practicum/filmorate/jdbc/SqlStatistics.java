@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.jdbc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// количество SQL запросов и суммарное время в БД в рамках одного HTTP запроса,
+// InstrumentedDataSource пишет замеры в статистику, привязанную к текущему потоку:
+public final class SqlStatistics {
+    private static final ThreadLocal<SqlStatistics> CURRENT = new ThreadLocal<>();
+
+    private final AtomicInteger statementCount = new AtomicInteger();
+    private final AtomicLong timeNanos = new AtomicLong();
+
+    public static SqlStatistics current() {
+        return CURRENT.get();
+    }
+
+    // привязываем статистику к текущему потоку, возвращаем предыдущую (чтобы потом восстановить):
+    public static SqlStatistics bind(SqlStatistics statistics) {
+        SqlStatistics previous = CURRENT.get();
+        if (statistics == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(statistics);
+        }
+        return previous;
+    }
+
+    public int getStatementCount() {
+        return statementCount.get();
+    }
+
+    public long getTimeNanos() {
+        return timeNanos.get();
+    }
+
+    void record(long elapsedNanos) {
+        statementCount.incrementAndGet();
+        timeNanos.addAndGet(elapsedNanos);
+    }
+}
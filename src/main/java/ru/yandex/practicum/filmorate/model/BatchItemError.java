@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+// ошибка для одного объекта из пакетного запроса (index - позиция объекта в переданном массиве):
+@Data
+@Builder
+public class BatchItemError {
+    public static final String VALIDATION_ERROR_MESSAGE = "Ошибка валидации данных из запроса.";
+    public static final String BATCH_ITEM_IS_NULL_MESSAGE = "Элемент пакетного запроса равен null.";
+    public static final String BATCH_ITEM_IS_NULL_ADVICE = "Проверьте, что в массиве нет пустых элементов.";
+
+    private Integer index;
+    private String error;
+    private String adviceToUser;
+
+    /*---Ошибка элемента пакета---*/
+    public static BatchItemError of(int index, String error, String adviceToUser) {
+        return BatchItemError.builder()
+                .index(index)
+                .error(error)
+                .adviceToUser(adviceToUser)
+                .build();
+    }
+
+    /*---Элемент пакета равен null---*/
+    public static BatchItemError nullItem(int index) {
+        return of(index, BATCH_ITEM_IS_NULL_MESSAGE, BATCH_ITEM_IS_NULL_ADVICE);
+    }
+
+    /*---Элемент пакета не прошёл валидацию (adviceToUser - сообщение первого нарушения)---*/
+    public static BatchItemError validationError(int index, String adviceToUser) {
+        return of(index, VALIDATION_ERROR_MESSAGE, adviceToUser);
+    }
+}
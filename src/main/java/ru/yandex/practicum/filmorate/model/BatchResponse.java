@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+// результат пакетного добавления: добавленные объекты (в порядке запроса) и ошибки по отдельным объектам:
+@Data
+@Builder
+public class BatchResponse<T> {
+    private List<T> added;
+    private List<BatchItemError> errors;
+}
@@ -18,6 +18,7 @@ public class Film {
 
     // название:
     @NotBlank(message = "Название фильма не может быть пустым")
+    @Size(max = 40, message = "Слишком длинное название фильма (лимит: {max} символов)")
     private String name;
 
     // описание:
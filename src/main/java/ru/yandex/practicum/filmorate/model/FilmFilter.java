@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Set;
+
+// фильтры списка фильмов (null - фильтр не применяется), из нескольких жанров фильму достаточно любого:
+@Data
+@Builder
+public class FilmFilter {
+    private Set<Integer> genreIds;
+    private Integer mpaId;
+    private Integer yearFrom;
+    private Integer yearTo;
+    private Integer durationMax;
+}
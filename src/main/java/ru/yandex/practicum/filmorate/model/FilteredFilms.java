@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+// страница отфильтрованных фильмов, число всех найденных фильмов и фасеты
+// (id жанра или MPA-рейтинга -> число найденных фильмов с ним):
+@Data
+@Builder
+public class FilteredFilms {
+    private List<Film> films;
+    private Integer count;
+    private Map<Integer, Integer> genreCounts;
+    private Map<Integer, Integer> mpaCounts;
+}
@@ -8,6 +8,7 @@ import javax.validation.constraints.Email;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.PastOrPresent;
+import javax.validation.constraints.Size;
 import java.time.LocalDate;
 
 @Data
@@ -21,14 +22,17 @@ public class User {
     @Email(regexp = "([A-Za-z0-9]{1,}[\\\\-]{0,1}[A-Za-z0-9]{1,}[\\\\.]{0,1}[A-Za-z0-9]{1,})+@"
             + "([A-Za-z0-9]{1,}[\\\\-]{0,1}[A-Za-z0-9]{1,}[\\\\.]{0,1}[A-Za-z0-9]{1,})+[\\\\.]{1}[a-z]{2,10}",
             message = "Некорректный адресс электронной почты: ${validatedValue}")
+    @Size(max = 100, message = "Слишком длинный адрес электронной почты (лимит: {max} символов)")
     private String email;
 
     // логин пользователя:
     @NotBlank(message = "Логин пользователя не может быть пустым")
     @NotContainsSymbol(message = "Логин пользователя не может содержать символ: '{value}'")
+    @Size(max = 40, message = "Слишком длинный логин пользователя (лимит: {max} символов)")
     private String login;
 
     // имя для отображения:
+    @Size(max = 40, message = "Слишком длинное имя пользователя (лимит: {max} символов)")
     private String name;
 
     // дата рождения:
@@ -3,11 +3,32 @@ package ru.yandex.practicum.filmorate.query;
 // класс для хранения строк SQL запросов:
 public class SqlQuery {
     /*----Запросы для объектов Film----*/
+    public static final String SQL_QUERY_ADD_FILM =
+            "INSERT INTO films (name, description, release_date, duration, rate, mpa_rating_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?);";
+
+    public static final String SQL_QUERY_ADD_FILM_GENRE =
+            "INSERT INTO film_genres (film_id, genre_id) " +
+            "VALUES (?, ?);";
+
+    public static final String SQL_QUERY_REMOVE_FILM_GENRE =
+            "DELETE FROM film_genres " +
+            "WHERE film_id = ? " +
+              "AND genre_id = ?;";
+
+    // id жанров фильма (при обновлении - для сравнения с новыми жанрами):
+    public static final String SQL_QUERY_GET_FILM_GENRE_IDS =
+            "SELECT genre_id " +
+            "FROM film_genres " +
+            "WHERE film_id = ?;";
+
     public static final String SQL_QUERY_UPDATE_FILM =
             "UPDATE films " +
             "SET name = ?, description = ?, release_date = ?, duration = ?, rate = ?, mpa_rating_id = ? " +
             "WHERE film_id = ?;";
 
+    // строки одного фильма (по строке на жанр) идут подряд, это нужно для сборки Film за один проход,
+    // названия жанров и MPA-рейтингов берутся из справочников в памяти (GenreDbStorage, MpaDbStorage):
     public static final String SQL_QUERY_GET_ALL_FILMS =
             "SELECT f.film_id, " +
                    "f.name, " +
@@ -15,14 +36,35 @@ public class SqlQuery {
                    "f.release_date, " +
                    "f.duration, " +
                    "f.rate, " +
-                   "mr.mpa_rating_id, " +
-                   "mr.name AS mpa_name, " +
-                   "g.genre_id, " +
-                   "g.name AS genre_name " +
+                   "f.mpa_rating_id, " +
+                   "fg.genre_id " +
             "FROM films AS f " +
-            "LEFT OUTER JOIN mpa_rating AS mr ON (f.mpa_rating_id = mr.mpa_rating_id) " +
             "LEFT OUTER JOIN film_genres AS fg ON (f.film_id = fg.film_id) " +
-            "LEFT OUTER JOIN genre AS g ON (fg.genre_id = g.genre_id);";
+            "ORDER BY f.film_id, fg.genre_id;";
+
+    // страница фильмов с id > ? (keyset пагинация), LIMIT применяется к фильмам до соединения с жанрами:
+    public static final String SQL_QUERY_GET_FILMS_PAGE =
+            "SELECT f.film_id, " +
+                   "f.name, " +
+                   "f.description, " +
+                   "f.release_date, " +
+                   "f.duration, " +
+                   "f.rate, " +
+                   "f.mpa_rating_id, " +
+                   "fg.genre_id " +
+            "FROM (SELECT film_id, " +
+                         "name, " +
+                         "description, " +
+                         "release_date, " +
+                         "duration, " +
+                         "rate, " +
+                         "mpa_rating_id " +
+                  "FROM films " +
+                  "WHERE film_id > ? " +
+                  "ORDER BY film_id " +
+                  "LIMIT ?) AS f " +
+            "LEFT OUTER JOIN film_genres AS fg ON (f.film_id = fg.film_id) " +
+            "ORDER BY f.film_id, fg.genre_id;";
 
     public static final String SQL_QUERY_GET_FILM_BY_ID =
             "SELECT f.film_id, " +
@@ -31,50 +73,89 @@ public class SqlQuery {
                    "f.release_date, " +
                    "f.duration, " +
                    "f.rate, " +
-                   "mr.mpa_rating_id, " +
-                   "mr.name AS mpa_name, " +
-                   "g.genre_id, " +
-                   "g.name AS genre_name " +
+                   "f.mpa_rating_id, " +
+                   "fg.genre_id " +
             "FROM films AS f " +
-            "LEFT OUTER JOIN mpa_rating AS mr ON (f.mpa_rating_id = mr.mpa_rating_id) " +
             "LEFT OUTER JOIN film_genres AS fg ON (f.film_id = fg.film_id) " +
-            "LEFT OUTER JOIN genre AS g ON (fg.genre_id = g.genre_id) " +
-            "WHERE f.film_id = ?;";
+            "WHERE f.film_id = ? " +
+            "ORDER BY fg.genre_id;";
+
+    public static final String SQL_QUERY_ADD_LIKE_TO_FILM =
+            "INSERT INTO film_likes (film_id, user_id) " +
+            "VALUES (?, ?);";
+
+    // лайк добавляется, только если его ещё нет (повторный сброс буфера лайков не нарушает уникальный индекс):
+    public static final String SQL_QUERY_MERGE_LIKE_TO_FILM =
+            "MERGE INTO film_likes (film_id, user_id) " +
+            "KEY (film_id, user_id) " +
+            "VALUES (?, ?);";
+
+    // существует ли пользователь (есть ли у него лайк фильму, знает матрица лайков):
+    public static final String SQL_QUERY_COUNT_USERS =
+            "SELECT COUNT(*) " +
+            "FROM users " +
+            "WHERE user_id = ?;";
 
     public static final String SQL_QUERY_REMOVE_LIKE_FROM_FILM =
             "DELETE FROM film_likes " +
             "WHERE film_id = ? " +
               "AND user_id = ?;";
 
-    public static final String SQL_QUERY_GET_TOP_FILMS_FOR_LIKES =
+    // фильмы по списку id (вместо %s подставляется по плейсхолдеру на id):
+    public static final String SQL_QUERY_GET_FILMS_BY_IDS =
             "SELECT f.film_id, " +
                    "f.name, " +
                    "f.description, " +
                    "f.release_date, " +
                    "f.duration, " +
                    "f.rate, " +
-                   "mr.mpa_rating_id, " +
-                   "mr.name AS mpa_name, " +
-                   "g.genre_id, " +
-                   "g.name AS genre_name " +
+                   "f.mpa_rating_id, " +
+                   "fg.genre_id " +
             "FROM films AS f " +
-            "LEFT OUTER JOIN mpa_rating AS mr ON (f.mpa_rating_id = mr.mpa_rating_id) " +
             "LEFT OUTER JOIN film_genres AS fg ON (f.film_id = fg.film_id) " +
-            "LEFT OUTER JOIN genre AS g ON (fg.genre_id = g.genre_id) " +
-            "ORDER BY f.rate DESC " +
-            "LIMIT ?;";
+            "WHERE f.film_id IN (%s) " +
+            "ORDER BY f.film_id, fg.genre_id;";
+
+    // все лайки для заполнения матрицы лайков:
+    public static final String SQL_QUERY_GET_ALL_LIKES =
+            "SELECT film_id, " +
+                   "user_id " +
+            "FROM film_likes;";
+
+    // названия и описания всех фильмов для заполнения поискового индекса:
+    public static final String SQL_QUERY_GET_ALL_FILM_TEXTS =
+            "SELECT film_id, " +
+                   "name, " +
+                   "description " +
+            "FROM films;";
+
+    // rate всех фильмов для заполнения индекса популярности:
+    public static final String SQL_QUERY_GET_ALL_FILM_RATES =
+            "SELECT film_id, " +
+                   "rate " +
+            "FROM films;";
 
     public static final String SQL_QUERY_FILM_RATE_PLUS =
             "UPDATE films " +
-            "SET rate = rate + 1 " +
+            "SET rate = COALESCE(rate, 0) + 1 " +
             "WHERE film_id = ?;";
 
     public static final String SQL_QUERY_FILM_RATE_MINUS =
             "UPDATE films " +
-            "SET rate = rate - 1 " +
+            "SET rate = COALESCE(rate, 0) - 1 " +
+            "WHERE film_id = ?;";
+
+    // суммарное изменение rate фильма за один сброс буфера лайков:
+    public static final String SQL_QUERY_FILM_RATE_ADD =
+            "UPDATE films " +
+            "SET rate = COALESCE(rate, 0) + ? " +
             "WHERE film_id = ?;";
 
     /*----Запросы для объектов User----*/
+    public static final String SQL_QUERY_ADD_USER =
+            "INSERT INTO users (email, login, name, birthday) " +
+            "VALUES (?, ?, ?, ?);";
+
     public static final String SQL_QUERY_UPDATE_USER =
             "UPDATE users SET " +
             "email = ?, login = ?, name = ?, birthday = ? " +
@@ -88,6 +169,18 @@ public class SqlQuery {
                    "birthday " +
             "FROM users;";
 
+    // страница пользователей с id > ? (keyset пагинация):
+    public static final String SQL_QUERY_GET_USERS_PAGE =
+            "SELECT user_id, " +
+                   "email, " +
+                   "login, " +
+                   "name, " +
+                   "birthday " +
+            "FROM users " +
+            "WHERE user_id > ? " +
+            "ORDER BY user_id " +
+            "LIMIT ?;";
+
     public static final String SQL_QUERY_GET_USER_BY_ID =
             "SELECT user_id, " +
                    "email, " +
@@ -97,6 +190,10 @@ public class SqlQuery {
             "FROM users " +
             "WHERE user_id = ?;";
 
+    public static final String SQL_QUERY_ADD_USER_TO_FRIENDS =
+            "INSERT INTO user_friendship (user_id, friend_id) " +
+            "VALUES (?, ?);";
+
     public static final String SQL_QUERY_REMOVE_USER_FROM_FRIENDS =
             "DELETE FROM user_friendship " +
             "WHERE user_id = ? " +
@@ -124,23 +221,35 @@ public class SqlQuery {
             "WHERE uf1.user_id = ? " +
               "AND uf2.user_id = ?;";
 
-    /*----Запросы для объектов Genre----*/
-    public static final String SQL_QUERY_GET_GENRE_BY_ID =
-            "SELECT * " +
-            "FROM genre " +
-            "WHERE genre_id = ?;";
+    // пользователи по списку id (вместо %s подставляется по плейсхолдеру на id):
+    public static final String SQL_QUERY_GET_USERS_BY_IDS =
+            "SELECT user_id, " +
+                   "email, " +
+                   "login, " +
+                   "name, " +
+                   "birthday " +
+            "FROM users " +
+            "WHERE user_id IN (%s) " +
+            "ORDER BY user_id;";
+
+    // все связи дружбы для заполнения индекса друзей:
+    public static final String SQL_QUERY_GET_ALL_FRIENDSHIPS =
+            "SELECT user_id, " +
+                   "friend_id " +
+            "FROM user_friendship " +
+            "ORDER BY user_id, friend_id;";
 
+    /*----Запросы для объектов Genre----*/
     public static final String SQL_QUERY_GET_ALL_GENRES =
-            "SELECT * " +
-            "FROM genre;";
+            "SELECT genre_id, " +
+                   "name " +
+            "FROM genre " +
+            "ORDER BY genre_id;";
 
     /*----Запросы для объектов Mpa----*/
-    public static final String SQL_QUERY_GET_MPA_BY_ID =
-            "SELECT * " +
-            "FROM mpa_rating " +
-            "WHERE mpa_rating_id = ?;";
-
     public static final String SQL_QUERY_GET_ALL_MPA =
-            "SELECT * " +
-            "FROM mpa_rating;";
+            "SELECT mpa_rating_id, " +
+                   "name " +
+            "FROM mpa_rating " +
+            "ORDER BY mpa_rating_id;";
 }
\ No newline at end of file
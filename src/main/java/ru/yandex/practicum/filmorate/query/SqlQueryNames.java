@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.query;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// имена констант SqlQuery по тексту SQL запроса (для тегов метрик и логов):
+public final class SqlQueryNames {
+    // имя для запросов, которых нет в SqlQuery (миграции Flyway, служебные запросы пула):
+    public static final String UNKNOWN_QUERY_NAME = "other";
+
+    private static final String FORMAT_PLACEHOLDER = "%s";
+
+    private static final Map<String, String> NAMES_BY_SQL = new HashMap<>();
+    // запросы-шаблоны с %s (например, SQL_QUERY_GET_FILMS_BY_IDS), ищем по началу и концу строки:
+    private static final List<String[]> TEMPLATES = new ArrayList<>();
+
+    static {
+        for (Field field : SqlQuery.class.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class) {
+                continue;
+            }
+
+            String sql;
+            try {
+                sql = (String) field.get(null);
+            } catch (IllegalAccessException exception) {
+                throw new IllegalStateException(exception);
+            }
+
+            int placeholder = sql.indexOf(FORMAT_PLACEHOLDER);
+            if (placeholder < 0) {
+                NAMES_BY_SQL.put(sql, field.getName());
+            } else {
+                TEMPLATES.add(new String[]{
+                        sql.substring(0, placeholder),
+                        sql.substring(placeholder + FORMAT_PLACEHOLDER.length()),
+                        field.getName()});
+            }
+        }
+    }
+
+    private SqlQueryNames() {
+    }
+
+    public static String resolve(String sql) {
+        if (sql == null) {
+            return UNKNOWN_QUERY_NAME;
+        }
+
+        String name = NAMES_BY_SQL.get(sql);
+        if (name != null) {
+            return name;
+        }
+
+        for (String[] template : TEMPLATES) {
+            if (sql.startsWith(template[0]) && sql.endsWith(template[1])) {
+                return template[2];
+            }
+        }
+
+        return UNKNOWN_QUERY_NAME;
+    }
+}
@@ -2,36 +2,114 @@ package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.exception.IllegalIdException;
+import ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.model.BatchItemError;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.FilteredFilms;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class FilmDbService implements FilmService {
     private final FilmDbStorage filmStorage;
+    private final Validator validator;
 
     @Autowired
-    public FilmDbService(FilmDbStorage filmStorage) {
+    public FilmDbService(FilmDbStorage filmStorage, Validator validator) {
         this.filmStorage = filmStorage;
+        this.validator = validator;
     }
 
     @Override
+    @Transactional
     public Film addFilm(Film film) {
         return filmStorage.addFilm(film);
     }
 
+    // некорректные фильмы попадают в errors, остальные добавляются одной транзакцией:
     @Override
+    @Transactional
+    public BatchResponse<Film> addFilms(List<Film> films) {
+        List<Film> validFilms = new ArrayList<>(films.size());
+        List<BatchItemError> errors = new ArrayList<>();
+
+        for (int index = 0; index < films.size(); index++) {
+            Film film = films.get(index);
+            if (film == null) {
+                errors.add(BatchItemError.nullItem(index));
+                continue;
+            }
+
+            Set<ConstraintViolation<Film>> violations = validator.validate(film);
+            if (!violations.isEmpty()) {
+                errors.add(BatchItemError.validationError(index, violations.iterator().next().getMessage()));
+                continue;
+            }
+
+            try {
+                filmStorage.checkNewFilm(film);
+            } catch (IllegalIdException exception) {
+                errors.add(BatchItemError.of(index, exception.getMessage(), exception.getAdviceToUser()));
+                continue;
+            } catch (InvalidDataBaseQueryException exception) {
+                errors.add(BatchItemError.of(index, exception.getMessage(), exception.getAdviceToUser()));
+                continue;
+            }
+
+            validFilms.add(film);
+        }
+
+        return BatchResponse.<Film>builder()
+                .added(filmStorage.addFilms(validFilms))
+                .errors(errors)
+                .build();
+    }
+
+    // фильм и его жанры обновляются в одной транзакции:
+    @Override
+    @Transactional
     public Film updateFilm(Film film) {
         return filmStorage.updateFilm(film);
     }
 
+    // чтения - read-only транзакции, при настроенных репликах (ReplicaRouting) они выполняются на реплике:
     @Override
+    @Transactional(readOnly = true)
     public List<Film> getAllFilms() {
         return filmStorage.getAllFilms();
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public void streamAllFilms(Consumer<Film> consumer) {
+        filmStorage.streamAllFilms(consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> getFilmsPage(Long afterId, Integer limit) {
+        return filmStorage.getFilmsPage(afterId, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public FilteredFilms getFilteredFilmsPage(FilmFilter filter, Long afterId, Integer limit) {
+        return filmStorage.getFilteredFilmsPage(filter, afterId, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Film getFilmById(Long id) {
         return filmStorage.getFilmById(id);
     }
@@ -47,8 +125,53 @@ public class FilmDbService implements FilmService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Integer getLikeCount(Long id) {
+        return filmStorage.getLikeCount(id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<Film> getTopFilmsForLikes(Integer count) {
         return filmStorage.getTopFilmsForLikes(count);
     }
 
-}
\ No newline at end of file
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> getRecommendedFilms(Long userId, Integer limit) {
+        return filmStorage.getRecommendedFilms(userId, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> searchFilms(String query, Set<FilmSearchIndex.Field> fields, boolean byPopularity,
+                                  Integer limit) {
+        return filmStorage.searchFilms(query, fields, byPopularity, limit);
+    }
+
+    // метки версий для ETag считаются в памяти, без транзакции и запросов к БД:
+    @Override
+    public String getFilmsTag() {
+        return filmStorage.getFilmsTag();
+    }
+
+    @Override
+    public String getFilmTag(Long id) {
+        return filmStorage.getFilmTag(id);
+    }
+
+    @Override
+    public String getTopFilmsTag(Integer count) {
+        return filmStorage.getTopFilmsTag(count);
+    }
+
+    @Override
+    public long getFilmsChangedAtNanos() {
+        return filmStorage.getFilmsChangedAtNanos();
+    }
+
+    @Override
+    public long getFilmChangedAtNanos(Long id) {
+        return filmStorage.getFilmChangedAtNanos(id);
+    }
+}
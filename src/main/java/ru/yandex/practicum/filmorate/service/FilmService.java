@@ -1,21 +1,53 @@
 package ru.yandex.practicum.filmorate.service;
 
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.FilteredFilms;
 
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmService {
     Film addFilm(Film film);
 
+    BatchResponse<Film> addFilms(List<Film> films);
+
     Film updateFilm(Film film);
 
     List<Film> getAllFilms();
 
+    void streamAllFilms(Consumer<Film> consumer);
+
+    List<Film> getFilmsPage(Long afterId, Integer limit);
+
+    FilteredFilms getFilteredFilmsPage(FilmFilter filter, Long afterId, Integer limit);
+
     Film getFilmById(Long id);
 
     String addLikeToFilm(Long id, Long userId);
 
     String removeLikeFromFilm(Long id, Long userId);
 
+    Integer getLikeCount(Long id);
+
     List<Film> getTopFilmsForLikes(Integer count);
+
+    List<Film> getRecommendedFilms(Long userId, Integer limit);
+
+    List<Film> searchFilms(String query, Set<FilmSearchIndex.Field> fields, boolean byPopularity, Integer limit);
+
+    // метки версий для ETag (null - фильма нет):
+    String getFilmsTag();
+
+    String getFilmTag(Long id);
+
+    String getTopFilmsTag(Integer count);
+
+    // время последнего изменения (System.nanoTime()), данные под меткой не старше его:
+    long getFilmsChangedAtNanos();
+
+    long getFilmChangedAtNanos(Long id);
 }
\ No newline at end of file
@@ -23,4 +23,14 @@ public class GenreDbService {
     public List<Genre> getAllGenres() {
         return genreStorage.getAllGenres();
     }
+
+    // метка версии справочника жанров для ETag:
+    public String getGenreTag() {
+        return genreStorage.getTag();
+    }
+
+    // перечитать справочник жанров из БД (после изменения таблицы genre):
+    public void refreshGenres() {
+        genreStorage.refresh();
+    }
 }
\ No newline at end of file
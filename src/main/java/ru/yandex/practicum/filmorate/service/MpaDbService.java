@@ -23,4 +23,14 @@ public class MpaDbService {
     public List<Mpa> getAllMpa() {
         return mpaStorage.getAllMpa();
     }
+
+    // метка версии справочника MPA-рейтингов для ETag:
+    public String getMpaTag() {
+        return mpaStorage.getTag();
+    }
+
+    // перечитать справочник MPA-рейтингов из БД (после изменения таблицы mpa_rating):
+    public void refreshMpa() {
+        mpaStorage.refresh();
+    }
 }
\ No newline at end of file
@@ -2,18 +2,29 @@ package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.exception.IllegalIdException;
+import ru.yandex.practicum.filmorate.model.BatchItemError;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
 import ru.yandex.practicum.filmorate.model.User;
 
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class UserDbService implements UserService {
     private final UserDbStorage userStorage;
+    private final Validator validator;
 
     @Autowired
-    public UserDbService(UserDbStorage userStorage) {
+    public UserDbService(UserDbStorage userStorage, Validator validator) {
         this.userStorage = userStorage;
+        this.validator = validator;
     }
 
     @Override
@@ -21,6 +32,42 @@ public class UserDbService implements UserService {
         return userStorage.addUser(user);
     }
 
+    // некорректные пользователи попадают в errors, остальные добавляются одной транзакцией:
+    @Override
+    @Transactional
+    public BatchResponse<User> addUsers(List<User> users) {
+        List<User> validUsers = new ArrayList<>(users.size());
+        List<BatchItemError> errors = new ArrayList<>();
+
+        for (int index = 0; index < users.size(); index++) {
+            User user = users.get(index);
+            if (user == null) {
+                errors.add(BatchItemError.nullItem(index));
+                continue;
+            }
+
+            Set<ConstraintViolation<User>> violations = validator.validate(user);
+            if (!violations.isEmpty()) {
+                errors.add(BatchItemError.validationError(index, violations.iterator().next().getMessage()));
+                continue;
+            }
+
+            try {
+                userStorage.checkNewUser(user);
+            } catch (IllegalIdException exception) {
+                errors.add(BatchItemError.of(index, exception.getMessage(), exception.getAdviceToUser()));
+                continue;
+            }
+
+            validUsers.add(userStorage.checkName(user));
+        }
+
+        return BatchResponse.<User>builder()
+                .added(userStorage.addUsers(validUsers))
+                .errors(errors)
+                .build();
+    }
+
     @Override
     public User updateUser(User user) {
         return userStorage.updateUser(user);
@@ -31,6 +78,16 @@ public class UserDbService implements UserService {
         return userStorage.getAllUsers();
     }
 
+    @Override
+    public void streamAllUsers(Consumer<User> consumer) {
+        userStorage.streamAllUsers(consumer);
+    }
+
+    @Override
+    public List<User> getUsersPage(Long afterId, Integer limit) {
+        return userStorage.getUsersPage(afterId, limit);
+    }
+
     @Override
     public User getUserById(Long id) {
         return userStorage.getUserById(id);
@@ -46,13 +103,22 @@ public class UserDbService implements UserService {
         return userStorage.removeUserFromFriends(id, friendId);
     }
 
+    // чтения - read-only транзакции, при настроенных репликах (ReplicaRouting) они выполняются на реплике:
     @Override
+    @Transactional(readOnly = true)
     public List<User> getAllFriendsList(Long id) {
         return userStorage.getAllFriendsList(id);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<User> getCommonFriends(Long id, Long otherId) {
         return userStorage.getCommonFriends(id, otherId);
     }
-}
\ No newline at end of file
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> getSuggestedFriends(Long id, Integer limit) {
+        return userStorage.getSuggestedFriends(id, limit);
+    }
+}
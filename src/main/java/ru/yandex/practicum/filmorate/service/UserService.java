@@ -1,16 +1,24 @@
 package ru.yandex.practicum.filmorate.service;
 
+import ru.yandex.practicum.filmorate.model.BatchResponse;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserService {
     User addUser(User user);
 
+    BatchResponse<User> addUsers(List<User> users);
+
     User updateUser(User user);
 
     List<User> getAllUsers();
 
+    void streamAllUsers(Consumer<User> consumer);
+
+    List<User> getUsersPage(Long afterId, Integer limit);
+
     User getUserById(Long id);
 
     String addUserToFriends(Long id, Long friendId);
@@ -20,4 +28,6 @@ public interface UserService {
     List<User> getAllFriendsList(Long id);
 
     List<User> getCommonFriends(Long id, Long otherId);
+
+    List<User> getSuggestedFriends(Long id, Integer limit);
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+-- выполняется до V3, пока повторные лайки ещё не удалены: каждый повторный лайк увеличил rate фильма на 1,
+-- уменьшаем rate на число повторов, которые удалит V3 (rate - начальная оценка плюс лайки, поэтому
+-- не пересчитываем его как COUNT(*) лайков). В базах, где V3 уже применена, повторов нет, и миграция пропускается:
+UPDATE films
+SET rate = COALESCE(rate, 0) - (SELECT COUNT(*)
+                                FROM film_likes AS fl
+                                WHERE fl.film_id = films.film_id
+                                  AND fl.film_likes_id NOT IN (SELECT MIN(film_likes_id)
+                                                               FROM film_likes
+                                                               GROUP BY film_id, user_id))
+WHERE film_id IN (SELECT film_id
+                  FROM film_likes
+                  GROUP BY film_id, user_id
+                  HAVING COUNT(*) > 1);
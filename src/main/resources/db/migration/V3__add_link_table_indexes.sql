@@ -0,0 +1,24 @@
+-- перед созданием уникальных индексов убираем повторяющиеся связи (остаётся строка с наименьшим id):
+DELETE FROM film_likes
+WHERE film_likes_id NOT IN (SELECT MIN(film_likes_id)
+                            FROM film_likes
+                            GROUP BY film_id, user_id);
+
+DELETE FROM user_friendship
+WHERE user_friendship_id NOT IN (SELECT MIN(user_friendship_id)
+                                 FROM user_friendship
+                                 GROUP BY user_id, friend_id);
+
+DELETE FROM film_genres
+WHERE film_genres_id NOT IN (SELECT MIN(film_genres_id)
+                             FROM film_genres
+                             GROUP BY film_id, genre_id);
+
+-- пользователь может поставить фильму только один лайк (поиск лайка по паре для удаления):
+CREATE UNIQUE INDEX film_likes_film_id_user_id_uq ON film_likes (film_id, user_id);
+
+-- пользователь может добавить друга только один раз (список друзей и общие друзья по user_id):
+CREATE UNIQUE INDEX user_friendship_user_id_friend_id_uq ON user_friendship (user_id, friend_id);
+
+-- жанр у фильма указывается один раз (жанры фильма по film_id, удаление жанра по паре):
+CREATE UNIQUE INDEX film_genres_film_id_genre_id_uq ON film_genres (film_id, genre_id);
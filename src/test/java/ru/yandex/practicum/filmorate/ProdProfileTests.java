@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.zalando.logbook.HttpRequest;
+
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest(properties = "filmorate.logbook.sample-rate=0")
+@ActiveProfiles("prod")
+class ProdProfileTests {
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private Predicate<HttpRequest> requestCondition;
+
+	// при sample-rate = 0 Logbook не пишет ни одного запроса:
+	@Test
+	void shouldNotSampleRequestsWhenSampleRateIsZero() {
+		for (int i = 0; i < 1000; i++) {
+			assertFalse(requestCondition.test(null));
+		}
+	}
+
+	// заголовки X-Sql-* в prod не добавляются:
+	@Test
+	void shouldNotCountSqlStatementsInProd() {
+		assertFalse(context.containsBean("sqlStatisticsFilter"));
+		assertFalse(context.containsBean("sqlStatisticsHeaderAdvice"));
+	}
+}
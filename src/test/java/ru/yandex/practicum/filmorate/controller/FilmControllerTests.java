@@ -2,21 +2,37 @@ package ru.yandex.practicum.filmorate.controller;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.context.SpringBootTest;
 import ru.yandex.practicum.filmorate.jsontypeadapter.LocalDateAdapter;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
 
 import java.io.IOException;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.controller.SqlStatisticsHeaderAdvice.SQL_STATEMENTS_HEADER;
+import static ru.yandex.practicum.filmorate.controller.SqlStatisticsHeaderAdvice.SQL_TIME_HEADER;
 
+@AutoConfigureMetrics
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT)
 public class FilmControllerTests {
     private static final Gson gson = new GsonBuilder()
@@ -24,6 +40,7 @@ public class FilmControllerTests {
             .setPrettyPrinting()
             .create();
     private static final String URL = "http://localhost:8080";
+    private static final String MANAGEMENT_URL = "http://localhost:8081";
     private static final URI FILMS_URI = URI.create(URL + "/films");
     private static final HttpResponse.BodyHandler<String> handler = HttpResponse.BodyHandlers.ofString();
 
@@ -121,4 +138,361 @@ public class FilmControllerTests {
         assertEquals(400, responseStatusCode, "Ошибка валидации при"
                 + " Film.duration = 0");
     }
-}
\ No newline at end of file
+
+    /*---Тесты пакетного добавления---*/
+    // некорректный фильм не мешает добавить остальные:
+    @Test
+    void shouldAddValidFilmsAndReportInvalidOnesInBatch() throws IOException, InterruptedException {
+        final Film validFilm = filmByValidationCheck.toBuilder()
+                .mpa(Mpa.builder()
+                        .id(1)
+                        .build())
+                .build();
+        final Film invalidFilm = validFilm.toBuilder()
+                .duration(0)
+                .build();
+        final HttpRequest httpRequest = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/films/batch"))
+                .headers("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(Arrays.asList(validFilm, invalidFilm,
+                        validFilm))))
+                .build();
+
+        final HttpResponse<String> response = httpClient.send(httpRequest, handler);
+        final Type responseType = new TypeToken<BatchResponse<Film>>() {}.getType();
+        final BatchResponse<Film> batchResponse = gson.fromJson(response.body(), responseType);
+
+        assertEquals(200, response.statusCode(), "Ошибка пакетного добавления фильмов");
+        assertEquals(2, batchResponse.getAdded().size(), "Добавлены не все корректные фильмы");
+        assertNotNull(batchResponse.getAdded().get(0).getId(), "Добавленный фильм без id");
+        assertEquals(1, batchResponse.getErrors().size(), "Некорректный фильм не попал в ошибки");
+        assertEquals(1, batchResponse.getErrors().get(0).getIndex(), "Ошибка указывает не на тот фильм");
+    }
+
+    // фильм, не помещающийся в столбцы films (name - varchar(40)), попадает в ошибки по индексу и не роняет
+    // запись остальных:
+    @Test
+    void shouldReportFilmWithTooLongNameInBatch() throws IOException, InterruptedException {
+        final Film validFilm = filmByValidationCheck.toBuilder()
+                .mpa(Mpa.builder()
+                        .id(1)
+                        .build())
+                .build();
+        final Film filmWithTooLongName = validFilm.toBuilder()
+                .name("1234567890123456789012345678901234567890" + "1")
+                .build();
+        final HttpRequest httpRequest = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/films/batch"))
+                .headers("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(Arrays.asList(validFilm, validFilm,
+                        filmWithTooLongName))))
+                .build();
+
+        final HttpResponse<String> response = httpClient.send(httpRequest, handler);
+        final Type responseType = new TypeToken<BatchResponse<Film>>() {}.getType();
+        final BatchResponse<Film> batchResponse = gson.fromJson(response.body(), responseType);
+
+        assertEquals(200, response.statusCode(), "Слишком длинное название уронило пакетное добавление");
+        assertEquals(2, batchResponse.getAdded().size(), "Добавлены не все корректные фильмы");
+        assertEquals(1, batchResponse.getErrors().size(), "Фильм с длинным названием не попал в ошибки");
+        assertEquals(2, batchResponse.getErrors().get(0).getIndex(), "Ошибка указывает не на тот фильм");
+        assertEquals("Слишком длинное название фильма (лимит: 40 символов)",
+                batchResponse.getErrors().get(0).getAdviceToUser(), "Неверное описание ошибки");
+    }
+
+    /*---Тесты параметров пагинации---*/
+    // limit = 0:
+    @Test
+    void shouldGet400StatusCodeWhenPageLimitIsZero() throws IOException, InterruptedException {
+        final HttpRequest httpRequest = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/films?limit=0"))
+                .GET()
+                .build();
+
+        responseStatusCode = httpClient.send(httpRequest, handler).statusCode();
+
+        assertEquals(400, responseStatusCode, "Ошибка проверки параметра limit = 0");
+    }
+
+    // after < 0:
+    @Test
+    void shouldGet400StatusCodeWhenPageAfterIsNegative() throws IOException, InterruptedException {
+        final HttpRequest httpRequest = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/films?after=-1"))
+                .GET()
+                .build();
+
+        responseStatusCode = httpClient.send(httpRequest, handler).statusCode();
+
+        assertEquals(400, responseStatusCode, "Ошибка проверки параметра after = -1");
+    }
+
+    // yearFrom > yearTo:
+    @Test
+    void shouldGet400StatusCodeWhenYearFromIsAfterYearTo() throws IOException, InterruptedException {
+        final HttpRequest httpRequest = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/films?yearFrom=2000&yearTo=1999"))
+                .GET()
+                .build();
+
+        responseStatusCode = httpClient.send(httpRequest, handler).statusCode();
+
+        assertEquals(400, responseStatusCode, "Ошибка проверки параметров yearFrom = 2000, yearTo = 1999");
+    }
+
+    // by с неизвестным полем:
+    @Test
+    void shouldGet400StatusCodeWhenSearchByIsUnknown() throws IOException, InterruptedException {
+        final HttpRequest httpRequest = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/films/search?q=test&by=title,director"))
+                .GET()
+                .build();
+
+        responseStatusCode = httpClient.send(httpRequest, handler).statusCode();
+
+        assertEquals(400, responseStatusCode, "Ошибка проверки параметра by = title,director");
+    }
+
+    /*---Тесты количества SQL запросов---*/
+    // PUT /films со сменой жанров: UPDATE films, жанры фильма, удаление и добавление жанров двумя batch'ами:
+    @Test
+    void shouldReturnSqlStatementCountOfFilmUpdate() throws IOException, InterruptedException {
+        filmByValidationCheck = filmByValidationCheck.toBuilder()
+                .mpa(Mpa.builder().id(1).build())
+                .genres(Arrays.asList(Genre.builder().id(1).build(), Genre.builder().id(2).build()))
+                .build();
+        final HttpRequest addRequest = HttpRequest.newBuilder()
+                .uri(FILMS_URI)
+                .headers("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(filmByValidationCheck, Film.class)))
+                .build();
+        final Film addedFilm = gson.fromJson(httpClient.send(addRequest, handler).body(), Film.class);
+
+        final Film updatedFilm = addedFilm.toBuilder()
+                .genres(Arrays.asList(Genre.builder().id(2).build(), Genre.builder().id(3).build()))
+                .build();
+        final HttpRequest updateRequest = HttpRequest.newBuilder()
+                .uri(FILMS_URI)
+                .headers("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(gson.toJson(updatedFilm, Film.class)))
+                .build();
+        final HttpResponse<String> response = httpClient.send(updateRequest, handler);
+
+        assertEquals(200, response.statusCode(), "Ошибка обновления фильма");
+        assertEquals("4", response.headers().firstValue(SQL_STATEMENTS_HEADER).orElse(null),
+                "Изменилось количество SQL запросов при обновлении фильма");
+        assertTrue(response.headers().firstValue(SQL_TIME_HEADER).isPresent(), "Нет заголовка со временем в БД");
+    }
+
+    // поиск фильмов: кандидатов находит индекс в памяти, из БД читаются только найденные фильмы одним запросом:
+    @Test
+    void shouldReturnSqlStatementCountOfFilmSearch() throws IOException, InterruptedException {
+        filmByValidationCheck = filmByValidationCheck.toBuilder()
+                .name("Поиск по триграммам")
+                .mpa(Mpa.builder().id(1).build())
+                .build();
+        final HttpRequest addRequest = HttpRequest.newBuilder()
+                .uri(FILMS_URI)
+                .headers("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(filmByValidationCheck, Film.class)))
+                .build();
+        final Film addedFilm = gson.fromJson(httpClient.send(addRequest, handler).body(), Film.class);
+
+        final HttpRequest searchRequest = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/films/search?q=" + URLEncoder.encode("триграм", StandardCharsets.UTF_8)
+                        + "&by=title"))
+                .GET()
+                .build();
+        final HttpResponse<String> response = httpClient.send(searchRequest, handler);
+
+        assertEquals(200, response.statusCode(), "Ошибка поиска фильма");
+        assertTrue(response.body().contains("\"id\":" + addedFilm.getId() + ","), "Фильм не найден");
+        assertEquals("1", response.headers().firstValue(SQL_STATEMENTS_HEADER).orElse(null),
+                "Изменилось количество SQL запросов при поиске фильмов");
+    }
+
+    // фильтры списка фильмов: фильмы и фасеты находит индекс, из БД читаются только фильмы страницы:
+    @Test
+    void shouldReturnFacetHeadersAndSqlStatementCountOfFilteredFilms() throws IOException, InterruptedException {
+        filmByValidationCheck = filmByValidationCheck.toBuilder()
+                .mpa(Mpa.builder().id(5).build())
+                .genres(Arrays.asList(Genre.builder().id(4).build(), Genre.builder().id(6).build()))
+                .duration(1)
+                .build();
+        final HttpRequest addRequest = HttpRequest.newBuilder()
+                .uri(FILMS_URI)
+                .headers("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(filmByValidationCheck, Film.class)))
+                .build();
+        final Film addedFilm = gson.fromJson(httpClient.send(addRequest, handler).body(), Film.class);
+
+        final HttpRequest filterRequest = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/films?genreId=4&genreId=6&mpaId=5&durationMax=1&after="
+                        + (addedFilm.getId() - 1)))
+                .GET()
+                .build();
+        final HttpResponse<String> response = httpClient.send(filterRequest, handler);
+
+        assertEquals(200, response.statusCode(), "Ошибка фильтрации фильмов");
+        assertTrue(response.body().contains("\"id\":" + addedFilm.getId() + ","), "Фильм не найден");
+        assertTrue(response.headers().firstValue("X-Genre-Counts").orElse("").contains("4="),
+                "Нет фасета по жанру");
+        assertTrue(response.headers().firstValue("X-Mpa-Counts").orElse("").startsWith("5="),
+                "Нет фасета по MPA-рейтингу");
+        assertEquals("1", response.headers().firstValue(SQL_STATEMENTS_HEADER).orElse(null),
+                "Изменилось количество SQL запросов при фильтрации фильмов");
+    }
+
+    /*---Тесты условных GET---*/
+    // неизменившийся фильм - 304 без тела и без SQL, после обновления фильма - 200 с новым ETag:
+    @Test
+    void shouldReturnNotModifiedUntilFilmIsUpdated() throws IOException, InterruptedException {
+        filmByValidationCheck = filmByValidationCheck.toBuilder()
+                .mpa(Mpa.builder().id(1).build())
+                .build();
+        final HttpRequest addRequest = HttpRequest.newBuilder()
+                .uri(FILMS_URI)
+                .headers("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(filmByValidationCheck, Film.class)))
+                .build();
+        final Film addedFilm = gson.fromJson(httpClient.send(addRequest, handler).body(), Film.class);
+        final URI filmUri = URI.create(URL + "/films/" + addedFilm.getId());
+
+        final HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(filmUri).GET().build(), handler);
+        final String eTag = response.headers().firstValue("ETag").orElse(null);
+        assertEquals(200, response.statusCode(), "Ошибка получения фильма");
+        assertNotNull(eTag, "Нет ETag у фильма");
+
+        final HttpResponse<String> notModified = httpClient.send(conditionalGet(filmUri, eTag), handler);
+        assertEquals(304, notModified.statusCode(), "Неизменившийся фильм вернулся целиком");
+        assertEquals("", notModified.body(), "У ответа 304 есть тело");
+        assertEquals(eTag, notModified.headers().firstValue("ETag").orElse(null), "ETag ответа 304 другой");
+        assertEquals("0", notModified.headers().firstValue(SQL_STATEMENTS_HEADER).orElse(null),
+                "Ответ 304 выполнял SQL запросы");
+
+        final HttpRequest updateRequest = HttpRequest.newBuilder()
+                .uri(FILMS_URI)
+                .headers("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(gson.toJson(addedFilm.toBuilder()
+                        .duration(addedFilm.getDuration() + 1)
+                        .build(), Film.class)))
+                .build();
+        httpClient.send(updateRequest, handler);
+
+        final HttpResponse<String> modified = httpClient.send(conditionalGet(filmUri, eTag), handler);
+        assertEquals(200, modified.statusCode(), "Обновлённый фильм не вернулся");
+        assertNotEquals(eTag, modified.headers().firstValue("ETag").orElse(null), "ETag не изменился");
+    }
+
+    // неизменившийся топ фильмов - 304, после лайка фильму из топа - 200 с новым ETag:
+    @Test
+    void shouldReturnNotModifiedUntilPopularFilmsAreLiked() throws IOException, InterruptedException {
+        filmByValidationCheck = filmByValidationCheck.toBuilder()
+                .mpa(Mpa.builder().id(1).build())
+                .build();
+        final HttpRequest addFilmRequest = HttpRequest.newBuilder()
+                .uri(FILMS_URI)
+                .headers("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(filmByValidationCheck, Film.class)))
+                .build();
+        final Film addedFilm = gson.fromJson(httpClient.send(addFilmRequest, handler).body(), Film.class);
+        final User user = User.builder()
+                .email("etag@yandex.ru")
+                .login("etag")
+                .name("Etag")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+        final HttpRequest addUserRequest = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/users"))
+                .headers("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(user, User.class)))
+                .build();
+        final User addedUser = gson.fromJson(httpClient.send(addUserRequest, handler).body(), User.class);
+        final URI popularUri = URI.create(URL + "/films/popular?count=1000");
+
+        final String eTag = httpClient.send(HttpRequest.newBuilder(popularUri).GET().build(), handler)
+                .headers().firstValue("ETag").orElse(null);
+        assertNotNull(eTag, "Нет ETag у топа фильмов");
+        assertEquals(304, httpClient.send(conditionalGet(popularUri, "W/" + eTag), handler).statusCode(),
+                "Неизменившийся топ фильмов вернулся целиком");
+
+        final HttpRequest likeRequest = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/films/" + addedFilm.getId() + "/like/" + addedUser.getId()))
+                .PUT(HttpRequest.BodyPublishers.noBody())
+                .build();
+        httpClient.send(likeRequest, handler);
+
+        final HttpResponse<String> modified = httpClient.send(conditionalGet(popularUri, eTag), handler);
+        assertEquals(200, modified.statusCode(), "Топ фильмов после лайка не вернулся");
+        assertNotEquals(eTag, modified.headers().firstValue("ETag").orElse(null), "ETag не изменился");
+    }
+
+    // справочники: ETag есть у списка и у записи, повторный запрос с ним - 304:
+    @Test
+    void shouldReturnNotModifiedForUnchangedGenresAndMpa() throws IOException, InterruptedException {
+        for (String path : new String[]{"/genres", "/genres/1", "/mpa", "/mpa/1"}) {
+            final URI uri = URI.create(URL + path);
+            final HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(uri).GET().build(), handler);
+            final String eTag = response.headers().firstValue("ETag").orElse(null);
+            assertNotNull(eTag, "Нет ETag у " + path);
+
+            assertEquals(304, httpClient.send(conditionalGet(uri, "\"other\", " + eTag), handler).statusCode(),
+                    "Неизменившийся справочник вернулся целиком: " + path);
+        }
+    }
+
+    // несуществующая запись справочника - 404 и с If-None-Match: "*", и с меткой справочника:
+    @Test
+    void shouldReturnNotFoundForUnknownGenreAndMpaWithIfNoneMatch() throws IOException, InterruptedException {
+        for (String path : new String[]{"/genres", "/mpa"}) {
+            final String eTag = httpClient.send(HttpRequest.newBuilder(URI.create(URL + path)).GET().build(), handler)
+                    .headers().firstValue("ETag").orElse(null);
+            final URI unknownUri = URI.create(URL + path + "/777");
+
+            assertEquals(404, httpClient.send(conditionalGet(unknownUri, "*"), handler).statusCode(),
+                    "Несуществующая запись вернула не 404 при If-None-Match: * : " + path);
+            assertEquals(404, httpClient.send(conditionalGet(unknownUri, eTag), handler).statusCode(),
+                    "Несуществующая запись вернула не 404 при метке справочника: " + path);
+        }
+    }
+
+    private static HttpRequest conditionalGet(URI uri, String eTag) {
+        return HttpRequest.newBuilder(uri)
+                .header("If-None-Match", eTag)
+                .GET()
+                .build();
+    }
+
+    /*---Тесты метрик---*/
+    // после запроса к /films в Prometheus есть гистограмма эндпоинта и таймер SQL запроса страницы фильмов:
+    @Test
+    void shouldExposeEndpointAndSqlQueryMetricsForPrometheus() throws IOException, InterruptedException {
+        final HttpRequest filmsRequest = HttpRequest.newBuilder()
+                .uri(FILMS_URI)
+                .GET()
+                .build();
+        httpClient.send(filmsRequest, handler);
+
+        final HttpRequest metricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create(MANAGEMENT_URL + "/actuator/prometheus"))
+                .GET()
+                .build();
+        // время запроса записывается уже после отправки ответа клиенту, поэтому ждём его появления:
+        HttpResponse<String> response = httpClient.send(metricsRequest, handler);
+        for (int attempt = 0; attempt < 20 && !response.body().contains("uri=\"/films\""); attempt++) {
+            Thread.sleep(50);
+            response = httpClient.send(metricsRequest, handler);
+        }
+
+        assertEquals(200, response.statusCode(), "Prometheus endpoint недоступен");
+        assertTrue(response.body().contains("http_server_requests_seconds_bucket{application=\"filmorate\","
+                + "exception=\"None\",method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/films\""),
+                "Нет гистограммы задержки GET /films");
+        assertTrue(response.body().contains("filmorate_jdbc_statement_seconds_bucket{application=\"filmorate\","
+                + "outcome=\"SUCCESS\",query=\"SQL_QUERY_GET_FILMS_PAGE\""),
+                "Нет гистограммы SQL_QUERY_GET_FILMS_PAGE");
+        assertTrue(response.body().contains("hikaricp_connections_active"), "Нет метрик пула соединений");
+        assertTrue(response.body().contains("executor_queued_tasks{application=\"filmorate\",name=\"storage-heavy\""),
+                "Нет глубины очереди пула storage-heavy");
+    }
+}
@@ -0,0 +1,222 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.jsontypeadapter.LocalDateAdapter;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// нагрузочный тест: параллельные POST и PUT /films не должны перемешивать жанры разных фильмов,
+// а параллельные PUT одного фильма - оставлять жанры, которых не было ни в одном запросе:
+@AutoConfigureMetrics
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT)
+public class FilmWriteStressTests {
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+            .create();
+    private static final String URL = "http://localhost:8080";
+    private static final URI FILMS_URI = URI.create(URL + "/films");
+    private static final HttpResponse.BodyHandler<String> handler = HttpResponse.BodyHandlers.ofString();
+    private static final int THREADS = 16;
+    private static final int FILMS_PER_THREAD = 25;
+    private static final int GENRES_COUNT = 6;
+    // длинные списки жанров с повторами увеличивают окно гонки при удалении дубликатов:
+    private static final int MAX_GENRES_IN_REQUEST = 50;
+    // фильмы, которые все потоки обновляют одновременно, и сколько раз каждый поток обновляет каждый из них:
+    private static final int SHARED_FILMS = 5;
+    private static final int UPDATES_PER_SHARED_FILM = 10;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Test
+    void shouldKeepGenresOfEveryFilmUnderConcurrentWrites() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        List<Future<?>> tasks = new ArrayList<>();
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            tasks.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < FILMS_PER_THREAD; i++) {
+                    writeAndCheckFilm(failures);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertTrue(failures.isEmpty(), "Жанры фильмов испорчены при параллельной записи: " + failures);
+    }
+
+    // все потоки обновляют одни и те же фильмы: ни один PUT не падает с 5xx, а жанры каждого фильма в итоге
+    // совпадают с жанрами одного из отправленных для него запросов:
+    @Test
+    void shouldKeepGenresOfOneRequestUnderConcurrentUpdatesOfSameFilm()
+            throws IOException, InterruptedException, ExecutionException {
+        List<Film> sharedFilms = new ArrayList<>(SHARED_FILMS);
+        Map<Long, Set<List<Integer>>> submittedGenreIds = new ConcurrentHashMap<>();
+        for (int i = 0; i < SHARED_FILMS; i++) {
+            Film film = newFilm();
+            HttpResponse<String> addResponse = send(HttpRequest.newBuilder()
+                    .uri(FILMS_URI)
+                    .headers("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(film, Film.class)))
+                    .build());
+            assertEquals(200, addResponse.statusCode(), addResponse.body());
+            Film addedFilm = gson.fromJson(addResponse.body(), Film.class);
+            sharedFilms.add(addedFilm);
+            submittedGenreIds.computeIfAbsent(addedFilm.getId(), id -> ConcurrentHashMap.newKeySet())
+                    .add(sortedGenreIds(film.getGenres()));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            tasks.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < UPDATES_PER_SHARED_FILM; i++) {
+                    for (Film sharedFilm : sharedFilms) {
+                        Film updatedFilm = sharedFilm.toBuilder()
+                                .genres(randomGenres())
+                                .build();
+                        submittedGenreIds.get(sharedFilm.getId()).add(sortedGenreIds(updatedFilm.getGenres()));
+                        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                                .uri(FILMS_URI)
+                                .headers("Content-Type", "application/json")
+                                .PUT(HttpRequest.BodyPublishers.ofString(gson.toJson(updatedFilm, Film.class)))
+                                .build());
+                        if (response.statusCode() >= 500) {
+                            failures.add("id = " + sharedFilm.getId() + ": " + response.statusCode() + " "
+                                    + response.body());
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        assertTrue(failures.isEmpty(), "Параллельное обновление фильма завершилось ошибкой: " + failures);
+
+        for (Film sharedFilm : sharedFilms) {
+            List<Integer> storedGenreIds = storedGenreIds(sharedFilm.getId());
+            assertTrue(submittedGenreIds.get(sharedFilm.getId()).contains(storedGenreIds),
+                    "id = " + sharedFilm.getId() + ": жанры " + storedGenreIds + " не отправлялись ни в одном запросе");
+        }
+    }
+
+    /*------Вспомогательные методы------*/
+    // добавляем фильм, обновляем ему жанры и проверяем, что сохранились именно они:
+    private void writeAndCheckFilm(Queue<String> failures) throws IOException, InterruptedException {
+        Film film = newFilm();
+
+        HttpResponse<String> addResponse = send(HttpRequest.newBuilder()
+                .uri(FILMS_URI)
+                .headers("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(film, Film.class)))
+                .build());
+        assertEquals(200, addResponse.statusCode(), addResponse.body());
+        Film addedFilm = gson.fromJson(addResponse.body(), Film.class);
+        checkGenres(addedFilm.getId(), film.getGenres(), failures);
+
+        Film updatedFilm = addedFilm.toBuilder()
+                .genres(randomGenres())
+                .build();
+        HttpResponse<String> updateResponse = send(HttpRequest.newBuilder()
+                .uri(FILMS_URI)
+                .headers("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(gson.toJson(updatedFilm, Film.class)))
+                .build());
+        assertEquals(200, updateResponse.statusCode(), updateResponse.body());
+        checkGenres(addedFilm.getId(), updatedFilm.getGenres(), failures);
+    }
+
+    private void checkGenres(Long filmId, List<Genre> requestedGenres, Queue<String> failures)
+            throws IOException, InterruptedException {
+        List<Integer> expectedGenreIds = sortedGenreIds(requestedGenres);
+        List<Integer> storedGenreIds = storedGenreIds(filmId);
+        if (!expectedGenreIds.equals(storedGenreIds)) {
+            failures.add("id = " + filmId + ": ожидались " + expectedGenreIds + ", сохранены " + storedGenreIds);
+        }
+    }
+
+    // id жанров фильма из GET /films/{id} (в ответе жанры уже отсортированы по id):
+    private List<Integer> storedGenreIds(Long filmId) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/films/" + filmId))
+                .GET()
+                .build());
+        Film storedFilm = gson.fromJson(response.body(), Film.class);
+
+        return storedFilm.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Integer> sortedGenreIds(List<Genre> genres) {
+        return genres.stream()
+                .map(Genre::getId)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static Film newFilm() {
+        return Film.builder()
+                .name("Стресс-тест")
+                .description("Параллельная запись фильмов")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(Mpa.builder()
+                        .id(1)
+                        .build())
+                .genres(randomGenres())
+                .build();
+    }
+
+    // случайные жанры с повторами (список может быть пустым):
+    private static List<Genre> randomGenres() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int count = random.nextInt(MAX_GENRES_IN_REQUEST);
+        List<Genre> genres = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            genres.add(Genre.builder()
+                    .id(1 + random.nextInt(GENRES_COUNT))
+                    .build());
+        }
+        return genres;
+    }
+
+    private HttpResponse<String> send(HttpRequest httpRequest) throws IOException, InterruptedException {
+        return httpClient.send(httpRequest, handler);
+    }
+}
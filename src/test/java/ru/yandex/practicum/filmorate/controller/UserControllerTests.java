@@ -2,10 +2,14 @@ package ru.yandex.practicum.filmorate.controller;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.context.SpringBootTest;
 import ru.yandex.practicum.filmorate.jsontypeadapter.LocalDateAdapter;
+import ru.yandex.practicum.filmorate.model.BatchItemError;
+import ru.yandex.practicum.filmorate.model.BatchResponse;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.io.IOException;
@@ -13,10 +17,14 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.lang.reflect.Type;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+@AutoConfigureMetrics
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT)
 public class UserControllerTests {
     private static final Gson gson = new GsonBuilder()
@@ -47,6 +55,67 @@ public class UserControllerTests {
         init();
     }
 
+    /*---Тесты пакетного добавления---*/
+    // некорректный пользователь не мешает добавить остальных, пустое имя заменяется логином:
+    @Test
+    void shouldAddValidUsersAndReportInvalidOnesInBatch() throws IOException, InterruptedException {
+        final User invalidUser = userByValidationCheck.toBuilder()
+                .login("with blank space")
+                .build();
+        final User userWithoutName = userByValidationCheck.toBuilder()
+                .name("")
+                .build();
+        final HttpRequest httpRequest = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/users/batch"))
+                .headers("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(List.of(invalidUser, userByValidationCheck,
+                        userWithoutName))))
+                .build();
+
+        final HttpResponse<String> response = httpClient.send(httpRequest, handler);
+        final Type responseType = new TypeToken<BatchResponse<User>>() {}.getType();
+        final BatchResponse<User> batchResponse = gson.fromJson(response.body(), responseType);
+
+        assertEquals(200, response.statusCode(), "Ошибка пакетного добавления пользователей");
+        assertEquals(2, batchResponse.getAdded().size(), "Добавлены не все корректные пользователи");
+        assertEquals(batchResponse.getAdded().get(0).getId() + 1, batchResponse.getAdded().get(1).getId(),
+                "id пользователей не в порядке запроса");
+        assertEquals("negodnik", batchResponse.getAdded().get(1).getName(), "Пустое имя не заменено логином");
+        assertEquals(0, batchResponse.getErrors().get(0).getIndex(), "Ошибка указывает не на того пользователя");
+    }
+
+    // пользователи, не помещающиеся в столбцы users (login и name - varchar(40), email - varchar(100)), попадают
+    // в ошибки по индексу и не роняют запись остальных:
+    @Test
+    void shouldReportUsersWithTooLongFieldsInBatch() throws IOException, InterruptedException {
+        final String fortyOneSymbols = "1234567890123456789012345678901234567890" + "1";
+        final User userWithTooLongLogin = userByValidationCheck.toBuilder()
+                .login(fortyOneSymbols)
+                .build();
+        final User userWithTooLongName = userByValidationCheck.toBuilder()
+                .name(fortyOneSymbols)
+                .build();
+        final User userWithTooLongEmail = userByValidationCheck.toBuilder()
+                .email("obman@" + fortyOneSymbols + "." + fortyOneSymbols + "." + fortyOneSymbols + ".ru")
+                .build();
+        final HttpRequest httpRequest = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/users/batch"))
+                .headers("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(List.of(userByValidationCheck,
+                        userWithTooLongLogin, userWithTooLongName, userWithTooLongEmail))))
+                .build();
+
+        final HttpResponse<String> response = httpClient.send(httpRequest, handler);
+        final Type responseType = new TypeToken<BatchResponse<User>>() {}.getType();
+        final BatchResponse<User> batchResponse = gson.fromJson(response.body(), responseType);
+
+        assertEquals(200, response.statusCode(), "Слишком длинные поля уронили пакетное добавление");
+        assertEquals(1, batchResponse.getAdded().size(), "Корректный пользователь не добавлен");
+        assertEquals(List.of(1, 2, 3), batchResponse.getErrors().stream()
+                .map(BatchItemError::getIndex)
+                .collect(Collectors.toList()), "Ошибки указывают не на тех пользователей");
+    }
+
     /*---Тесты валидации объекта User---*/
     // email без @:
     @Test
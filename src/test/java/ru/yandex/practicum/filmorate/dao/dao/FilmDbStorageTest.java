@@ -1,22 +1,42 @@
 package ru.yandex.practicum.filmorate.dao.dao;
 
 import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.MpaDbStorage;
 import ru.yandex.practicum.filmorate.dao.UserDbStorage;
 import ru.yandex.practicum.filmorate.exception.AlreadyExistException;
 import ru.yandex.practicum.filmorate.exception.IllegalIdException;
+import ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.FilteredFilms;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -26,8 +46,10 @@ import static ru.yandex.practicum.filmorate.exception.IllegalIdException.ILLEGAL
 
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @JdbcTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
 public class FilmDbStorageTest {
     private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
     private FilmDbStorage filmStorage;
     private UserDbStorage userStorage;
     private Film film;
@@ -35,7 +57,7 @@ public class FilmDbStorageTest {
     private Film filmForCheckTopList;
 
     public void init() {
-        filmStorage = new FilmDbStorage(jdbcTemplate);
+        filmStorage = new FilmDbStorage(jdbcTemplate, new GenreDbStorage(jdbcTemplate), new MpaDbStorage(jdbcTemplate));
         userStorage = new UserDbStorage(jdbcTemplate);
         film = Film.builder()
                 .name("test_film1_name")
@@ -77,6 +99,11 @@ public class FilmDbStorageTest {
         init();
     }
 
+    @AfterEach
+    public void tearDown() {
+        TestTables.clear(jdbcTemplate);
+    }
+
     @Test
     public void testGetFilmById() {
         Film savedFilm = filmStorage.getFilmById(film.getId());
@@ -101,6 +128,67 @@ public class FilmDbStorageTest {
                 .isEqualTo(filmStorage.getFilmById(film.getId()));
     }
 
+    // фильм без id при обновлении добавляется как новый:
+    @Test
+    public void testUpdateFilmWithoutIdAddsFilm() {
+        Film addedFilm = filmStorage.updateFilm(filmForCheckTopList);
+
+        assertThat(film.getId() + 1).isEqualTo(addedFilm.getId());
+        assertThat(filmForCheckTopList.getName()).isEqualTo(filmStorage.getFilmById(addedFilm.getId()).getName());
+    }
+
+    // при обновлении меняются только изменившиеся жанры, строки неизменных жанров остаются прежними:
+    @Test
+    public void testUpdateFilmGenres() {
+        Integer comedyRowId = getFilmGenreRowId(film.getId(), 1);
+        Film updateFilm = film.toBuilder()
+                .genres(List.of(Genre.builder().id(3).build(), Genre.builder().id(1).build()))
+                .build();
+
+        filmStorage.updateFilm(updateFilm);
+
+        assertThat(List.of(1, 3)).isEqualTo(filmStorage.getFilmById(film.getId()).getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList()));
+        assertThat(comedyRowId).isEqualTo(getFilmGenreRowId(film.getId(), 1));
+
+        filmStorage.updateFilm(updateFilm.toBuilder()
+                .genres(null)
+                .build());
+
+        assertThat(0).isEqualTo(filmStorage.getFilmById(film.getId()).getGenres().size());
+    }
+
+    // одновременные обновления одного фильма: второе ждёт блокировку строки фильма и сравнивает свои жанры
+    // с жанрами, записанными первым, а не с прочитанными до его фиксации:
+    @Test
+    public void testConcurrentUpdatesOfFilmGenres() throws Exception {
+        CountDownLatch firstUpdated = new CountDownLatch(1);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> firstUpdate = executor.submit(() -> transaction.executeWithoutResult(status -> {
+                filmStorage.updateFilm(film.toBuilder()
+                        .genres(List.of(Genre.builder().id(2).build()))
+                        .build());
+                firstUpdated.countDown();
+                pause(200);
+            }));
+            firstUpdated.await();
+
+            transaction.executeWithoutResult(status -> filmStorage.updateFilm(film.toBuilder()
+                    .genres(List.of(Genre.builder().id(1).build(), Genre.builder().id(3).build()))
+                    .build()));
+            firstUpdate.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(List.of(1, 3), filmStorage.getFilmById(film.getId()).getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList()));
+    }
+
     @Test
     public void testGetAllFilms() {
         List<Film> filmList = filmStorage.getAllFilms();
@@ -108,6 +196,82 @@ public class FilmDbStorageTest {
         assertThat(1).isEqualTo(filmList.size());
     }
 
+    // фильм с несколькими жанрами возвращается одним объектом со всеми жанрами:
+    @Test
+    public void testGetAllFilmsWithSeveralGenres() {
+        Film filmWithGenres = filmForCheckTopList.toBuilder()
+                .genres(List.of(Genre.builder().id(1).build(),
+                        Genre.builder().id(2).build(),
+                        Genre.builder().id(3).build()))
+                .build();
+        filmStorage.addFilm(filmWithGenres);
+
+        List<Film> filmList = filmStorage.getAllFilms();
+
+        assertThat(2).isEqualTo(filmList.size());
+        assertThat(3).isEqualTo(filmList.get(1).getGenres().size());
+    }
+
+    // проверяем потоковую выгрузку фильмов:
+    @Test
+    public void testStreamAllFilms() {
+        filmStorage.addFilm(filmForCheckTopList.toBuilder()
+                .genres(List.of(Genre.builder().id(1).build(), Genre.builder().id(2).build()))
+                .build());
+        List<Film> streamedFilms = new ArrayList<>();
+
+        filmStorage.streamAllFilms(streamedFilms::add);
+
+        assertThat(filmStorage.getAllFilms()).isEqualTo(streamedFilms);
+    }
+
+    // проверяем постраничное получение фильмов:
+    @Test
+    public void testGetFilmsPage() {
+        filmStorage.addFilm(filmForCheckTopList);
+
+        List<Film> firstPage = filmStorage.getFilmsPage(0L, 1);
+        List<Film> secondPage = filmStorage.getFilmsPage(firstPage.get(0).getId(), 1);
+
+        assertThat(film).isEqualTo(firstPage.get(0));
+        assertThat(filmForCheckTopList.getId()).isEqualTo(secondPage.get(0).getId());
+        assertThat(0).isEqualTo(filmStorage.getFilmsPage(secondPage.get(0).getId(), 1).size());
+    }
+
+    // проверяем пакетное добавление фильмов:
+    @Test
+    public void testAddFilms() {
+        Film secondFilm = filmForCheckTopList.toBuilder()
+                .rate(10)
+                .genres(List.of(Genre.builder().id(2).build(), Genre.builder().id(1).build(),
+                        Genre.builder().id(2).build()))
+                .build();
+        Film thirdFilm = filmForCheckTopList.toBuilder()
+                .name("test_film3_name")
+                .rate(null)
+                .build();
+
+        List<Film> addedFilms = filmStorage.addFilms(List.of(secondFilm, thirdFilm));
+
+        assertThat(film.getId() + 1).isEqualTo(addedFilms.get(0).getId());
+        assertThat(film.getId() + 2).isEqualTo(addedFilms.get(1).getId());
+        assertThat(List.of(1, 2)).isEqualTo(filmStorage.getFilmById(secondFilm.getId()).getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList()));
+        assertThat("test_film3_name").isEqualTo(filmStorage.getFilmById(thirdFilm.getId()).getName());
+        assertThat(secondFilm.getId()).isEqualTo(filmStorage.getTopFilmsForLikes(1).get(0).getId());
+    }
+
+    // фильм с несуществующим жанром не проходит проверку перед пакетным добавлением:
+    @Test
+    void shouldGetInvalidDataBaseQueryExceptionWhenNewFilmGenreIdIs777() {
+        Film filmWithUnknownGenre = filmForCheckTopList.toBuilder()
+                .genres(List.of(Genre.builder().id(777).build()))
+                .build();
+
+        assertThrows(InvalidDataBaseQueryException.class, () -> filmStorage.checkNewFilm(filmWithUnknownGenre));
+    }
+
     // проверяем функцию добавления лайка:
     @Test
     public void testAddLikeToFilm() {
@@ -118,6 +282,30 @@ public class FilmDbStorageTest {
         assertThat(6).isEqualTo(filmStorage.getFilmById(film.getId()).getRate());
     }
 
+    // повторный лайк завершается успешно, но не добавляется и не меняет rate:
+    @Test
+    void shouldIgnoreRepeatedLikeOfFilm() {
+        userStorage.addUser(userForLike);
+        String likeMessage = filmStorage.addLikeToFilm(film.getId(), userForLike.getId());
+
+        assertThat(filmStorage.addLikeToFilm(film.getId(), userForLike.getId())).isEqualTo(likeMessage);
+        assertThat(6).isEqualTo(filmStorage.getFilmById(film.getId()).getRate());
+        assertThat(1).isEqualTo(filmStorage.getLikeCount(film.getId()));
+    }
+
+    // лайк, который параллельный запрос уже записал в БД, но ещё не в матрицу лайков, отклоняет уникальный индекс:
+    // запрос завершается успешно, rate не меняется:
+    @Test
+    void shouldIgnoreLikeAlreadyWrittenByConcurrentRequest() {
+        userStorage.addUser(userForLike);
+        jdbcTemplate.update("INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)",
+                film.getId(), userForLike.getId());
+
+        filmStorage.addLikeToFilm(film.getId(), userForLike.getId());
+
+        assertThat(5).isEqualTo(filmStorage.getFilmById(film.getId()).getRate());
+    }
+
     // проверяем функцию удаления лайка:
     @Test
     public void testRemoveLikeFromFilm() {
@@ -131,6 +319,45 @@ public class FilmDbStorageTest {
         assertThat(5).isEqualTo(filmStorage.getFilmById(film.getId()).getRate());
     }
 
+    // удаление лайка, которого нет, не меняет rate:
+    @Test
+    public void testRemoveMissingLikeDoesNotChangeRate() {
+        userStorage.addUser(userForLike);
+        filmStorage.addLikeToFilm(film.getId(), userForLike.getId());
+        filmStorage.removeLikeFromFilm(film.getId(), userForLike.getId());
+
+        filmStorage.removeLikeFromFilm(film.getId(), userForLike.getId());
+
+        assertThat(5).isEqualTo(filmStorage.getFilmById(film.getId()).getRate());
+    }
+
+    // лайк из откатившейся транзакции не попадает в матрицу лайков, повторить его можно:
+    @Test
+    public void testRolledBackLikeIsNotInLikeMatrix() {
+        userStorage.addUser(userForLike);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            filmStorage.addLikeToFilm(film.getId(), userForLike.getId());
+            status.setRollbackOnly();
+        });
+
+        assertThat(0).isEqualTo(filmStorage.getLikeCount(film.getId()));
+        filmStorage.addLikeToFilm(film.getId(), userForLike.getId());
+        assertThat(1).isEqualTo(filmStorage.getLikeCount(film.getId()));
+    }
+
+    // количество лайков считается по лайкам, а не по rate (в rate есть начальная оценка):
+    @Test
+    public void testGetLikeCount() {
+        userStorage.addUser(userForLike);
+        assertThat(0).isEqualTo(filmStorage.getLikeCount(film.getId()));
+
+        filmStorage.addLikeToFilm(film.getId(), userForLike.getId());
+
+        assertThat(1).isEqualTo(filmStorage.getLikeCount(film.getId()));
+        assertThrows(IllegalIdException.class, () -> filmStorage.getLikeCount(9999L));
+    }
+
     // проверяем функцию получения топ фильмов:
     @Test
     public void testGetTopFilmsForLikes() {
@@ -141,6 +368,263 @@ public class FilmDbStorageTest {
         assertThat(film).isEqualTo(topFilms.get(0));
     }
 
+    // count ограничивает количество фильмов, а не строк с жанрами:
+    @Test
+    public void testGetTopFilmsForLikesLimitsFilmsNotGenres() {
+        filmStorage.addFilm(filmForCheckTopList.toBuilder()
+                .rate(10)
+                .genres(List.of(Genre.builder().id(1).build(), Genre.builder().id(2).build()))
+                .build());
+
+        List<Film> topFilms = filmStorage.getTopFilmsForLikes(2);
+
+        assertThat(2).isEqualTo(topFilms.size());
+        assertThat(2).isEqualTo(topFilms.get(0).getGenres().size());
+        assertThat(film).isEqualTo(topFilms.get(1));
+    }
+
+    // лайки меняют порядок топа без пересортировки таблицы films:
+    @Test
+    public void testGetTopFilmsForLikesAfterLikes() {
+        filmStorage.addFilm(filmForCheckTopList);
+        userStorage.addUser(userForLike);
+        User secondUser = userStorage.addUser(userForLike.toBuilder()
+                .id(null)
+                .email("testuser2@tset.com")
+                .login("test_user2_login")
+                .build());
+
+        filmStorage.addLikeToFilm(filmForCheckTopList.getId(), userForLike.getId());
+        filmStorage.addLikeToFilm(filmForCheckTopList.getId(), secondUser.getId());
+        List<Film> topFilms = filmStorage.getTopFilmsForLikes(2);
+
+        assertThat(filmForCheckTopList.getId()).isEqualTo(topFilms.get(0).getId());
+        assertThat(6).isEqualTo(topFilms.get(0).getRate());
+
+        filmStorage.removeLikeFromFilm(filmForCheckTopList.getId(), secondUser.getId());
+        filmStorage.removeLikeFromFilm(filmForCheckTopList.getId(), userForLike.getId());
+        topFilms = filmStorage.getTopFilmsForLikes(2);
+
+        assertThat(film).isEqualTo(topFilms.get(0));
+    }
+
+    // повторный запрос топа берёт фильмы из кеша (изменение в БД в обход хранилища не видно),
+    // лайк фильму из топа и обновление фильма кеш сбрасывают:
+    @Test
+    public void testGetTopFilmsForLikesFromCache() {
+        userStorage.addUser(userForLike);
+        List<Film> topFilms = filmStorage.getTopFilmsForLikes(1);
+        jdbcTemplate.update("UPDATE films SET name = 'changed_in_db' WHERE film_id = ?;", film.getId());
+
+        assertThat(topFilms).isEqualTo(filmStorage.getTopFilmsForLikes(1));
+
+        filmStorage.addLikeToFilm(film.getId(), userForLike.getId());
+        topFilms = filmStorage.getTopFilmsForLikes(1);
+
+        assertThat("changed_in_db").isEqualTo(topFilms.get(0).getName());
+        assertThat(6).isEqualTo(topFilms.get(0).getRate());
+
+        filmStorage.updateFilm(film.toBuilder()
+                .name("test_update_name")
+                .build());
+
+        assertThat("test_update_name").isEqualTo(filmStorage.getTopFilmsForLikes(1).get(0).getName());
+    }
+
+    // изменение фильма из ответа не попадает в кеш и в следующие ответы:
+    @Test
+    public void testTopFilmsFromCacheAreCopies() {
+        List<Film> topFilms = filmStorage.getTopFilmsForLikes(1);
+        topFilms.get(0).setRate(100);
+        topFilms.get(0).setGenres(List.of());
+
+        Film cachedFilm = filmStorage.getTopFilmsForLikes(1).get(0);
+        cachedFilm.setName("changed_by_caller");
+
+        Film topFilm = filmStorage.getTopFilmsForLikes(1).get(0);
+        assertThat(5).isEqualTo(topFilm.getRate());
+        assertThat(film.getGenres()).isEqualTo(topFilm.getGenres());
+        assertThat(film.getName()).isEqualTo(topFilm.getName());
+    }
+
+    // при переполнении кеш топа вытесняет давнее всего запрошенный count, недавние остаются в кеше:
+    @Test
+    public void testTopFilmsCacheEvictsLeastRecentlyUsedCount() {
+        filmStorage.getTopFilmsForLikes(1);
+        for (int count = 2; count <= 17; count++) {
+            filmStorage.getTopFilmsForLikes(1);
+            filmStorage.getTopFilmsForLikes(count);
+        }
+        jdbcTemplate.update("UPDATE films SET name = 'changed_in_db' WHERE film_id = ?;", film.getId());
+
+        assertThat(film.getName()).isEqualTo(filmStorage.getTopFilmsForLikes(1).get(0).getName());
+        assertThat("changed_in_db").isEqualTo(filmStorage.getTopFilmsForLikes(2).get(0).getName());
+    }
+
+    // фильм из откатившейся транзакции не попадает в индекс популярности:
+    @Test
+    public void testRolledBackFilmIsNotInPopularityIndex() {
+        Film rolledBackFilm = filmForCheckTopList.toBuilder()
+                .rate(100)
+                .build();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            filmStorage.addFilm(rolledBackFilm);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(List.of(film.getId()), filmIds(filmStorage.getTopFilmsForLikes(10)));
+        assertThrows(IllegalIdException.class, () -> filmStorage.getLikeCount(rolledBackFilm.getId()));
+    }
+
+    // фильм из откатившейся транзакции не находится поиском:
+    @Test
+    public void testRolledBackFilmIsNotInSearchIndex() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            filmStorage.addFilm(filmForCheckTopList);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(List.of(), filmStorage.searchFilms("Не_попадёт",
+                EnumSet.allOf(FilmSearchIndex.Field.class), false, 10));
+    }
+
+    // индекс популярности заполняется из БД при создании хранилища:
+    @Test
+    public void testGetTopFilmsForLikesAfterRestart() {
+        filmStorage.addFilm(filmForCheckTopList.toBuilder()
+                .rate(10)
+                .build());
+
+        FilmDbStorage restartedStorage = new FilmDbStorage(jdbcTemplate,
+                new GenreDbStorage(jdbcTemplate), new MpaDbStorage(jdbcTemplate));
+        List<Film> topFilms = restartedStorage.getTopFilmsForLikes(2);
+
+        assertThat(10).isEqualTo(topFilms.get(0).getRate());
+        assertThat(film).isEqualTo(topFilms.get(1));
+    }
+
+    // рекомендуются фильмы пользователей с общими лайками, матрица лайков заполняется из БД:
+    @Test
+    public void testGetRecommendedFilms() {
+        userStorage.addUser(userForLike);
+        User secondUser = userStorage.addUser(userForLike.toBuilder()
+                .id(null)
+                .email("testuser2@tset.com")
+                .login("test_user2_login")
+                .build());
+        filmStorage.addFilm(filmForCheckTopList);
+        filmStorage.addLikeToFilm(film.getId(), userForLike.getId());
+        filmStorage.addLikeToFilm(film.getId(), secondUser.getId());
+        filmStorage.addLikeToFilm(filmForCheckTopList.getId(), secondUser.getId());
+
+        assertEquals(List.of(filmForCheckTopList.getId()),
+                filmIds(filmStorage.getRecommendedFilms(userForLike.getId(), 10)));
+        assertEquals(List.of(), filmStorage.getRecommendedFilms(secondUser.getId(), 10));
+
+        FilmDbStorage restartedStorage = new FilmDbStorage(jdbcTemplate,
+                new GenreDbStorage(jdbcTemplate), new MpaDbStorage(jdbcTemplate));
+        assertEquals(List.of(filmForCheckTopList.getId()),
+                filmIds(restartedStorage.getRecommendedFilms(userForLike.getId(), 10)));
+
+        filmStorage.removeLikeFromFilm(film.getId(), userForLike.getId());
+        assertEquals(List.of(), filmStorage.getRecommendedFilms(userForLike.getId(), 10));
+    }
+
+    // фильтры списка фильмов и фасеты, индекс обновляется при обновлении фильма и заполняется при старте:
+    @Test
+    public void testGetFilteredFilmsPage() {
+        filmStorage.addFilm(filmForCheckTopList);
+
+        FilteredFilms filteredFilms = filmStorage.getFilteredFilmsPage(FilmFilter.builder()
+                .genreIds(Set.of(1))
+                .build(), 0L, 10);
+        assertEquals(List.of(film.getId()), filmIds(filteredFilms.getFilms()));
+        assertEquals(1, filteredFilms.getCount());
+        assertEquals(Map.of(1, 1), filteredFilms.getGenreCounts());
+        assertEquals(Map.of(1, 1), filteredFilms.getMpaCounts());
+
+        filteredFilms = filmStorage.getFilteredFilmsPage(FilmFilter.builder()
+                .mpaId(1)
+                .yearFrom(2000)
+                .durationMax(100)
+                .build(), 0L, 10);
+        assertEquals(List.of(filmForCheckTopList.getId()), filmIds(filteredFilms.getFilms()));
+        assertEquals(Map.of(), filteredFilms.getGenreCounts());
+
+        filmStorage.updateFilm(film.toBuilder()
+                .genres(List.of(Genre.builder().id(2).build()))
+                .build());
+        FilmDbStorage restartedStorage = new FilmDbStorage(jdbcTemplate,
+                new GenreDbStorage(jdbcTemplate), new MpaDbStorage(jdbcTemplate));
+        for (FilmDbStorage storage : List.of(filmStorage, restartedStorage)) {
+            filteredFilms = storage.getFilteredFilmsPage(FilmFilter.builder()
+                    .genreIds(Set.of(1, 2))
+                    .yearTo(1999)
+                    .build(), 0L, 10);
+            assertEquals(List.of(film.getId()), filmIds(filteredFilms.getFilms()));
+            assertEquals(Map.of(2, 1), filteredFilms.getGenreCounts());
+        }
+    }
+
+    // фильм из откатившейся транзакции (неизвестный жанр) не попадает в фильтры и счётчики фасетов:
+    @Test
+    public void testRolledBackFilmIsNotInFacetIndex() {
+        Film filmWithUnknownGenre = filmForCheckTopList.toBuilder()
+                .genres(List.of(Genre.builder().id(999).build()))
+                .build();
+
+        assertThrows(RuntimeException.class, () -> new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> filmStorage.addFilm(filmWithUnknownGenre)));
+
+        FilteredFilms filteredFilms = filmStorage.getFilteredFilmsPage(FilmFilter.builder().build(), 0L, 10);
+        assertEquals(List.of(film.getId()), filmIds(filteredFilms.getFilms()));
+        assertEquals(1, filteredFilms.getCount());
+    }
+
+    // фильтр без ограничения страницы читает фильмы из БД частями по SELECT_BY_IDS_BATCH_SIZE id:
+    @Test
+    public void testGetFilteredFilmsPageLargerThanSelectBatch() {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            films.add(filmForCheckTopList.toBuilder().build());
+        }
+        filmStorage.addFilms(films);
+
+        FilteredFilms filteredFilms = filmStorage.getFilteredFilmsPage(FilmFilter.builder()
+                .mpaId(1)
+                .build(), 0L, Integer.MAX_VALUE);
+
+        assertEquals(1501, filteredFilms.getFilms().size());
+        assertEquals(film.getId(), filteredFilms.getFilms().get(0).getId());
+        assertEquals(films.get(films.size() - 1).getId(),
+                filteredFilms.getFilms().get(filteredFilms.getFilms().size() - 1).getId());
+    }
+
+    // поиск по подстроке названия и описания, индекс обновляется при обновлении фильма и заполняется при старте:
+    @Test
+    public void testSearchFilms() {
+        filmStorage.addFilm(filmForCheckTopList);
+        Set<FilmSearchIndex.Field> allFields = EnumSet.allOf(FilmSearchIndex.Field.class);
+
+        assertEquals(List.of(filmForCheckTopList.getId()),
+                filmIds(filmStorage.searchFilms("ТОП до", allFields, false, 10)));
+        assertEquals(List.of(film.getId()),
+                filmIds(filmStorage.searchFilms("film1_desc", allFields, false, 10)));
+        assertEquals(List.of(), filmStorage.searchFilms("film1_desc",
+                EnumSet.of(FilmSearchIndex.Field.TITLE), false, 10));
+
+        filmStorage.updateFilm(film.toBuilder().name("Тёмный рыцарь").build());
+        assertEquals(List.of(film.getId()),
+                filmIds(filmStorage.searchFilms("темный", allFields, false, 10)));
+        assertEquals(List.of(), filmStorage.searchFilms("film1_name", allFields, false, 10));
+
+        FilmDbStorage restartedStorage = new FilmDbStorage(jdbcTemplate,
+                new GenreDbStorage(jdbcTemplate), new MpaDbStorage(jdbcTemplate));
+        assertEquals(List.of(film.getId()),
+                filmIds(restartedStorage.searchFilms("рыцар", allFields, false, 10)));
+    }
+
     // Попытка добавить новый фильм, который уже добавлен:
     @Test
     void shouldAlreadyExistExceptionWhenNewFilmWithId() {
@@ -188,4 +672,23 @@ public class FilmDbStorageTest {
         assertEquals(ILLEGAL_FILM_ID_MESSAGE + "-1",
                 exception.getMessage(), "Ошибка: метод работает с отрицательным id.");
     }
-}
\ No newline at end of file
+
+    private static List<Long> filmIds(List<Film> films) {
+        return films.stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Integer getFilmGenreRowId(Long filmId, Integer genreId) {
+        return jdbcTemplate.queryForObject("SELECT film_genres_id FROM film_genres WHERE film_id = ? AND genre_id = ?",
+                Integer.class, filmId, genreId);
+    }
+}
@@ -7,11 +7,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException;
 import ru.yandex.practicum.filmorate.model.Genre;
 
 import java.util.List;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException.INVALID_DATA_BASE_QUERY_MESSAGE;
 
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @JdbcTest
@@ -48,4 +52,42 @@ public class GenreDbStorageTest {
 
         assertThat(6).isEqualTo(genreList.size());
     }
-}
\ No newline at end of file
+
+    // новый жанр появляется в справочнике после refresh():
+    @Test
+    public void testRefresh() {
+        jdbcTemplate.update("INSERT INTO genre (genre_id, name) VALUES (7, 'Фантастика');");
+
+        genreStorage.refresh();
+
+        assertThat(7).isEqualTo(genreStorage.getAllGenres().size());
+        assertThat("Фантастика").isEqualTo(genreStorage.getGenreById(7).getName());
+    }
+
+    // промах по id и перечитывание без изменений не меняют метку справочника, новый жанр - меняет:
+    @Test
+    public void testTagChangesOnlyWhenGenresChange() {
+        String tag = genreStorage.getTag();
+
+        assertThat(genreStorage.resolveGenre(777).getName()).isNull();
+        genreStorage.refresh();
+
+        assertThat(tag).isEqualTo(genreStorage.getTag());
+
+        jdbcTemplate.update("INSERT INTO genre (genre_id, name) VALUES (7, 'Фантастика');");
+
+        assertThat("Фантастика").isEqualTo(genreStorage.resolveGenre(7).getName());
+        assertThat(tag).isNotEqualTo(genreStorage.getTag());
+    }
+
+    // жанра нет в справочнике:
+    @Test
+    void shouldGetInvalidDataBaseQueryExceptionWhenGenreIdIs777() {
+        final InvalidDataBaseQueryException exception = assertThrows(
+                InvalidDataBaseQueryException.class,
+                () -> genreStorage.getGenreById(777));
+
+        assertEquals(INVALID_DATA_BASE_QUERY_MESSAGE, exception.getMessage(),
+                "Ошибка: смогли получить Genre по несуществующему id.");
+    }
+}
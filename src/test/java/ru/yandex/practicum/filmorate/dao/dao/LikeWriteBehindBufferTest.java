@@ -0,0 +1,292 @@
+package ru.yandex.practicum.filmorate.dao.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.yandex.practicum.filmorate.dao.*;
+import ru.yandex.practicum.filmorate.exception.IllegalIdException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static ru.yandex.practicum.filmorate.exception.IllegalIdException.ILLEGAL_USER_ID_MESSAGE;
+
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@JdbcTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class LikeWriteBehindBufferTest {
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private LikeWriteBehindBuffer likeBuffer;
+    private FilmDbStorage filmStorage;
+    private Film film;
+    private User firstUser;
+    private User secondUser;
+
+    @BeforeEach
+    public void setUp() {
+        // буфер сбрасываем вручную, фоновый сброс в тестах не срабатывает:
+        likeBuffer = new LikeWriteBehindBuffer(jdbcTemplate, transactionManager, 3, 3_600_000L);
+        filmStorage = new FilmDbStorage(jdbcTemplate, new GenreDbStorage(jdbcTemplate), new MpaDbStorage(jdbcTemplate));
+        filmStorage.setLikeBuffer(likeBuffer);
+        UserDbStorage userStorage = new UserDbStorage(jdbcTemplate);
+
+        film = filmStorage.addFilm(Film.builder()
+                .name("test_film1_name")
+                .description("test_film1_description")
+                .releaseDate(LocalDate.of(1977, 7, 7))
+                .duration(120)
+                .rate(5)
+                .mpa(Mpa.builder()
+                        .id(1)
+                        .build())
+                .build());
+        firstUser = userStorage.addUser(User.builder()
+                .email("testuser1@tset.com")
+                .login("test_user1_login")
+                .name("test_user1_name")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+        secondUser = userStorage.addUser(User.builder()
+                .email("testuser2@tset.com")
+                .login("test_user2_login")
+                .name("test_user2_name")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build());
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        likeBuffer.shutdown();
+        TestTables.clear(jdbcTemplate);
+    }
+
+    // до сброса лайки лежат в буфере, но rate фильма уже учитывает их:
+    @Test
+    public void testAddLikeBeforeAndAfterFlush() {
+        filmStorage.addLikeToFilm(film.getId(), firstUser.getId());
+        filmStorage.addLikeToFilm(film.getId(), secondUser.getId());
+
+        assertThat(0).isEqualTo(countLikes());
+        assertThat(7).isEqualTo(filmStorage.getFilmById(film.getId()).getRate());
+
+        likeBuffer.flush();
+
+        assertThat(2).isEqualTo(countLikes());
+        assertThat(7).isEqualTo(filmStorage.getFilmById(film.getId()).getRate());
+        assertThat(7).isEqualTo(jdbcTemplate.queryForObject("SELECT rate FROM films WHERE film_id = ?",
+                Integer.class, film.getId()));
+    }
+
+    // лайк и его удаление до сброса не доходят до БД:
+    @Test
+    public void testLikeAndUnlikeAreCoalesced() {
+        filmStorage.addLikeToFilm(film.getId(), firstUser.getId());
+        filmStorage.removeLikeFromFilm(film.getId(), firstUser.getId());
+        likeBuffer.flush();
+
+        assertThat(0).isEqualTo(countLikes());
+        assertThat(5).isEqualTo(filmStorage.getFilmById(film.getId()).getRate());
+    }
+
+    // удаление лайка, которого нет, не попадает в буфер и не меняет rate:
+    @Test
+    public void testRemoveMissingLikeIsIgnored() {
+        filmStorage.addLikeToFilm(film.getId(), firstUser.getId());
+        filmStorage.removeLikeFromFilm(film.getId(), firstUser.getId());
+        filmStorage.removeLikeFromFilm(film.getId(), firstUser.getId());
+        filmStorage.removeLikeFromFilm(film.getId(), secondUser.getId());
+
+        assertThat(0).isEqualTo(likeBuffer.getPendingRateDelta(film.getId()));
+        likeBuffer.flush();
+
+        assertThat(0).isEqualTo(countLikes());
+        assertThat(5).isEqualTo(filmStorage.getFilmById(film.getId()).getRate());
+    }
+
+    // удаление уже сохранённого лайка:
+    @Test
+    public void testRemoveLikeAfterFlush() {
+        filmStorage.addLikeToFilm(film.getId(), firstUser.getId());
+        likeBuffer.flush();
+
+        filmStorage.removeLikeFromFilm(film.getId(), firstUser.getId());
+        likeBuffer.flush();
+
+        assertThat(0).isEqualTo(countLikes());
+        assertThat(5).isEqualTo(filmStorage.getFilmById(film.getId()).getRate());
+    }
+
+    // повторный лайк ничего не меняет и до сброса буфера, и после:
+    @Test
+    void shouldIgnoreRepeatedLikeOfFilm() {
+        filmStorage.addLikeToFilm(film.getId(), firstUser.getId());
+        filmStorage.addLikeToFilm(film.getId(), firstUser.getId());
+
+        likeBuffer.flush();
+        filmStorage.addLikeToFilm(film.getId(), firstUser.getId());
+        likeBuffer.flush();
+
+        assertThat(1).isEqualTo(countLikes());
+        assertThat(6).isEqualTo(filmStorage.getFilmById(film.getId()).getRate());
+    }
+
+    // пара, нарушающая ограничения БД, удаляется из буфера и не мешает записать остальные:
+    @Test
+    public void testFlushDropsLikeThatViolatesConstraints() {
+        filmStorage.addLikeToFilm(film.getId(), firstUser.getId());
+        // минуя проверки хранилища - пользователя 777 нет:
+        likeBuffer.addLike(film.getId(), 777L);
+
+        likeBuffer.flush();
+
+        assertThat(1).isEqualTo(countLikes());
+        assertThat(0).isEqualTo(likeBuffer.getPendingRateDelta(film.getId()));
+        assertThat(6).isEqualTo(jdbcTemplate.queryForObject("SELECT rate FROM films WHERE film_id = ?",
+                Integer.class, film.getId()));
+
+        filmStorage.addLikeToFilm(film.getId(), secondUser.getId());
+        likeBuffer.flush();
+
+        assertThat(2).isEqualTo(countLikes());
+    }
+
+    // БД недоступна: пары возвращаются в буфер одним шагом, без записи по одной, а заполненный буфер
+    // не сбрасывается в потоке запроса до конца паузы:
+    @Test
+    public void testFlushPutsLikesBackWhenDatabaseIsDown() throws InterruptedException {
+        AtomicBoolean databaseDown = new AtomicBoolean(true);
+        AtomicInteger writeAttempts = new AtomicInteger();
+        JdbcTemplate failingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                writeAttempts.incrementAndGet();
+                if (databaseDown.get()) {
+                    throw new DataAccessResourceFailureException("БД недоступна");
+                }
+                return super.batchUpdate(sql, batchArgs);
+            }
+        };
+        LikeWriteBehindBuffer failingBuffer = new LikeWriteBehindBuffer(failingJdbcTemplate, transactionManager,
+                3, 3_600_000L);
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) " +
+                "VALUES ('testuser3@tset.com', 'test_user3_login', 'test_user3_name', '2000-01-01');");
+        Long thirdUserId = jdbcTemplate.queryForObject("SELECT MAX(user_id) FROM users;", Long.class);
+
+        failingBuffer.addLike(film.getId(), firstUser.getId());
+        failingBuffer.addLike(film.getId(), secondUser.getId());
+        failingBuffer.flush();
+
+        assertThat(1).isEqualTo(writeAttempts.get());
+        assertThat(2).isEqualTo(failingBuffer.getPendingRateDelta(film.getId()));
+
+        failingBuffer.addLike(film.getId(), thirdUserId);
+        assertThat(1).isEqualTo(writeAttempts.get());
+
+        databaseDown.set(false);
+        failingBuffer.flush();
+
+        assertThat(3).isEqualTo(countLikes());
+        assertThat(0).isEqualTo(failingBuffer.getPendingRateDelta(film.getId()));
+        failingBuffer.shutdown();
+    }
+
+    // при остановке сброс повторяется, пока БД не станет доступна:
+    @Test
+    public void testShutdownRetriesUntilDatabaseIsUp() throws InterruptedException {
+        AtomicInteger writeAttempts = new AtomicInteger();
+        LikeWriteBehindBuffer failingBuffer = new LikeWriteBehindBuffer(
+                failingJdbcTemplate(() -> writeAttempts.incrementAndGet() <= 2), transactionManager, 3, 10L);
+        failingBuffer.setShutdownTimeoutMs(10_000L);
+
+        failingBuffer.addLike(film.getId(), firstUser.getId());
+        failingBuffer.addLike(film.getId(), secondUser.getId());
+        failingBuffer.shutdown();
+
+        assertThat(2).isEqualTo(countLikes());
+        assertThat(0).isEqualTo(failingBuffer.getPendingRateDelta(film.getId()));
+    }
+
+    // БД недоступна до конца таймаута остановки: попытки повторяются, остановка не ждёт дольше таймаута,
+    // незаписанные лайки остаются в буфере (и в логе ERROR), а не теряются молча:
+    @Test
+    public void testShutdownGivesUpAfterTimeoutWhenDatabaseIsDown() throws InterruptedException {
+        AtomicInteger writeAttempts = new AtomicInteger();
+        LikeWriteBehindBuffer failingBuffer = new LikeWriteBehindBuffer(
+                failingJdbcTemplate(() -> writeAttempts.incrementAndGet() > 0), transactionManager, 3, 10L);
+        failingBuffer.setShutdownTimeoutMs(200L);
+
+        failingBuffer.addLike(film.getId(), firstUser.getId());
+        failingBuffer.addLike(film.getId(), secondUser.getId());
+        long startedAt = System.nanoTime();
+        failingBuffer.shutdown();
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)).isLessThan(5_000L);
+        assertThat(writeAttempts.get()).isGreaterThan(1);
+        assertThat(0).isEqualTo(countLikes());
+        assertThat(2).isEqualTo(failingBuffer.getPendingRateDelta(film.getId()));
+    }
+
+    // заполненный буфер сбрасывается сразу:
+    @Test
+    public void testFlushWhenBufferIsFull() {
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) " +
+                "VALUES ('testuser3@tset.com', 'test_user3_login', 'test_user3_name', '2000-01-01');");
+        Long thirdUserId = jdbcTemplate.queryForObject("SELECT MAX(user_id) FROM users;", Long.class);
+
+        filmStorage.addLikeToFilm(film.getId(), firstUser.getId());
+        filmStorage.addLikeToFilm(film.getId(), secondUser.getId());
+        assertThat(0).isEqualTo(countLikes());
+
+        filmStorage.addLikeToFilm(film.getId(), thirdUserId);
+
+        assertThat(3).isEqualTo(countLikes());
+    }
+
+    // лайк от несуществующего пользователя не попадает в буфер:
+    @Test
+    public void shouldGetIllegalIdExceptionWhenUserIdIs777() {
+        final IllegalIdException exception = assertThrows(
+                IllegalIdException.class,
+                () -> filmStorage.addLikeToFilm(film.getId(), 777L));
+
+        assertEquals(ILLEGAL_USER_ID_MESSAGE + 777, exception.getMessage());
+        assertThat(0).isEqualTo(likeBuffer.getPendingRateDelta(film.getId()));
+    }
+
+    // JdbcTemplate, у которого пакетная запись падает, пока databaseDown возвращает true:
+    private JdbcTemplate failingJdbcTemplate(BooleanSupplier databaseDown) {
+        return new JdbcTemplate(jdbcTemplate.getDataSource()) {
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                if (databaseDown.getAsBoolean()) {
+                    throw new DataAccessResourceFailureException("БД недоступна");
+                }
+                return super.batchUpdate(sql, batchArgs);
+            }
+        };
+    }
+
+    private Integer countLikes() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM film_likes WHERE film_id = ?",
+                Integer.class, film.getId());
+    }
+}
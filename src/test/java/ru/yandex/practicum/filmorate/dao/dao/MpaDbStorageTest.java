@@ -48,4 +48,15 @@ public class MpaDbStorageTest {
 
         assertThat(5).isEqualTo(mpaList.size());
     }
+
+    // промах по id и перечитывание без изменений не меняют метку справочника:
+    @Test
+    public void testTagDoesNotChangeWhenMpaListIsUnchanged() {
+        String tag = mpaStorage.getTag();
+
+        assertThat(mpaStorage.resolveMpa(777).getName()).isNull();
+        mpaStorage.refresh();
+
+        assertThat(tag).isEqualTo(mpaStorage.getTag());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.dao.dao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// хранилища меняют индексы в памяти только после фиксации транзакции, поэтому тесты с индексами работают
+// без общей транзакции теста (с автокоммитом, как приложение) и после каждого теста чистят таблицы сами:
+final class TestTables {
+    private TestTables() {
+    }
+
+    static void clear(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("DELETE FROM film_likes;");
+        jdbcTemplate.update("DELETE FROM film_genres;");
+        jdbcTemplate.update("DELETE FROM user_friendship;");
+        jdbcTemplate.update("DELETE FROM films;");
+        jdbcTemplate.update("DELETE FROM users;");
+    }
+}
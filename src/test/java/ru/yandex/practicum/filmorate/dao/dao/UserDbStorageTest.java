@@ -1,17 +1,23 @@
 package ru.yandex.practicum.filmorate.dao.dao;
 
 import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.dao.UserDbStorage;
 import ru.yandex.practicum.filmorate.exception.AlreadyExistException;
 import ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryException;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
@@ -22,8 +28,10 @@ import static ru.yandex.practicum.filmorate.exception.InvalidDataBaseQueryExcept
 
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @JdbcTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
 public class UserDbStorageTest {
     private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
     private UserDbStorage userStorage;
     private User user;
     private User userFriend;
@@ -58,6 +66,11 @@ public class UserDbStorageTest {
         init();
     }
 
+    @AfterEach
+    public void tearDown() {
+        TestTables.clear(jdbcTemplate);
+    }
+
     @Test
     public void testGetUserById() {
         User savedUser = userStorage.getUserById(user.getId());
@@ -90,7 +103,43 @@ public class UserDbStorageTest {
         assertThat(1).isEqualTo(userList.size());
     }
 
+    // проверяем потоковую выгрузку пользователей:
+    @Test
+    public void testStreamAllUsers() {
+        userStorage.addUser(userFriend);
+        List<User> streamedUsers = new ArrayList<>();
+
+        userStorage.streamAllUsers(streamedUsers::add);
+
+        assertThat(userStorage.getAllUsers()).isEqualTo(streamedUsers);
+    }
+
+    // проверяем постраничное получение пользователей:
+    @Test
+    public void testGetUsersPage() {
+        userStorage.addUser(userFriend);
+
+        List<User> firstPage = userStorage.getUsersPage(0L, 1);
+        List<User> secondPage = userStorage.getUsersPage(firstPage.get(0).getId(), 1);
+
+        assertThat(user).isEqualTo(firstPage.get(0));
+        assertThat(userFriend).isEqualTo(secondPage.get(0));
+        assertThat(0).isEqualTo(userStorage.getUsersPage(userFriend.getId(), 1).size());
+    }
+
     // проверяем добавление пользователя в друзья и получение списка друзей:
+    // проверяем пакетное добавление пользователей:
+    @Test
+    public void testAddUsers() {
+        List<User> addedUsers = userStorage.addUsers(List.of(userFriend, commonFriend));
+
+        assertThat(user.getId() + 1).isEqualTo(addedUsers.get(0).getId());
+        assertThat(user.getId() + 2).isEqualTo(addedUsers.get(1).getId());
+        assertThat(userStorage.getUserById(commonFriend.getId()))
+                .usingRecursiveComparison()
+                .isEqualTo(commonFriend);
+    }
+
     @Test
     public void testAddUserToFriends() {
         userStorage.addUser(userFriend);
@@ -100,6 +149,30 @@ public class UserDbStorageTest {
         assertThat(1).isEqualTo(userStorage.getAllFriendsList(user.getId()).size());
     }
 
+    // повторное добавление в друзья завершается успешно и ничего не меняет:
+    @Test
+    void shouldIgnoreRepeatedAddToFriends() {
+        userStorage.addUser(userFriend);
+        String friendMessage = userStorage.addUserToFriends(user.getId(), userFriend.getId());
+
+        assertThat(userStorage.addUserToFriends(user.getId(), userFriend.getId())).isEqualTo(friendMessage);
+        assertThat(1).isEqualTo(userStorage.getAllFriendsList(user.getId()).size());
+    }
+
+    // дружба, которую параллельный запрос уже записал в БД, но ещё не в граф друзей, отклоняется уникальным
+    // индексом: запрос завершается успешно:
+    @Test
+    void shouldIgnoreFriendshipAlreadyWrittenByConcurrentRequest() {
+        userStorage.addUser(userFriend);
+        jdbcTemplate.update("INSERT INTO user_friendship (user_id, friend_id) VALUES (?, ?)",
+                user.getId(), userFriend.getId());
+
+        userStorage.addUserToFriends(user.getId(), userFriend.getId());
+
+        assertThat(1).isEqualTo(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user_friendship WHERE user_id = ?", Integer.class, user.getId()));
+    }
+
     // проверяем удаление пользователя из друзей:
     @Test
     public void testRemoveUserFromFriends() {
@@ -125,6 +198,69 @@ public class UserDbStorageTest {
         assertThat(commonFriend).isEqualTo(commonFriendList.get(0));
     }
 
+    // рекомендуются друзья друзей, которых ещё нет в друзьях:
+    @Test
+    public void testGetSuggestedFriends() {
+        userStorage.addUser(userFriend);
+        userStorage.addUser(commonFriend);
+        userStorage.addUserToFriends(user.getId(), userFriend.getId());
+        userStorage.addUserToFriends(userFriend.getId(), commonFriend.getId());
+        userStorage.addUserToFriends(userFriend.getId(), user.getId());
+
+        assertEquals(List.of(commonFriend), userStorage.getSuggestedFriends(user.getId(), 10));
+
+        userStorage.addUserToFriends(user.getId(), commonFriend.getId());
+        assertEquals(0, userStorage.getSuggestedFriends(user.getId(), 10).size());
+    }
+
+    // дружба из откатившейся транзакции не попадает в индекс друзей:
+    @Test
+    public void testRolledBackFriendshipIsNotInFriendGraph() {
+        userStorage.addUser(userFriend);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            userStorage.addUserToFriends(user.getId(), userFriend.getId());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, userStorage.getAllFriendsList(user.getId()).size());
+    }
+
+    // индекс друзей нового хранилища заполняется связями из БД:
+    @Test
+    public void testFriendsAreLoadedFromDataBase() {
+        userStorage.addUser(userFriend);
+        userStorage.addUser(commonFriend);
+        userStorage.addUserToFriends(user.getId(), commonFriend.getId());
+        userStorage.addUserToFriends(user.getId(), userFriend.getId());
+        userStorage.addUserToFriends(userFriend.getId(), commonFriend.getId());
+
+        UserDbStorage reloadedStorage = new UserDbStorage(jdbcTemplate);
+
+        assertEquals(List.of(userFriend, commonFriend), reloadedStorage.getAllFriendsList(user.getId()));
+        assertEquals(List.of(commonFriend), reloadedStorage.getCommonFriends(user.getId(), userFriend.getId()));
+    }
+
+    // друзей больше, чем id в одном запросе WHERE user_id IN (...): читаем частями, порядок id сохраняется:
+    @Test
+    public void testGetFriendsListLargerThanSelectBatch() {
+        List<User> friends = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            friends.add(userFriend.toBuilder().build());
+        }
+        userStorage.addUsers(friends);
+        for (User friend : friends) {
+            userStorage.addUserToFriends(user.getId(), friend.getId());
+        }
+
+        List<User> friendsList = userStorage.getAllFriendsList(user.getId());
+
+        assertEquals(1500, friendsList.size());
+        assertEquals(friends.get(0).getId(), friendsList.get(0).getId());
+        assertEquals(friends.get(1000).getId(), friendsList.get(1000).getId());
+        assertEquals(friends.get(friends.size() - 1).getId(), friendsList.get(friendsList.size() - 1).getId());
+    }
+
     // Попытка добавить новый User, который уже добавлен:
     @Test
     void shouldAlreadyExistExceptionWhenNewUserWithId() {
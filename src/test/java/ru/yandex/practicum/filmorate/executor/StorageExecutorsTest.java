@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.executor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.jdbc.ReadYourWrites;
+import ru.yandex.practicum.filmorate.jdbc.SqlStatistics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.executor.StorageExecutors.HEAVY_POOL_NAME;
+import static ru.yandex.practicum.filmorate.executor.StorageExecutors.REJECTED_COUNTER_NAME;
+
+public class StorageExecutorsTest {
+    private StorageExecutors storageExecutors;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        SqlStatistics.bind(null);
+        ReadYourWrites.bind(null);
+        storageExecutors.shutdown();
+    }
+
+    @Test
+    public void testSaturatedPoolRejectsWithoutBlockingOtherPool() throws Exception {
+        // по одному потоку и одному месту в очереди на пул:
+        storageExecutors = new StorageExecutors(true, 1, 1, 1, 1);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        storageExecutors.bindTo(meterRegistry);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = storageExecutors.supplyHeavy(() -> {
+            started.countDown();
+            await(release);
+            return "running";
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = storageExecutors.supplyHeavy(() -> "queued");
+
+        assertThrows(ServiceUnavailableException.class, () -> storageExecutors.supplyHeavy(() -> "rejected"));
+        assertEquals(1, meterRegistry.get("executor.queued").tag("name", HEAVY_POOL_NAME).gauge().value());
+        assertEquals(1, meterRegistry.get(REJECTED_COUNTER_NAME).tag("name", HEAVY_POOL_NAME)
+                .functionCounter().count());
+
+        // дешёвые запросы выполняются, пока тяжёлый пул занят:
+        assertEquals("point", storageExecutors.supplyPoint(() -> "point").get(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertEquals("running", running.get(5, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSqlStatisticsIsBoundInPoolThread() throws Exception {
+        storageExecutors = new StorageExecutors(true, 1, 1, 1, 1);
+        SqlStatistics statistics = new SqlStatistics();
+        SqlStatistics.bind(statistics);
+
+        assertSame(statistics, storageExecutors.supplyPoint(SqlStatistics::current).get(5, TimeUnit.SECONDS));
+
+        // после задачи статистика отвязана от потока пула:
+        SqlStatistics.bind(null);
+        assertNull(storageExecutors.supplyPoint(SqlStatistics::current).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReadYourWritesIsBoundInPoolThread() throws Exception {
+        storageExecutors = new StorageExecutors(true, 1, 1, 1, 1);
+        ReadYourWrites readYourWrites = new ReadYourWrites();
+        ReadYourWrites.bind(readYourWrites);
+
+        assertSame(readYourWrites, storageExecutors.supplyHeavy(ReadYourWrites::current).get(5, TimeUnit.SECONDS));
+
+        ReadYourWrites.bind(null);
+        assertNull(storageExecutors.supplyHeavy(ReadYourWrites::current).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDisabledModeRunsInCallerThread() {
+        storageExecutors = new StorageExecutors(false, 1, 1, 1, 1);
+
+        CompletableFuture<Thread> future = storageExecutors.supplyHeavy(Thread::currentThread);
+
+        assertTrue(future.isDone());
+        assertSame(Thread.currentThread(), future.join());
+    }
+
+    /*------Вспомогательные методы------*/
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
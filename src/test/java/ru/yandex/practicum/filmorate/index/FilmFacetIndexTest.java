@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FilmFacetIndexTest {
+    // без фильтров - все фильмы, фасеты по всем фильмам:
+    @Test
+    public void testFilterWithoutFilters() {
+        FilmFacetIndex index = filmIndex();
+
+        FilmFacetIndex.Result result = index.filter(null, null, null, null, null, 0, 10);
+
+        assertArrayEquals(new long[]{1, 2, 3, 4}, result.getFilmIds());
+        assertEquals(4, result.getCount());
+        assertEquals(Map.of(1, 2, 2, 3, 3, 1), result.getGenreCounts());
+        assertEquals(Map.of(1, 1, 3, 3), result.getMpaCounts());
+    }
+
+    // из нескольких жанров достаточно любого, фильтры разных полей пересекаются:
+    @Test
+    public void testFilterByGenresMpaYearsAndDuration() {
+        FilmFacetIndex index = filmIndex();
+
+        assertArrayEquals(new long[]{1, 2, 4}, index.filter(Set.of(1, 3), null, null, null, null, 0, 10).getFilmIds());
+        assertArrayEquals(new long[]{2, 4}, index.filter(Set.of(1, 3), 3, null, null, null, 0, 10).getFilmIds());
+        assertArrayEquals(new long[]{2, 3}, index.filter(null, null, 1990, 2005, null, 0, 10).getFilmIds());
+        assertArrayEquals(new long[]{3, 4}, index.filter(null, null, 2000, null, null, 0, 10).getFilmIds());
+        assertArrayEquals(new long[]{1, 3}, index.filter(null, null, null, null, 100, 0, 10).getFilmIds());
+        assertArrayEquals(new long[]{}, index.filter(Set.of(99), null, null, null, null, 0, 10).getFilmIds());
+        assertArrayEquals(new long[]{}, index.filter(null, null, 2005, 2000, null, 0, 10).getFilmIds());
+
+        FilmFacetIndex.Result result = index.filter(Set.of(2), 3, null, 2005, null, 0, 10);
+        assertArrayEquals(new long[]{2, 3}, result.getFilmIds());
+        assertEquals(Map.of(1, 1, 2, 2), result.getGenreCounts());
+        assertEquals(Map.of(3, 2), result.getMpaCounts());
+    }
+
+    // страница id после afterId, число найденных и фасеты - по всем найденным фильмам:
+    @Test
+    public void testFilterPage() {
+        FilmFacetIndex index = filmIndex();
+
+        FilmFacetIndex.Result result = index.filter(Set.of(2), null, null, null, null, 1, 1);
+
+        assertArrayEquals(new long[]{2}, result.getFilmIds());
+        assertEquals(3, result.getCount());
+        assertEquals(Map.of(1, 1, 3, 2), result.getMpaCounts());
+    }
+
+    // обновление фильма заменяет его жанры, рейтинг и год:
+    @Test
+    public void testUpdateReplacesFacets() {
+        FilmFacetIndex index = filmIndex();
+
+        index.put(1, List.of(3), 3, LocalDate.of(2020, 1, 1), 90);
+
+        assertArrayEquals(new long[]{1, 4}, index.filter(Set.of(3), null, null, null, null, 0, 10).getFilmIds());
+        assertArrayEquals(new long[]{}, index.filter(null, 1, null, null, null, 0, 10).getFilmIds());
+        assertArrayEquals(new long[]{}, index.filter(null, null, 1980, 1980, null, 0, 10).getFilmIds());
+        assertEquals(Map.of(3, 4), index.filter(null, null, null, null, null, 0, 10).getMpaCounts());
+    }
+
+    private static FilmFacetIndex filmIndex() {
+        FilmFacetIndex index = new FilmFacetIndex();
+        index.put(1, List.of(1, 2), 1, LocalDate.of(1980, 5, 1), 90);
+        index.put(2, List.of(1, 2), 3, LocalDate.of(1999, 12, 31), 120);
+        index.put(3, List.of(2), 3, LocalDate.of(2005, 1, 1), 100);
+        index.put(4, List.of(3), 3, LocalDate.of(2010, 6, 1), 150);
+        return index;
+    }
+}
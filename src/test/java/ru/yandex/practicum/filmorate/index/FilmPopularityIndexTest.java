@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FilmPopularityIndexTest {
+    // фильмы упорядочены по rate по убыванию, при равном rate - по id:
+    @Test
+    public void testGetTopFilmIds() {
+        FilmPopularityIndex index = new FilmPopularityIndex();
+        index.put(1, 5);
+        index.put(2, 7);
+        index.put(3, 5);
+        index.put(4, 0);
+
+        assertEquals(List.of(2L, 1L, 3L), index.getTopFilmIds(3));
+        assertEquals(List.of(2L, 1L, 3L, 4L), index.getTopFilmIds(10));
+    }
+
+    // лайк и удаление лайка перемещают фильм в индексе:
+    @Test
+    public void testAddToRate() {
+        FilmPopularityIndex index = new FilmPopularityIndex();
+        index.put(1, 5);
+        index.put(2, 4);
+
+        index.addToRate(2, 1);
+        assertEquals(List.of(1L, 2L), index.getTopFilmIds(2));
+
+        index.addToRate(2, 1);
+        assertEquals(List.of(2L, 1L), index.getTopFilmIds(2));
+
+        index.addToRate(2, -2);
+        assertEquals(List.of(1L, 2L), index.getTopFilmIds(2));
+    }
+
+    // при параллельных лайках и удалениях лайков индекс не теряет фильмы и обновления:
+    @Test
+    public void testConcurrentLikesAndUnlikes() throws InterruptedException, ExecutionException {
+        FilmPopularityIndex index = new FilmPopularityIndex();
+        int filmsCount = 10;
+        for (long filmId = 1; filmId <= filmsCount; filmId++) {
+            index.put(filmId, 0);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int task = 0; task < 8; task++) {
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    long filmId = 1 + i % filmsCount;
+                    index.addToRate(filmId, 1);
+                    index.addToRate(filmId, -1);
+                    // фильм 1 получает на один лайк больше за итерацию:
+                    if (filmId == 1) {
+                        index.addToRate(filmId, 1);
+                    }
+                    assertEquals(filmsCount, index.getTopFilmIds(filmsCount * 2).size());
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        List<Long> topFilmIds = index.getTopFilmIds(filmsCount * 2);
+        assertEquals(filmsCount, topFilmIds.size());
+        assertEquals(1L, topFilmIds.get(0));
+        assertEquals(List.of(2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), topFilmIds.subList(1, filmsCount));
+    }
+}
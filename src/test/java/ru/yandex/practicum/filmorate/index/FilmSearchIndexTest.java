@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FilmSearchIndexTest {
+    private static final Set<FilmSearchIndex.Field> ALL_FIELDS = EnumSet.allOf(FilmSearchIndex.Field.class);
+    private static final Set<FilmSearchIndex.Field> TITLE = EnumSet.of(FilmSearchIndex.Field.TITLE);
+    private static final Set<FilmSearchIndex.Field> DESCRIPTION = EnumSet.of(FilmSearchIndex.Field.DESCRIPTION);
+
+    // подстроки кириллицы без учёта регистра и ё, короткие запросы и запросы из нескольких слов:
+    @Test
+    public void testSearchSubstrings() {
+        FilmSearchIndex index = filmIndex();
+
+        assertArrayEquals(new long[]{1}, index.search("ЁЛКИ", ALL_FIELDS, false, 10, film -> 0));
+        assertArrayEquals(new long[]{2}, index.search("ёмн", ALL_FIELDS, false, 10, film -> 0));
+        assertArrayEquals(new long[]{2}, index.search("тёмный  рыцарь!", ALL_FIELDS, false, 10, film -> 0));
+        assertArrayEquals(new long[]{3}, index.search("Шр", ALL_FIELDS, false, 10, film -> 0));
+        assertArrayEquals(new long[]{}, index.search("рыцарь темный", ALL_FIELDS, false, 10, film -> 0));
+        assertArrayEquals(new long[]{}, index.search("!!!", ALL_FIELDS, false, 10, film -> 0));
+    }
+
+    // совпадение в названии выше совпадения в описании, начало названия выше середины:
+    @Test
+    public void testRankingByRelevance() {
+        FilmSearchIndex index = filmIndex();
+
+        assertArrayEquals(new long[]{4, 2, 3}, index.search("рыцар", ALL_FIELDS, false, 10, film -> 0));
+        assertArrayEquals(new long[]{4, 2}, index.search("рыцар", TITLE, false, 10, film -> 0));
+        assertArrayEquals(new long[]{3}, index.search("рыцар", DESCRIPTION, false, 10, film -> 0));
+        assertArrayEquals(new long[]{4}, index.search("рыцар", ALL_FIELDS, false, 1, film -> 0));
+    }
+
+    // при равной релевантности выше популярный фильм, при сортировке по популярности релевантность вторична:
+    @Test
+    public void testRankingWithPopularity() {
+        FilmSearchIndex index = filmIndex();
+        index.put(5, "Рыцари неба", null);
+        Map<Long, Integer> rates = Map.of(2L, 100, 3L, 50, 4L, 1, 5L, 7);
+
+        assertArrayEquals(new long[]{5, 4, 2, 3},
+                index.search("рыцар", ALL_FIELDS, false, 10, film -> rates.getOrDefault(film, 0)));
+        assertArrayEquals(new long[]{2, 3, 5, 4},
+                index.search("рыцар", ALL_FIELDS, true, 10, film -> rates.getOrDefault(film, 0)));
+    }
+
+    // обновление фильма заменяет его триграммы:
+    @Test
+    public void testUpdateReplacesText() {
+        FilmSearchIndex index = filmIndex();
+
+        index.put(1, "Иван Васильевич меняет профессию", null);
+
+        assertArrayEquals(new long[]{}, index.search("елки", ALL_FIELDS, false, 10, film -> 0));
+        assertArrayEquals(new long[]{1}, index.search("профессию", ALL_FIELDS, false, 10, film -> 0));
+        assertEquals("иван васильевич", FilmSearchIndex.normalize("  Иван, Васильевич... "));
+    }
+
+    private static FilmSearchIndex filmIndex() {
+        FilmSearchIndex index = new FilmSearchIndex();
+        index.put(1, "Ёлки", "Новогодняя комедия");
+        index.put(2, "Тёмный рыцарь", "Бэтмен против Джокера");
+        index.put(3, "Шрек", "Огр и принцесса встречают рыцаря");
+        index.put(4, "Рыцарь дорог", null);
+        return index;
+    }
+}
@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FriendGraphIndexTest {
+    // друзья хранятся отсортированными независимо от порядка добавления, повторное добавление не меняет индекс:
+    @Test
+    public void testAddFriend() {
+        FriendGraphIndex index = new FriendGraphIndex();
+
+        assertTrue(index.addFriend(1, 7));
+        assertTrue(index.addFriend(1, 3));
+        assertTrue(index.addFriend(1, 5));
+        assertFalse(index.addFriend(1, 3));
+
+        assertArrayEquals(new long[]{3, 5, 7}, index.getFriendIds(1));
+        // дружба односторонняя:
+        assertArrayEquals(new long[0], index.getFriendIds(7));
+    }
+
+    @Test
+    public void testRemoveFriend() {
+        FriendGraphIndex index = new FriendGraphIndex();
+        index.addFriend(1, 3);
+        index.addFriend(1, 5);
+
+        assertTrue(index.removeFriend(1, 3));
+        assertFalse(index.removeFriend(1, 3));
+        assertFalse(index.removeFriend(100, 3));
+
+        assertArrayEquals(new long[]{5}, index.getFriendIds(1));
+    }
+
+    // общие друзья - пересечение отсортированных массивов:
+    @Test
+    public void testGetCommonFriendIds() {
+        FriendGraphIndex index = new FriendGraphIndex();
+        for (long friendId : new long[]{2, 4, 6, 8, 10}) {
+            index.addFriend(1, friendId);
+        }
+        for (long friendId : new long[]{3, 4, 5, 10, 11}) {
+            index.addFriend(20, friendId);
+        }
+
+        assertArrayEquals(new long[]{4, 10}, index.getCommonFriendIds(1, 20));
+        assertArrayEquals(new long[]{4, 10}, index.getCommonFriendIds(20, 1));
+        assertArrayEquals(new long[0], index.getCommonFriendIds(1, 30));
+    }
+
+    // друзья друзей, которые ещё не в друзьях, по числу общих друзей, при равенстве - по id:
+    @Test
+    public void testGetSuggestedFriendIds() {
+        FriendGraphIndex index = new FriendGraphIndex();
+        index.addFriend(1, 2);
+        index.addFriend(1, 3);
+        index.addFriend(1, 4);
+        // 5 - друг у 2, 3 и 4, 6 и 7 - у двух, 8 - у одного, 4 и сам 1 не рекомендуются:
+        index.addFriend(2, 5);
+        index.addFriend(2, 7);
+        index.addFriend(2, 1);
+        index.addFriend(3, 5);
+        index.addFriend(3, 6);
+        index.addFriend(3, 7);
+        index.addFriend(3, 4);
+        index.addFriend(4, 5);
+        index.addFriend(4, 6);
+        index.addFriend(4, 8);
+
+        assertArrayEquals(new long[]{5, 6, 7, 8}, index.getSuggestedFriendIds(1, 10, 100, 100));
+        assertArrayEquals(new long[]{5, 6}, index.getSuggestedFriendIds(1, 2, 100, 100));
+        assertArrayEquals(new long[0], index.getSuggestedFriendIds(8, 10, 100, 100));
+    }
+
+    // при большом числе друзей обходится только выборка из них:
+    @Test
+    public void testSuggestedFriendsFanOutIsCapped() {
+        FriendGraphIndex index = new FriendGraphIndex();
+        for (long friendId = 2; friendId <= 11; friendId++) {
+            index.addFriend(1, friendId);
+            index.addFriend(friendId, 100 + friendId);
+        }
+
+        // из 10 друзей обходится каждый второй (2, 4, ..., 10):
+        assertArrayEquals(new long[]{102, 104, 106, 108, 110}, index.getSuggestedFriendIds(1, 10, 5, 100));
+
+        for (long friendOfFriendId = 200; friendOfFriendId < 210; friendOfFriendId++) {
+            index.addFriend(2, friendOfFriendId);
+        }
+        // обходится только друг 2, из его 11 друзей берётся каждый третий:
+        assertArrayEquals(new long[]{102, 202, 205, 208}, index.getSuggestedFriendIds(1, 10, 1, 5));
+    }
+
+    // массивы пользователей и друзей растут по мере добавления:
+    @Test
+    public void testIndexGrows() {
+        FriendGraphIndex index = new FriendGraphIndex();
+        for (long friendId = 1000; friendId > 0; friendId--) {
+            index.addFriend(5000, friendId);
+        }
+
+        long[] friendIds = index.getFriendIds(5000);
+        assertArrayEquals(new long[]{1, 2, 3}, Arrays.copyOf(friendIds, 3));
+        assertEquals(1000, friendIds.length);
+    }
+
+    // id пользователей в БД - INTEGER:
+    @Test
+    public void testIdOutOfIntegerRange() {
+        FriendGraphIndex index = new FriendGraphIndex();
+
+        assertThrows(IllegalArgumentException.class, () -> index.addFriend(Integer.MAX_VALUE + 1L, 1));
+        assertArrayEquals(new long[0], index.getFriendIds(-1));
+    }
+}
@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LikeMatrixIndexTest {
+    @Test
+    public void testAddAndRemoveLike() {
+        LikeMatrixIndex index = new LikeMatrixIndex();
+
+        assertTrue(index.addLike(1, 10));
+        assertFalse(index.addLike(1, 10));
+        assertTrue(index.removeLike(1, 10));
+        assertFalse(index.removeLike(1, 10));
+        assertFalse(index.removeLike(100, 1000));
+    }
+
+    // наличие лайка и точное количество лайков фильма:
+    @Test
+    public void testHasLikeAndLikeCount() {
+        LikeMatrixIndex index = new LikeMatrixIndex();
+        likeFilms(index, 1, 1, 2);
+        likeFilms(index, 2, 1);
+
+        assertTrue(index.hasLike(1, 2));
+        assertFalse(index.hasLike(2, 2));
+        assertFalse(index.hasLike(1000, 1));
+        assertFalse(index.hasLike(1, -1));
+        assertEquals(2, index.getLikeCount(1));
+        assertEquals(0, index.getLikeCount(1000));
+
+        index.addLike(1, 2);
+        index.removeLike(1, 1);
+        index.removeLike(1, 1);
+
+        assertFalse(index.hasLike(1, 1));
+        assertEquals(1, index.getLikeCount(1));
+    }
+
+    // пользователь известен матрице после лайка или addUser, пустая строка не даёт рекомендаций:
+    @Test
+    public void testHasUser() {
+        LikeMatrixIndex index = new LikeMatrixIndex();
+        likeFilms(index, 1, 1);
+
+        assertTrue(index.hasUser(1));
+        assertFalse(index.hasUser(2));
+        assertFalse(index.hasUser(-1));
+
+        index.addUser(2);
+        index.addUser(2);
+
+        assertTrue(index.hasUser(2));
+        assertArrayEquals(new long[0], index.getRecommendedFilmIds(2, 10, 10));
+    }
+
+    // фильмы похожих пользователей по сумме пересечений их лайков с лайками пользователя:
+    @Test
+    public void testGetRecommendedFilmIds() {
+        LikeMatrixIndex index = new LikeMatrixIndex();
+        // пользователь 1 лайкнул фильмы 1, 2, 3:
+        likeFilms(index, 1, 1, 2, 3);
+        // у пользователя 2 пересечение 3 (фильм 4 получает 3), у 3 - 1 (фильмы 4 и 5 получают по 1),
+        // у 4 - 1 (фильм 6 получает 1), пользователь 5 без общих лайков не учитывается:
+        likeFilms(index, 2, 1, 2, 3, 4);
+        likeFilms(index, 3, 3, 4, 5);
+        likeFilms(index, 4, 1, 6);
+        likeFilms(index, 5, 7, 8);
+
+        assertArrayEquals(new long[]{4, 5, 6}, index.getRecommendedFilmIds(1, 10, 10));
+        assertArrayEquals(new long[]{4}, index.getRecommendedFilmIds(1, 1, 10));
+        // учитывается только самый похожий пользователь 2:
+        assertArrayEquals(new long[]{4}, index.getRecommendedFilmIds(1, 10, 1));
+        // без лайков рекомендаций нет:
+        assertArrayEquals(new long[0], index.getRecommendedFilmIds(100, 10, 10));
+    }
+
+    // удаление лайка убирает пользователя из соседей:
+    @Test
+    public void testRecommendationsFollowLikeRemoval() {
+        LikeMatrixIndex index = new LikeMatrixIndex();
+        likeFilms(index, 1, 1);
+        likeFilms(index, 2, 1, 2);
+
+        assertArrayEquals(new long[]{2}, index.getRecommendedFilmIds(1, 10, 10));
+
+        index.removeLike(1, 2);
+        assertArrayEquals(new long[0], index.getRecommendedFilmIds(1, 10, 10));
+    }
+
+    // соседей больше порога - пересечения считаются в пуле ForkJoin, результат тот же, что у точного подсчёта:
+    @Test
+    public void testManyNeighbours() {
+        LikeMatrixIndex index = new LikeMatrixIndex();
+        Random random = new Random(7);
+        likeFilms(index, 1, 1, 2, 3);
+        for (int user = 2; user < 20_000; user++) {
+            index.addLike(1 + random.nextInt(3), user);
+            index.addLike(10 + random.nextInt(100), user);
+        }
+        // у пользователя 20000 все три фильма пользователя 1 и фильм 500:
+        likeFilms(index, 20_000, 1, 2, 3, 500);
+
+        long[] recommended = index.getRecommendedFilmIds(1, 5, 1);
+        assertEquals(1, recommended.length);
+        assertEquals(500, recommended[0]);
+    }
+
+    /*------Вспомогательные методы------*/
+    private static void likeFilms(LikeMatrixIndex index, long userId, long... filmIds) {
+        for (long filmId : filmIds) {
+            index.addLike(filmId, userId);
+        }
+    }
+}
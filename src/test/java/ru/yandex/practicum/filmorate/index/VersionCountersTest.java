@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VersionCountersTest {
+    // изменение записи увеличивает её версию и версию коллекции, версии других записей не меняются:
+    @Test
+    public void testBump() {
+        VersionCounters versions = new VersionCounters();
+
+        versions.bump(1);
+        versions.bump(1);
+        versions.bump(2);
+        versions.bumpCollection();
+
+        assertEquals(2, versions.getVersion(1));
+        assertEquals(1, versions.getVersion(2));
+        assertEquals(0, versions.getVersion(3));
+        assertEquals(4, versions.getCollectionVersion());
+    }
+
+    // время изменения записи и коллекции сдвигается при изменении, время других записей - нет:
+    @Test
+    public void testChangedAtNanos() {
+        VersionCounters versions = new VersionCounters();
+        long createdAtNanos = versions.getChangedAtNanos();
+        assertEquals(createdAtNanos, versions.getChangedAtNanos(1));
+
+        long beforeBump = System.nanoTime();
+        versions.bump(1);
+
+        assertTrue(versions.getChangedAtNanos(1) - beforeBump >= 0);
+        assertEquals(versions.getChangedAtNanos(1), versions.getChangedAtNanos());
+        assertEquals(createdAtNanos, versions.getChangedAtNanos(2));
+    }
+
+    // хеш списка меняется при изменении записи списка и порядка, но не при изменении записи вне списка:
+    @Test
+    public void testVersionsHash() {
+        VersionCounters versions = new VersionCounters();
+        long hash = versions.getVersionsHash(List.of(1L, 2L));
+
+        versions.bump(3);
+        assertEquals(hash, versions.getVersionsHash(List.of(1L, 2L)));
+        assertNotEquals(hash, versions.getVersionsHash(List.of(2L, 1L)));
+        assertNotEquals(hash, versions.getVersionsHash(List.of(1L)));
+
+        versions.bump(2);
+        assertNotEquals(hash, versions.getVersionsHash(List.of(1L, 2L)));
+    }
+
+    // метки одного запуска различаются частями, время запуска общее:
+    @Test
+    public void testTag() {
+        String tag = VersionCounters.tag(1, 35);
+
+        assertEquals(tag.substring(0, tag.indexOf('-')) + "-1-z", tag);
+        assertNotEquals(tag, VersionCounters.tag(1, 36));
+    }
+}
@@ -0,0 +1,213 @@
+package ru.yandex.practicum.filmorate.jdbc;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.MpaDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.jdbc.InstrumentedDataSource.STATEMENT_ROWS_NAME;
+import static ru.yandex.practicum.filmorate.jdbc.InstrumentedDataSource.STATEMENT_TIMER_NAME;
+
+@ExtendWith(OutputCaptureExtension.class)
+public class InstrumentedDataSourceTest {
+    private JdbcDataSource h2DataSource;
+    private SimpleMeterRegistry meterRegistry;
+    private JdbcTemplate jdbcTemplate;
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        // отдельная база на каждый тест, схема - из миграций приложения:
+        h2DataSource = new JdbcDataSource();
+        h2DataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure()
+                .dataSource(h2DataSource)
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+
+        InstrumentedDataSource dataSource = new InstrumentedDataSource(h2DataSource);
+        meterRegistry = new SimpleMeterRegistry();
+        dataSource.bindTo(meterRegistry);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        user = User.builder()
+                .email("testuser1@tset.com")
+                .login("test_user1_login")
+                .name("test_user1_name")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build();
+    }
+
+    @Test
+    public void testStatementsAreTimedBySqlQueryName() {
+        UserDbStorage userStorage = new UserDbStorage(jdbcTemplate);
+        userStorage.addUser(user);
+        userStorage.getUserById(user.getId());
+        userStorage.getUserById(user.getId());
+
+        assertEquals(1, successTimer("SQL_QUERY_ADD_USER").count());
+        assertEquals(2, successTimer("SQL_QUERY_GET_USER_BY_ID").count());
+        assertEquals(2, rows("SQL_QUERY_GET_USER_BY_ID").totalAmount());
+    }
+
+    @Test
+    public void testBatchRowsAreSummed() {
+        UserDbStorage userStorage = new UserDbStorage(jdbcTemplate);
+        userStorage.addUsers(List.of(
+                user.toBuilder().login("test_user1_login").build(),
+                user.toBuilder().login("test_user2_login").build(),
+                user.toBuilder().login("test_user3_login").build()));
+
+        assertEquals(1, successTimer("SQL_QUERY_ADD_USER").count());
+        assertEquals(3, rows("SQL_QUERY_ADD_USER").totalAmount());
+    }
+
+    @Test
+    public void testFailedStatementIsTimedAsError() {
+        UserDbStorage userStorage = new UserDbStorage(jdbcTemplate);
+        User friend = userStorage.addUser(user.toBuilder().login("test_friend1_login").build());
+        userStorage.addUser(user);
+        // дружба записана в обход хранилища: граф друзей о ней не знает, INSERT падает на уникальном индексе:
+        new JdbcTemplate(h2DataSource).update("INSERT INTO user_friendship (user_id, friend_id) VALUES (?, ?);",
+                user.getId(), friend.getId());
+
+        userStorage.addUserToFriends(user.getId(), friend.getId());
+
+        assertNull(meterRegistry.find(STATEMENT_TIMER_NAME)
+                .tag("query", "SQL_QUERY_ADD_USER_TO_FRIENDS")
+                .tag("outcome", "SUCCESS")
+                .timer());
+        assertEquals(1, meterRegistry.get(STATEMENT_TIMER_NAME)
+                .tag("query", "SQL_QUERY_ADD_USER_TO_FRIENDS")
+                .tag("outcome", "ERROR")
+                .timer()
+                .count());
+    }
+
+    @Test
+    public void testFormattedQueryIsTimedByTemplateName() {
+        FilmDbStorage filmStorage = new FilmDbStorage(jdbcTemplate,
+                new GenreDbStorage(jdbcTemplate), new MpaDbStorage(jdbcTemplate));
+        for (int i = 1; i <= 3; i++) {
+            filmStorage.addFilm(Film.builder()
+                    .name("test_film" + i)
+                    .description("test_description")
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .duration(100)
+                    .rate(i)
+                    .mpa(Mpa.builder().id(1).build())
+                    .build());
+        }
+
+        filmStorage.getTopFilmsForLikes(2);
+
+        assertEquals(1, successTimer("SQL_QUERY_GET_FILMS_BY_IDS").count());
+        assertEquals(2, rows("SQL_QUERY_GET_FILMS_BY_IDS").totalAmount());
+        assertNull(meterRegistry.find(STATEMENT_TIMER_NAME).tag("query", "other").timer());
+    }
+
+    @Test
+    public void testSlowStatementIsLoggedWithParameters(CapturedOutput output) {
+        // с нулевым порогом медленными считаются все запросы:
+        UserDbStorage userStorage = new UserDbStorage(
+                new JdbcTemplate(new InstrumentedDataSource(h2DataSource, Duration.ZERO)));
+        userStorage.addUser(user);
+
+        assertTrue(output.getOut().contains("SQL_QUERY_ADD_USER"), "Запрос не попал в лог медленных запросов");
+        assertTrue(output.getOut().contains("[testuser1@tset.com, test_user1_login, test_user1_name, 2000-01-01]"),
+                "В логе медленных запросов нет параметров запроса");
+    }
+
+    @Test
+    public void testSqlStatisticsCountsStatementsOfCurrentThread() {
+        UserDbStorage userStorage = new UserDbStorage(jdbcTemplate);
+        userStorage.addUser(user);
+
+        SqlStatistics statistics = new SqlStatistics();
+        SqlStatistics.bind(statistics);
+        try {
+            userStorage.getUserById(user.getId());
+            userStorage.getUsersPage(0L, 10);
+        } finally {
+            SqlStatistics.bind(null);
+        }
+        userStorage.getUserById(user.getId());
+
+        assertEquals(2, statistics.getStatementCount());
+        assertTrue(statistics.getTimeNanos() > 0);
+    }
+
+    // регрессионный тест количества запросов updateFilm:
+    @Test
+    public void testUpdateFilmStatementCount() {
+        FilmDbStorage filmStorage = new FilmDbStorage(jdbcTemplate,
+                new GenreDbStorage(jdbcTemplate), new MpaDbStorage(jdbcTemplate));
+        Film film = filmStorage.addFilm(Film.builder()
+                .name("test_film")
+                .description("test_description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(Mpa.builder().id(1).build())
+                .genres(List.of(Genre.builder().id(1).build(), Genre.builder().id(2).build()))
+                .build());
+
+        // getFilmById, UPDATE films, удаление и добавление жанров двумя batch'ами:
+        Film changedGenresFilm = film.toBuilder()
+                .genres(List.of(Genre.builder().id(2).build(), Genre.builder().id(3).build()))
+                .build();
+        assertEquals(4, countStatements(() -> filmStorage.updateFilm(changedGenresFilm)));
+
+        // жанры не изменились - только getFilmById и UPDATE films:
+        Film sameGenresFilm = changedGenresFilm.toBuilder().name("updated_test_film").build();
+        assertEquals(2, countStatements(() -> filmStorage.updateFilm(sameGenresFilm)));
+    }
+
+    /*------Вспомогательные методы------*/
+    private static int countStatements(Runnable action) {
+        SqlStatistics statistics = new SqlStatistics();
+        SqlStatistics.bind(statistics);
+        try {
+            action.run();
+        } finally {
+            SqlStatistics.bind(null);
+        }
+        return statistics.getStatementCount();
+    }
+
+    private Timer successTimer(String queryName) {
+        return meterRegistry.get(STATEMENT_TIMER_NAME)
+                .tag("query", queryName)
+                .tag("outcome", "SUCCESS")
+                .timer();
+    }
+
+    private DistributionSummary rows(String queryName) {
+        return meterRegistry.get(STATEMENT_ROWS_NAME)
+                .tag("query", queryName)
+                .summary();
+    }
+}
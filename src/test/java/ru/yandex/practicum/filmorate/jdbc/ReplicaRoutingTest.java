@@ -0,0 +1,199 @@
+package ru.yandex.practicum.filmorate.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.jdbc.ReplicaRouting.ROUTED_COUNTER_NAME;
+import static ru.yandex.practicum.filmorate.jdbc.ReplicationStandIn.LAG_GAUGE_NAME;
+
+public class ReplicaRoutingTest {
+    private static final String MIGRATIONS = "classpath:db/migration";
+    private static final String SQL_QUERY_ADD_USER = "INSERT INTO users (email, login) VALUES (?, ?)";
+    private static final String SQL_QUERY_COUNT_USERS = "SELECT COUNT(*) FROM users";
+
+    private ReplicaRouting replicaRouting;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+    private SimpleMeterRegistry meterRegistry;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        ReadYourWrites.bind(null);
+        if (replicaRouting != null) {
+            replicaRouting.close();
+        }
+    }
+
+    @Test
+    public void testReadOnlyTransactionReadsReplicatedDataFromReplica() throws InterruptedException {
+        start(Duration.ZERO, Duration.ofMinutes(1));
+        int users = countUsers(writeTransaction);
+
+        addUser();
+        awaitReplication();
+
+        assertEquals(users + 1, countUsers(readOnlyTransaction));
+        assertEquals("REPLICA", currentDatabase(readOnlyTransaction));
+        assertEquals(0, meterRegistry.get(LAG_GAUGE_NAME).tag("replica", "replica-1").timeGauge()
+                .value());
+    }
+
+    @Test
+    public void testLaggingReplicaIsSkipped() {
+        // изменения попадают в реплику только через час, допустимое отставание - 0:
+        start(Duration.ofHours(1), Duration.ZERO);
+
+        addUser();
+
+        assertEquals("PRIMARY", currentDatabase(readOnlyTransaction));
+        assertEquals(0, meterRegistry.get(ROUTED_COUNTER_NAME).tag("target", "replica").functionCounter().count());
+    }
+
+    @Test
+    public void testRequestReadsItsOwnWritesFromPrimary() {
+        start(Duration.ofHours(1), Duration.ofHours(2));
+        ReadYourWrites.bind(new ReadYourWrites());
+        int users = countUsers(readOnlyTransaction);
+        assertEquals("REPLICA", currentDatabase(readOnlyTransaction));
+
+        addUser();
+
+        // реплика ещё не получила изменения, но запрос видит свою запись:
+        assertEquals(users + 1, countUsers(readOnlyTransaction));
+        assertEquals("PRIMARY", currentDatabase(readOnlyTransaction));
+
+        // другой запрос читает с реплики:
+        ReadYourWrites.bind(new ReadYourWrites());
+        assertEquals(users, countUsers(readOnlyTransaction));
+    }
+
+    // запрос, которому нужны изменения, ещё не скопированные в реплику (ответ с ETag), читает из основной БД:
+    @Test
+    public void testReplicaWithoutRequiredChangesIsSkipped() {
+        start(Duration.ofHours(1), Duration.ofHours(2));
+        addUser();
+        ReadYourWrites.bind(new ReadYourWrites());
+
+        ReadYourWrites.readChangesUpTo(System.nanoTime());
+
+        assertEquals("PRIMARY", currentDatabase(readOnlyTransaction));
+    }
+
+    // изменения, зафиксированные позже нужных запросу, не мешают читать из реплики:
+    @Test
+    public void testReplicaWithRequiredChangesIsUsed() {
+        start(Duration.ofHours(1), Duration.ofHours(2));
+        long changedAtNanos = System.nanoTime();
+        addUser();
+        ReadYourWrites.bind(new ReadYourWrites());
+
+        ReadYourWrites.readChangesUpTo(changedAtNanos);
+
+        assertEquals("REPLICA", currentDatabase(readOnlyTransaction));
+    }
+
+    @Test
+    public void testRolledBackChangesAreNotReplicated() {
+        start(Duration.ZERO, Duration.ofMinutes(1));
+
+        writeTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.update(SQL_QUERY_ADD_USER, "user@yandex.ru", "user");
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, meterRegistry.get(ReplicationStandIn.PENDING_GAUGE_NAME).gauge().value());
+    }
+
+    @Test
+    public void testMutatedTableIsParsedFromSql() {
+        assertEquals("FILMS", ChangeCapturingDataSource.mutatedTable("UPDATE films SET rate = ? WHERE film_id = ?"));
+        assertEquals("FILM_LIKES", ChangeCapturingDataSource.mutatedTable(
+                "MERGE INTO film_likes (film_id, user_id) KEY (film_id, user_id) VALUES (?, ?)"));
+        assertEquals("USER_FRIENDSHIP", ChangeCapturingDataSource.mutatedTable(
+                "\n  delete from user_friendship where user_id = ?"));
+        assertEquals(null, ChangeCapturingDataSource.mutatedTable("SELECT * FROM films"));
+    }
+
+    /*------Вспомогательные методы------*/
+    // основная БД и одна реплика - отдельные H2 базы в памяти, схема основной БД - из миграций приложения:
+    private void start(Duration replicationDelay, Duration maxLag) {
+        String suffix = UUID.randomUUID().toString();
+        String primaryUrl = "jdbc:h2:mem:primary-" + suffix + ";DB_CLOSE_DELAY=-1";
+        HikariDataSource primaryDataSource = dataSource(primaryUrl);
+        Flyway.configure()
+                .dataSource(primaryDataSource)
+                .locations(MIGRATIONS)
+                .load()
+                .migrate();
+        markDatabase(primaryDataSource, "PRIMARY");
+
+        HikariDataSource replicaDataSource = dataSource("jdbc:h2:mem:replica-" + suffix + ";DB_CLOSE_DELAY=-1");
+        markDatabase(replicaDataSource, "REPLICA");
+        ReplicationStandIn replica = new ReplicationStandIn("replica-1", replicaDataSource,
+                new ReplicationStandIn.PrimaryLink("org.h2.Driver", primaryUrl, "sa", ""),
+                new String[]{MIGRATIONS}, Duration.ofMillis(10), replicationDelay);
+
+        replicaRouting = new ReplicaRouting(primaryDataSource, List.of(replica), maxLag);
+        meterRegistry = new SimpleMeterRegistry();
+        replicaRouting.bindTo(meterRegistry);
+        replicaRouting.start();
+
+        jdbcTemplate = new JdbcTemplate(replicaRouting.getDataSource());
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(
+                replicaRouting.getDataSource());
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    private static HikariDataSource dataSource(String url) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        return dataSource;
+    }
+
+    // роль БД хранится вне схемы PUBLIC, поэтому в реплику не копируется:
+    private static void markDatabase(HikariDataSource dataSource, String role) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("CREATE SCHEMA test");
+        template.execute("CREATE TABLE test.database_role (role VARCHAR(10))");
+        template.update("INSERT INTO test.database_role VALUES (?)", role);
+    }
+
+    private void addUser() {
+        writeTransaction.executeWithoutResult(status ->
+                jdbcTemplate.update(SQL_QUERY_ADD_USER, "user@yandex.ru", "user"));
+    }
+
+    private int countUsers(TransactionTemplate transaction) {
+        return transaction.execute(status -> jdbcTemplate.queryForObject(SQL_QUERY_COUNT_USERS, Integer.class));
+    }
+
+    private String currentDatabase(TransactionTemplate transaction) {
+        return transaction.execute(status -> jdbcTemplate.queryForObject(
+                "SELECT role FROM test.database_role", String.class));
+    }
+
+    private void awaitReplication() throws InterruptedException {
+        for (int i = 0; i < 500 && meterRegistry.get(ReplicationStandIn.PENDING_GAUGE_NAME).gauge().value() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(meterRegistry.get(ReplicationStandIn.PENDING_GAUGE_NAME).gauge().value() == 0,
+                "Изменения не скопированы в реплику");
+    }
+}